@@ -41,6 +41,16 @@ public class FusekiConfig extends Config {
     fusekiConfig.setUrl(config.getUrl());
     fusekiConfig.setUser(config.getUser());
     fusekiConfig.setPassword(config.getPassword());
+    fusekiConfig.setUploadFormat(config.getUploadFormat());
+    fusekiConfig.setBinaryResultFormats(config.isBinaryResultFormats());
+    fusekiConfig.setCompression(config.isCompression());
+    fusekiConfig.setCallListener(config.getCallListener());
+    fusekiConfig.setConnectTimeoutMillis(config.getConnectTimeoutMillis());
+    fusekiConfig.setQueryTimeoutMillis(config.getQueryTimeoutMillis());
+    fusekiConfig.setExecutor(config.getExecutor());
+    fusekiConfig.setSlowQueryThresholdMillis(config.getSlowQueryThresholdMillis());
+    fusekiConfig.setSlowQuerySampleRate(config.getSlowQuerySampleRate());
+    fusekiConfig.setSlowQueryLogsPerMinute(config.getSlowQueryLogsPerMinute());
     return fusekiConfig;
   }
 
@@ -19,19 +19,28 @@
 
 package zone.cogni.semanticz.connectors.fuseki;
 
-import org.apache.jena.query.QueryExecution;
+import org.apache.jena.graph.Triple;
 import org.apache.jena.query.QueryExecutionBuilder;
+import org.apache.jena.query.QuerySolution;
 import org.apache.jena.query.ResultSet;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.sparql.exec.http.QueryExecutionHTTPBuilder;
 import zone.cogni.semanticz.connectors.utils.Constants;
+import zone.cogni.semanticz.connectors.utils.ExistenceCheck;
 import zone.cogni.semanticz.connectors.utils.HttpClientUtils;
+import zone.cogni.semanticz.connectors.utils.JenaUtils;
+import zone.cogni.semanticz.connectors.utils.TripleSerializationFormat;
+import zone.cogni.semanticz.connectors.general.AsyncSparqlService;
+import zone.cogni.semanticz.connectors.general.QueryExplainer;
+import zone.cogni.semanticz.connectors.general.SlowQueryLog;
+import zone.cogni.semanticz.connectors.general.SparqlCall;
+import zone.cogni.semanticz.connectors.general.SparqlCallListener;
+import zone.cogni.semanticz.connectors.general.SparqlOperation;
 import zone.cogni.semanticz.connectors.general.SparqlService;
 import zone.cogni.semanticz.connectors.general.Config;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.StringWriter;
 import java.net.URI;
 import java.net.URLEncoder;
 import java.net.http.HttpClient;
@@ -39,20 +48,27 @@ import java.net.http.HttpRequest;
 import java.net.http.HttpRequest.BodyPublisher;
 import java.net.http.HttpRequest.BodyPublishers;
 import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
+import java.util.stream.Stream;
 
 import static zone.cogni.semanticz.connectors.utils.Constants.CONTENT_TYPE;
 import static zone.cogni.semanticz.connectors.utils.HttpClientUtils.execute;
+import static zone.cogni.semanticz.connectors.utils.HttpClientUtils.executeAsync;
 
 /**
  * SparqlService implementation for Fuseki, backed by JDK11 HttpClient
  */
-public class FusekiSparqlService implements SparqlService {
+public class FusekiSparqlService implements SparqlService, AsyncSparqlService {
 
   private final FusekiConfig config;
 
   private final HttpClient httpClient;
 
+  private final SparqlCallListener callListener;
+
   @Deprecated
   public FusekiSparqlService(Config config) {
     this(FusekiConfig.from(config));
@@ -60,11 +76,22 @@ public class FusekiSparqlService implements SparqlService {
 
   public FusekiSparqlService(FusekiConfig config) {
     this.config = config;
-    httpClient = HttpClientUtils.createHttpClientBuilder(config.getUser(), config.getPassword()).build();
+    httpClient = HttpClientUtils.createHttpClientBuilder(config).build();
+    // Fuseki runs ARQ, the locally optimized algebra is the plan up to the statistics of its storage
+    callListener = SlowQueryLog.withSlowQueryLog(config, QueryExplainer.ALGEBRA);
+  }
+
+  private QueryExecutionBuilder getQueryExecutionBuilder(SparqlCall call) {
+    final QueryExecutionHTTPBuilder builder = QueryExecutionHTTPBuilder.service(config.getQueryUrl()).httpClient(httpClient);
+    final long timeLeft = call.getTimeLeftMillis();
+    // Fuseki stops the query once the given number of seconds elapsed
+    if (timeLeft > 0) builder.param("timeout", String.valueOf(timeLeft / 1000.0));
+    return HttpClientUtils.configure(builder, config, call);
   }
 
-  private QueryExecutionBuilder getQueryExecutionBuilder() {
-    return QueryExecutionHTTPBuilder.service(config.getQueryUrl()).httpClient(httpClient);
+  private SparqlCall startCall(SparqlOperation operation, String endpoint, String query) {
+    return SparqlCall.start(callListener, operation, getClass().getSimpleName(), endpoint, query)
+        .limitTo(config.getQueryTimeoutMillis());
   }
 
   @Override
@@ -80,26 +107,34 @@ public class FusekiSparqlService implements SparqlService {
     } catch (FileNotFoundException e) {
       throw new RuntimeException(e);
     }
-    execute(request, httpClient);
+    execute(request, httpClient, startCall(SparqlOperation.uploadTtlFile, sparqlUrl, null));
   }
 
   @Override
   public Model executeConstructQuery(String query) {
-    try (QueryExecution queryExecution = getQueryExecutionBuilder().query(query).build()) {
-      return queryExecution.execConstruct();
-    }
+    final SparqlCall call = startCall(SparqlOperation.construct, config.getQueryUrl(), query);
+    return JenaUtils.construct(call, () -> getQueryExecutionBuilder(call).query(query).build());
+  }
+
+  @Override
+  public Stream<Triple> constructStream(String query) {
+    final SparqlCall call = startCall(SparqlOperation.construct, config.getQueryUrl(), query);
+    return JenaUtils.constructStream(call, () -> getQueryExecutionBuilder(call).query(query).build());
   }
 
   @Override
   public void executeUpdateQuery(String updateQuery) {
-    final HttpRequest request = HttpRequest
+    execute(createUpdateRequest(updateQuery), httpClient,
+        startCall(SparqlOperation.update, config.getUpdateUrl(), updateQuery));
+  }
+
+  private HttpRequest createUpdateRequest(String updateQuery) {
+    return HttpRequest
         .newBuilder(URI.create(config.getUpdateUrl()))
         .POST(BodyPublishers.ofString("update=" + URLEncoder.encode(updateQuery,
                 StandardCharsets.UTF_8)))
         .header(CONTENT_TYPE, Constants.APPLICATION_FORM_URLENCODED_VALUE)
         .build();
-    System.out.println(request);
-    execute(request, httpClient);
   }
 
   @Override
@@ -113,35 +148,94 @@ public class FusekiSparqlService implements SparqlService {
   }
 
   private void upload(Model model, String graphUri, boolean replace) {
+    final SparqlCall call = startUploadCall(replace, graphUri);
+    execute(createUploadRequest(model, graphUri, replace, call), httpClient, call);
+  }
+
+  private SparqlCall startUploadCall(boolean replace, String graphUri) {
+    return SparqlCall.start(callListener, replace ? SparqlOperation.replaceGraph : SparqlOperation.updateGraph,
+        getClass().getSimpleName(), config.getGraphStoreUrl(), null, graphUri)
+        .limitTo(config.getQueryTimeoutMillis());
+  }
+
+  private HttpRequest createUploadRequest(Model model, String graphUri, boolean replace, SparqlCall call) {
     String insertUrl = config.getGraphStoreUrl() + "?graph=" + URLEncoder.encode(graphUri,
         StandardCharsets.UTF_8);
-    StringWriter writer = new StringWriter();
-    model.write(writer, "ttl");
-    final BodyPublisher p = BodyPublishers.ofByteArray(writer.toString().getBytes());
-    final HttpRequest.Builder builder = HttpRequest
+    final TripleSerializationFormat format = config.getUploadFormat();
+    final BodyPublisher p = HttpClientUtils.ofModel(model, config, call);
+    final HttpRequest.Builder builder = HttpClientUtils.contentEncoding(HttpRequest
         .newBuilder(URI.create(insertUrl))
-        .header(CONTENT_TYPE, config.getTurtleMimeType() + ";charset=utf-8");
+        .header(CONTENT_TYPE, format.isTurtle() ? config.getTurtleMimeType() + ";charset=utf-8" : format.getContentType()), config);
 
-    final HttpRequest request = (replace ? builder.PUT(p) : builder.POST(p)).build();
-    execute(request, httpClient);
+    return (replace ? builder.PUT(p) : builder.POST(p)).build();
   }
 
   @Override
   public <R> R executeSelectQuery(String query, Function<ResultSet, R> resultHandler) {
-    try (QueryExecution queryExecution = getQueryExecutionBuilder().query(query).build()) {
-      return resultHandler.apply(queryExecution.execSelect());
-    }
+    final SparqlCall call = startCall(SparqlOperation.select, config.getQueryUrl(), query);
+    return JenaUtils.select(call, () -> getQueryExecutionBuilder(call).query(query).build(), resultHandler);
+  }
+
+  @Override
+  public Stream<QuerySolution> selectStream(String query) {
+    final SparqlCall call = startCall(SparqlOperation.select, config.getQueryUrl(), query);
+    return JenaUtils.selectStream(call, () -> getQueryExecutionBuilder(call).query(query).build());
   }
 
   @Override
   public boolean executeAskQuery(String askQuery) {
-    try (QueryExecution queryExecution = getQueryExecutionBuilder().query(askQuery).build()) {
-      return queryExecution.execAsk();
-    }
+    final SparqlCall call = startCall(SparqlOperation.ask, config.getQueryUrl(), askQuery);
+    return JenaUtils.ask(call, () -> getQueryExecutionBuilder(call).query(askQuery).build());
+  }
+
+  @Override
+  public Map<String, Boolean> checkExisting(Set<String> uris, int chunkSize, int parallelism) {
+    return ExistenceCheck.checkExisting(this, uris, chunkSize, parallelism, config.getExecutor());
   }
 
   @Override
   public void dropGraph(String graphUri) {
     executeUpdateQuery("drop silent graph <" + graphUri + ">");
   }
+
+  @Override
+  public <R> CompletableFuture<R> executeSelectQueryAsync(String query, Function<ResultSet, R> resultHandler) {
+    return HttpClientUtils.executeSelectAsync(httpClient, config.getQueryUrl(), query, config, resultHandler,
+        startCall(SparqlOperation.select, config.getQueryUrl(), query));
+  }
+
+  @Override
+  public CompletableFuture<Boolean> executeAskQueryAsync(String askQuery) {
+    return HttpClientUtils.executeAskAsync(httpClient, config.getQueryUrl(), askQuery, config,
+        startCall(SparqlOperation.ask, config.getQueryUrl(), askQuery));
+  }
+
+  @Override
+  public CompletableFuture<Model> executeConstructQueryAsync(String constructQuery) {
+    return HttpClientUtils.executeConstructAsync(httpClient, config.getQueryUrl(), constructQuery, config,
+        startCall(SparqlOperation.construct, config.getQueryUrl(), constructQuery));
+  }
+
+  @Override
+  public CompletableFuture<Void> executeUpdateQueryAsync(String updateQuery) {
+    return executeAsync(createUpdateRequest(updateQuery), httpClient,
+        startCall(SparqlOperation.update, config.getUpdateUrl(), updateQuery));
+  }
+
+  @Override
+  public CompletableFuture<Void> updateGraphAsync(String graphUri, Model model) {
+    final SparqlCall call = startUploadCall(false, graphUri);
+    return executeAsync(createUploadRequest(model, graphUri, false, call), httpClient, call);
+  }
+
+  @Override
+  public CompletableFuture<Void> replaceGraphAsync(String graphUri, Model model) {
+    final SparqlCall call = startUploadCall(true, graphUri);
+    return executeAsync(createUploadRequest(model, graphUri, true, call), httpClient, call);
+  }
+
+  @Override
+  public CompletableFuture<Void> dropGraphAsync(String graphUri) {
+    return executeUpdateQueryAsync("drop silent graph <" + graphUri + ">");
+  }
 }
@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package zone.cogni.semanticz.connectors.fuseki;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.jena.query.QuerySolution;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFParser;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Checks against a local endpoint that, with compression enabled, responses are negotiated and decoded as gzip and
+ * uploads are sent gzipped.
+ */
+public class FusekiCompressionTest {
+
+  private static final String SELECT_RESULT = "{ \"head\" : { \"vars\" : [ \"s\" ] }, \"results\" : { \"bindings\" : ["
+                                              + " { \"s\" : { \"type\" : \"uri\", \"value\" : \"http://example.org/a\" } } ] } }";
+
+  private final Map<String, String> requestHeaders =
+      Collections.synchronizedMap(new TreeMap<>(String.CASE_INSENSITIVE_ORDER));
+  private final Model uploaded = ModelFactory.createDefaultModel();
+  private HttpServer server;
+  private FusekiSparqlService service;
+
+  @BeforeEach
+  public void startServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext("/rdf/query", exchange -> {
+      record(exchange);
+      drain(exchange.getRequestBody());
+      final byte[] body = gzip(SELECT_RESULT.getBytes(StandardCharsets.UTF_8));
+      exchange.getResponseHeaders().set("Content-Type", "application/sparql-results+json");
+      exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+      exchange.sendResponseHeaders(200, body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    });
+    server.createContext("/rdf/data", exchange -> {
+      record(exchange);
+      try (InputStream in = new GZIPInputStream(exchange.getRequestBody())) {
+        RDFParser.source(in).lang(Lang.TURTLE).parse(uploaded);
+      }
+      exchange.sendResponseHeaders(204, -1);
+      exchange.close();
+    });
+    server.start();
+
+    final FusekiConfig config = new FusekiConfig();
+    config.setUrl("http://localhost:" + server.getAddress().getPort() + "/rdf");
+    config.setCompression(true);
+    service = new FusekiSparqlService(config);
+  }
+
+  @AfterEach
+  public void stopServer() {
+    server.stop(0);
+  }
+
+  @Test
+  public void testSelectResponsesAreNegotiatedAndDecoded() {
+    final List<QuerySolution> rows = service.executeSelectQuery("SELECT ?s { ?s ?p ?o }", resultSet -> {
+      final List<QuerySolution> result = new ArrayList<>();
+      resultSet.forEachRemaining(result::add);
+      return result;
+    });
+
+    Assertions.assertEquals(1, rows.size());
+    Assertions.assertEquals("http://example.org/a", rows.get(0).getResource("s").getURI());
+    Assertions.assertTrue(requestHeaders.get("Accept-Encoding").contains("gzip"), requestHeaders.toString());
+  }
+
+  @Test
+  public void testAsyncSelectResponsesAreNegotiatedAndDecoded() {
+    final List<String> values = service.executeSelectQueryAsync("SELECT ?s { ?s ?p ?o }", resultSet -> {
+      final List<String> result = new ArrayList<>();
+      resultSet.forEachRemaining(row -> result.add(row.getResource("s").getURI()));
+      return result;
+    }).join();
+
+    Assertions.assertEquals(List.of("http://example.org/a"), values);
+    Assertions.assertTrue(requestHeaders.get("Accept-Encoding").contains("gzip"), requestHeaders.toString());
+  }
+
+  @Test
+  public void testUploadsAreSentGzipped() {
+    final Model model = ModelFactory.createDefaultModel();
+    model.createResource("http://example.org/a").addProperty(RDFS.label, "a");
+
+    service.updateGraph("http://example.org/graph", model);
+
+    Assertions.assertEquals("gzip", requestHeaders.get("Content-Encoding"));
+    Assertions.assertTrue(uploaded.isIsomorphicWith(model));
+  }
+
+  private void record(HttpExchange exchange) {
+    exchange.getRequestHeaders().forEach((name, values) ->
+        requestHeaders.put(name, values.stream().collect(Collectors.joining(", "))));
+  }
+
+  private static void drain(InputStream in) throws IOException {
+    try (in) {
+      in.readAllBytes();
+    }
+  }
+
+  private static byte[] gzip(byte[] bytes) throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+      gzip.write(bytes);
+    }
+    return out.toByteArray();
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package zone.cogni.semanticz.connectors.fuseki;
+
+import com.sun.net.httpserver.HttpServer;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks that an upload to an endpoint failing before it read the request body does not leave the serializer of the
+ * body blocked on its pipe.
+ */
+public class FusekiFailingUploadTest {
+
+  private static final byte[] ERROR = "Upload refused".getBytes(StandardCharsets.UTF_8);
+
+  private final AtomicInteger runningTasks = new AtomicInteger();
+  private final ExecutorService pool = Executors.newCachedThreadPool();
+  private HttpServer server;
+
+  @BeforeEach
+  public void startServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext("/rdf", exchange -> {
+      // answer without reading the body
+      exchange.sendResponseHeaders(500, ERROR.length);
+      try (OutputStream body = exchange.getResponseBody()) {
+        body.write(ERROR);
+      }
+    });
+    server.start();
+  }
+
+  @AfterEach
+  public void stop() {
+    server.stop(0);
+    pool.shutdownNow();
+  }
+
+  @Test
+  public void testFailedUploadReleasesTheBodyWriter() throws InterruptedException {
+    final FusekiConfig config = new FusekiConfig();
+    config.setUrl("http://localhost:" + server.getAddress().getPort() + "/rdf");
+    config.setQueryTimeoutMillis(30_000);
+    config.setExecutor(task -> pool.execute(() -> {
+      runningTasks.incrementAndGet();
+      try {
+        task.run();
+      } finally {
+        runningTasks.decrementAndGet();
+      }
+    }));
+    final FusekiSparqlService service = new FusekiSparqlService(config);
+
+    final Model model = largeModel();
+    Assertions.assertThrows(RuntimeException.class, () -> service.updateGraph("http://example.org/graph", model));
+
+    final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (runningTasks.get() > 0 && System.nanoTime() < deadline) {
+      Thread.sleep(50);
+    }
+    Assertions.assertEquals(0, runningTasks.get(), "The body writer is still running");
+  }
+
+  /**
+   * @return a model serializing to far more than the pipe and the socket buffers hold
+   */
+  private static Model largeModel() {
+    final Model model = ModelFactory.createDefaultModel();
+    final String padding = "x".repeat(200);
+    for (int i = 0; i < 50_000; i++) {
+      final Resource resource = model.createResource("http://example.org/resource/" + i);
+      resource.addProperty(RDFS.label, padding + i);
+    }
+    return model;
+  }
+}
@@ -21,7 +21,17 @@ package zone.cogni.semanticz.connectors.fuseki;
 
 import org.apache.jena.fuseki.main.FusekiServer;
 import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.query.ResultSetFormatter;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
 import zone.cogni.semanticz.connectors.utils.AbstractSparqlServiceTest;
+import zone.cogni.semanticz.connectors.utils.VirtualThreads;
+
+import java.util.concurrent.CompletableFuture;
 
 public class FusekiSparqlServiceTest extends AbstractSparqlServiceTest<FusekiSparqlService> {
 
@@ -35,13 +45,47 @@ public class FusekiSparqlServiceTest extends AbstractSparqlServiceTest<FusekiSpa
             .build();
 
     server.start();
+    return new FusekiSparqlService(createConfig());
+  }
+
+  protected FusekiConfig createConfig() {
     final FusekiConfig config = new FusekiConfig();
     config.setUrl("http://localhost:12345/rdf");
-    return new FusekiSparqlService(config);
+    return config;
   }
 
   protected void disposeSUT(FusekiSparqlService service) {
     server.stop();
   }
 
+  @Test
+  public void testAsyncQueriesAreCorrectlyEvaluated() {
+    final CompletableFuture<Boolean> ask = getSUT().executeAskQueryAsync(
+            "PREFIX rdfs: <http://www.w3.org/2000/01/rdf-schema#> ASK { GRAPH ?g { <https://example.org/c1> rdfs:subClassOf <https://example.org/c2> } }");
+    final CompletableFuture<Integer> select = getSUT().executeSelectQueryAsync(
+            "SELECT * { GRAPH ?g { ?s ?p ?o } FILTER (?g in (<https://example.org/m1>, <https://example.org/m2>))}", ResultSetFormatter::consume);
+
+    Assertions.assertTrue(ask.join());
+    Assertions.assertEquals(2, select.join());
+  }
+
+  @Test
+  public void testUploadsLargerThanThePipeBufferOnVirtualThreads() {
+    Assumptions.assumeTrue(VirtualThreads.isAvailable(), "Virtual threads require Java 21");
+    final FusekiConfig config = createConfig();
+    config.setExecutor(VirtualThreads.executor());
+    final FusekiSparqlService service = new FusekiSparqlService(config);
+
+    // far more than the 64 KiB the pipe of a streamed body holds
+    final Model model = ModelFactory.createDefaultModel();
+    final String padding = "x".repeat(100);
+    for (int i = 0; i < 5_000; i++) {
+      model.createResource("http://example.org/resource/" + i).addProperty(RDFS.label, padding + i);
+    }
+    service.updateGraph("http://example.org/large", model);
+
+    Assertions.assertEquals(5_000, service.executeSelectQuery(
+            "SELECT * { GRAPH <http://example.org/large> { ?s ?p ?o } }", ResultSetFormatter::consume));
+  }
+
 }
\ No newline at end of file
@@ -38,6 +38,16 @@ public class GraphDBConfig extends Config {
     setUrl(config.getUrl());
     setUser(config.getUser());
     setPassword(config.getPassword());
+    setUploadFormat(config.getUploadFormat());
+    setBinaryResultFormats(config.isBinaryResultFormats());
+    setCompression(config.isCompression());
+    setCallListener(config.getCallListener());
+    setConnectTimeoutMillis(config.getConnectTimeoutMillis());
+    setQueryTimeoutMillis(config.getQueryTimeoutMillis());
+    setExecutor(config.getExecutor());
+    setSlowQueryThresholdMillis(config.getSlowQueryThresholdMillis());
+    setSlowQuerySampleRate(config.getSlowQuerySampleRate());
+    setSlowQueryLogsPerMinute(config.getSlowQueryLogsPerMinute());
   }
 
   public String getSparqlEndpoint() {
@@ -19,107 +19,231 @@
 
 package zone.cogni.semanticz.connectors.graphdb;
 
-import org.apache.commons.io.FileUtils;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.Query;
 import org.apache.jena.query.QueryExecution;
 import org.apache.jena.query.QueryExecutionBuilder;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.query.QuerySolution;
 import org.apache.jena.query.ResultSet;
+import org.apache.jena.query.Syntax;
 import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.RDFNode;
 import org.apache.jena.riot.Lang;
 import org.apache.jena.sparql.exec.http.QueryExecutionHTTPBuilder;
 import zone.cogni.semanticz.connectors.utils.Constants;
+import zone.cogni.semanticz.connectors.utils.ExistenceCheck;
 import zone.cogni.semanticz.connectors.utils.HttpClientUtils;
+import zone.cogni.semanticz.connectors.utils.JenaUtils;
+import zone.cogni.semanticz.connectors.utils.TripleSerializationFormat;
+import zone.cogni.semanticz.connectors.general.AsyncSparqlService;
+import zone.cogni.semanticz.connectors.general.SlowQueryLog;
+import zone.cogni.semanticz.connectors.general.SparqlCall;
+import zone.cogni.semanticz.connectors.general.SparqlCallListener;
+import zone.cogni.semanticz.connectors.general.SparqlOperation;
 import zone.cogni.semanticz.connectors.general.SparqlService;
 
 import java.io.File;
-import java.io.IOException;
-import java.io.StringWriter;
+import java.io.FileNotFoundException;
 import java.net.URI;
 import java.net.URLEncoder;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublisher;
 import java.net.http.HttpRequest.BodyPublishers;
 import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
+import java.util.stream.Stream;
 
 import static zone.cogni.semanticz.connectors.utils.Constants.CONTENT_TYPE;
 import static zone.cogni.semanticz.connectors.utils.HttpClientUtils.execute;
+import static zone.cogni.semanticz.connectors.utils.HttpClientUtils.executeAsync;
 
-public class GraphDBSparqlService implements SparqlService {
+public class GraphDBSparqlService implements SparqlService, AsyncSparqlService {
+
+  private static final String ONTO_EXPLAIN = "http://www.ontotext.com/explain";
 
   private final GraphDBConfig config;
   private final HttpClient httpClient;
+  private final SparqlCallListener callListener;
 
   public GraphDBSparqlService(GraphDBConfig config) {
     this.config = config;
     //  TODO check loading from systemproperties - e.g. proxy settings?
     //  HttpClientBuilder httpClientBuilder = HttpClients.custom().useSystemProperties();
-    httpClient = HttpClientUtils.createHttpClientBuilder(config.getUser(), config.getPassword()).build();
+    httpClient = HttpClientUtils.createHttpClientBuilder(config).build();
+    callListener = SlowQueryLog.withSlowQueryLog(config, this::explain);
   }
 
   private QueryExecutionBuilder getQueryExecutionBuilder() {
-    return QueryExecutionHTTPBuilder.service(config.getSparqlEndpoint()).httpClient(httpClient);
+    return HttpClientUtils.configure(QueryExecutionHTTPBuilder.service(config.getSparqlEndpoint()).httpClient(httpClient), config);
+  }
+
+  private QueryExecutionBuilder getQueryExecutionBuilder(SparqlCall call) {
+    final QueryExecutionHTTPBuilder builder = QueryExecutionHTTPBuilder.service(config.getSparqlEndpoint()).httpClient(httpClient);
+    final long timeLeft = call.getTimeLeftMillis();
+    // GraphDB stops the query once the given number of seconds elapsed
+    if (timeLeft > 0) builder.param("timeout", String.valueOf((timeLeft + 999) / 1000));
+    return HttpClientUtils.configure(builder, config, call);
+  }
+
+  private SparqlCall startCall(SparqlOperation operation, String endpoint, String query) {
+    return SparqlCall.start(callListener, operation, getClass().getSimpleName(), endpoint, query)
+        .limitTo(config.getQueryTimeoutMillis());
+  }
+
+  private SparqlCall startUpdateGraphCall(String graphUri) {
+    return SparqlCall.start(callListener, SparqlOperation.updateGraph, getClass().getSimpleName(),
+        config.getSparqlUpdateEndpoint(), null, graphUri)
+        .limitTo(config.getQueryTimeoutMillis());
+  }
+
+  /**
+   * Asks GraphDB for the plan of a query, by running it as SELECT on the onto:explain pseudo-graph.
+   */
+  private String explain(String query) {
+    final Query explainQuery = QueryFactory.create(query, Syntax.syntaxARQ);
+    explainQuery.setQuerySelectType();
+    explainQuery.setQueryResultStar(true);
+    explainQuery.addGraphURI(ONTO_EXPLAIN);
+    final StringBuilder plan = new StringBuilder();
+    try (QueryExecution execution = getQueryExecutionBuilder().query(explainQuery).build()) {
+      execution.execSelect().forEachRemaining(row -> row.varNames().forEachRemaining(var -> {
+        final RDFNode value = row.get(var);
+        plan.append(value.isLiteral() ? value.asLiteral().getLexicalForm() : value.toString()).append('\n');
+      }));
+    }
+    return plan.toString();
   }
 
   @Override
   public void uploadTtlFile(File file) {
+    final BodyPublisher body;
     try {
-      uploadTtl(file.toURI().toString(), FileUtils.readFileToString(file, "UTF-8"));
+      body = BodyPublishers.ofFile(file.toPath());
     }
-    catch (IOException e) {
+    catch (FileNotFoundException e) {
       throw new RuntimeException("Couldn't read file " + file.getName(), e);
     }
+    execute(createUploadRequestBuilder(file.toURI().toString(), body, Lang.TURTLE.getHeaderString()).build(), httpClient,
+        startCall(SparqlOperation.uploadTtlFile, config.getSparqlUpdateEndpoint(), null));
   }
 
   @Override
   public void updateGraph(String graphUri, Model model) {
-    StringWriter writer = new StringWriter();
-    model.write(writer, "ttl");
-    uploadTtl(graphUri, writer.toString());
+    final SparqlCall call = startUpdateGraphCall(graphUri);
+    execute(createUpdateGraphRequest(graphUri, model, call), httpClient, call);
+  }
+
+  private HttpRequest createUpdateGraphRequest(String graphUri, Model model, SparqlCall call) {
+    final TripleSerializationFormat format = config.getUploadFormat();
+    final HttpRequest.Builder builder = createUploadRequestBuilder(graphUri,
+        HttpClientUtils.ofModel(model, config, call), format.getContentType());
+    return HttpClientUtils.contentEncoding(builder, config).build();
   }
 
-  private void uploadTtl(String graphUri, String ttl) {
-    final HttpRequest request = HttpRequest
+  private HttpRequest.Builder createUploadRequestBuilder(String graphUri, BodyPublisher body, String contentType) {
+    return HttpRequest
         .newBuilder()
-        .POST(BodyPublishers.ofString(ttl, StandardCharsets.UTF_8))
-        .header(CONTENT_TYPE, Lang.TURTLE.getHeaderString())
-        .uri(URI.create(config.getSparqlUpdateEndpoint()+"?context=" + URLEncoder.encode("<"+graphUri+">", StandardCharsets.UTF_8)))
-        .build();
-    execute(request, httpClient);
+        .POST(body)
+        .header(CONTENT_TYPE, contentType)
+        .uri(URI.create(config.getSparqlUpdateEndpoint()+"?context=" + URLEncoder.encode("<"+graphUri+">", StandardCharsets.UTF_8)));
   }
 
   @Override
   public Model executeConstructQuery(String query) {
-    try (QueryExecution queryExecution = getQueryExecutionBuilder().query(query).build()) {
-      return queryExecution.execConstruct();
-    }
+    final SparqlCall call = startCall(SparqlOperation.construct, config.getSparqlEndpoint(), query);
+    return JenaUtils.construct(call, () -> getQueryExecutionBuilder(call).query(query).build());
+  }
+
+  @Override
+  public Stream<Triple> constructStream(String query) {
+    final SparqlCall call = startCall(SparqlOperation.construct, config.getSparqlEndpoint(), query);
+    return JenaUtils.constructStream(call, () -> getQueryExecutionBuilder(call).query(query).build());
   }
 
   @Override
   public void executeUpdateQuery(String updateQuery) {
-    final HttpRequest request = HttpRequest
+    execute(createUpdateRequest(updateQuery), httpClient,
+        startCall(SparqlOperation.update, config.getSparqlUpdateEndpoint(), updateQuery));
+  }
+
+  private HttpRequest createUpdateRequest(String updateQuery) {
+    return HttpRequest
         .newBuilder(URI.create(config.getSparqlUpdateEndpoint()))
         .POST(BodyPublishers.ofString("update=" + URLEncoder.encode(updateQuery, StandardCharsets.UTF_8), StandardCharsets.UTF_8))
         .header(CONTENT_TYPE, Constants.APPLICATION_FORM_URLENCODED_VALUE)
         .build();
-    execute(request, httpClient);
   }
 
   @Override
   public <R> R executeSelectQuery(String query, Function<ResultSet, R> resultHandler) {
-    try (QueryExecution queryExecution = getQueryExecutionBuilder().query(query).build()) {
-      return resultHandler.apply(queryExecution.execSelect());
-    }
+    final SparqlCall call = startCall(SparqlOperation.select, config.getSparqlEndpoint(), query);
+    return JenaUtils.select(call, () -> getQueryExecutionBuilder(call).query(query).build(), resultHandler);
+  }
+
+  @Override
+  public Stream<QuerySolution> selectStream(String query) {
+    final SparqlCall call = startCall(SparqlOperation.select, config.getSparqlEndpoint(), query);
+    return JenaUtils.selectStream(call, () -> getQueryExecutionBuilder(call).query(query).build());
   }
 
   @Override
   public boolean executeAskQuery(String askQuery) {
-    try (QueryExecution queryExecution = getQueryExecutionBuilder().query(askQuery).build()) {
-      return queryExecution.execAsk();
-    }
+    final SparqlCall call = startCall(SparqlOperation.ask, config.getSparqlEndpoint(), askQuery);
+    return JenaUtils.ask(call, () -> getQueryExecutionBuilder(call).query(askQuery).build());
+  }
+
+  @Override
+  public Map<String, Boolean> checkExisting(Set<String> uris, int chunkSize, int parallelism) {
+    return ExistenceCheck.checkExisting(this, uris, chunkSize, parallelism, config.getExecutor());
   }
 
   @Override
   public void dropGraph(String graphUri) {
     executeUpdateQuery("CLEAR SILENT GRAPH <" + graphUri + ">");
   }
+
+  @Override
+  public <R> CompletableFuture<R> executeSelectQueryAsync(String query, Function<ResultSet, R> resultHandler) {
+    return HttpClientUtils.executeSelectAsync(httpClient, config.getSparqlEndpoint(), query, config, resultHandler,
+        startCall(SparqlOperation.select, config.getSparqlEndpoint(), query));
+  }
+
+  @Override
+  public CompletableFuture<Boolean> executeAskQueryAsync(String askQuery) {
+    return HttpClientUtils.executeAskAsync(httpClient, config.getSparqlEndpoint(), askQuery, config,
+        startCall(SparqlOperation.ask, config.getSparqlEndpoint(), askQuery));
+  }
+
+  @Override
+  public CompletableFuture<Model> executeConstructQueryAsync(String constructQuery) {
+    return HttpClientUtils.executeConstructAsync(httpClient, config.getSparqlEndpoint(), constructQuery, config,
+        startCall(SparqlOperation.construct, config.getSparqlEndpoint(), constructQuery));
+  }
+
+  @Override
+  public CompletableFuture<Void> executeUpdateQueryAsync(String updateQuery) {
+    return executeAsync(createUpdateRequest(updateQuery), httpClient,
+        startCall(SparqlOperation.update, config.getSparqlUpdateEndpoint(), updateQuery));
+  }
+
+  @Override
+  public CompletableFuture<Void> updateGraphAsync(String graphUri, Model model) {
+    final SparqlCall call = startUpdateGraphCall(graphUri);
+    return executeAsync(createUpdateGraphRequest(graphUri, model, call), httpClient, call);
+  }
+
+  @Override
+  public CompletableFuture<Void> replaceGraphAsync(String graphUri, Model model) {
+    return dropGraphAsync(graphUri).thenCompose(ignored -> updateGraphAsync(graphUri, model));
+  }
+
+  @Override
+  public CompletableFuture<Void> dropGraphAsync(String graphUri) {
+    return executeUpdateQueryAsync("CLEAR SILENT GRAPH <" + graphUri + ">");
+  }
 }
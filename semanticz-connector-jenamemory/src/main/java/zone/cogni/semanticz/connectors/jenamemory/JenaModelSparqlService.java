@@ -20,6 +20,7 @@
 package zone.cogni.semanticz.connectors.jenamemory;
 
 import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
 import org.apache.jena.query.*;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.riot.Lang;
@@ -29,11 +30,21 @@ import org.apache.jena.sparql.core.DatasetGraphMapLink;
 import org.apache.jena.update.UpdateAction;
 import org.apache.jena.update.UpdateFactory;
 import org.apache.jena.update.UpdateRequest;
+import zone.cogni.semanticz.connectors.general.Config;
+import zone.cogni.semanticz.connectors.general.QueryExplainer;
+import zone.cogni.semanticz.connectors.general.SlowQueryLog;
+import zone.cogni.semanticz.connectors.general.SparqlCall;
+import zone.cogni.semanticz.connectors.general.SparqlCallListener;
+import zone.cogni.semanticz.connectors.general.SparqlCallPhase;
+import zone.cogni.semanticz.connectors.general.SparqlOperation;
 import zone.cogni.semanticz.connectors.general.SparqlService;
+import zone.cogni.semanticz.connectors.utils.JenaUtils;
 
 import java.io.File;
 import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
+import java.util.stream.Stream;
 
 public class JenaModelSparqlService implements SparqlService {
 
@@ -41,6 +52,8 @@ public class JenaModelSparqlService implements SparqlService {
 
     protected final Boolean simulateRelaxedVirtuosoSparqlSelect;
 
+    private SparqlCallListener callListener = SparqlCallListener.NOOP;
+
     public JenaModelSparqlService() {
         this(false);
     }
@@ -49,22 +62,67 @@ public class JenaModelSparqlService implements SparqlService {
         this.simulateRelaxedVirtuosoSparqlSelect = simulateRelaxedVirtuosoSparqlSelect;
     }
 
+    /**
+     * @param config call listener and slow query log of the service, the other properties do not apply to an
+     *               in-memory dataset
+     */
+    public JenaModelSparqlService(Config config) {
+        this(false);
+        // queries run on ARQ here, the optimized algebra is their plan
+        this.callListener = SlowQueryLog.withSlowQueryLog(config, QueryExplainer.ALGEBRA);
+    }
+
+    /**
+     * @param callListener listener notified of the queries and updates executed against the in-memory dataset,
+     *                     replacing the one of the configuration including its slow query log
+     */
+    public void setCallListener(SparqlCallListener callListener) {
+        this.callListener = callListener;
+    }
+
+    private SparqlCall startCall(SparqlOperation operation, String query) {
+        return SparqlCall.start(callListener, operation, getClass().getSimpleName(), "memory", query);
+    }
+
+    private SparqlCall startGraphCall(SparqlOperation operation, String graphUri) {
+        return SparqlCall.start(callListener, operation, getClass().getSimpleName(), "memory", null, graphUri);
+    }
+
+    /**
+     * Runs a change against the in-memory dataset as the server execution of the given call.
+     */
+    private static void execute(SparqlCall call, Runnable change) {
+        try {
+            change.run();
+            call.mark(SparqlCallPhase.serverExecution);
+            call.end();
+        } catch (Throwable e) {
+            call.fail(e);
+            throw e;
+        }
+    }
+
     @Override
     public void uploadTtlFile(File file) {
         final String uri = file.toURI().toString();
-        final Model model = RDFDataMgr.loadModel(uri, Lang.TTL);
-        dataset.addNamedModel(uri, model);
+        final SparqlCall call = startGraphCall(SparqlOperation.uploadTtlFile, uri);
+        call.setRequestBytes(file.length());
+        execute(call, () -> dataset.addNamedModel(uri, RDFDataMgr.loadModel(uri, Lang.TTL)));
     }
 
     @Override
     public void executeUpdateQuery(String updateQuery) {
-        UpdateRequest request = UpdateFactory.create(updateQuery);
-        UpdateAction.execute(request, dataset);
+        final SparqlCall call = startCall(SparqlOperation.update, updateQuery);
+        execute(call, () -> {
+            UpdateRequest request = UpdateFactory.create(updateQuery);
+            UpdateAction.execute(request, dataset);
+        });
     }
 
     @Override
     public void updateGraph(String graphUri, Model model) {
-        dataset.addNamedModel(graphUri, model);
+        final SparqlCall call = startGraphCall(SparqlOperation.updateGraph, graphUri);
+        execute(call, () -> dataset.addNamedModel(graphUri, model));
     }
 
     private Dataset getDatasetForSelect() {
@@ -79,28 +137,52 @@ public class JenaModelSparqlService implements SparqlService {
         return dataset;
     }
 
+    /**
+     * Creates the execution of a query, which ARQ aborts once the deadline of the call has passed.
+     */
+    private QueryExecution createQueryExecution(SparqlCall call, String query) {
+        final QueryExecutionBuilder builder = QueryExecution.create()
+                .query(QueryFactory.create(query))
+                .dataset(getDatasetForSelect());
+        final long timeLeft = call.getTimeLeftMillis();
+        if (timeLeft > 0) {
+            builder.timeout(timeLeft, TimeUnit.MILLISECONDS);
+        }
+        return builder.build();
+    }
+
     @Override
     public <R> R executeSelectQuery(String query, Function<ResultSet, R> resultHandler) {
-        try (QueryExecution queryExecution = QueryExecutionFactory.create(QueryFactory.create(query), getDatasetForSelect())) {
-            return resultHandler.apply(queryExecution.execSelect().materialise());
-        }
+        final SparqlCall call = startCall(SparqlOperation.select, query);
+        return JenaUtils.select(call, () -> createQueryExecution(call, query),
+                resultSet -> resultHandler.apply(resultSet.materialise()));
+    }
+
+    @Override
+    public Stream<QuerySolution> selectStream(String query) {
+        final SparqlCall call = startCall(SparqlOperation.select, query);
+        return JenaUtils.selectStream(call, () -> createQueryExecution(call, query));
     }
 
     @Override
     public boolean executeAskQuery(String query) {
-        try (QueryExecution queryExecution = QueryExecutionFactory.create(QueryFactory.create(query), getDatasetForSelect())) {
-            return queryExecution.execAsk();
-        }
+        final SparqlCall call = startCall(SparqlOperation.ask, query);
+        return JenaUtils.ask(call, () -> createQueryExecution(call, query));
     }
 
     public Model executeConstructQuery(String query) {
-        try (QueryExecution queryExecution = QueryExecutionFactory.create(QueryFactory.create(query), getDatasetForSelect())) {
-            return queryExecution.execConstruct();
-        }
+        final SparqlCall call = startCall(SparqlOperation.construct, query);
+        return JenaUtils.construct(call, () -> createQueryExecution(call, query));
+    }
+
+    @Override
+    public Stream<Triple> constructStream(String query) {
+        final SparqlCall call = startCall(SparqlOperation.construct, query);
+        return JenaUtils.constructStream(call, () -> createQueryExecution(call, query));
     }
 
     @Override
     public void dropGraph(String graphUri) {
-        dataset.removeNamedModel(graphUri);
+        execute(startGraphCall(SparqlOperation.dropGraph, graphUri), () -> dataset.removeNamedModel(graphUri));
     }
 }
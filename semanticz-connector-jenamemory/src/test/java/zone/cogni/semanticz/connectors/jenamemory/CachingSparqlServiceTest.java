@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package zone.cogni.semanticz.connectors.jenamemory;
+
+import org.apache.jena.query.ResultSetFormatter;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import zone.cogni.semanticz.connectors.general.CachingSparqlService;
+import zone.cogni.semanticz.connectors.general.SparqlCall;
+import zone.cogni.semanticz.connectors.general.SparqlCallListener;
+import zone.cogni.semanticz.connectors.utils.AbstractSparqlServiceTest;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.apache.jena.rdf.model.ResourceFactory.createResource;
+
+public class CachingSparqlServiceTest extends AbstractSparqlServiceTest<CachingSparqlService> {
+
+  private static final String ASK_M1 = "ASK { GRAPH <https://example.org/m1> { <https://example.org/c1> <http://www.w3.org/2000/01/rdf-schema#comment> 'cached' } }";
+
+  private JenaModelSparqlService store;
+
+  @Override
+  protected CachingSparqlService createSUT() {
+    store = new JenaModelSparqlService();
+    return new CachingSparqlService(store, 10_000, Duration.ofMinutes(5));
+  }
+
+  @Override
+  protected void disposeSUT(CachingSparqlService sparqlService) {
+    // nothing to do
+  }
+
+  @Test
+  public void testCachedResultIsInvalidatedOnlyByWritesToTheQueriedGraph() {
+    Assertions.assertFalse(getSUT().executeAskQuery(ASK_M1));
+
+    // written behind the back of the cache, so the cached answer is still served
+    store.updateGraph("https://example.org/m1", ModelFactory.createDefaultModel()
+            .add(createResource("https://example.org/c1"), RDFS.comment, "cached"));
+    Assertions.assertFalse(getSUT().executeAskQuery(ASK_M1));
+
+    getSUT().executeUpdateQuery("INSERT DATA { GRAPH <https://example.org/m2> { <https://example.org/x> <https://example.org/p> 1 } }");
+    Assertions.assertFalse(getSUT().executeAskQuery(ASK_M1));
+
+    getSUT().executeUpdateQuery("INSERT DATA { GRAPH <https://example.org/m1> { <https://example.org/x> <https://example.org/p> 1 } }");
+    Assertions.assertTrue(getSUT().executeAskQuery(ASK_M1));
+  }
+
+  @Test
+  public void testLeastRecentlyUsedResultsAreEvictedPastTheMaximumWeight() {
+    final List<String> executed = recordQueries();
+    final CachingSparqlService cache = new CachingSparqlService(store, 3, Duration.ofMinutes(5));
+    final String first = "SELECT ?s WHERE { GRAPH ?g { ?s ?p ?o } }";
+    final String second = "SELECT ?o WHERE { GRAPH ?g { ?s ?p ?o } }";
+
+    Assertions.assertEquals(2, cache.executeSelectQuery(first, ResultSetFormatter::consume));
+    Assertions.assertEquals(2, cache.executeSelectQuery(second, ResultSetFormatter::consume));
+    Assertions.assertEquals(1, cache.size());
+    cache.executeSelectQuery(second, ResultSetFormatter::consume);
+    cache.executeSelectQuery(first, ResultSetFormatter::consume);
+
+    Assertions.assertEquals(List.of(first, second, first), executed);
+  }
+
+  @Test
+  public void testEmptyResultsCountTowardsTheMaximumWeight() {
+    final CachingSparqlService cache = new CachingSparqlService(store, 3, Duration.ofMinutes(5));
+
+    for (int i = 0; i < 10; i++) {
+      Assertions.assertEquals(0, cache.executeSelectQuery(
+          "SELECT ?s WHERE { GRAPH <https://example.org/none" + i + "> { ?s ?p ?o } }", ResultSetFormatter::consume));
+    }
+
+    Assertions.assertEquals(3, cache.size());
+  }
+
+  @Test
+  public void testExpiredResultsAreQueriedAgain() throws InterruptedException {
+    final List<String> executed = recordQueries();
+    final CachingSparqlService cache = new CachingSparqlService(store, 10_000, Duration.ofMillis(50));
+
+    Assertions.assertFalse(cache.executeAskQuery(ASK_M1));
+    Assertions.assertFalse(cache.executeAskQuery(ASK_M1));
+    Assertions.assertEquals(1, executed.size());
+    Thread.sleep(100);
+    Assertions.assertFalse(cache.executeAskQuery(ASK_M1));
+
+    Assertions.assertEquals(List.of(ASK_M1, ASK_M1), executed);
+  }
+
+  /**
+   * @return the queries reaching the store from now on
+   */
+  private List<String> recordQueries() {
+    final List<String> executed = new ArrayList<>();
+    store.setCallListener(new SparqlCallListener() {
+      @Override
+      public void onStart(SparqlCall call) {
+        executed.add(call.getQuery());
+      }
+    });
+    return executed;
+  }
+}
@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package zone.cogni.semanticz.connectors.jenamemory;
+
+import org.apache.jena.query.QuerySolution;
+import org.apache.jena.query.ResultSetFormatter;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import zone.cogni.semanticz.connectors.general.DelegatingSparqlService;
+import zone.cogni.semanticz.connectors.general.InstrumentedSparqlService;
+import zone.cogni.semanticz.connectors.general.SparqlCall;
+import zone.cogni.semanticz.connectors.general.SparqlCallListener;
+import zone.cogni.semanticz.connectors.general.SparqlMetrics;
+import zone.cogni.semanticz.connectors.general.SparqlOperation;
+import zone.cogni.semanticz.connectors.utils.AbstractSparqlServiceTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+public class InstrumentedSparqlServiceTest extends AbstractSparqlServiceTest<InstrumentedSparqlService> {
+
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final List<String> finished = new ArrayList<>();
+  private final List<String> sizes = new ArrayList<>();
+
+  @Override
+  protected InstrumentedSparqlService createSUT() {
+    return new InstrumentedSparqlService(new JenaModelSparqlService(), metrics(), "memory");
+  }
+
+  private SparqlMetrics metrics() {
+    return new SparqlMetrics() {
+      @Override
+      public void started(SparqlOperation operation, String connector, String endpoint) {
+        inFlight.incrementAndGet();
+      }
+
+      @Override
+      public void finished(SparqlOperation operation, String connector, String endpoint, long durationNanos,
+                           long requestBytes, long responseBytes, long resultCount, Throwable error) {
+        sizes.add(operation + " " + requestBytes + " " + responseBytes);
+        SparqlMetrics.super.finished(operation, connector, endpoint, durationNanos, requestBytes, responseBytes,
+            resultCount, error);
+      }
+
+      @Override
+      public void finished(SparqlOperation operation, String connector, String endpoint, long durationNanos,
+                           long requestBytes, long resultCount, Throwable error) {
+        inFlight.decrementAndGet();
+        finished.add(operation + " " + connector + " " + endpoint + " " + resultCount + " " + (error != null));
+      }
+    };
+  }
+
+  @Override
+  protected void disposeSUT(InstrumentedSparqlService sparqlService) {
+    // nothing to do
+  }
+
+  @Test
+  public void testOperationsAreReportedWithTheirResultCounts() {
+    finished.clear();
+    getSUT().executeSelectQuery("SELECT ?g WHERE { GRAPH ?g { ?s ?p ?o } }", ResultSetFormatter::consume);
+    Assertions.assertThrows(RuntimeException.class, () -> getSUT().executeAskQuery("ASK {"));
+
+    Assertions.assertEquals(0, inFlight.get());
+    Assertions.assertEquals(List.of(
+        "select JenaModelSparqlService memory 2 false",
+        "ask JenaModelSparqlService memory -1 true"), finished);
+  }
+
+  @Test
+  public void testSizesMeasuredByTheConnectorAreReported() {
+    sizes.clear();
+    final InstrumentedSparqlService measuring = new InstrumentedSparqlService(
+        new DelegatingSparqlService(new JenaModelSparqlService()) {
+          @Override
+          public void updateGraph(String graphUri, Model model) {
+            final SparqlCall call = SparqlCall.start(SparqlCallListener.NOOP, SparqlOperation.updateGraph, "measuring",
+                "memory", null, graphUri);
+            call.setRequestBytes(100);
+            call.setResponseBytes(10);
+            call.end();
+          }
+
+          @Override
+          public void replaceGraph(String graphUri, Model model) {
+            // the drop is a call without measured sizes
+            dropGraph(graphUri);
+            updateGraph(graphUri, model);
+          }
+        }, metrics(), "measuring", "memory");
+
+    measuring.updateGraph("http://example.org/graph", ModelFactory.createDefaultModel());
+    measuring.replaceGraph("http://example.org/graph", ModelFactory.createDefaultModel());
+    measuring.executeAskQuery("ASK { ?s ?p ?o }");
+
+    Assertions.assertEquals(List.of("updateGraph 100 10", "replaceGraph 100 10", "ask 16 -1"), sizes);
+  }
+
+  @Test
+  public void testStreamsAreReportedWhenClosed() {
+    finished.clear();
+    final long count;
+    try (Stream<QuerySolution> rows = getSUT().selectStream("SELECT ?g WHERE { GRAPH ?g { ?s ?p ?o } }")) {
+      count = rows.count();
+      Assertions.assertEquals(1, inFlight.get());
+    }
+
+    Assertions.assertEquals(2, count);
+    Assertions.assertEquals(0, inFlight.get());
+    Assertions.assertEquals(List.of("select JenaModelSparqlService memory 2 false"), finished);
+  }
+
+  @Test
+  public void testStreamsFailingWhileConsumedAreReportedAsFailed() {
+    finished.clear();
+    final InstrumentedSparqlService failing = new InstrumentedSparqlService(
+        new DelegatingSparqlService(new JenaModelSparqlService()) {
+          @Override
+          public Stream<QuerySolution> selectStream(String query) {
+            return Stream.of(0, 1).map(i -> {
+              if (i > 0) throw new IllegalStateException("Connection lost");
+              return (QuerySolution) null;
+            });
+          }
+        }, metrics(), "failing", "memory");
+
+    try (Stream<QuerySolution> rows = failing.selectStream("SELECT * { ?s ?p ?o }")) {
+      Assertions.assertThrows(IllegalStateException.class, rows::count);
+    }
+
+    Assertions.assertEquals(0, inFlight.get());
+    Assertions.assertEquals(List.of("select failing memory -1 true"), finished);
+  }
+}
@@ -19,10 +19,37 @@
 
 package zone.cogni.semanticz.connectors.jenamemory;
 
+import org.apache.jena.query.QuerySolution;
+import org.apache.jena.query.ResultSetFormatter;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import zone.cogni.semanticz.connectors.general.Config;
+import zone.cogni.semanticz.connectors.general.ExecutorAsyncSparqlService;
+import zone.cogni.semanticz.connectors.general.PartitionedQuery;
+import zone.cogni.semanticz.connectors.general.QueryOptions;
+import zone.cogni.semanticz.connectors.general.SparqlCall;
+import zone.cogni.semanticz.connectors.general.SparqlCallListener;
+import zone.cogni.semanticz.connectors.general.SparqlCallPhase;
+import zone.cogni.semanticz.connectors.general.SparqlOperation;
+import zone.cogni.semanticz.connectors.general.SparqlTimeoutException;
 import zone.cogni.semanticz.connectors.utils.AbstractSparqlServiceTest;
 
+import java.io.File;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
 public class JenaModelSparqlServiceTest extends AbstractSparqlServiceTest<JenaModelSparqlService> {
 
+  private static final String CROSS_JOIN =
+      "SELECT (COUNT(*) AS ?count) WHERE { GRAPH ?g { ?a ?p ?x . ?b ?p ?y . ?c ?p ?z . ?d ?p ?w } }";
+
   @Override
   protected JenaModelSparqlService createSUT() {
     return new JenaModelSparqlService();
@@ -32,4 +59,161 @@ public class JenaModelSparqlServiceTest extends AbstractSparqlServiceTest<JenaMo
   protected void disposeSUT(JenaModelSparqlService sparqlService) {
     // nothing to do
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testCallListenerReceivesPhasesOfEachCall() {
+    final List<SparqlCall> calls = new ArrayList<>();
+    getSUT().setCallListener(new SparqlCallListener() {
+      @Override
+      public void onEnd(SparqlCall call) {
+        calls.add(call);
+      }
+    });
+
+    getSUT().executeSelectQuery("SELECT * WHERE { GRAPH ?g { ?s ?p ?o } }", ResultSetFormatter::consume);
+
+    Assertions.assertEquals(1, calls.size());
+    final SparqlCall call = calls.get(0);
+    Assertions.assertEquals(SparqlOperation.select, call.getOperation());
+    Assertions.assertEquals(2, call.getResultCount());
+    Assertions.assertTrue(call.getPhaseNanos(SparqlCallPhase.serverExecution) >= 0);
+    Assertions.assertTrue(call.getPhaseNanos(SparqlCallPhase.handler) >= 0);
+    Assertions.assertEquals(-1, call.getPhaseNanos(SparqlCallPhase.transfer));
+    Assertions.assertTrue(call.getTotalNanos() >= call.getPhaseNanos(SparqlCallPhase.serverExecution));
+    Assertions.assertNull(call.getError());
+  }
+
+  @Test
+  public void testStreamCallsEndWhenTheStreamIsClosed() {
+    final List<SparqlCall> calls = new ArrayList<>();
+    getSUT().setCallListener(new SparqlCallListener() {
+      @Override
+      public void onEnd(SparqlCall call) {
+        calls.add(call);
+      }
+    });
+
+    try (Stream<QuerySolution> rows = getSUT().selectStream("SELECT * WHERE { GRAPH ?g { ?s ?p ?o } }")) {
+      Assertions.assertEquals(2, rows.count());
+      Assertions.assertTrue(calls.isEmpty());
+    }
+    try (Stream<?> triples = getSUT().constructStream("CONSTRUCT { ?s ?p ?o } WHERE { GRAPH ?g { ?s ?p ?o } }")) {
+      Assertions.assertEquals(2, triples.count());
+    }
+
+    Assertions.assertEquals(List.of(SparqlOperation.select, SparqlOperation.construct),
+        calls.stream().map(SparqlCall::getOperation).collect(Collectors.toList()));
+    calls.forEach(call -> {
+      Assertions.assertEquals(2, call.getResultCount());
+      Assertions.assertTrue(call.getPhaseNanos(SparqlCallPhase.serverExecution) >= 0);
+      Assertions.assertNull(call.getError());
+    });
+  }
+
+  @Test
+  public void testConfiguredListenerIsNotifiedNextToTheSlowQueryLog() {
+    final List<SparqlOperation> operations = new ArrayList<>();
+    final JenaModelSparqlService service = new JenaModelSparqlService(new Config()
+        .setSlowQueryThresholdMillis(60_000)
+        .setCallListener(new SparqlCallListener() {
+          @Override
+          public void onEnd(SparqlCall call) {
+            operations.add(call.getOperation());
+          }
+        }));
+
+    service.executeUpdateQuery("INSERT DATA { <http://x/s> <http://x/p> <http://x/o> }");
+    Assertions.assertTrue(service.executeAskQuery("ASK { ?s ?p ?o }"));
+
+    Assertions.assertEquals(List.of(SparqlOperation.update, SparqlOperation.ask), operations);
+  }
+
+  @Test
+  public void testGraphChangesAreReportedToTheCallListener() throws Exception {
+    final List<SparqlCall> calls = new ArrayList<>();
+    getSUT().setCallListener(new SparqlCallListener() {
+      @Override
+      public void onEnd(SparqlCall call) {
+        calls.add(call);
+      }
+    });
+    final File file = File.createTempFile("upload", ".ttl");
+    file.deleteOnExit();
+    Files.writeString(file.toPath(), "<http://x/s> <http://x/p> <http://x/o> .");
+
+    getSUT().updateGraph("http://x/graph", ModelFactory.createDefaultModel());
+    getSUT().dropGraph("http://x/graph");
+    getSUT().uploadTtlFile(file);
+
+    Assertions.assertEquals(
+        List.of(SparqlOperation.updateGraph, SparqlOperation.dropGraph, SparqlOperation.uploadTtlFile),
+        calls.stream().map(SparqlCall::getOperation).collect(Collectors.toList()));
+    Assertions.assertEquals("http://x/graph", calls.get(0).getGraphUri());
+    Assertions.assertEquals(file.toURI().toString(), calls.get(2).getGraphUri());
+    Assertions.assertEquals(file.length(), calls.get(2).getRequestBytes());
+    calls.forEach(call -> {
+      Assertions.assertTrue(call.getPhaseNanos(SparqlCallPhase.serverExecution) >= 0);
+      Assertions.assertNull(call.getError());
+    });
+  }
+
+  @Test
+  public void testQueriesPastTheirDeadlineAreCancelled() {
+    insertNumbers();
+    final List<Long> timesLeft = new ArrayList<>();
+    final List<SparqlCall> failed = new ArrayList<>();
+    getSUT().setCallListener(new SparqlCallListener() {
+      @Override
+      public void onStart(SparqlCall call) {
+        timesLeft.add(call.getTimeLeftMillis());
+      }
+
+      @Override
+      public void onEnd(SparqlCall call) {
+        if (call.getError() != null) failed.add(call);
+      }
+    });
+
+    Assertions.assertThrows(SparqlTimeoutException.class, () -> QueryOptions.timeout(Duration.ofMillis(200))
+        .run(() -> getSUT().executeSelectQuery(CROSS_JOIN, ResultSetFormatter::toList)));
+    getSUT().executeAskQuery("ASK { GRAPH ?g { ?s ?p ?o } }");
+
+    Assertions.assertEquals(2, timesLeft.size());
+    Assertions.assertTrue(timesLeft.get(0) > 0 && timesLeft.get(0) <= 200);
+    Assertions.assertEquals(-1L, timesLeft.get(1));
+    Assertions.assertEquals(1, failed.size());
+    Assertions.assertTrue(failed.get(0).isExpired());
+  }
+
+  @Test
+  public void testAsyncQueriesKeepTheDeadlineOfTheCaller() {
+    insertNumbers();
+    try (ExecutorAsyncSparqlService async = new ExecutorAsyncSparqlService(getSUT(), 1)) {
+      final CompletableFuture<List<QuerySolution>> result = QueryOptions.timeout(Duration.ofMillis(200))
+          .call(() -> async.executeSelectQueryAsync(CROSS_JOIN, ResultSetFormatter::toList));
+
+      final CompletionException failure = Assertions.assertThrows(CompletionException.class, result::join);
+      Assertions.assertInstanceOf(SparqlTimeoutException.class, failure.getCause());
+    }
+  }
+
+  @Test
+  public void testPartitionedQueriesKeepTheDeadlineOfTheCaller() {
+    insertNumbers();
+    final PartitionedQuery partitioned = PartitionedQuery.byGraph(CROSS_JOIN, "g", List.of("http://g", "http://h"), 2);
+
+    Assertions.assertThrows(SparqlTimeoutException.class, () -> QueryOptions.timeout(Duration.ofMillis(200))
+        .run(() -> partitioned.select(getSUT(), 2, ResultSetFormatter::toList)));
+  }
+
+  /**
+   * Inserts enough triples for {@link #CROSS_JOIN} to run far longer than the deadlines of the tests.
+   */
+  private void insertNumbers() {
+    final StringBuilder data = new StringBuilder("INSERT DATA { GRAPH <http://g> {");
+    for (int i = 0; i < 200; i++) {
+      data.append(" <http://s").append(i).append("> <http://p> ").append(i).append(" .");
+    }
+    getSUT().executeUpdateQuery(data.append(" } }").toString());
+  }
+}
@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package zone.cogni.semanticz.connectors.jenamemory;
+
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.query.ResultSetFormatter;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import zone.cogni.semanticz.connectors.general.DelegatingSparqlService;
+import zone.cogni.semanticz.connectors.general.QueryOptions;
+import zone.cogni.semanticz.connectors.general.SingleFlightSparqlService;
+import zone.cogni.semanticz.connectors.general.SparqlTimeoutException;
+import zone.cogni.semanticz.connectors.utils.AbstractSparqlServiceTest;
+
+import java.util.ArrayList;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+public class SingleFlightSparqlServiceTest extends AbstractSparqlServiceTest<SingleFlightSparqlService> {
+
+  private static final String QUERY = "SELECT ?g WHERE { GRAPH ?g { ?s ?p ?o } }";
+
+  private final AtomicInteger selects = new AtomicInteger();
+  private final CountDownLatch release = new CountDownLatch(1);
+  private volatile boolean blocking;
+  private volatile boolean firstTimesOut;
+
+  @Override
+  protected SingleFlightSparqlService createSUT() {
+    return new SingleFlightSparqlService(new DelegatingSparqlService(new JenaModelSparqlService()) {
+      @Override
+      public <R> R executeSelectQuery(String query, Function<ResultSet, R> resultHandler) {
+        final int select = selects.incrementAndGet();
+        if (blocking) {
+          try {
+            release.await(10, TimeUnit.SECONDS);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+        if (firstTimesOut && select == 1) throw new SparqlTimeoutException("Leader timed out");
+        return super.executeSelectQuery(query, resultHandler);
+      }
+    });
+  }
+
+  @Override
+  protected void disposeSUT(SingleFlightSparqlService sparqlService) {
+    // nothing to do
+  }
+
+  @Test
+  public void testIdenticalConcurrentQueriesAreSentOnce() throws Exception {
+    selects.set(0);
+    blocking = true;
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final List<Future<Integer>> results = new ArrayList<>();
+      for (int i = 0; i < 4; i++) {
+        results.add(select(executor));
+      }
+      while (getSUT().getCoalescedCount() < 3) {
+        Thread.sleep(10);
+      }
+      release.countDown();
+
+      for (Future<Integer> result : results) {
+        Assertions.assertEquals(2, result.get(10, TimeUnit.SECONDS));
+      }
+      Assertions.assertEquals(1, selects.get());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testWaitingCallersStopAtTheirOwnDeadline() throws Exception {
+    blocking = true;
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      final Future<Integer> leader = select(executor);
+      awaitSelects(1);
+
+      Assertions.assertThrows(SparqlTimeoutException.class, () -> QueryOptions.timeout(Duration.ofMillis(50))
+              .call(() -> getSUT().executeSelectQuery(QUERY, ResultSetFormatter::consume)));
+
+      release.countDown();
+      Assertions.assertEquals(2, leader.get(10, TimeUnit.SECONDS));
+      Assertions.assertEquals(1, selects.get());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testInterruptedWaitingCallersKeepTheirInterruptStatus() throws Exception {
+    blocking = true;
+    final ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      final Future<Integer> leader = select(executor);
+      awaitSelects(1);
+
+      final Future<Boolean> follower = executor.submit(() -> {
+        Thread.currentThread().interrupt();
+        Assertions.assertThrows(CompletionException.class,
+                                () -> getSUT().executeSelectQuery(QUERY, ResultSetFormatter::consume));
+        return Thread.interrupted();
+      });
+      Assertions.assertTrue(follower.get(10, TimeUnit.SECONDS));
+
+      release.countDown();
+      Assertions.assertEquals(2, leader.get(10, TimeUnit.SECONDS));
+      Assertions.assertEquals(1, selects.get());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testWaitingCallersSendTheQueryAgainWhenTheLeaderTimesOut() throws Exception {
+    blocking = true;
+    firstTimesOut = true;
+    final ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      final Future<Integer> leader = select(executor);
+      awaitSelects(1);
+      final Future<Integer> follower = select(executor);
+      while (getSUT().getCoalescedCount() < 1) {
+        Thread.sleep(10);
+      }
+      release.countDown();
+
+      final ExecutionException failure =
+              Assertions.assertThrows(ExecutionException.class, () -> leader.get(10, TimeUnit.SECONDS));
+      Assertions.assertInstanceOf(SparqlTimeoutException.class, failure.getCause());
+      Assertions.assertEquals(2, follower.get(10, TimeUnit.SECONDS));
+      Assertions.assertEquals(2, selects.get());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private Future<Integer> select(ExecutorService executor) {
+    return executor.submit(() -> getSUT().executeSelectQuery(QUERY, ResultSetFormatter::consume));
+  }
+
+  private void awaitSelects(int count) throws InterruptedException {
+    while (selects.get() < count) {
+      Thread.sleep(10);
+    }
+  }
+}
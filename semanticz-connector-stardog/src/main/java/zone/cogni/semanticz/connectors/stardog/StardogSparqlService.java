@@ -19,42 +19,84 @@
 
 package zone.cogni.semanticz.connectors.stardog;
 
-import org.apache.jena.query.QueryExecution;
+import org.apache.jena.graph.Triple;
 import org.apache.jena.query.QueryExecutionBuilder;
+import org.apache.jena.query.QuerySolution;
 import org.apache.jena.query.ResultSet;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.riot.Lang;
 import org.apache.jena.sparql.exec.http.QueryExecutionHTTPBuilder;
 import zone.cogni.semanticz.connectors.utils.Constants;
+import zone.cogni.semanticz.connectors.utils.ExistenceCheck;
 import zone.cogni.semanticz.connectors.utils.HttpClientUtils;
 import zone.cogni.semanticz.connectors.utils.JenaUtils;
-import zone.cogni.semanticz.connectors.utils.TripleSerializationFormat;
+import zone.cogni.semanticz.connectors.general.AsyncSparqlService;
+import zone.cogni.semanticz.connectors.general.SlowQueryLog;
+import zone.cogni.semanticz.connectors.general.SparqlCall;
+import zone.cogni.semanticz.connectors.general.SparqlCallListener;
+import zone.cogni.semanticz.connectors.general.SparqlOperation;
 import zone.cogni.semanticz.connectors.general.SparqlService;
 import zone.cogni.semanticz.connectors.general.Config;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.net.URI;
 import java.net.URLEncoder;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpRequest.BodyPublisher;
+import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
+import java.util.stream.Stream;
 
 import static zone.cogni.semanticz.connectors.utils.Constants.CONTENT_TYPE;
 
-public class StardogSparqlService implements SparqlService {
+public class StardogSparqlService implements SparqlService, AsyncSparqlService {
   private final String endpointUrl;
+  private final Config config;
   private final HttpClient httpClient;
+  private final SparqlCallListener callListener;
 
   public StardogSparqlService(Config config) {
     endpointUrl = config.getUrl();
-    httpClient = HttpClientUtils.createHttpClientBuilder(config.getUser(), config.getPassword()).build();
+    this.config = config;
+    httpClient = HttpClientUtils.createHttpClientBuilder(config).build();
+    callListener = SlowQueryLog.withSlowQueryLog(config, this::explain);
   }
 
-  private QueryExecutionBuilder getQueryExecutionBuilder() {
-    return QueryExecutionHTTPBuilder.service(endpointUrl + "/query").httpClient(httpClient);
+  private QueryExecutionBuilder getQueryExecutionBuilder(SparqlCall call) {
+    final QueryExecutionHTTPBuilder builder = QueryExecutionHTTPBuilder.service(endpointUrl + "/query").httpClient(httpClient);
+    final long timeLeft = call.getTimeLeftMillis();
+    // Stardog stops the query once the given number of milliseconds elapsed
+    if (timeLeft > 0) builder.param("timeout", String.valueOf(timeLeft));
+    return HttpClientUtils.configure(builder, config, call);
+  }
+
+  private SparqlCall startCall(SparqlOperation operation, String endpoint, String query) {
+    return SparqlCall.start(callListener, operation, getClass().getSimpleName(), endpoint, query)
+        .limitTo(config.getQueryTimeoutMillis());
+  }
+
+  /**
+   * Asks the explain endpoint of the database for the plan of a query.
+   */
+  private String explain(String query) throws IOException, InterruptedException {
+    final HttpRequest request = HttpRequest
+        .newBuilder(URI.create(endpointUrl + "/explain"))
+        .POST(HttpRequest.BodyPublishers.ofString("query=" + URLEncoder.encode(query, StandardCharsets.UTF_8), StandardCharsets.UTF_8))
+        .header(CONTENT_TYPE, Constants.APPLICATION_FORM_URLENCODED_VALUE)
+        .header("Accept", "text/plain")
+        .build();
+    final HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+    if (response.statusCode() >= 300) {
+      throw new IOException("Explain failed with status code " + response.statusCode() + ": " + response.body());
+    }
+    return response.body();
   }
 
   @Override
@@ -69,35 +111,48 @@ public class StardogSparqlService implements SparqlService {
     } catch (FileNotFoundException e) {
       throw new RuntimeException(e);
     }
-    HttpClientUtils.execute(request,httpClient);
+    HttpClientUtils.execute(request, httpClient, startCall(SparqlOperation.uploadTtlFile, endpointUrl, null));
   }
 
   @Override
   public Model executeConstructQuery(String query) {
-    try (QueryExecution queryExecution = getQueryExecutionBuilder().query(query).build()) {
-      // jena adds empty defaultGraph param to URL because defaultGraph is null but is a "value", stardog doesn't like that
-      // TODO check with empty default graph ((QueryEngineHTTP) queryExecution).setDefaultGraphURIs(Collections.emptyList());
-      return queryExecution.execConstruct();
-    }
+    // jena adds empty defaultGraph param to URL because defaultGraph is null but is a "value", stardog doesn't like that
+    // TODO check with empty default graph ((QueryEngineHTTP) queryExecution).setDefaultGraphURIs(Collections.emptyList());
+    final SparqlCall call = startCall(SparqlOperation.construct, endpointUrl + "/query", query);
+    return JenaUtils.construct(call, () -> getQueryExecutionBuilder(call).query(query).build());
+  }
+
+  @Override
+  public Stream<Triple> constructStream(String query) {
+    final SparqlCall call = startCall(SparqlOperation.construct, endpointUrl + "/query", query);
+    return JenaUtils.constructStream(call, () -> getQueryExecutionBuilder(call).query(query).build());
   }
 
   @Override
   public void executeUpdateQuery(String updateQuery) {
-    final HttpRequest request = HttpRequest
+    HttpClientUtils.execute(createUpdateRequest(updateQuery), httpClient,
+        startCall(SparqlOperation.update, endpointUrl + "/update", updateQuery));
+  }
+
+  private HttpRequest createUpdateRequest(String updateQuery) {
+    return HttpRequest
         .newBuilder(URI.create(endpointUrl + "/update"))
         .POST(HttpRequest.BodyPublishers.ofString("update=" + URLEncoder.encode(updateQuery, StandardCharsets.UTF_8), StandardCharsets.UTF_8))
         .header(CONTENT_TYPE, Constants.APPLICATION_FORM_URLENCODED_VALUE)
         .build();
-    HttpClientUtils.execute(request, httpClient);
   }
 
   @Override
   public boolean executeAskQuery(String askQuery) {
-    try (QueryExecution queryExecution = getQueryExecutionBuilder().query(askQuery).build()) {
-      // jena adds empty defaultGraph param to URL because defaultGraph is null but is a "value", stardog doesn't like that
-      // TODO check with empty default graph ((QueryEngineHTTP) queryExecution).setDefaultGraphURIs(Collections.emptyList());
-      return queryExecution.execAsk();
-    }
+    // jena adds empty defaultGraph param to URL because defaultGraph is null but is a "value", stardog doesn't like that
+    // TODO check with empty default graph ((QueryEngineHTTP) queryExecution).setDefaultGraphURIs(Collections.emptyList());
+    final SparqlCall call = startCall(SparqlOperation.ask, endpointUrl + "/query", askQuery);
+    return JenaUtils.ask(call, () -> getQueryExecutionBuilder(call).query(askQuery).build());
+  }
+
+  @Override
+  public Map<String, Boolean> checkExisting(Set<String> uris, int chunkSize, int parallelism) {
+    return ExistenceCheck.checkExisting(this, uris, chunkSize, parallelism, config.getExecutor());
   }
 
   @Override
@@ -111,26 +166,81 @@ public class StardogSparqlService implements SparqlService {
   }
 
   private void upload(Model model, String graphUri, boolean replace) {
+    final SparqlCall call = startUploadCall(replace, graphUri);
+    HttpClientUtils.execute(createUploadRequest(model, graphUri, replace, call), httpClient, call);
+  }
+
+  private SparqlCall startUploadCall(boolean replace, String graphUri) {
+    return SparqlCall.start(callListener, replace ? SparqlOperation.replaceGraph : SparqlOperation.updateGraph,
+        getClass().getSimpleName(), endpointUrl, null, graphUri)
+        .limitTo(config.getQueryTimeoutMillis());
+  }
+
+  private HttpRequest createUploadRequest(Model model, String graphUri, boolean replace, SparqlCall call) {
     String graphStoreUrl = endpointUrl + "?graph=" + URLEncoder.encode(graphUri, StandardCharsets.UTF_8);
-    byte[] body = JenaUtils.toByteArray(model, TripleSerializationFormat.turtle);
-    final HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(graphStoreUrl))
-        .header(CONTENT_TYPE, Lang.TURTLE.getHeaderString() + ";charset=utf-8");
-    final BodyPublisher p = HttpRequest.BodyPublishers.ofByteArray(body);
-    final HttpRequest request = (replace ? builder.PUT(p) : builder.POST(p)).build();
-    HttpClientUtils.execute(request, httpClient);
+    final HttpRequest.Builder builder = HttpClientUtils.contentEncoding(HttpRequest.newBuilder(URI.create(graphStoreUrl))
+        .header(CONTENT_TYPE, config.getUploadFormat().isTurtle() ? Lang.TURTLE.getHeaderString() + ";charset=utf-8" : config.getUploadFormat().getContentType()), config);
+    final BodyPublisher p = HttpClientUtils.ofModel(model, config, call);
+    return (replace ? builder.PUT(p) : builder.POST(p)).build();
   }
 
   @Override
   public <R> R executeSelectQuery(String query, Function<ResultSet, R> resultHandler) {
-    try (QueryExecution queryExecution = getQueryExecutionBuilder().query(query).build()) {
-      // jena adds empty defaultGraph param to URL because defaultGraph is null but is a "value", stardog doesn't like that
-      // TODO check with empty default graph ((QueryEngineHTTP) queryExecution).setDefaultGraphURIs(Collections.emptyList());
-      return resultHandler.apply(queryExecution.execSelect());
-    }
+    // jena adds empty defaultGraph param to URL because defaultGraph is null but is a "value", stardog doesn't like that
+    // TODO check with empty default graph ((QueryEngineHTTP) queryExecution).setDefaultGraphURIs(Collections.emptyList());
+    final SparqlCall call = startCall(SparqlOperation.select, endpointUrl + "/query", query);
+    return JenaUtils.select(call, () -> getQueryExecutionBuilder(call).query(query).build(), resultHandler);
+  }
+
+  @Override
+  public Stream<QuerySolution> selectStream(String query) {
+    final SparqlCall call = startCall(SparqlOperation.select, endpointUrl + "/query", query);
+    return JenaUtils.selectStream(call, () -> getQueryExecutionBuilder(call).query(query).build());
   }
 
   @Override
   public void dropGraph(String graphUri) {
     executeUpdateQuery("drop silent graph <" + graphUri + ">");
   }
+
+  @Override
+  public <R> CompletableFuture<R> executeSelectQueryAsync(String query, Function<ResultSet, R> resultHandler) {
+    return HttpClientUtils.executeSelectAsync(httpClient, endpointUrl + "/query", query, config, resultHandler,
+        startCall(SparqlOperation.select, endpointUrl + "/query", query));
+  }
+
+  @Override
+  public CompletableFuture<Boolean> executeAskQueryAsync(String askQuery) {
+    return HttpClientUtils.executeAskAsync(httpClient, endpointUrl + "/query", askQuery, config,
+        startCall(SparqlOperation.ask, endpointUrl + "/query", askQuery));
+  }
+
+  @Override
+  public CompletableFuture<Model> executeConstructQueryAsync(String constructQuery) {
+    return HttpClientUtils.executeConstructAsync(httpClient, endpointUrl + "/query", constructQuery, config,
+        startCall(SparqlOperation.construct, endpointUrl + "/query", constructQuery));
+  }
+
+  @Override
+  public CompletableFuture<Void> executeUpdateQueryAsync(String updateQuery) {
+    return HttpClientUtils.executeAsync(createUpdateRequest(updateQuery), httpClient,
+        startCall(SparqlOperation.update, endpointUrl + "/update", updateQuery));
+  }
+
+  @Override
+  public CompletableFuture<Void> updateGraphAsync(String graphUri, Model model) {
+    final SparqlCall call = startUploadCall(false, graphUri);
+    return HttpClientUtils.executeAsync(createUploadRequest(model, graphUri, false, call), httpClient, call);
+  }
+
+  @Override
+  public CompletableFuture<Void> replaceGraphAsync(String graphUri, Model model) {
+    final SparqlCall call = startUploadCall(true, graphUri);
+    return HttpClientUtils.executeAsync(createUploadRequest(model, graphUri, true, call), httpClient, call);
+  }
+
+  @Override
+  public CompletableFuture<Void> dropGraphAsync(String graphUri) {
+    return executeUpdateQueryAsync("drop silent graph <" + graphUri + ">");
+  }
 }
@@ -21,33 +21,58 @@ package zone.cogni.semanticz.connectors.utils;
 
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpHeaders;
 import org.apache.http.HttpResponse;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.CredentialsProvider;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.conn.ConnectTimeoutException;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.HttpClients;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.QuerySolution;
 import org.apache.jena.query.ResultSet;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
 import org.apache.jena.riot.*;
 import org.apache.jena.riot.resultset.ResultSetLang;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFLib;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import zone.cogni.semanticz.connectors.general.Config;
+import zone.cogni.semanticz.connectors.general.SparqlCall;
+import zone.cogni.semanticz.connectors.general.SparqlCallListener;
+import zone.cogni.semanticz.connectors.general.SparqlCallPhase;
+import zone.cogni.semanticz.connectors.general.SparqlOperation;
+import zone.cogni.semanticz.connectors.general.SparqlTimeoutException;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.net.SocketTimeoutException;
 import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
+import java.util.stream.Stream;
 
 import static zone.cogni.semanticz.connectors.utils.Constants.APPLICATION_SPARQL_QUERY;
 import static zone.cogni.semanticz.connectors.utils.Constants.CONTENT_TYPE;
@@ -59,18 +84,51 @@ public class ApacheHttpClientUtils {
 
   private final static Logger log = LoggerFactory.getLogger(ApacheHttpClientUtils.class);
 
+  private static final Config DEFAULT_POOL_CONFIG = new Config();
+
+  private static final ScheduledExecutorService aborter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+    final Thread thread = new Thread(runnable, "semanticz-request-aborter");
+    thread.setDaemon(true);
+    return thread;
+  });
+
   /**
-   * Builds a http client given username and password for authentication. Apache HttpClient is
-   * capable of delivering both Basic auth and Digest auth.
+   * Builds a long-lived, pooled http client given username and password for authentication. Apache HttpClient is
+   * capable of delivering both Basic auth and Digest auth. The client is meant to be shared by all calls to the same
+   * endpoint and closed together with the service owning it.
    *
-   * @param username username to use for authentication
-   * @param password password to use for authentication
+   * @param username                     username to use for authentication
+   * @param password                     password to use for authentication
+   * @param maxConnections               maximum number of pooled connections
+   * @param maxConnectionsPerRoute       maximum number of pooled connections per route
+   * @param keepAliveMillis              upper bound for keeping an idle connection alive
+   * @param idleConnectionEvictionMillis idle time after which connections are evicted from the pool
    * @return http client
    */
-  private static CloseableHttpClient buildHttpClient(final String username, final String password) {
-    final HttpClientBuilder httpClientBuilder = HttpClients.custom().useSystemProperties();
-    httpClientBuilder.setConnectionManager(
-        new PoolingHttpClientConnectionManager(60L, TimeUnit.SECONDS));
+  public static CloseableHttpClient buildHttpClient(final String username, final String password,
+      final int maxConnections, final int maxConnectionsPerRoute, final long keepAliveMillis,
+      final long idleConnectionEvictionMillis) {
+    return httpClientBuilder(username, password, maxConnections, maxConnectionsPerRoute, keepAliveMillis,
+        idleConnectionEvictionMillis).build();
+  }
+
+  private static HttpClientBuilder httpClientBuilder(final String username, final String password,
+      final int maxConnections, final int maxConnectionsPerRoute, final long keepAliveMillis,
+      final long idleConnectionEvictionMillis) {
+    final PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+    connectionManager.setMaxTotal(maxConnections);
+    connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+
+    final HttpClientBuilder httpClientBuilder = HttpClients.custom()
+        .useSystemProperties()
+        .setConnectionManager(connectionManager)
+        .setKeepAliveStrategy((response, context) -> {
+          final long serverKeepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE
+              .getKeepAliveDuration(response, context);
+          return serverKeepAlive > 0 ? Math.min(serverKeepAlive, keepAliveMillis) : keepAliveMillis;
+        })
+        .evictExpiredConnections()
+        .evictIdleConnections(idleConnectionEvictionMillis, TimeUnit.MILLISECONDS);
 
     if (StringUtils.isNoneBlank(username, password)) {
       CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
@@ -80,7 +138,40 @@ public class ApacheHttpClientUtils {
     } else {
       log.warn("Service is configured without credentials.");
     }
-    return httpClientBuilder.build();
+    return httpClientBuilder;
+  }
+
+  /**
+   * Builds a long-lived, pooled http client using the credentials, pool settings and timeouts of the given
+   * configuration. The query timeout becomes the socket timeout, the longest the client waits for the next bytes of a
+   * response: it does not bound the duration of a whole call, a response trickling in keeps it alive. Only the
+   * deadlines set with {@link zone.cogni.semanticz.connectors.general.QueryOptions} bound whole calls, the requests
+   * being aborted when they pass.
+   *
+   * @param config configuration of the endpoint
+   * @return http client
+   */
+  public static CloseableHttpClient buildHttpClient(final Config config) {
+    final RequestConfig.Builder requestConfig = RequestConfig.custom();
+    if (config.getConnectTimeoutMillis() > 0) {
+      requestConfig
+          .setConnectTimeout(Math.toIntExact(config.getConnectTimeoutMillis()))
+          .setConnectionRequestTimeout(Math.toIntExact(config.getConnectTimeoutMillis()));
+    }
+    if (config.getQueryTimeoutMillis() > 0) {
+      requestConfig.setSocketTimeout(Math.toIntExact(config.getQueryTimeoutMillis()));
+    }
+    return httpClientBuilder(config.getUser(), config.getPassword(), config.getMaxConnections(),
+        config.getMaxConnectionsPerRoute(), config.getKeepAliveMillis(),
+        config.getIdleConnectionEvictionMillis())
+        .setDefaultRequestConfig(requestConfig.build())
+        .build();
+  }
+
+  private static CloseableHttpClient buildHttpClient(final String username, final String password) {
+    return buildHttpClient(username, password, DEFAULT_POOL_CONFIG.getMaxConnections(),
+        DEFAULT_POOL_CONFIG.getMaxConnectionsPerRoute(), DEFAULT_POOL_CONFIG.getKeepAliveMillis(),
+        DEFAULT_POOL_CONFIG.getIdleConnectionEvictionMillis());
   }
 
   /**
@@ -117,13 +208,13 @@ public class ApacheHttpClientUtils {
    * @return ResultSet language (XML/JSON)
    */
   private static Lang getResultSetLanguage(final HttpResponse response, final String acceptHeader) {
-    String actualContentType = response.getFirstHeader(CONTENT_TYPE).getValue();
-    actualContentType = removeCharset(actualContentType);
+    final Header contentTypeHeader = response.getFirstHeader(CONTENT_TYPE);
+    String actualContentType = contentTypeHeader == null ? "" : removeCharset(contentTypeHeader.getValue()).trim();
 
     // If the server fails to return a Content-Type then we will assume
-    // the server returned the type we asked for
+    // the server returned the (preferred) type we asked for
     if (actualContentType.isEmpty()) {
-      actualContentType = acceptHeader;
+      actualContentType = removeCharset(StringUtils.substringBefore(acceptHeader, ",")).trim();
     }
 
     RIOT.init();
@@ -156,6 +247,7 @@ public class ApacheHttpClientUtils {
   /**
    * Executes and update request
    *
+   * @param httpclient   shared client to execute the request with
    * @param url          endpoint to reach
    * @param username     to authenticate with
    * @param password     to authenticate with
@@ -164,22 +256,180 @@ public class ApacheHttpClientUtils {
    * @param put          whether a put (true) or a post (false)
    * @param contentType  to send the data with
    */
-  public static void executeAuthenticatedPostOrPut(final String url, final String username,
-      final String password, final boolean addBasicAuth, final HttpEntity httpEntity, boolean put,
-      final String contentType) {
+  public static void executeAuthenticatedPostOrPut(final CloseableHttpClient httpclient, final String url,
+      final String username, final String password, final boolean addBasicAuth, final HttpEntity httpEntity,
+      boolean put, final String contentType) {
+    executeAuthenticatedPostOrPut(httpclient, url, username, password, addBasicAuth, httpEntity, put, contentType,
+        SparqlCallListener.NOOP);
+  }
 
-    try (final CloseableHttpClient httpclient = ApacheHttpClientUtils.buildHttpClient(username,
-        password)) {
-      final HttpEntityEnclosingRequestBase httpPost = put ? new HttpPut(url) : new HttpPost(url);
-      httpPost.setHeader(CONTENT_TYPE, contentType);
-      if (addBasicAuth) {
-        httpPost.setHeader(HttpHeaders.AUTHORIZATION, "Basic " + Base64.encodeBase64String(
-            (username + ":" + password).getBytes(StandardCharsets.UTF_8)));
-      }
-      httpPost.setEntity(httpEntity);
+  /**
+   * Executes and update request, notifying the listener of the call.
+   *
+   * @param httpclient   shared client to execute the request with
+   * @param url          endpoint to reach
+   * @param username     to authenticate with
+   * @param password     to authenticate with
+   * @param addBasicAuth whether the "Authorization Basic ..." header shall be added
+   * @param httpEntity   payload
+   * @param put          whether a put (true) or a post (false)
+   * @param contentType  to send the data with
+   * @param listener     listener notified of the call
+   */
+  public static void executeAuthenticatedPostOrPut(final CloseableHttpClient httpclient, final String url,
+      final String username, final String password, final boolean addBasicAuth, final HttpEntity httpEntity,
+      boolean put, final String contentType, final SparqlCallListener listener) {
+    final SparqlCall call = startCall(listener, put ? SparqlOperation.replaceGraph : SparqlOperation.updateGraph,
+        url, null);
+    final HttpEntityEnclosingRequestBase httpPost = put ? new HttpPut(url) : new HttpPost(url);
+    httpPost.setHeader(CONTENT_TYPE, contentType);
+    if (addBasicAuth) {
+      httpPost.setHeader(HttpHeaders.AUTHORIZATION, "Basic " + Base64.encodeBase64String(
+          (username + ":" + password).getBytes(StandardCharsets.UTF_8)));
+    }
+    httpPost.setEntity(httpEntity);
+    prepare(httpPost, call);
 
-      final HttpResponse response = httpclient.execute(httpPost);
+    try (final Closeable deadline = abortAtDeadline(httpPost, call);
+         final CloseableHttpResponse response = httpclient.execute(httpPost)) {
+      call.mark(SparqlCallPhase.serverExecution);
       ensureResponseOK(response);
+      EntityUtils.consume(response.getEntity());
+      call.mark(SparqlCallPhase.transfer);
+      call.end();
+    } catch (final IOException e) {
+      throw call.fail(failure(e, call));
+    } catch (final RuntimeException e) {
+      throw call.fail(timedOut(e, call));
+    }
+  }
+
+  /**
+   * Calls made without a listener are only reported as
+   * {@link zone.cogni.semanticz.connectors.general.SparqlCallEvent}.
+   */
+  private static SparqlCall startCall(final SparqlCallListener listener, final SparqlOperation operation,
+      final String url, final String query) {
+    return SparqlCall.start(listener, operation, ApacheHttpClientUtils.class.getSimpleName(), url, query);
+  }
+
+  /**
+   * @return SPARQL protocol POST of the query, with the headers the listeners asked for on the call, bounded by its
+   * deadline
+   */
+  private static HttpPost createQueryPost(final String sparqlServiceUrl, final String acceptHeader,
+      final String username, final String password, final boolean addBasicAuth, final String query,
+      final SparqlCall call) {
+    final HttpPost httpPost = createPost(sparqlServiceUrl, acceptHeader, username, password, addBasicAuth);
+    httpPost.setEntity(new StringEntity(query, StandardCharsets.UTF_8));
+    prepare(httpPost, call);
+    return httpPost;
+  }
+
+  /**
+   * Adds the headers the listeners asked for on the call to the request and bounds its timeouts by the deadline of
+   * the call.
+   */
+  private static void prepare(final HttpRequestBase request, final SparqlCall call) {
+    call.getHeaders().forEach(request::setHeader);
+    final long timeLeft = call.getTimeLeftMillis();
+    if (timeLeft > 0) {
+      final int timeout = (int) Math.min(timeLeft, Integer.MAX_VALUE);
+      request.setConfig(RequestConfig.custom()
+          .setConnectTimeout(timeout)
+          .setConnectionRequestTimeout(timeout)
+          .setSocketTimeout(timeout)
+          .build());
+    }
+  }
+
+  /**
+   * Executes a request as a call of the given operation, notifying the listener of the call: the listeners may add
+   * headers to the request, and it is aborted at the deadline of the call, see
+   * {@link zone.cogni.semanticz.connectors.general.QueryOptions}.
+   *
+   * @param httpclient shared client to execute the request with
+   * @param request    request to execute
+   * @param operation  operation the request performs
+   * @param query      query or update sent, null if none
+   * @param graphUri   graph the request uploads, replaces or drops, null if none
+   * @param listener   listener notified of the call
+   * @param handler    reads the response, whatever its status, the remainder of its body is discarded afterwards
+   * @return result of the handler
+   * @throws IOException if the exchange failed, other than by passing the deadline of the call
+   * @throws SparqlTimeoutException if the deadline of the call passed
+   */
+  public static <R> R execute(final CloseableHttpClient httpclient, final HttpRequestBase request,
+      final SparqlOperation operation, final String query, final String graphUri, final SparqlCallListener listener,
+      final ResponseHandler<R> handler) throws IOException {
+    final SparqlCall call = SparqlCall.start(listener, operation, ApacheHttpClientUtils.class.getSimpleName(),
+        request.getURI().toString(), query, graphUri);
+    prepare(request, call);
+    try (final Closeable deadline = abortAtDeadline(request, call);
+         final CloseableHttpResponse response = httpclient.execute(request)) {
+      call.mark(SparqlCallPhase.serverExecution);
+      final R result = handler.handleResponse(response);
+      EntityUtils.consume(response.getEntity());
+      call.mark(SparqlCallPhase.transfer);
+      return call.end(result);
+    } catch (final IOException e) {
+      final RuntimeException failure = failure(e, call);
+      call.fail(failure);
+      if (failure instanceof SparqlTimeoutException) throw failure;
+      throw e;
+    } catch (final RuntimeException e) {
+      throw call.fail(timedOut(e, call));
+    }
+  }
+
+  /**
+   * Aborts the request when the deadline of the call passes, however busy the connection is. The socket timeout only
+   * bounds the wait for the next bytes of a response.
+   *
+   * @return closed once the call completed, cancelling the abort
+   */
+  private static Closeable abortAtDeadline(final HttpRequestBase request, final SparqlCall call) {
+    final long timeLeft = call.getTimeLeftMillis();
+    if (timeLeft < 0) return () -> {
+    };
+    final ScheduledFuture<?> abort = aborter.schedule(request::abort, timeLeft, TimeUnit.MILLISECONDS);
+    return () -> abort.cancel(false);
+  }
+
+  /**
+   * @return the exception to fail a call with, a {@link SparqlTimeoutException} when the server did not answer in time
+   * or the request was aborted at the deadline of the call
+   */
+  private static RuntimeException failure(final IOException e, final SparqlCall call) {
+    if (e instanceof SocketTimeoutException || e instanceof ConnectTimeoutException || call.isExpired()) {
+      return new SparqlTimeoutException("SPARQL call timed out: " + e.getMessage(), e);
+    }
+    return new RuntimeException(e);
+  }
+
+  /**
+   * @return a {@link SparqlTimeoutException} if the call failed because it was aborted at its deadline, e.g. while
+   * parsing the response, the failure itself otherwise
+   */
+  private static RuntimeException timedOut(final RuntimeException e, final SparqlCall call) {
+    if (!call.isExpired() || e instanceof SparqlTimeoutException) return e;
+    return new SparqlTimeoutException("SPARQL call timed out: " + e.getMessage(), e);
+  }
+
+  /**
+   * Executes and update request on a throwaway client.
+   *
+   * @deprecated builds and closes a client per call, so no connection is ever reused; use
+   * {@link #executeAuthenticatedPostOrPut(CloseableHttpClient, String, String, String, boolean, HttpEntity, boolean, String)}
+   * with a shared client instead.
+   */
+  @Deprecated
+  public static void executeAuthenticatedPostOrPut(final String url, final String username,
+      final String password, final boolean addBasicAuth, final HttpEntity httpEntity, boolean put,
+      final String contentType) {
+    try (final CloseableHttpClient httpclient = buildHttpClient(username, password)) {
+      executeAuthenticatedPostOrPut(httpclient, url, username, password, addBasicAuth, httpEntity, put,
+          contentType);
     } catch (final IOException e) {
       throw new RuntimeException(e);
     }
@@ -188,26 +438,65 @@ public class ApacheHttpClientUtils {
   /**
    * Executes SPARQL ASK against a SPARQL 1.1 Protocol endpoint.
    *
+   * @param httpclient       shared client to execute the request with
    * @param sparqlServiceUrl SPARQL endpoint
    * @param username         to authenticate with
    * @param password         to authenticate with
-   * @param query            SELECT query
+   * @param query            ASK query
    * @param addBasicAuth     whether the "Authorization Basic ..." header shall be added
    */
-  public static boolean executeAsk(final String sparqlServiceUrl, final String username,
-      final String password, final String query, final boolean addBasicAuth) {
-
-    try (final CloseableHttpClient httpclient = ApacheHttpClientUtils.buildHttpClient(username,
-        password)) {
-      final String acceptHeader = Constants.APPLICATION_SPARQL_RESULTS_XML;
-      final HttpEntityEnclosingRequestBase httpPost = createPost(sparqlServiceUrl, acceptHeader,
-          username, password, addBasicAuth);
-      httpPost.setEntity(new StringEntity(query, StandardCharsets.UTF_8));
+  public static boolean executeAsk(final CloseableHttpClient httpclient, final String sparqlServiceUrl,
+      final String username, final String password, final String query, final boolean addBasicAuth) {
+    return executeAsk(httpclient, sparqlServiceUrl, username, password, query, addBasicAuth,
+        SparqlCallListener.NOOP);
+  }
 
-      final HttpResponse response = httpclient.execute(httpPost);
+  /**
+   * Executes SPARQL ASK against a SPARQL 1.1 Protocol endpoint, notifying the listener of the call.
+   *
+   * @param httpclient       shared client to execute the request with
+   * @param sparqlServiceUrl SPARQL endpoint
+   * @param username         to authenticate with
+   * @param password         to authenticate with
+   * @param query            ASK query
+   * @param addBasicAuth     whether the "Authorization Basic ..." header shall be added
+   * @param listener         listener notified of the call
+   */
+  public static boolean executeAsk(final CloseableHttpClient httpclient, final String sparqlServiceUrl,
+      final String username, final String password, final String query, final boolean addBasicAuth,
+      final SparqlCallListener listener) {
+    final String acceptHeader = Constants.ACCEPT_SPARQL_RESULTS;
+    final SparqlCall call = startCall(listener, SparqlOperation.ask, sparqlServiceUrl, query);
+    final HttpPost httpPost = createQueryPost(sparqlServiceUrl, acceptHeader, username, password, addBasicAuth,
+        query, call);
+    try (final Closeable deadline = abortAtDeadline(httpPost, call);
+         final CloseableHttpResponse response = httpclient.execute(httpPost)) {
+      call.mark(SparqlCallPhase.serverExecution);
       ensureResponseOK(response);
-      return ResultSetMgr.readBoolean(response.getEntity().getContent(),
+      final boolean result = ResultSetMgr.readBoolean(response.getEntity().getContent(),
           getResultSetLanguage(response, acceptHeader));
+      EntityUtils.consume(response.getEntity());
+      call.mark(SparqlCallPhase.parse);
+      call.setResultCount(1);
+      return call.end(result);
+    } catch (final IOException e) {
+      throw call.fail(failure(e, call));
+    } catch (final RuntimeException e) {
+      throw call.fail(timedOut(e, call));
+    }
+  }
+
+  /**
+   * Executes SPARQL ASK against a SPARQL 1.1 Protocol endpoint on a throwaway client.
+   *
+   * @deprecated builds and closes a client per call, so no connection is ever reused; use
+   * {@link #executeAsk(CloseableHttpClient, String, String, String, String, boolean)} with a shared client instead.
+   */
+  @Deprecated
+  public static boolean executeAsk(final String sparqlServiceUrl, final String username,
+      final String password, final String query, final boolean addBasicAuth) {
+    try (final CloseableHttpClient httpclient = buildHttpClient(username, password)) {
+      return executeAsk(httpclient, sparqlServiceUrl, username, password, query, addBasicAuth);
     } catch (final IOException e) {
       throw new RuntimeException(e);
     }
@@ -216,58 +505,381 @@ public class ApacheHttpClientUtils {
   /**
    * Executes SPARQL SELECT against a SPARQL 1.1 Protocol endpoint.
    *
+   * @param httpclient       shared client to execute the request with
    * @param sparqlServiceUrl SPARQL endpoint
    * @param username         to authenticate with
    * @param password         to authenticate with
-   * @param query            ASK query
+   * @param query            SELECT query
+   * @param addBasicAuth     whether the "Authorization Basic ..." header shall be added
+   */
+  public static <R> R executeSelect(final CloseableHttpClient httpclient, final String sparqlServiceUrl,
+      final String username, final String password, final String query, final boolean addBasicAuth,
+      final Function<ResultSet, R> handler) {
+    return executeSelect(httpclient, sparqlServiceUrl, username, password, query, addBasicAuth, handler,
+        SparqlCallListener.NOOP);
+  }
+
+  /**
+   * Executes SPARQL SELECT against a SPARQL 1.1 Protocol endpoint, notifying the listener of the call.
+   *
+   * @param httpclient       shared client to execute the request with
+   * @param sparqlServiceUrl SPARQL endpoint
+   * @param username         to authenticate with
+   * @param password         to authenticate with
+   * @param query            SELECT query
    * @param addBasicAuth     whether the "Authorization Basic ..." header shall be added
+   * @param listener         listener notified of the call
    */
+  public static <R> R executeSelect(final CloseableHttpClient httpclient, final String sparqlServiceUrl,
+      final String username, final String password, final String query, final boolean addBasicAuth,
+      final Function<ResultSet, R> handler, final SparqlCallListener listener) {
+    final String acceptHeader = Constants.ACCEPT_SPARQL_RESULTS;
+    final SparqlCall call = startCall(listener, SparqlOperation.select, sparqlServiceUrl, query);
+    final HttpPost httpPost = createQueryPost(sparqlServiceUrl, acceptHeader, username, password, addBasicAuth,
+        query, call);
+    try (final Closeable deadline = abortAtDeadline(httpPost, call);
+         final CloseableHttpResponse response = httpclient.execute(httpPost)) {
+      call.mark(SparqlCallPhase.serverExecution);
+      ensureResponseOK(response);
+      final ResultSet resultSet = ResultSetMgr.read(response.getEntity().getContent(),
+          getResultSetLanguage(response, acceptHeader)).materialise();
+      EntityUtils.consume(response.getEntity());
+      call.mark(SparqlCallPhase.parse);
+      call.setResultCount(resultSet.size());
+      final R result = handler.apply(resultSet);
+      call.mark(SparqlCallPhase.handler);
+      return call.end(result);
+    } catch (final IOException e) {
+      throw call.fail(failure(e, call));
+    } catch (final RuntimeException e) {
+      throw call.fail(timedOut(e, call));
+    }
+  }
+
+  /**
+   * Executes SPARQL SELECT against a SPARQL 1.1 Protocol endpoint on a throwaway client.
+   *
+   * @deprecated builds and closes a client per call, so no connection is ever reused; use
+   * {@link #executeSelect(CloseableHttpClient, String, String, String, String, boolean, Function)} with a shared
+   * client instead.
+   */
+  @Deprecated
   public static <R> R executeSelect(final String sparqlServiceUrl, final String username,
       final String password, final String query, final boolean addBasicAuth,
       final Function<ResultSet, R> handler) {
+    try (final CloseableHttpClient httpclient = buildHttpClient(username, password)) {
+      return executeSelect(httpclient, sparqlServiceUrl, username, password, query, addBasicAuth, handler);
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
 
-    try (final CloseableHttpClient httpclient = ApacheHttpClientUtils.buildHttpClient(username,
-        password)) {
-      final String acceptHeader = Constants.APPLICATION_SPARQL_RESULTS_XML;
-      final HttpEntityEnclosingRequestBase httpPost = createPost(sparqlServiceUrl, acceptHeader,
-          username, password, addBasicAuth);
-      httpPost.setEntity(new StringEntity(query, StandardCharsets.UTF_8));
+  /**
+   * Executes SPARQL SELECT against a SPARQL 1.1 Protocol endpoint and streams the solutions as they are parsed
+   * from the response body. The HTTP response is released back to the pool when the returned stream is closed.
+   *
+   * @param httpclient       shared client to execute the request with
+   * @param sparqlServiceUrl SPARQL endpoint
+   * @param username         to authenticate with
+   * @param password         to authenticate with
+   * @param query            SELECT query
+   * @param addBasicAuth     whether the "Authorization Basic ..." header shall be added
+   * @return stream of query solutions, to be closed by the caller
+   */
+  public static Stream<QuerySolution> executeSelectStream(final CloseableHttpClient httpclient,
+      final String sparqlServiceUrl, final String username, final String password, final String query,
+      final boolean addBasicAuth) {
+    return executeSelectStream(httpclient, sparqlServiceUrl, username, password, query, addBasicAuth,
+        SparqlCallListener.NOOP);
+  }
 
-      final HttpResponse response = httpclient.execute(httpPost);
+  /**
+   * Executes SPARQL SELECT against a SPARQL 1.1 Protocol endpoint and streams the solutions, see
+   * {@link #executeSelectStream(CloseableHttpClient, String, String, String, String, boolean)}, notifying the listener
+   * of the call, which ends when the stream is closed. The request is aborted at the deadline of the call, even while
+   * the stream is being consumed.
+   *
+   * @param httpclient       shared client to execute the request with
+   * @param sparqlServiceUrl SPARQL endpoint
+   * @param username         to authenticate with
+   * @param password         to authenticate with
+   * @param query            SELECT query
+   * @param addBasicAuth     whether the "Authorization Basic ..." header shall be added
+   * @param listener         listener notified of the call
+   * @return stream of query solutions, to be closed by the caller
+   */
+  public static Stream<QuerySolution> executeSelectStream(final CloseableHttpClient httpclient,
+      final String sparqlServiceUrl, final String username, final String password, final String query,
+      final boolean addBasicAuth, final SparqlCallListener listener) {
+    final String acceptHeader = Constants.ACCEPT_SPARQL_RESULTS;
+    final SparqlCall call = startCall(listener, SparqlOperation.select, sparqlServiceUrl, query);
+    final HttpPost httpPost = createQueryPost(sparqlServiceUrl, acceptHeader, username, password, addBasicAuth,
+        query, call);
+    return stream(httpclient, httpPost, call, response -> ResultSetMgr.read(response.getEntity().getContent(),
+        getResultSetLanguage(response, acceptHeader)));
+  }
+
+  /**
+   * Reads the results of a response as they arrive.
+   */
+  private interface ResultReader<T> {
+
+    Iterator<T> read(HttpResponse response) throws IOException;
+  }
+
+  /**
+   * Executes a query request and streams its results, recording the call until the stream is closed, which also
+   * releases the response and cancels the abort at the deadline of the call.
+   */
+  private static <T> Stream<T> stream(final CloseableHttpClient httpclient, final HttpPost httpPost,
+      final SparqlCall call, final ResultReader<T> reader) {
+    final Closeable deadline = abortAtDeadline(httpPost, call);
+    CloseableHttpResponse response = null;
+    final Iterator<T> results;
+    try {
+      response = httpclient.execute(httpPost);
+      call.mark(SparqlCallPhase.serverExecution);
       ensureResponseOK(response);
-      return handler.apply(ResultSetMgr.read(response.getEntity().getContent(),
-          getResultSetLanguage(response, acceptHeader)).materialise());
+      results = reader.read(response);
     } catch (final IOException e) {
-      throw new RuntimeException(e);
+      closeQuietly(response, deadline);
+      throw call.fail(failure(e, call));
+    } catch (final RuntimeException e) {
+      closeQuietly(response, deadline);
+      throw call.fail(timedOut(e, call));
+    }
+
+    final long[] count = new long[1];
+    final Iterator<T> recorded = new Iterator<>() {
+      @Override
+      public boolean hasNext() {
+        try {
+          return results.hasNext();
+        } catch (final RuntimeException e) {
+          throw call.fail(timedOut(e, call));
+        }
+      }
+
+      @Override
+      public T next() {
+        try {
+          final T next = results.next();
+          count[0]++;
+          return next;
+        } catch (final RuntimeException e) {
+          throw call.fail(timedOut(e, call));
+        }
+      }
+    };
+    final CloseableHttpResponse openResponse = response;
+    return JenaUtils.toStream(recorded).onClose(() -> {
+      closeQuietly(openResponse, deadline);
+      call.mark(SparqlCallPhase.handler);
+      call.setResultCount(count[0]);
+      call.end();
+    });
+  }
+
+  /**
+   * Executes SPARQL SELECT against a SPARQL 1.1 Protocol endpoint and streams the solutions, on a throwaway client
+   * which is closed together with the returned stream.
+   *
+   * @deprecated builds and closes a client per call, so no connection is ever reused; use
+   * {@link #executeSelectStream(CloseableHttpClient, String, String, String, String, boolean)} with a shared client
+   * instead.
+   */
+  @Deprecated
+  public static Stream<QuerySolution> executeSelectStream(final String sparqlServiceUrl, final String username,
+      final String password, final String query, final boolean addBasicAuth) {
+    final CloseableHttpClient httpclient = buildHttpClient(username, password);
+    try {
+      return executeSelectStream(httpclient, sparqlServiceUrl, username, password, query, addBasicAuth)
+          .onClose(() -> closeQuietly(httpclient));
+    } catch (final RuntimeException e) {
+      closeQuietly(httpclient);
+      throw e;
+    }
+  }
+
+  private static void closeQuietly(final Closeable... closeables) {
+    for (Closeable closeable : closeables) {
+      if (closeable == null) {
+        continue;
+      }
+      try {
+        closeable.close();
+      } catch (IOException e) {
+        log.warn("Closing {} failed.", closeable, e);
+      }
     }
   }
 
   /**
    * Executes SPARQL CONSTRUCT against a SPARQL 1.1 Protocol endpoint.
    *
+   * @param httpclient       shared client to execute the request with
    * @param sparqlServiceUrl SPARQL endpoint
    * @param username         to authenticate with
    * @param password         to authenticate with
    * @param query            CONSTRUCT query
    * @param addBasicAuth     whether the "Authorization Basic ..." header shall be added
    */
+  public static Model executeConstruct(final CloseableHttpClient httpclient, final String sparqlServiceUrl,
+      final String username, final String password, final String query, final boolean addBasicAuth) {
+    final Model model = ModelFactory.createDefaultModel();
+    executeConstruct(httpclient, sparqlServiceUrl, username, password, query, addBasicAuth,
+        StreamRDFLib.graph(model.getGraph()));
+    return model;
+  }
+
+  /**
+   * Executes SPARQL CONSTRUCT against a SPARQL 1.1 Protocol endpoint on a throwaway client.
+   *
+   * @deprecated builds and closes a client per call, so no connection is ever reused; use
+   * {@link #executeConstruct(CloseableHttpClient, String, String, String, String, boolean)} with a shared client
+   * instead.
+   */
+  @Deprecated
   public static Model executeConstruct(final String sparqlServiceUrl, final String username,
       final String password, final String query, final boolean addBasicAuth) {
+    final Model model = ModelFactory.createDefaultModel();
+    executeConstruct(sparqlServiceUrl, username, password, query, addBasicAuth,
+        StreamRDFLib.graph(model.getGraph()));
+    return model;
+  }
 
-    try (final CloseableHttpClient httpclient = ApacheHttpClientUtils.buildHttpClient(username,
-        password)) {
-      final HttpEntityEnclosingRequestBase httpPost = createPost(sparqlServiceUrl, Constants.TEXT_TURTLE,
-          username, password, addBasicAuth);
-      httpPost.setEntity(new StringEntity(query, StandardCharsets.UTF_8));
+  /**
+   * Executes SPARQL CONSTRUCT against a SPARQL 1.1 Protocol endpoint, parsing the response body
+   * directly into the given sink.
+   *
+   * @param httpclient       shared client to execute the request with
+   * @param sparqlServiceUrl SPARQL endpoint
+   * @param username         to authenticate with
+   * @param password         to authenticate with
+   * @param query            CONSTRUCT query
+   * @param addBasicAuth     whether the "Authorization Basic ..." header shall be added
+   * @param sink             receiver of the parsed triples
+   */
+  public static void executeConstruct(final CloseableHttpClient httpclient, final String sparqlServiceUrl,
+      final String username, final String password, final String query, final boolean addBasicAuth,
+      final StreamRDF sink) {
+    executeConstruct(httpclient, sparqlServiceUrl, username, password, query, addBasicAuth, sink,
+        SparqlCallListener.NOOP);
+  }
 
-      final HttpResponse response = httpclient.execute(httpPost);
+  /**
+   * Executes SPARQL CONSTRUCT against a SPARQL 1.1 Protocol endpoint into the given sink, notifying the listener of
+   * the call.
+   *
+   * @param httpclient       shared client to execute the request with
+   * @param sparqlServiceUrl SPARQL endpoint
+   * @param username         to authenticate with
+   * @param password         to authenticate with
+   * @param query            CONSTRUCT query
+   * @param addBasicAuth     whether the "Authorization Basic ..." header shall be added
+   * @param sink             receiver of the parsed triples
+   * @param listener         listener notified of the call
+   */
+  public static void executeConstruct(final CloseableHttpClient httpclient, final String sparqlServiceUrl,
+      final String username, final String password, final String query, final boolean addBasicAuth,
+      final StreamRDF sink, final SparqlCallListener listener) {
+    final SparqlCall call = startCall(listener, SparqlOperation.construct, sparqlServiceUrl, query);
+    final HttpPost httpPost = createQueryPost(sparqlServiceUrl, Constants.TEXT_TURTLE, username, password,
+        addBasicAuth, query, call);
+    try (final Closeable deadline = abortAtDeadline(httpPost, call);
+         final CloseableHttpResponse response = httpclient.execute(httpPost)) {
+      call.mark(SparqlCallPhase.serverExecution);
       ensureResponseOK(response);
+      RDFParser.source(response.getEntity().getContent()).lang(Lang.TURTLE).parse(sink);
+      EntityUtils.consume(response.getEntity());
+      call.mark(SparqlCallPhase.parse);
+      call.end();
+    } catch (final IOException e) {
+      throw call.fail(failure(e, call));
+    } catch (final RuntimeException e) {
+      throw call.fail(timedOut(e, call));
+    }
+  }
 
-      final Model model = ModelFactory.createDefaultModel();
-      model.read(response.getEntity().getContent(), null, Lang.TURTLE.getLabel());
-      return model;
+  /**
+   * Executes SPARQL CONSTRUCT against a SPARQL 1.1 Protocol endpoint into the given sink, on a throwaway client.
+   *
+   * @deprecated builds and closes a client per call, so no connection is ever reused; use
+   * {@link #executeConstruct(CloseableHttpClient, String, String, String, String, boolean, StreamRDF)} with a shared
+   * client instead.
+   */
+  @Deprecated
+  public static void executeConstruct(final String sparqlServiceUrl, final String username,
+      final String password, final String query, final boolean addBasicAuth, final StreamRDF sink) {
+    try (final CloseableHttpClient httpclient = buildHttpClient(username, password)) {
+      executeConstruct(httpclient, sparqlServiceUrl, username, password, query, addBasicAuth, sink);
     } catch (final IOException e) {
       throw new RuntimeException(e);
     }
   }
+
+  /**
+   * Executes SPARQL CONSTRUCT against a SPARQL 1.1 Protocol endpoint and streams the triples as they are parsed
+   * from the response body. The HTTP response is released back to the pool when the returned stream is closed.
+   *
+   * @param httpclient       shared client to execute the request with
+   * @param sparqlServiceUrl SPARQL endpoint
+   * @param username         to authenticate with
+   * @param password         to authenticate with
+   * @param query            CONSTRUCT query
+   * @param addBasicAuth     whether the "Authorization Basic ..." header shall be added
+   * @return stream of triples, to be closed by the caller
+   */
+  public static Stream<Triple> executeConstructStream(final CloseableHttpClient httpclient,
+      final String sparqlServiceUrl, final String username, final String password, final String query,
+      final boolean addBasicAuth) {
+    return executeConstructStream(httpclient, sparqlServiceUrl, username, password, query, addBasicAuth,
+        SparqlCallListener.NOOP);
+  }
+
+  /**
+   * Executes SPARQL CONSTRUCT against a SPARQL 1.1 Protocol endpoint and streams the triples, see
+   * {@link #executeConstructStream(CloseableHttpClient, String, String, String, String, boolean)}, notifying the
+   * listener of the call, which ends when the stream is closed. The request is aborted at the deadline of the call,
+   * even while the stream is being consumed.
+   *
+   * @param httpclient       shared client to execute the request with
+   * @param sparqlServiceUrl SPARQL endpoint
+   * @param username         to authenticate with
+   * @param password         to authenticate with
+   * @param query            CONSTRUCT query
+   * @param addBasicAuth     whether the "Authorization Basic ..." header shall be added
+   * @param listener         listener notified of the call
+   * @return stream of triples, to be closed by the caller
+   */
+  public static Stream<Triple> executeConstructStream(final CloseableHttpClient httpclient,
+      final String sparqlServiceUrl, final String username, final String password, final String query,
+      final boolean addBasicAuth, final SparqlCallListener listener) {
+    final SparqlCall call = startCall(listener, SparqlOperation.construct, sparqlServiceUrl, query);
+    final HttpPost httpPost = createQueryPost(sparqlServiceUrl, Constants.TEXT_TURTLE, username, password,
+        addBasicAuth, query, call);
+    return stream(httpclient, httpPost, call, response -> RDFDataMgr.createIteratorTriples(
+        response.getEntity().getContent(), Lang.TURTLE, null));
+  }
+
+  /**
+   * Executes SPARQL CONSTRUCT against a SPARQL 1.1 Protocol endpoint and streams the triples, on a throwaway client
+   * which is closed together with the returned stream.
+   *
+   * @deprecated builds and closes a client per call, so no connection is ever reused; use
+   * {@link #executeConstructStream(CloseableHttpClient, String, String, String, String, boolean)} with a shared
+   * client instead.
+   */
+  @Deprecated
+  public static Stream<Triple> executeConstructStream(final String sparqlServiceUrl, final String username,
+      final String password, final String query, final boolean addBasicAuth) {
+    final CloseableHttpClient httpclient = buildHttpClient(username, password);
+    try {
+      return executeConstructStream(httpclient, sparqlServiceUrl, username, password, query, addBasicAuth)
+          .onClose(() -> closeQuietly(httpclient));
+    } catch (final RuntimeException e) {
+      closeQuietly(httpclient);
+      throw e;
+    }
+  }
 }
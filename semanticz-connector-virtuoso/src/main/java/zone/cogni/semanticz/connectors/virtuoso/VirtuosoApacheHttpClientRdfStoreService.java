@@ -23,44 +23,54 @@ import io.vavr.control.Try;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.http.HttpResponse;
+import org.apache.http.HttpEntity;
 import org.apache.http.StatusLine;
-import org.apache.http.auth.AuthScope;
-import org.apache.http.auth.UsernamePasswordCredentials;
-import org.apache.http.client.CredentialsProvider;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.entity.GzipCompressingEntity;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPut;
-import org.apache.http.entity.ByteArrayEntity;
-import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.EntityTemplate;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
-import org.apache.http.impl.client.HttpClients;
-import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.message.BasicNameValuePair;
-import org.apache.http.util.EntityUtils;
-import org.apache.jena.query.ParameterizedSparqlString;
+import org.apache.jena.graph.Triple;
 import org.apache.jena.query.Query;
+import org.apache.jena.query.QuerySolution;
 import org.apache.jena.query.QuerySolutionMap;
 import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.system.StreamRDFLib;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import zone.cogni.semanticz.connectors.general.Config;
+import zone.cogni.semanticz.connectors.general.PreparedSparqlQuery;
+import zone.cogni.semanticz.connectors.general.QueryOptions;
 import zone.cogni.semanticz.connectors.general.RdfStoreService;
+import zone.cogni.semanticz.connectors.general.SparqlOperation;
 import zone.cogni.semanticz.connectors.utils.ApacheHttpClientUtils;
+import zone.cogni.semanticz.connectors.utils.JenaUtils;
+import zone.cogni.semanticz.connectors.utils.TripleSerializationFormat;
 import zone.cogni.sem.jena.template.JenaResultSetHandler;
 
 import java.io.IOException;
-import java.io.StringWriter;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.Collections;
-import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 import static zone.cogni.semanticz.connectors.utils.Constants.CONTENT_TYPE;
 import static zone.cogni.semanticz.connectors.utils.Constants.TEXT_TURTLE;
 
 /**
  * Implementation of VirtuosoRdfStoreService backed directly by Apache HttpClient.
+ * <p>
+ * Every operation is bounded by the query timeout of the configuration, if any, on top of the deadlines set with
+ * {@link QueryOptions}: its request is aborted when the deadline passes.
+ * </p>
  */
 @Deprecated
 public class VirtuosoApacheHttpClientRdfStoreService implements RdfStoreService {
@@ -72,6 +82,9 @@ public class VirtuosoApacheHttpClientRdfStoreService implements RdfStoreService
   protected final String rdfStoreUser;
   protected final String rdfStorePassword;
   private final boolean graphCrudUseBasicAuth;
+  private final Config config;
+
+  private volatile CloseableHttpClient httpClient;
 
   public VirtuosoApacheHttpClientRdfStoreService(String rdfStoreUrl, String rdfStoreUser,
       String rdfStorePassword) {
@@ -80,25 +93,60 @@ public class VirtuosoApacheHttpClientRdfStoreService implements RdfStoreService
 
   public VirtuosoApacheHttpClientRdfStoreService(String rdfStoreUrl, String rdfStoreUser,
       String rdfStorePassword, boolean graphCrudUseBasicAuth) {
-    this.rdfStoreUrl = rdfStoreUrl;
-    this.rdfStoreUser = rdfStoreUser;
-    this.rdfStorePassword = rdfStorePassword;
-    this.graphCrudUseBasicAuth = graphCrudUseBasicAuth;
+    this(new Config()
+        .setUrl(rdfStoreUrl)
+        .setUser(rdfStoreUser)
+        .setPassword(rdfStorePassword)
+        .setGraphCrudUseBasicAuth(graphCrudUseBasicAuth));
+  }
+
+  public VirtuosoApacheHttpClientRdfStoreService(Config config) {
+    this.rdfStoreUrl = config.getUrl();
+    this.rdfStoreUser = config.getUser();
+    this.rdfStorePassword = config.getPassword();
+    this.graphCrudUseBasicAuth = config.isGraphCrudUseBasicAuth();
+    this.config = config;
   }
 
+  /**
+   * Builds the pooled client shared by all requests of this service, see {@link #getHttpClient()}.
+   */
   protected CloseableHttpClient buildHttpClient() {
-    HttpClientBuilder httpClientBuilder = HttpClients.custom().useSystemProperties();
-    httpClientBuilder.setConnectionManager(
-        new PoolingHttpClientConnectionManager(60L, TimeUnit.SECONDS));
-    if (!StringUtils.isBlank(rdfStoreUser)) {
-      CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
-      credentialsProvider.setCredentials(AuthScope.ANY,
-          new UsernamePasswordCredentials(rdfStoreUser, rdfStorePassword));
-      httpClientBuilder.setDefaultCredentialsProvider(credentialsProvider);
-    } else {
-      log.warn("Virtuoso executor service {} is configured without credentials.", rdfStoreUrl);
+    return ApacheHttpClientUtils.buildHttpClient(config);
+  }
+
+  /**
+   * @return the long-lived client of this service, created on first use and closed by {@link #close()}
+   */
+  protected CloseableHttpClient getHttpClient() {
+    CloseableHttpClient result = httpClient;
+    if (result == null) {
+      synchronized (this) {
+        result = httpClient;
+        if (result == null) {
+          result = buildHttpClient();
+          httpClient = result;
+        }
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public void close() {
+    RdfStoreService.super.close();
+    synchronized (this) {
+      if (httpClient == null) {
+        return;
+      }
+      try {
+        httpClient.close();
+      } catch (IOException ex) {
+        log.warn("Closing http client of virtuoso service {} failed.", rdfStoreUrl, ex);
+      } finally {
+        httpClient = null;
+      }
     }
-    return httpClientBuilder.build();
   }
 
   @Override
@@ -113,91 +161,137 @@ public class VirtuosoApacheHttpClientRdfStoreService implements RdfStoreService
 
   private void addData(Model model, String graphUri, boolean replace) {
     //If this method fails, check what is done in treaties (upload in batches with insert queries)
-    StringWriter writer = new StringWriter();
-    VirtuosoHelper.patchModel(model).write(writer, "ttl");
-    byte[] data = writer.toString().getBytes(StandardCharsets.UTF_8);
+    Model patchedModel = VirtuosoHelper.patchModel(model);
 
     String url = StringUtils.substringBeforeLast(rdfStoreUrl, "/") + "/sparql-graph-crud-auth?" +
         // force Graph Update protocol
         (StringUtils.isBlank(graphUri) ? "default" : ("graph-uri=" + graphUri));
     log.info("Calling {} with basic auth: {}", url, graphCrudUseBasicAuth);
     HttpEntityEnclosingRequestBase request = replace ? new HttpPut(url) : new HttpPost(url);
-    request.setEntity(new ByteArrayEntity(data));
-    request.setHeader(CONTENT_TYPE, TEXT_TURTLE + ";charset=utf-8");
+    // serialized straight into the request body, no in-memory copy of the payload
+    TripleSerializationFormat format = config.getUploadFormat();
+    HttpEntity entity = new EntityTemplate(outputStream -> JenaUtils.write(patchedModel, outputStream, format));
+    // responses are decompressed by the client already, uploads only get compressed on request
+    request.setEntity(config.isCompression() ? new GzipCompressingEntity(entity) : entity);
+    request.setHeader(CONTENT_TYPE, format.isTurtle() ? TEXT_TURTLE + ";charset=utf-8" : format.getContentType());
     if (graphCrudUseBasicAuth) {
       request.setHeader("Authorization", "Basic " + Base64.encodeBase64String(
           (rdfStoreUser + ":" + rdfStorePassword).getBytes(StandardCharsets.UTF_8)));
     }
 
-    try (CloseableHttpClient client = buildHttpClient()) {
-      HttpResponse response = client.execute(request);
-      int responseCode = response.getStatusLine().getStatusCode();
-      String reason = response.getStatusLine().getReasonPhrase();
-      String responseBody = Try.of(
-              () -> IOUtils.toString(response.getEntity().getContent(), StandardCharsets.UTF_8))
-          .onFailure(ex -> log.error("Failed to read response body", ex))
-          .getOrElse(StringUtils.EMPTY);
-      EntityUtils.consume(response.getEntity());
-      if (!is2xxSuccessful(responseCode)) {
-        log.error("Virtuoso server sent response with status code {}, with message {} and body {}",
-            responseCode, reason, responseBody);
-        throw new VirtuosoOperationException(
-            "Virtuoso server sent response with status code " + responseCode + ", with message "
-                + reason, responseBody);
-      }
-    } catch (IOException ex) {
+    SparqlOperation operation = replace ? SparqlOperation.replaceGraph : SparqlOperation.updateGraph;
+    try {
+      withQueryTimeout(() -> execute(request, operation, null, graphUri, response -> {
+        int responseCode = response.getStatusLine().getStatusCode();
+        String reason = response.getStatusLine().getReasonPhrase();
+        if (!is2xxSuccessful(responseCode)) {
+          String responseBody = Try.of(
+                  () -> IOUtils.toString(response.getEntity().getContent(), StandardCharsets.UTF_8))
+              .onFailure(ex -> log.error("Failed to read response body", ex))
+              .getOrElse(StringUtils.EMPTY);
+          log.error("Virtuoso server sent response with status code {}, with message {} and body {}",
+              responseCode, reason, responseBody);
+          throw new VirtuosoOperationException(
+              "Virtuoso server sent response with status code " + responseCode + ", with message "
+                  + reason, responseBody);
+        }
+        return null;
+      }));
+    } catch (UncheckedIOException ex) {
       log.error("Exception during data exchange with virtuoso server {}", ex.getMessage());
-      throw new VirtuosoOperationException(ex);
+      throw new VirtuosoOperationException(ex.getCause());
     }
   }
 
+  /**
+   * Executes a request of this service through {@link ApacheHttpClientUtils#execute}, an {@link IOException} being
+   * rethrown unchecked.
+   */
+  private <R> R execute(HttpRequestBase request, SparqlOperation operation, String query, String graphUri,
+      ResponseHandler<R> handler) {
+    try {
+      return ApacheHttpClientUtils.execute(getHttpClient(), request, operation, query, graphUri,
+          config.getCallListener(), handler);
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  /**
+   * Runs an operation bounded by the query timeout of the configuration, if any.
+   */
+  private <R> R withQueryTimeout(Supplier<R> operation) {
+    long timeoutMillis = config.getQueryTimeoutMillis();
+    return timeoutMillis > 0 ? QueryOptions.timeout(Duration.ofMillis(timeoutMillis)).call(operation) : operation.get();
+  }
+
   @Override
   public <R> R executeSelectQuery(Query query, QuerySolutionMap bindings,
       JenaResultSetHandler<R> resultSetHandler, String context) {
     log.debug("Select [{}] - {} \n{}", context, bindings, query);
 
-    query = buildQuery(query, bindings);
+    Query boundQuery = buildQuery(query, bindings);
+    return withQueryTimeout(() -> ApacheHttpClientUtils.executeSelect(getHttpClient(), rdfStoreUrl, rdfStoreUser,
+        rdfStorePassword, boundQuery.toString(), graphCrudUseBasicAuth, resultSetHandler::handle,
+        config.getCallListener()));
+  }
 
-    return ApacheHttpClientUtils.executeSelect(rdfStoreUrl, rdfStoreUser, rdfStorePassword,
-        query.toString(), graphCrudUseBasicAuth, resultSetHandler::handle);
+  @Override
+  public Stream<QuerySolution> executeSelectStream(Query query, QuerySolutionMap bindings) {
+    Query boundQuery = buildQuery(query, bindings);
+    return withQueryTimeout(() -> ApacheHttpClientUtils.executeSelectStream(getHttpClient(), rdfStoreUrl,
+        rdfStoreUser, rdfStorePassword, boundQuery.toString(), graphCrudUseBasicAuth, config.getCallListener()));
   }
 
   @Override
   public boolean executeAskQuery(Query query, QuerySolutionMap bindings) {
-    query = buildQuery(query, bindings);
-    return ApacheHttpClientUtils.executeAsk(rdfStoreUrl, rdfStoreUser, rdfStorePassword,
-        query.toString(), graphCrudUseBasicAuth);
+    Query boundQuery = buildQuery(query, bindings);
+    return withQueryTimeout(() -> ApacheHttpClientUtils.executeAsk(getHttpClient(), rdfStoreUrl, rdfStoreUser,
+        rdfStorePassword, boundQuery.toString(), graphCrudUseBasicAuth, config.getCallListener()));
   }
 
   @Override
   public Model executeConstructQuery(Query query, QuerySolutionMap bindings) {
-    query = buildQuery(query, bindings);
+    Query boundQuery = buildQuery(query, bindings);
 
-    return ApacheHttpClientUtils.executeConstruct(rdfStoreUrl, rdfStoreUser, rdfStorePassword,
-        query.toString(), graphCrudUseBasicAuth);
+    final Model model = ModelFactory.createDefaultModel();
+    return withQueryTimeout(() -> {
+      ApacheHttpClientUtils.executeConstruct(getHttpClient(), rdfStoreUrl, rdfStoreUser, rdfStorePassword,
+          boundQuery.toString(), graphCrudUseBasicAuth, StreamRDFLib.graph(model.getGraph()),
+          config.getCallListener());
+      return model;
+    });
+  }
+
+  @Override
+  public Stream<Triple> executeConstructStream(Query query, QuerySolutionMap bindings) {
+    Query boundQuery = buildQuery(query, bindings);
+    return withQueryTimeout(() -> ApacheHttpClientUtils.executeConstructStream(getHttpClient(), rdfStoreUrl,
+        rdfStoreUser, rdfStorePassword, boundQuery.toString(), graphCrudUseBasicAuth, config.getCallListener()));
   }
 
   @Override
   public void executeUpdateQuery(String updateQuery) {
-    CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
-    credentialsProvider.setCredentials(AuthScope.ANY,
-        new UsernamePasswordCredentials(rdfStoreUser, rdfStorePassword));
-
-    try (CloseableHttpClient httpClient = buildHttpClient()) {
-      HttpPost httpPost = new HttpPost(rdfStoreUrl);
-      httpPost.setEntity(new UrlEncodedFormEntity(
-          Collections.singletonList(new BasicNameValuePair("query", updateQuery)),
-          StandardCharsets.UTF_8));
-      HttpResponse response = httpClient.execute(httpPost);
-      StatusLine statusLine = response.getStatusLine();
-
-      if (!is2xxSuccessful(statusLine.getStatusCode())) {
-        log.error("Virtuoso update failed with http status code {}", statusLine.getStatusCode());
-        String errorResponse = IOUtils.toString(response.getEntity().getContent(),
-            StandardCharsets.UTF_8);
-        log.error("Virtuoso update failed with result {}", errorResponse);
-      }
-    } catch (IOException ex) {
+    HttpPost httpPost = new HttpPost(rdfStoreUrl);
+    httpPost.setEntity(new UrlEncodedFormEntity(
+        Collections.singletonList(new BasicNameValuePair("query", updateQuery)),
+        StandardCharsets.UTF_8));
+
+    try {
+      withQueryTimeout(() -> execute(httpPost, SparqlOperation.update, updateQuery, null, response -> {
+        StatusLine statusLine = response.getStatusLine();
+
+        if (!is2xxSuccessful(statusLine.getStatusCode())) {
+          log.error("Virtuoso update failed with http status code {}", statusLine.getStatusCode());
+          String errorResponse = IOUtils.toString(response.getEntity().getContent(),
+              StandardCharsets.UTF_8);
+          log.error("Virtuoso update failed with result {}", errorResponse);
+          throw new VirtuosoOperationException(
+              "Virtuoso update failed with http status code " + statusLine.getStatusCode(), errorResponse);
+        }
+        return null;
+      }));
+    } catch (UncheckedIOException ex) {
       log.error("Virtuoso update failed: {}", ex.getMessage());
       throw new VirtuosoOperationException();
     }
@@ -209,8 +303,7 @@ public class VirtuosoApacheHttpClientRdfStoreService implements RdfStoreService
   }
 
   protected Query buildQuery(Query query, QuerySolutionMap bindings) {
-    ParameterizedSparqlString string = new ParameterizedSparqlString(query.toString(), bindings);
-    return string.asQuery();
+    return PreparedSparqlQuery.of(query).bind(bindings);
   }
 
   @Override
@@ -25,7 +25,10 @@ import org.apache.jena.rdf.model.Literal;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.RDFNode;
 import org.apache.jena.rdf.model.Statement;
+import zone.cogni.semanticz.connectors.general.Config;
 
+import java.net.http.HttpClient;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -58,4 +61,28 @@ public class VirtuosoHelper {
   public static String getVirtuosoGspFromSparql(final String sparqlEndpointUrl) {
     return StringUtils.substringBeforeLast(sparqlEndpointUrl, "/") + "/sparql-graph-crud-auth";
   }
+
+  /**
+   * Creates the HTTP client to be shared by all RDFConnections of one service instance. Authentication is left to
+   * Jena's {@code AuthEnv}, which handles the digest challenge Virtuoso answers with.
+   */
+  public static HttpClient createHttpClient() {
+    return createHttpClient(new Config());
+  }
+
+  /**
+   * @param config configuration of the service, for the connect timeout (10 seconds by default) and executor of the
+   *               client
+   * @see #createHttpClient()
+   */
+  public static HttpClient createHttpClient(Config config) {
+    final long connectTimeoutMillis = config.getConnectTimeoutMillis() > 0 ? config.getConnectTimeoutMillis() : 10_000;
+    final HttpClient.Builder builder = HttpClient.newBuilder()
+        .connectTimeout(Duration.ofMillis(connectTimeoutMillis))
+        .followRedirects(HttpClient.Redirect.NORMAL);
+    if (config.getExecutor() != null) {
+      builder.executor(config.getExecutor());
+    }
+    return builder.build();
+  }
 }
@@ -21,7 +21,6 @@ package zone.cogni.semanticz.connectors.virtuoso;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.jena.http.auth.AuthEnv;
-import org.apache.jena.query.ParameterizedSparqlString;
 import org.apache.jena.query.Query;
 import org.apache.jena.query.QueryExecution;
 import org.apache.jena.query.QuerySolutionMap;
@@ -29,11 +28,13 @@ import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdfconnection.RDFConnection;
 import org.apache.jena.rdfconnection.RDFConnectionRemote;
 import zone.cogni.semanticz.connectors.general.Config;
+import zone.cogni.semanticz.connectors.general.PreparedSparqlQuery;
 import zone.cogni.sem.jena.template.JenaResultSetHandler;
 import zone.cogni.semanticz.connectors.general.RdfStoreService;
 import zone.cogni.semanticz.connectors.utils.Constants;
 
 import java.net.URI;
+import java.net.http.HttpClient;
 
 /**
  * Implementation of VirtuosoRdfStoreService backed by Jena RDFConnection.
@@ -45,6 +46,8 @@ import java.net.URI;
 public class VirtuosoRdfConnectionRdfStoreService implements RdfStoreService {
 
   private final Config config;
+  private final RDFConnection connection;
+  private final RDFConnection constructConnection;
 
   public VirtuosoRdfConnectionRdfStoreService(String rdfStoreUrl, String rdfStoreUser,
       String rdfStorePassword, boolean graphCrudUseBasicAuth) {
@@ -56,21 +59,46 @@ public class VirtuosoRdfConnectionRdfStoreService implements RdfStoreService {
     AuthEnv.get()
         .registerUsernamePassword(URI.create(StringUtils.substringBeforeLast(config.getUrl(), "/")),
             config.getUser(), config.getPassword());
+    final HttpClient httpClient = VirtuosoHelper.createHttpClient(config);
+    connection = createConnection(httpClient);
+    constructConnection = createConstructConnection(httpClient);
   }
 
-  protected RDFConnection getConnection() {
-    return RDFConnectionRemote.newBuilder().queryEndpoint(config.getUrl())
+  private RDFConnection createConnection(HttpClient httpClient) {
+    return RDFConnectionRemote.newBuilder().httpClient(httpClient).queryEndpoint(config.getUrl())
         .updateEndpoint(config.getUrl()).destination(config.getUrl())
-        .gspEndpoint(VirtuosoHelper.getVirtuosoGspFromSparql(config.getUrl())).build();
+        .gspEndpoint(VirtuosoHelper.getVirtuosoGspFromSparql(config.getUrl()))
+        .triplesFormat(config.getUploadFormat().getRdfFormat()).build();
   }
 
-  protected RDFConnection getConstructConnection() {
-    return RDFConnectionRemote.newBuilder().queryEndpoint(config.getUrl())
+  private RDFConnection createConstructConnection(HttpClient httpClient) {
+    return RDFConnectionRemote.newBuilder().httpClient(httpClient).queryEndpoint(config.getUrl())
         .updateEndpoint(config.getUrl()).destination(config.getUrl())
         .acceptHeaderQuery(Constants.TEXT_TURTLE)
-        .gspEndpoint(VirtuosoHelper.getVirtuosoGspFromSparql(config.getUrl())).build();
+        .gspEndpoint(VirtuosoHelper.getVirtuosoGspFromSparql(config.getUrl()))
+        .triplesFormat(config.getUploadFormat().getRdfFormat()).build();
   }
 
+  /**
+   * @return the connection shared by all operations of this service; thread-safe, closed by {@link #close()}
+   */
+  protected RDFConnection getConnection() {
+    return connection;
+  }
+
+  /**
+   * @return the CONSTRUCT connection shared by all operations of this service; closed by {@link #close()}
+   */
+  protected RDFConnection getConstructConnection() {
+    return constructConnection;
+  }
+
+  @Override
+  public void close() {
+    RdfStoreService.super.close();
+    connection.close();
+    constructConnection.close();
+  }
 
   @Override
   public void addData(Model model) {
@@ -79,19 +107,17 @@ public class VirtuosoRdfConnectionRdfStoreService implements RdfStoreService {
 
   @Override
   public void addData(Model model, String graphUri) {
-    try (RDFConnection connection = getConnection()) {
-      connection.load(graphUri, VirtuosoHelper.patchModel(model));
-    }
+    getConnection().load(graphUri, VirtuosoHelper.patchModel(model));
   }
 
   protected Query buildQuery(Query query, QuerySolutionMap bindings) {
-    return new ParameterizedSparqlString(query.toString(), bindings).asQuery();
+    return PreparedSparqlQuery.of(query).bind(bindings);
   }
 
   @Override
   public <R> R executeSelectQuery(Query query, QuerySolutionMap bindings,
       JenaResultSetHandler<R> resultSetHandler, String context) {
-    try (RDFConnection connection = getConnection(); QueryExecution queryExecution = connection.query(
+    try (QueryExecution queryExecution = getConnection().query(
         buildQuery(query, bindings))) {
       return resultSetHandler.handle(queryExecution.execSelect());
     }
@@ -99,7 +125,7 @@ public class VirtuosoRdfConnectionRdfStoreService implements RdfStoreService {
 
   @Override
   public boolean executeAskQuery(Query query, QuerySolutionMap bindings) {
-    try (RDFConnection connection = getConnection(); QueryExecution queryExecution = connection.query(
+    try (QueryExecution queryExecution = getConnection().query(
         buildQuery(query, bindings))) {
       return queryExecution.execAsk();
     }
@@ -107,7 +133,7 @@ public class VirtuosoRdfConnectionRdfStoreService implements RdfStoreService {
 
   @Override
   public Model executeConstructQuery(Query query, QuerySolutionMap bindings) {
-    try (RDFConnection connection = getConstructConnection(); QueryExecution queryExecution = connection.query(
+    try (QueryExecution queryExecution = getConstructConnection().query(
         buildQuery(query, bindings))) {
       return queryExecution.execConstruct();
     }
@@ -115,15 +141,11 @@ public class VirtuosoRdfConnectionRdfStoreService implements RdfStoreService {
 
   @Override
   public void executeUpdateQuery(String updateQuery) {
-    try (RDFConnection connection = getConnection()) {
-      connection.update(updateQuery);
-    }
+    getConnection().update(updateQuery);
   }
 
   @Override
   public void delete() {
-    try (RDFConnection connection = getConnection()) {
-      connection.delete();
-    }
+    getConnection().delete();
   }
 }
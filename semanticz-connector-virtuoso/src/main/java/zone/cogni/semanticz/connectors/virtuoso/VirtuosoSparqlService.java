@@ -20,46 +20,90 @@
 package zone.cogni.semanticz.connectors.virtuoso;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.jena.http.HttpOp;
 import org.apache.jena.http.auth.AuthEnv;
 import org.apache.jena.rdfconnection.RDFConnection;
 import org.apache.jena.rdfconnection.RDFConnectionRemote;
+import zone.cogni.semanticz.connectors.general.SlowQueryLog;
+import zone.cogni.semanticz.connectors.general.SparqlCallListener;
 import zone.cogni.semanticz.connectors.general.SparqlService;
 import zone.cogni.semanticz.connectors.general.Config;
 import zone.cogni.semanticz.connectors.general.RDFConnectionSparqlService;
 import zone.cogni.semanticz.connectors.utils.Constants;
 
 import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executor;
 
 public class VirtuosoSparqlService extends RDFConnectionSparqlService implements
     SparqlService {
 
   private final Config config;
+  private final HttpClient httpClient;
+  private final SparqlCallListener callListener;
 
   public VirtuosoSparqlService(Config config) {
+    super(true);
     this.config = config;
+    this.httpClient = VirtuosoHelper.createHttpClient(config);
     AuthEnv.get()
         .registerUsernamePassword(URI.create(StringUtils.substringBeforeLast(config.getUrl(), "/")),
             this.config.getUser(), this.config.getPassword());
+    this.callListener = SlowQueryLog.withSlowQueryLog(config, this::explain);
+  }
+
+  @Override
+  protected SparqlCallListener getCallListener() {
+    return callListener;
+  }
+
+  @Override
+  protected long getQueryTimeoutMillis() {
+    return config.getQueryTimeoutMillis();
+  }
+
+  @Override
+  protected String getEndpoint() {
+    return config.getUrl();
+  }
+
+  @Override
+  protected Executor getExecutor() {
+    return config.getExecutor();
+  }
+
+  /**
+   * Asks the SPARQL endpoint for the compilation report of a query instead of executing it, when the endpoint allows.
+   */
+  private String explain(String query) {
+    return HttpOp.httpGetString(httpClient, config.getUrl() + "?explain=on&query="
+        + URLEncoder.encode(query, StandardCharsets.UTF_8), "text/plain,text/html;q=0.9");
   }
 
   protected RDFConnection getConnection() {
     return RDFConnectionRemote
         .newBuilder()
+        .httpClient(httpClient)
         .queryEndpoint(config.getUrl())
         .updateEndpoint(config.getUrl())
         .destination(config.getUrl())
         .gspEndpoint(VirtuosoHelper.getVirtuosoGspFromSparql(config.getUrl()))
+        .triplesFormat(config.getUploadFormat().getRdfFormat())
         .build();
   }
 
   protected RDFConnection getConstructConnection() {
     return RDFConnectionRemote
         .newBuilder()
+        .httpClient(httpClient)
         .queryEndpoint(config.getUrl())
         .updateEndpoint(config.getUrl())
         .destination(config.getUrl())
         .acceptHeaderQuery(Constants.TEXT_TURTLE)
         .gspEndpoint(VirtuosoHelper.getVirtuosoGspFromSparql(config.getUrl()))
+        .triplesFormat(config.getUploadFormat().getRdfFormat())
         .build();
   }
 }
@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package zone.cogni.semanticz.connectors.virtuoso;
+
+import com.sun.net.httpserver.HttpServer;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.query.QuerySolutionMap;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import zone.cogni.semanticz.connectors.general.Config;
+import zone.cogni.semanticz.connectors.general.QueryOptions;
+import zone.cogni.semanticz.connectors.general.SparqlTimeoutException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+/**
+ * Checks against a local endpoint trickling its responses, which no socket timeout catches, that the deadline of a
+ * call aborts its request.
+ */
+public class VirtuosoApacheHttpClientDeadlineTest {
+
+  private final ExecutorService handlers = Executors.newCachedThreadPool();
+  private HttpServer server;
+
+  @BeforeEach
+  public void startServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext("/", exchange -> {
+      try (InputStream body = exchange.getRequestBody()) {
+        body.readAllBytes();
+      }
+      exchange.getResponseHeaders().set("Content-Type", "application/sparql-results+json");
+      exchange.sendResponseHeaders(200, 0);
+      try (OutputStream body = exchange.getResponseBody()) {
+        for (int i = 0; i < 200; i++) {
+          body.write(' ');
+          body.flush();
+          Thread.sleep(50);
+        }
+      } catch (IOException e) {
+        // aborted by the client
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    server.setExecutor(handlers);
+    server.start();
+  }
+
+  @AfterEach
+  public void stopServer() {
+    server.stop(0);
+    handlers.shutdownNow();
+  }
+
+  @Test
+  public void testQueryTimeoutAbortsUpdates() {
+    final VirtuosoApacheHttpClientRdfStoreService service = createService(500);
+    try {
+      assertAbortedInTime(() -> service.executeUpdateQuery("INSERT DATA { <http://s> <http://p> 1 }"));
+    } finally {
+      service.close();
+    }
+  }
+
+  @Test
+  public void testQueryTimeoutAbortsUploads() {
+    final VirtuosoApacheHttpClientRdfStoreService service = createService(500);
+    final Model model = ModelFactory.createDefaultModel();
+    model.createResource("http://example.org/s").addProperty(RDFS.label, "label");
+    try {
+      assertAbortedInTime(() -> service.addData(model, "http://example.org/graph"));
+    } finally {
+      service.close();
+    }
+  }
+
+  @Test
+  public void testDeadlineAbortsStreamedSelects() {
+    final VirtuosoApacheHttpClientRdfStoreService service = createService(0);
+    try {
+      assertAbortedInTime(() -> QueryOptions.timeout(Duration.ofMillis(500)).run(() -> {
+        try (Stream<?> solutions = service.executeSelectStream(QueryFactory.create("SELECT * WHERE { ?s ?p ?o }"),
+            new QuerySolutionMap())) {
+          solutions.count();
+        }
+      }));
+    } finally {
+      service.close();
+    }
+  }
+
+  private VirtuosoApacheHttpClientRdfStoreService createService(long queryTimeoutMillis) {
+    return new VirtuosoApacheHttpClientRdfStoreService(new Config()
+        .setUrl("http://localhost:" + server.getAddress().getPort() + "/sparql")
+        .setUser("dba")
+        .setPassword("dba")
+        .setQueryTimeoutMillis(queryTimeoutMillis));
+  }
+
+  /**
+   * The endpoint trickles its response for 10 seconds.
+   */
+  private static void assertAbortedInTime(Runnable call) {
+    final long start = System.nanoTime();
+    Assertions.assertThrows(SparqlTimeoutException.class, call::run);
+    Assertions.assertTrue(System.nanoTime() - start < Duration.ofSeconds(5).toNanos(), "Call was not aborted");
+  }
+}
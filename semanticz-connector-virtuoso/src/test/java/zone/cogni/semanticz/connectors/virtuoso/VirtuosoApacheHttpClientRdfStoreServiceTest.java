@@ -30,11 +30,6 @@ public class VirtuosoApacheHttpClientRdfStoreServiceTest extends AbstractRdfStor
 
   public VirtuosoApacheHttpClientRdfStoreService createSUT() {
     final Config config = Utils.createTestConfig();
-    return new VirtuosoApacheHttpClientRdfStoreService(
-            config.getUrl(),
-            config.getUser(),
-            config.getPassword(),
-            config.isGraphCrudUseBasicAuth()
-    );
+    return new VirtuosoApacheHttpClientRdfStoreService(config);
   }
 }
\ No newline at end of file
@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package zone.cogni.semanticz.connectors.virtuoso;
+
+import com.sun.net.httpserver.HttpServer;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.query.QuerySolutionMap;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import zone.cogni.semanticz.connectors.general.Config;
+import zone.cogni.semanticz.connectors.general.SparqlCall;
+import zone.cogni.semanticz.connectors.general.SparqlCallListener;
+import zone.cogni.semanticz.connectors.general.SparqlOperation;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+/**
+ * Checks against a local endpoint that every request of the Apache HttpClient based service is reported as a call and
+ * carries the headers its listener asked for, e.g. a trace context.
+ */
+public class VirtuosoApacheHttpClientTraceContextTest {
+
+  private static final String TRACEPARENT = "00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01";
+  private static final byte[] SELECT_RESULT = "{ \"head\" : { \"vars\" : [ ] }, \"results\" : { \"bindings\" : [ ] } }"
+      .getBytes(StandardCharsets.UTF_8);
+
+  private final List<String> traceparents = new CopyOnWriteArrayList<>();
+  private final List<SparqlOperation> operations = new CopyOnWriteArrayList<>();
+  private final List<Throwable> errors = new CopyOnWriteArrayList<>();
+  private volatile int status = 200;
+  private HttpServer server;
+
+  @BeforeEach
+  public void startServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext("/", exchange -> {
+      traceparents.add(String.valueOf(exchange.getRequestHeaders().getFirst("traceparent")));
+      try (InputStream body = exchange.getRequestBody()) {
+        body.readAllBytes();
+      }
+      final String accept = String.valueOf(exchange.getRequestHeaders().getFirst("Accept"));
+      final byte[] result = accept.contains("sparql-results") ? SELECT_RESULT : new byte[0];
+      exchange.getResponseHeaders().set("Content-Type",
+          accept.contains("sparql-results") ? "application/sparql-results+json" : "text/turtle");
+      exchange.sendResponseHeaders(status, result.length == 0 ? -1 : result.length);
+      try (OutputStream body = exchange.getResponseBody()) {
+        body.write(result);
+      }
+    });
+    server.start();
+  }
+
+  @AfterEach
+  public void stopServer() {
+    server.stop(0);
+  }
+
+  @Test
+  public void testEveryRequestCarriesTheHeadersOfItsCall() {
+    final VirtuosoApacheHttpClientRdfStoreService service = createService();
+    final Model model = ModelFactory.createDefaultModel();
+    model.createResource("http://example.org/s").addProperty(RDFS.label, "label");
+    try {
+      service.executeUpdateQuery("INSERT DATA { <http://s> <http://p> 1 }");
+      service.addData(model, "http://example.org/graph");
+      service.replaceGraph("http://example.org/graph", model);
+      try (Stream<?> solutions = service.executeSelectStream(QueryFactory.create("SELECT * WHERE { ?s ?p ?o }"),
+          new QuerySolutionMap())) {
+        Assertions.assertEquals(0, solutions.count());
+      }
+      try (Stream<?> triples = service.executeConstructStream(
+          QueryFactory.create("CONSTRUCT WHERE { ?s ?p ?o }"), new QuerySolutionMap())) {
+        Assertions.assertEquals(0, triples.count());
+      }
+    } finally {
+      service.close();
+    }
+
+    Assertions.assertEquals(List.of(SparqlOperation.update, SparqlOperation.updateGraph, SparqlOperation.replaceGraph,
+        SparqlOperation.select, SparqlOperation.construct), operations);
+    Assertions.assertEquals(List.of(TRACEPARENT, TRACEPARENT, TRACEPARENT, TRACEPARENT, TRACEPARENT), traceparents);
+  }
+
+  @Test
+  public void testRejectedUpdatesFailTheirCall() {
+    status = 500;
+    final VirtuosoApacheHttpClientRdfStoreService service = createService();
+    try {
+      Assertions.assertThrows(VirtuosoOperationException.class,
+          () -> service.executeUpdateQuery("INSERT DATA { <http://s> <http://p> 1 }"));
+    } finally {
+      service.close();
+    }
+
+    Assertions.assertEquals(List.of(SparqlOperation.update), operations);
+    Assertions.assertEquals(1, errors.size());
+  }
+
+  private VirtuosoApacheHttpClientRdfStoreService createService() {
+    return new VirtuosoApacheHttpClientRdfStoreService(new Config()
+        .setUrl("http://localhost:" + server.getAddress().getPort() + "/sparql")
+        .setUser("dba")
+        .setPassword("dba")
+        .setCallListener(new SparqlCallListener() {
+          @Override
+          public void onStart(SparqlCall call) {
+            call.setHeader("traceparent", TRACEPARENT);
+          }
+
+          @Override
+          public void onEnd(SparqlCall call) {
+            operations.add(call.getOperation());
+            if (call.getError() != null) errors.add(call.getError());
+          }
+        }));
+  }
+}
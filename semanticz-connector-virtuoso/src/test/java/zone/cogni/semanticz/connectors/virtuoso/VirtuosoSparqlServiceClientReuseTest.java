@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package zone.cogni.semanticz.connectors.virtuoso;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import zone.cogni.semanticz.connectors.general.Config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks against a local endpoint that all calls of a service go through a single, long-lived HTTP client: the
+ * connection of the first call is reused by the next ones.
+ */
+public class VirtuosoSparqlServiceClientReuseTest {
+
+  private static final byte[] ASK_RESULT = "{ \"head\" : { }, \"boolean\" : true }".getBytes(StandardCharsets.UTF_8);
+
+  private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+  private final AtomicInteger requests = new AtomicInteger();
+  private HttpServer server;
+
+  @BeforeEach
+  public void startServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext("/sparql", exchange -> {
+      requests.incrementAndGet();
+      clientPorts.add(exchange.getRemoteAddress().getPort());
+      try (InputStream body = exchange.getRequestBody()) {
+        body.readAllBytes();
+      }
+      exchange.getResponseHeaders().set("Content-Type", "application/sparql-results+json");
+      exchange.sendResponseHeaders(200, ASK_RESULT.length);
+      try (OutputStream body = exchange.getResponseBody()) {
+        body.write(ASK_RESULT);
+      }
+    });
+    server.start();
+  }
+
+  @AfterEach
+  public void stopServer() {
+    server.stop(0);
+  }
+
+  @Test
+  public void testCallsReuseTheConnectionOfOneClient() {
+    final VirtuosoSparqlService service = new VirtuosoSparqlService(new Config()
+        .setUrl("http://localhost:" + server.getAddress().getPort() + "/sparql")
+        .setUser("dba")
+        .setPassword("dba"));
+    try {
+      for (int i = 0; i < 5; i++) {
+        Assertions.assertTrue(service.executeAskQuery("ASK { ?s ?p ?o }"));
+      }
+    } finally {
+      service.close();
+    }
+
+    Assertions.assertEquals(5, requests.get());
+    Assertions.assertEquals(1, clientPorts.size(), "Calls were made on several connections: " + clientPorts);
+  }
+}
@@ -8,5 +8,8 @@ project.description = "Connector utilities"
 dependencies {
     implementation(libs.jena.arq)
     implementation(libs.jena.rdfconnection)
+    compileOnly(libs.opentelemetry.api)
     implementation(libs.junit.jupiter)
+    testImplementation(libs.opentelemetry.api)
+    testImplementation(libs.opentelemetry.sdk.testing)
 }
\ No newline at end of file
@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package zone.cogni.semanticz.connectors.general;
+
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.rdf.model.Model;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Non-blocking counterpart of {@link SparqlService}. Each operation returns immediately with a future completed once
+ * the store has answered, so that independent queries can be issued concurrently without holding a thread each.
+ */
+public interface AsyncSparqlService {
+
+  /**
+   * Executes SPARQL SELECT query asynchronously.
+   * <p>
+   * The result handler is invoked once the response has been received and must consume the result set before
+   * returning, since the result set is not guaranteed to be usable afterwards.
+   * </p>
+   *
+   * @param query         SPARQL SELECT query to execute
+   * @param resultHandler function processing the result set
+   * @return future with the output of the result handler
+   */
+  <R> CompletableFuture<R> executeSelectQueryAsync(String query, Function<ResultSet, R> resultHandler);
+
+  /**
+   * Executes SPARQL ASK query asynchronously.
+   *
+   * @param askQuery SPARQL ASK query to execute
+   * @return future with the boolean answer
+   */
+  CompletableFuture<Boolean> executeAskQueryAsync(String askQuery);
+
+  /**
+   * Executes SPARQL CONSTRUCT query asynchronously.
+   *
+   * @param constructQuery SPARQL CONSTRUCT query to execute
+   * @return future with the Model containing the output of the query
+   */
+  CompletableFuture<Model> executeConstructQueryAsync(String constructQuery);
+
+  /**
+   * Executes SPARQL UPDATE asynchronously.
+   *
+   * @param updateQuery SPARQL UPDATE to execute
+   * @return future completed once the update was accepted by the store
+   */
+  CompletableFuture<Void> executeUpdateQueryAsync(String updateQuery);
+
+  /**
+   * Asynchronous variant of {@link SparqlService#updateGraph(String, Model)}.
+   *
+   * @param graphUri uri of graph being updated
+   * @param model    model which is being added to the current graph
+   * @return future completed once the data was accepted by the store
+   */
+  CompletableFuture<Void> updateGraphAsync(String graphUri, Model model);
+
+  /**
+   * Asynchronous variant of {@link SparqlService#replaceGraph(String, Model)}.
+   *
+   * @param graphUri uri of graph being updated
+   * @param model    new model which will be in the designated graph
+   * @return future completed once the data was accepted by the store
+   */
+  CompletableFuture<Void> replaceGraphAsync(String graphUri, Model model);
+
+  /**
+   * Asynchronous variant of {@link SparqlService#dropGraph(String)}.
+   *
+   * @param graphUri named graph URI
+   * @return future completed once the graph was dropped
+   */
+  CompletableFuture<Void> dropGraphAsync(String graphUri);
+}
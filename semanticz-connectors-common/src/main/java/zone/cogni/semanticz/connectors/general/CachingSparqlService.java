@@ -0,0 +1,284 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package zone.cogni.semanticz.connectors.general;
+
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.query.QueryParseException;
+import org.apache.jena.query.QuerySolution;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.query.ResultSetFormatter;
+import org.apache.jena.query.Syntax;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.update.UpdateFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import zone.cogni.semanticz.connectors.utils.QueryGraphs;
+import zone.cogni.semanticz.connectors.utils.ResultSetSnapshot;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+
+/**
+ * Decorator caching the results of SELECT, ASK and CONSTRUCT queries of the wrapped service.
+ * <p>
+ * Entries are keyed by the normalized (parsed and re-serialized) query text and evicted least recently used once the
+ * total weight (rows of a SELECT result, triples of a CONSTRUCT result, at least 1) exceeds the maximum, or when
+ * they are older than the time to live.
+ * </p>
+ * <p>
+ * Writes through this decorator only invalidate the entries whose queries read one of the graphs written, as
+ * determined by {@link QueryGraphs}. Queries on the default graph or on graph variables are invalidated by any write.
+ * {@link #uploadTtlFile(File)}, whose target graph depends on the store, invalidates everything. Writes bypassing this
+ * decorator are only seen once the entries expire.
+ * </p>
+ */
+public class CachingSparqlService extends DelegatingSparqlService {
+
+  private static final Logger log = LoggerFactory.getLogger(CachingSparqlService.class);
+
+  private final long maxWeight;
+  private final long ttlNanos;
+
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long totalWeight;
+  /**
+   * Incremented on every invalidation, so results of queries running concurrently with a write are not cached.
+   */
+  private long invalidationCount;
+
+  /**
+   * @param delegate  service to cache the results of
+   * @param maxWeight maximum total weight of the cached results, see class documentation
+   * @param ttl       time after which a cached result is not used anymore
+   */
+  public CachingSparqlService(SparqlService delegate, long maxWeight, Duration ttl) {
+    super(delegate);
+    this.maxWeight = maxWeight;
+    this.ttlNanos = ttl.toNanos();
+  }
+
+  @Override
+  public <R> R executeSelectQuery(String query, Function<ResultSet, R> resultHandler) {
+    final ResultSetSnapshot snapshot = cached("select", query,
+        () -> getDelegate().executeSelectQuery(query, ResultSetSnapshot::of), ResultSetSnapshot::size);
+    return resultHandler.apply(snapshot.toResultSet());
+  }
+
+  @Override
+  public Stream<QuerySolution> selectStream(String query) {
+    return executeSelectQuery(query, ResultSetFormatter::toList).stream();
+  }
+
+  @Override
+  public boolean executeAskQuery(String askQuery) {
+    return cached("ask", askQuery, () -> getDelegate().executeAskQuery(askQuery), result -> 1L);
+  }
+
+  @Override
+  public Model executeConstructQuery(String constructQuery) {
+    final Model model = cached("construct", constructQuery,
+        () -> getDelegate().executeConstructQuery(constructQuery), Model::size);
+    // callers are free to modify the returned model
+    return ModelFactory.createDefaultModel().add(model);
+  }
+
+  @Override
+  public Stream<Triple> constructStream(String constructQuery) {
+    return executeConstructQuery(constructQuery).getGraph().stream();
+  }
+
+  @Override
+  public void executeUpdateQuery(String updateQuery) {
+    try {
+      getDelegate().executeUpdateQuery(updateQuery);
+    } finally {
+      invalidate(writtenGraphs(updateQuery));
+    }
+  }
+
+  @Override
+  public void uploadTtlFile(File file) {
+    try {
+      getDelegate().uploadTtlFile(file);
+    } finally {
+      invalidateAll();
+    }
+  }
+
+  @Override
+  public void dropGraph(String graphUri) {
+    try {
+      getDelegate().dropGraph(graphUri);
+    } finally {
+      invalidate(Optional.of(Set.of(graphUri)));
+    }
+  }
+
+  @Override
+  public void updateGraph(String graphUri, Model model) {
+    try {
+      getDelegate().updateGraph(graphUri, model);
+    } finally {
+      invalidate(Optional.of(Set.of(graphUri)));
+    }
+  }
+
+  @Override
+  public void replaceGraph(String graphUri, Model model) {
+    try {
+      getDelegate().replaceGraph(graphUri, model);
+    } finally {
+      invalidate(Optional.of(Set.of(graphUri)));
+    }
+  }
+
+  /**
+   * Removes all cached results.
+   */
+  public synchronized void invalidateAll() {
+    invalidationCount++;
+    entries.clear();
+    totalWeight = 0;
+  }
+
+  /**
+   * @return number of cached results
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> T cached(String kind, String query, Supplier<T> loader, ToLongFunction<T> weigher) {
+    final Query parsed = parse(query);
+    if (parsed == null) return loader.get();
+
+    final String key = kind + "\n" + parsed.serialize();
+    final long generation;
+    synchronized (this) {
+      final Entry entry = entries.get(key);
+      if (entry != null && !entry.isExpired()) return (T) entry.value;
+      if (entry != null) remove(key);
+      generation = invalidationCount;
+    }
+
+    final T value = loader.get();
+    // empty results count as well, so the number of entries is bounded
+    final long weight = Math.max(1, weigher.applyAsLong(value));
+    if (weight > maxWeight) return value;
+
+    final Optional<Set<String>> graphs = QueryGraphs.readGraphs(parsed);
+    synchronized (this) {
+      if (generation != invalidationCount) return value;
+
+      final Entry previous = entries.put(key,
+          new Entry(value, weight, graphs.orElse(null), System.nanoTime() + ttlNanos));
+      if (previous != null) totalWeight -= previous.weight;
+      totalWeight += weight;
+      evict();
+    }
+    return value;
+  }
+
+  private static Query parse(String query) {
+    try {
+      return QueryFactory.create(query, Syntax.syntaxARQ);
+    } catch (QueryParseException e) {
+      // leave syntax the parser does not know (e.g. store specific extensions) to the store, uncached
+      log.debug("Not caching unparseable query: {}", e.getMessage());
+      return null;
+    }
+  }
+
+  private static Optional<Set<String>> writtenGraphs(String updateQuery) {
+    try {
+      return QueryGraphs.writtenGraphs(UpdateFactory.create(updateQuery));
+    } catch (QueryParseException e) {
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * @param graphs graphs written, or empty if any graph may have been written
+   */
+  private synchronized void invalidate(Optional<Set<String>> graphs) {
+    if (graphs.isEmpty()) {
+      invalidateAll();
+      return;
+    }
+
+    invalidationCount++;
+    final Set<String> written = graphs.get();
+    for (Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator(); it.hasNext(); ) {
+      final Entry entry = it.next().getValue();
+      if (entry.graphs == null || entry.graphs.stream().anyMatch(written::contains)) {
+        totalWeight -= entry.weight;
+        it.remove();
+      }
+    }
+  }
+
+  private void evict() {
+    final Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+    while (totalWeight > maxWeight && it.hasNext()) {
+      totalWeight -= it.next().getValue().weight;
+      it.remove();
+    }
+  }
+
+  private void remove(String key) {
+    final Entry entry = entries.remove(key);
+    if (entry != null) totalWeight -= entry.weight;
+  }
+
+  private static class Entry {
+
+    private final Object value;
+    private final long weight;
+    /**
+     * Graphs read by the query, null if it may read any graph.
+     */
+    private final Set<String> graphs;
+    private final long expiresAt;
+
+    private Entry(Object value, long weight, Set<String> graphs, long expiresAt) {
+      this.value = value;
+      this.weight = weight;
+      this.graphs = graphs;
+      this.expiresAt = expiresAt;
+    }
+
+    private boolean isExpired() {
+      return System.nanoTime() - expiresAt > 0;
+    }
+  }
+}
@@ -22,6 +22,11 @@ package zone.cogni.semanticz.connectors.general;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.experimental.Accessors;
+import zone.cogni.semanticz.connectors.utils.Constants;
+import zone.cogni.semanticz.connectors.utils.TripleSerializationFormat;
+import zone.cogni.semanticz.connectors.utils.VirtualThreads;
+
+import java.util.concurrent.Executor;
 
 @Getter
 @Setter
@@ -46,4 +51,96 @@ public class Config {
    * TODO ???
    */
   private boolean graphCrudUseBasicAuth;
+
+  /**
+   * Maximum number of pooled HTTP connections to the store, for connectors managing their own connection pool.
+   */
+  private int maxConnections = 20;
+
+  /**
+   * Maximum number of pooled HTTP connections per route (host), for connectors managing their own connection pool.
+   */
+  private int maxConnectionsPerRoute = 20;
+
+  /**
+   * How long an idle HTTP connection is kept alive for reuse, unless the server asks for less.
+   */
+  private long keepAliveMillis = 60_000L;
+
+  /**
+   * Pooled HTTP connections idle for longer than this are evicted by a background thread.
+   */
+  private long idleConnectionEvictionMillis = 30_000L;
+
+  /**
+   * Format graph uploads are sent in. Streaming formats such as {@link TripleSerializationFormat#ntriples} or
+   * {@link TripleSerializationFormat#turtleBlocks} are much cheaper to produce than the default pretty Turtle. Binary
+   * formats only work with stores accepting them (e.g. Fuseki).
+   */
+  private TripleSerializationFormat uploadFormat = TripleSerializationFormat.turtle;
+
+  /**
+   * Whether to ask the store for binary RDF Thrift/Protobuf SELECT and CONSTRUCT results, which are much cheaper to
+   * parse. Stores not supporting them fall back to JSON results and Turtle graphs through content negotiation.
+   */
+  private boolean binaryResultFormats;
+
+  /**
+   * Whether to ask for gzip/deflate compressed responses and to gzip graph upload bodies. Worth it when network
+   * transfer dominates, e.g. with the store in another availability zone; the store must accept gzip encoded uploads.
+   */
+  private boolean compression;
+
+  /**
+   * Executor running the blocking work of the connectors, e.g. the internals of their JDK HTTP client, their
+   * asynchronous calls and the parallel queries of {@link SparqlService#checkExisting(java.util.Set, int, int)}. null
+   * keeps the default of each connector. Also to be given to {@link ExecutorAsyncSparqlService} and
+   * {@link PartitionedQuery}. See {@link VirtualThreads#executor()} to run them on virtual threads.
+   */
+  private Executor executor;
+
+  /**
+   * Listener notified of every call made to the store, with the time spent in each of its phases.
+   */
+  private SparqlCallListener callListener = SparqlCallListener.NOOP;
+
+  /**
+   * Maximum time to establish a connection to the store, 0 for the default of the HTTP client.
+   */
+  private long connectTimeoutMillis;
+
+  /**
+   * Default maximum duration of every call to the store, 0 for none. Shortened per call with {@link QueryOptions}.
+   */
+  private long queryTimeoutMillis;
+
+  /**
+   * Calls taking longer than this are logged with the execution plan of their query, see {@link SlowQueryLog}.
+   * 0 disables the slow query log.
+   */
+  private long slowQueryThresholdMillis;
+
+  /**
+   * Fraction of the slow calls to log, between 0 and 1.
+   */
+  private double slowQuerySampleRate = 1.0;
+
+  /**
+   * Maximum number of slow calls logged, and explained, per minute. 0 disables the slow query log.
+   */
+  private int slowQueryLogsPerMinute = 10;
+
+  /**
+   * @return Accept header for SELECT results, preferring binary results if {@link #isBinaryResultFormats()}
+   */
+  public String getSparqlResultsAcceptHeader() {
+    return binaryResultFormats ? Constants.ACCEPT_SPARQL_RESULTS_BINARY : Constants.ACCEPT_SPARQL_RESULTS;
+  }
+
+  /**
+   * @return Accept header for CONSTRUCT results, preferring binary results if {@link #isBinaryResultFormats()}
+   */
+  public String getGraphAcceptHeader() {
+    return binaryResultFormats ? Constants.ACCEPT_RDF_GRAPH_BINARY : Constants.ACCEPT_RDF_GRAPH;
+  }
 }
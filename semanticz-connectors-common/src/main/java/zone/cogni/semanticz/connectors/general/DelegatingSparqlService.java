@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package zone.cogni.semanticz.connectors.general;
+
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.QuerySolution;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.riot.system.StreamRDF;
+
+import java.io.File;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Base class for decorators of a {@link SparqlService}, forwarding every operation to the wrapped service.
+ * Subclasses override the operations they add behaviour to.
+ */
+public abstract class DelegatingSparqlService implements SparqlService {
+
+  private final SparqlService delegate;
+
+  protected DelegatingSparqlService(SparqlService delegate) {
+    this.delegate = delegate;
+  }
+
+  /**
+   * @return the wrapped service
+   */
+  public SparqlService getDelegate() {
+    return delegate;
+  }
+
+  @Override
+  public void uploadTtlFile(File file) {
+    delegate.uploadTtlFile(file);
+  }
+
+  @Override
+  public Model executeConstructQuery(String constructQuery) {
+    return delegate.executeConstructQuery(constructQuery);
+  }
+
+  @Override
+  public Stream<Triple> constructStream(String constructQuery) {
+    return delegate.constructStream(constructQuery);
+  }
+
+  @Override
+  public void executeConstructQuery(String constructQuery, StreamRDF sink) {
+    delegate.executeConstructQuery(constructQuery, sink);
+  }
+
+  @Override
+  public void executeUpdateQuery(String updateQuery) {
+    delegate.executeUpdateQuery(updateQuery);
+  }
+
+  @Override
+  public boolean executeAskQuery(String askQuery) {
+    return delegate.executeAskQuery(askQuery);
+  }
+
+  @Override
+  public <R> R executeSelectQuery(String query, Function<ResultSet, R> resultHandler) {
+    return delegate.executeSelectQuery(query, resultHandler);
+  }
+
+  @Override
+  public Stream<QuerySolution> selectStream(String query) {
+    return delegate.selectStream(query);
+  }
+
+  @Override
+  public void dropGraph(String graphUri) {
+    delegate.dropGraph(graphUri);
+  }
+
+  @Override
+  public void updateGraph(String graphUri, Model model) {
+    delegate.updateGraph(graphUri, model);
+  }
+
+  @Override
+  public void replaceGraph(String graphUri, Model model) {
+    delegate.replaceGraph(graphUri, model);
+  }
+}
@@ -0,0 +1,239 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package zone.cogni.semanticz.connectors.general;
+
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.rdf.model.Model;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * {@link AsyncSparqlService} adapter for blocking {@link SparqlService} implementations (e.g. the ones built on
+ * Jena RDFConnection or Apache HttpClient). Each call is run on the given executor, which bounds the number of
+ * threads blocked on the store. The {@link QueryOptions} deadline of the thread starting a call also applies to the
+ * call running on the executor. A call the executor rejects fails with the {@link RejectedExecutionException}.
+ */
+public class ExecutorAsyncSparqlService implements AsyncSparqlService, AutoCloseable {
+
+  private final SparqlService sparqlService;
+  private final Consumer<Call<?>> dispatcher;
+  private final ExecutorService ownedExecutor;
+
+  /**
+   * Runs the calls on the given executor. The executor is not shut down by {@link #close()}.
+   *
+   * @param sparqlService blocking service to delegate to
+   * @param executor      executor to run the blocking calls on
+   */
+  public ExecutorAsyncSparqlService(SparqlService sparqlService, Executor executor) {
+    this.sparqlService = sparqlService;
+    this.dispatcher = executor::execute;
+    this.ownedExecutor = null;
+  }
+
+  /**
+   * Runs the calls on a dedicated pool of at most maxConcurrency threads, shut down by {@link #close()}.
+   *
+   * @param sparqlService  blocking service to delegate to
+   * @param maxConcurrency maximum number of calls running against the store at the same time
+   */
+  public ExecutorAsyncSparqlService(SparqlService sparqlService, int maxConcurrency) {
+    this(sparqlService, null, maxConcurrency);
+  }
+
+  /**
+   * Runs at most maxConcurrency calls at the same time on the given executor, e.g. the one of the connector (see
+   * {@link Config#getExecutor()}), the other calls waiting in a queue. The executor is not shut down by
+   * {@link #close()}.
+   *
+   * @param sparqlService  blocking service to delegate to
+   * @param executor       executor to run the blocking calls on, null for a dedicated pool of maxConcurrency threads
+   *                       shut down by {@link #close()}
+   * @param maxConcurrency maximum number of calls running against the store at the same time
+   */
+  public ExecutorAsyncSparqlService(SparqlService sparqlService, Executor executor, int maxConcurrency) {
+    if (maxConcurrency < 1) {
+      throw new IllegalArgumentException("Maximum concurrency must be positive, got " + maxConcurrency);
+    }
+    this.sparqlService = sparqlService;
+    this.ownedExecutor = executor == null ? Executors.newFixedThreadPool(maxConcurrency, daemonThreadFactory()) : null;
+    this.dispatcher = executor == null
+        ? ownedExecutor::execute
+        : new BoundedExecutor(executor, maxConcurrency)::execute;
+  }
+
+  private static ThreadFactory daemonThreadFactory() {
+    final AtomicInteger counter = new AtomicInteger();
+    return runnable -> {
+      final Thread thread = new Thread(runnable, "semanticz-async-" + counter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  @Override
+  public <R> CompletableFuture<R> executeSelectQueryAsync(String query, Function<ResultSet, R> resultHandler) {
+    return supply(() -> sparqlService.executeSelectQuery(query, resultHandler));
+  }
+
+  @Override
+  public CompletableFuture<Boolean> executeAskQueryAsync(String askQuery) {
+    return supply(() -> sparqlService.executeAskQuery(askQuery));
+  }
+
+  @Override
+  public CompletableFuture<Model> executeConstructQueryAsync(String constructQuery) {
+    return supply(() -> sparqlService.executeConstructQuery(constructQuery));
+  }
+
+  @Override
+  public CompletableFuture<Void> executeUpdateQueryAsync(String updateQuery) {
+    return run(() -> sparqlService.executeUpdateQuery(updateQuery));
+  }
+
+  @Override
+  public CompletableFuture<Void> updateGraphAsync(String graphUri, Model model) {
+    return run(() -> sparqlService.updateGraph(graphUri, model));
+  }
+
+  @Override
+  public CompletableFuture<Void> replaceGraphAsync(String graphUri, Model model) {
+    return run(() -> sparqlService.replaceGraph(graphUri, model));
+  }
+
+  @Override
+  public CompletableFuture<Void> dropGraphAsync(String graphUri) {
+    return run(() -> sparqlService.dropGraph(graphUri));
+  }
+
+  private CompletableFuture<Void> run(Runnable action) {
+    return supply(() -> {
+      action.run();
+      return null;
+    });
+  }
+
+  private <R> CompletableFuture<R> supply(Supplier<R> action) {
+    final Call<R> call = new Call<>(action, QueryOptions.currentDeadline());
+    try {
+      dispatcher.accept(call);
+    } catch (RejectedExecutionException e) {
+      call.fail(e);
+    }
+    return call.future;
+  }
+
+  @Override
+  public void close() {
+    if (ownedExecutor != null) {
+      ownedExecutor.shutdown();
+    }
+  }
+
+  /**
+   * Call to run on the executor with the deadline of the thread that started it, completing its future.
+   */
+  private static final class Call<R> implements Runnable {
+
+    private final CompletableFuture<R> future = new CompletableFuture<>();
+    private final Supplier<R> action;
+    private final Long deadline;
+
+    private Call(Supplier<R> action, Long deadline) {
+      this.action = action;
+      this.deadline = deadline;
+    }
+
+    @Override
+    public void run() {
+      try {
+        future.complete(QueryOptions.withDeadline(deadline, action));
+      } catch (Throwable e) {
+        fail(e);
+      }
+    }
+
+    private void fail(Throwable e) {
+      // as CompletableFuture.supplyAsync reports failures
+      future.completeExceptionally(e instanceof CompletionException ? e : new CompletionException(e));
+    }
+  }
+
+  /**
+   * Hands at most maxConcurrency calls at a time to a shared executor, queueing the others. A call the executor rejects
+   * fails, as do the queued calls it then rejects as well, so that no call is left waiting.
+   */
+  private static final class BoundedExecutor {
+
+    private final Executor executor;
+    private final int maxConcurrency;
+    private final Queue<Call<?>> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger running = new AtomicInteger();
+
+    private BoundedExecutor(Executor executor, int maxConcurrency) {
+      this.executor = executor;
+      this.maxConcurrency = maxConcurrency;
+    }
+
+    private void execute(Call<?> call) {
+      queue.add(call);
+      startQueued();
+    }
+
+    private void startQueued() {
+      while (!queue.isEmpty()) {
+        final int current = running.get();
+        if (current >= maxConcurrency) return;
+        if (!running.compareAndSet(current, current + 1)) continue;
+
+        final Call<?> call = queue.poll();
+        if (call == null) {
+          running.decrementAndGet();
+          continue;
+        }
+        try {
+          executor.execute(() -> {
+            try {
+              call.run();
+            } finally {
+              running.decrementAndGet();
+              startQueued();
+            }
+          });
+        } catch (RejectedExecutionException e) {
+          running.decrementAndGet();
+          call.fail(e);
+        }
+      }
+    }
+  }
+}
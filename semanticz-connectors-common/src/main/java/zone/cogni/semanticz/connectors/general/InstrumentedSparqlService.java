@@ -0,0 +1,289 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package zone.cogni.semanticz.connectors.general;
+
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.QuerySolution;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFWrapper;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * {@link SparqlService} decorator reporting latency, failures, in-flight calls, request, response and result sizes of
+ * each operation to {@link SparqlMetrics}, tagged with the type of the wrapped connector and its endpoint. Request and
+ * response sizes are the ones the connector measured for the {@link SparqlCall calls} it started on the calling thread.
+ * <p>
+ * The streams returned by {@link #selectStream(String)} and {@link #constructStream(String)} are reported as finished
+ * when they fail while being consumed or else when they are closed: they must be closed (e.g. with
+ * try-with-resources), otherwise a stream consumed successfully is never reported and stays in flight.
+ * </p>
+ */
+public class InstrumentedSparqlService extends DelegatingSparqlService {
+
+  private final SparqlMetrics metrics;
+  private final String connector;
+  private final String endpoint;
+
+  /**
+   * @param delegate service to instrument
+   * @param metrics  receiver of the measurements
+   * @param endpoint endpoint of the store, used as tag
+   */
+  public InstrumentedSparqlService(SparqlService delegate, SparqlMetrics metrics, String endpoint) {
+    this(delegate, metrics, delegate.getClass().getSimpleName(), endpoint);
+  }
+
+  /**
+   * @param delegate  service to instrument
+   * @param metrics   receiver of the measurements
+   * @param connector type of the connector, used as tag
+   * @param endpoint  endpoint of the store, used as tag
+   */
+  public InstrumentedSparqlService(SparqlService delegate, SparqlMetrics metrics, String connector, String endpoint) {
+    super(delegate);
+    this.metrics = metrics;
+    this.connector = connector;
+    this.endpoint = endpoint;
+  }
+
+  @Override
+  public void uploadTtlFile(File file) {
+    measure(SparqlOperation.uploadTtlFile, file.length(), () -> getDelegate().uploadTtlFile(file), -1L);
+  }
+
+  @Override
+  public Model executeConstructQuery(String constructQuery) {
+    return measure(SparqlOperation.construct, utf8Length(constructQuery),
+        () -> getDelegate().executeConstructQuery(constructQuery), Model::size);
+  }
+
+  @Override
+  public Stream<Triple> constructStream(String constructQuery) {
+    return measureStream(SparqlOperation.construct, utf8Length(constructQuery),
+        () -> getDelegate().constructStream(constructQuery));
+  }
+
+  @Override
+  public void executeConstructQuery(String constructQuery, StreamRDF sink) {
+    final long[] triples = new long[1];
+    measure(SparqlOperation.construct, utf8Length(constructQuery), () -> {
+      getDelegate().executeConstructQuery(constructQuery, new StreamRDFWrapper(sink) {
+        @Override
+        public void triple(Triple triple) {
+          triples[0]++;
+          super.triple(triple);
+        }
+      });
+      return null;
+    }, ignored -> triples[0]);
+  }
+
+  @Override
+  public void executeUpdateQuery(String updateQuery) {
+    measure(SparqlOperation.update, utf8Length(updateQuery), () -> getDelegate().executeUpdateQuery(updateQuery), -1L);
+  }
+
+  @Override
+  public boolean executeAskQuery(String askQuery) {
+    return measure(SparqlOperation.ask, utf8Length(askQuery), () -> getDelegate().executeAskQuery(askQuery),
+        ignored -> 1L);
+  }
+
+  @Override
+  public <R> R executeSelectQuery(String query, Function<ResultSet, R> resultHandler) {
+    final long[] rows = {-1L};
+    return measure(SparqlOperation.select, utf8Length(query), () -> getDelegate().executeSelectQuery(query, resultSet -> {
+      try {
+        return resultHandler.apply(resultSet);
+      } finally {
+        rows[0] = resultSet.getRowNumber();
+      }
+    }), ignored -> rows[0]);
+  }
+
+  @Override
+  public Stream<QuerySolution> selectStream(String query) {
+    return measureStream(SparqlOperation.select, utf8Length(query), () -> getDelegate().selectStream(query));
+  }
+
+  @Override
+  public void dropGraph(String graphUri) {
+    measure(SparqlOperation.dropGraph, -1L, () -> getDelegate().dropGraph(graphUri), -1L);
+  }
+
+  @Override
+  public void updateGraph(String graphUri, Model model) {
+    measure(SparqlOperation.updateGraph, -1L, () -> getDelegate().updateGraph(graphUri, model), model.size());
+  }
+
+  @Override
+  public void replaceGraph(String graphUri, Model model) {
+    measure(SparqlOperation.replaceGraph, -1L, () -> getDelegate().replaceGraph(graphUri, model), model.size());
+  }
+
+  private void measure(SparqlOperation operation, long requestBytes, Runnable call, long resultCount) {
+    measure(operation, requestBytes, () -> {
+      call.run();
+      return null;
+    }, ignored -> resultCount);
+  }
+
+  private <T> T measure(SparqlOperation operation, long requestBytes, Supplier<T> call,
+                        ToLongFunction<T> resultCount) {
+    metrics.started(operation, connector, endpoint);
+    final long start = System.nanoTime();
+    final List<SparqlCall> calls = new ArrayList<>(1);
+    try {
+      final T result = SparqlCall.collectStarted(calls, call);
+      finished(operation, start, requestBytes, calls, resultCount.applyAsLong(result), null);
+      return result;
+    } catch (RuntimeException | Error e) {
+      finished(operation, start, requestBytes, calls, -1L, e);
+      throw e;
+    }
+  }
+
+  private <T> Stream<T> measureStream(SparqlOperation operation, long requestBytes, Supplier<Stream<T>> call) {
+    metrics.started(operation, connector, endpoint);
+    final long start = System.nanoTime();
+    final List<SparqlCall> calls = new ArrayList<>(1);
+    final Stream<T> stream;
+    try {
+      stream = SparqlCall.collectStarted(calls, call);
+    } catch (RuntimeException | Error e) {
+      finished(operation, start, requestBytes, calls, -1L, e);
+      throw e;
+    }
+    final MeasuredSpliterator<T> measured = new MeasuredSpliterator<>(stream.spliterator(),
+        error -> finished(operation, start, requestBytes, calls, -1L, error),
+        count -> finished(operation, start, requestBytes, calls, count, null));
+    return StreamSupport.stream(measured, stream.isParallel())
+        .onClose(stream::close)
+        .onClose(measured::closed);
+  }
+
+  /**
+   * Reports an operation as finished, with the request and response sizes measured by the connector for the calls the
+   * operation made, if it measured them.
+   */
+  private void finished(SparqlOperation operation, long start, long requestBytes, List<SparqlCall> calls,
+                        long resultCount, Throwable error) {
+    metrics.finished(operation, connector, endpoint, System.nanoTime() - start,
+        total(calls, SparqlCall::getRequestBytes, requestBytes), total(calls, SparqlCall::getResponseBytes, -1L),
+        resultCount, error);
+  }
+
+  /**
+   * @return sum of the sizes known for the calls, or the fallback if none is known
+   */
+  private static long total(List<SparqlCall> calls, ToLongFunction<SparqlCall> size, long fallback) {
+    long total = -1L;
+    for (SparqlCall call : calls) {
+      final long bytes = size.applyAsLong(call);
+      if (bytes >= 0) total = Math.max(total, 0L) + bytes;
+    }
+    return total >= 0 ? total : fallback;
+  }
+
+  /**
+   * Counts the elements of a stream and reports its outcome once: the first failure while advancing it, or else the
+   * number of elements when it is closed.
+   */
+  private static final class MeasuredSpliterator<T> implements Spliterator<T> {
+
+    private final Spliterator<T> delegate;
+    private final Consumer<Throwable> onFailure;
+    private final LongConsumer onClose;
+    private final AtomicBoolean reported = new AtomicBoolean();
+    private long count;
+
+    private MeasuredSpliterator(Spliterator<T> delegate, Consumer<Throwable> onFailure,
+                                LongConsumer onClose) {
+      this.delegate = delegate;
+      this.onFailure = onFailure;
+      this.onClose = onClose;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+      try {
+        return delegate.tryAdvance(element -> {
+          count++;
+          action.accept(element);
+        });
+      } catch (RuntimeException | Error e) {
+        if (reported.compareAndSet(false, true)) onFailure.accept(e);
+        throw e;
+      }
+    }
+
+    @Override
+    public Spliterator<T> trySplit() {
+      // stay sequential, so that all elements are counted and all failures seen here
+      return null;
+    }
+
+    @Override
+    public long estimateSize() {
+      return delegate.estimateSize();
+    }
+
+    @Override
+    public int characteristics() {
+      // not sized, so that no terminal operation skips the traversal which counts the elements
+      return delegate.characteristics() & ~(SIZED | SUBSIZED);
+    }
+
+    private void closed() {
+      if (reported.compareAndSet(false, true)) onClose.accept(count);
+    }
+  }
+
+  /**
+   * @return number of bytes of the string encoded in UTF-8, computed without encoding it
+   */
+  static long utf8Length(CharSequence text) {
+    long length = 0;
+    for (int i = 0; i < text.length(); i++) {
+      final char c = text.charAt(i);
+      if (c < 0x80) length++;
+      else if (c < 0x800) length += 2;
+      else if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+        length += 4;
+        i++;
+      } else length += 3;
+    }
+    return length;
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package zone.cogni.semanticz.connectors.general;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanBuilder;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.propagation.TextMapPropagator;
+import zone.cogni.semanticz.connectors.utils.QueryFingerprint;
+
+/**
+ * Turns every call to the store into an OpenTelemetry client span, child of the span current on the calling thread,
+ * and asks HTTP based connectors to propagate its trace context (the W3C {@code traceparent} header with the default
+ * propagators) so the spans of the store, if it traces, join the same trace.
+ * <p>
+ * Spans carry {@code db.system=sparql}, the operation, the endpoint, the graph for graph operations and the
+ * {@link QueryFingerprint fingerprint} of the query rather than the query itself, which may contain personal data.
+ * OpenTelemetry is an optional dependency: only applications using this class need the API on their classpath.
+ * </p>
+ */
+public class OpenTelemetryCallListener implements SparqlCallListener {
+
+  private static final String INSTRUMENTATION_SCOPE = "zone.cogni.semanticz.connectors";
+
+  private final Object spanKey = new Object();
+  private final Tracer tracer;
+  private final TextMapPropagator propagator;
+
+  public OpenTelemetryCallListener(OpenTelemetry openTelemetry) {
+    this.tracer = openTelemetry.getTracer(INSTRUMENTATION_SCOPE);
+    this.propagator = openTelemetry.getPropagators().getTextMapPropagator();
+  }
+
+  @Override
+  public void onStart(SparqlCall call) {
+    final SpanBuilder builder = tracer.spanBuilder("SPARQL " + call.getOperation())
+        .setSpanKind(SpanKind.CLIENT)
+        .setAttribute("db.system", "sparql")
+        .setAttribute("db.operation.name", call.getOperation().name())
+        .setAttribute("semanticz.connector", call.getConnector());
+    if (call.getEndpoint() != null) builder.setAttribute("url.full", call.getEndpoint());
+    if (call.getGraphUri() != null) builder.setAttribute("db.sparql.graph", call.getGraphUri());
+    if (call.getQuery() != null) builder.setAttribute("db.query.text", QueryFingerprint.of(call.getQuery()));
+
+    final Span span = builder.startSpan();
+    call.setAttribute(spanKey, span);
+    propagator.inject(Context.current().with(span), call, (carrier, name, value) -> {
+      if (carrier != null) carrier.setHeader(name, value);
+    });
+  }
+
+  @Override
+  public void onEnd(SparqlCall call) {
+    final Span span = (Span) call.getAttribute(spanKey);
+    if (span == null) return;
+
+    if (call.getResultCount() >= 0) span.setAttribute("db.response.returned_rows", call.getResultCount());
+    if (call.getRequestBytes() >= 0) span.setAttribute("http.request.body.size", call.getRequestBytes());
+    if (call.getResponseBytes() >= 0) span.setAttribute("http.response.body.size", call.getResponseBytes());
+    final Throwable error = call.getError();
+    if (error != null) {
+      span.recordException(error);
+      span.setStatus(StatusCode.ERROR, String.valueOf(error.getMessage()));
+    }
+    span.end();
+  }
+}
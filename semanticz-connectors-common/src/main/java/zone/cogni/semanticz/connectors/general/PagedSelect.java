@@ -0,0 +1,329 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package zone.cogni.semanticz.connectors.general;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.query.QuerySolution;
+import org.apache.jena.query.ResultSetFormatter;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.expr.E_GreaterThan;
+import org.apache.jena.sparql.expr.E_Str;
+import org.apache.jena.sparql.expr.Expr;
+import org.apache.jena.sparql.expr.ExprVar;
+import org.apache.jena.sparql.expr.NodeValue;
+import org.apache.jena.sparql.syntax.ElementFilter;
+import org.apache.jena.sparql.syntax.ElementGroup;
+import org.apache.jena.sparql.syntax.ElementSubQuery;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Runs a SELECT query page by page and streams the solutions of all pages, for results too large for a single
+ * response or truncated by the store (e.g. Virtuoso's {@code ResultSetMaxRows}), see
+ * {@link SparqlService#selectPaged(String, int)}.
+ * <p>
+ * While the solutions of a page are consumed, the next page is already fetched on a background thread, so that
+ * the round trip to the store overlaps with the processing. Only one page is fetched ahead. The
+ * {@link QueryOptions} deadline of the thread creating the stream also applies to the pages fetched in the
+ * background.
+ * </p>
+ * <p>
+ * Two ways of paging are supported:
+ * <ul>
+ *   <li>{@link #byOffset(SparqlService, String, int)} sends the query with LIMIT and OFFSET. Queries without ORDER BY
+ *   are ordered by all their projected variables, as pages of an unordered result may overlap. The LIMIT and OFFSET
+ *   of the query itself are kept. The store evaluates the query up to the offset for every page, so this gets slower
+ *   the further it goes.</li>
+ *   <li>{@link #byKey(SparqlService, String, String, int)} wraps the query in a sub-query, orders it by a key
+ *   variable and asks every page for the keys after the last one of the previous page. The key has to be bound and
+ *   unique in every solution, and be either IRIs or literals of one ordered datatype.</li>
+ * </ul>
+ * </p>
+ * <p>
+ * Paging stops at the first page with fewer solutions than the page size, so the page size must not exceed the
+ * maximum number of rows the store returns. Pages are separate queries: writes in between may shift solutions from
+ * one page to another.
+ * </p>
+ */
+public final class PagedSelect {
+
+  /**
+   * Default number of solutions per page.
+   */
+  public static final int DEFAULT_PAGE_SIZE = 10_000;
+
+  private static final ExecutorService prefetchExecutor = Executors.newCachedThreadPool(daemonThreadFactory());
+
+  private PagedSelect() {
+  }
+
+  private static ThreadFactory daemonThreadFactory() {
+    final AtomicInteger counter = new AtomicInteger();
+    return runnable -> {
+      final Thread thread = new Thread(runnable, "semanticz-prefetch-" + counter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  /**
+   * Pages a query with LIMIT and OFFSET, prefetching on a shared pool of daemon threads.
+   *
+   * @param sparqlService service to query
+   * @param query         SPARQL SELECT query
+   * @param pageSize      number of solutions per page
+   * @return stream of the solutions of all pages, to be closed by the caller
+   */
+  public static Stream<QuerySolution> byOffset(SparqlService sparqlService, String query, int pageSize) {
+    return byOffset(sparqlService, query, pageSize, prefetchExecutor);
+  }
+
+  /**
+   * Pages a query with LIMIT and OFFSET.
+   *
+   * @param sparqlService service to query
+   * @param query         SPARQL SELECT query
+   * @param pageSize      number of solutions per page
+   * @param executor      executor fetching the pages
+   * @return stream of the solutions of all pages, to be closed by the caller
+   */
+  public static Stream<QuerySolution> byOffset(SparqlService sparqlService, String query, int pageSize,
+      Executor executor) {
+    return stream(sparqlService, new OffsetPager(parseSelect(query), checkPageSize(pageSize)), executor);
+  }
+
+  /**
+   * Pages a query on the values of a key variable, prefetching on a shared pool of daemon threads.
+   *
+   * @param sparqlService service to query
+   * @param query         SPARQL SELECT query, without LIMIT or OFFSET
+   * @param keyVariable   name of the variable to page on, without question mark
+   * @param pageSize      number of solutions per page
+   * @return stream of the solutions of all pages ordered by the key, to be closed by the caller
+   */
+  public static Stream<QuerySolution> byKey(SparqlService sparqlService, String query, String keyVariable,
+      int pageSize) {
+    return byKey(sparqlService, query, keyVariable, pageSize, prefetchExecutor);
+  }
+
+  /**
+   * Pages a query on the values of a key variable.
+   *
+   * @param sparqlService service to query
+   * @param query         SPARQL SELECT query, without LIMIT or OFFSET
+   * @param keyVariable   name of the variable to page on, without question mark
+   * @param pageSize      number of solutions per page
+   * @param executor      executor fetching the pages
+   * @return stream of the solutions of all pages ordered by the key, to be closed by the caller
+   */
+  public static Stream<QuerySolution> byKey(SparqlService sparqlService, String query, String keyVariable,
+      int pageSize, Executor executor) {
+    final Query select = parseSelect(query);
+    if (select.hasLimit() || select.hasOffset()) {
+      throw new IllegalArgumentException("Query paged by key cannot have a LIMIT or OFFSET");
+    }
+    if (!select.getProjectVars().contains(Var.alloc(keyVariable))) {
+      throw new IllegalArgumentException("Key variable ?" + keyVariable + " is not projected by the query");
+    }
+    return stream(sparqlService, new KeyPager(select, keyVariable, checkPageSize(pageSize)), executor);
+  }
+
+  private static Query parseSelect(String query) {
+    final Query result = QueryFactory.create(query);
+    if (!result.isSelectType()) throw new IllegalArgumentException("Only SELECT queries can be paged");
+    return result;
+  }
+
+  private static int checkPageSize(int pageSize) {
+    if (pageSize < 1) throw new IllegalArgumentException("Page size must be positive, got " + pageSize);
+    return pageSize;
+  }
+
+  private static Stream<QuerySolution> stream(SparqlService sparqlService, Pager pager, Executor executor) {
+    final PageIterator iterator = new PageIterator(sparqlService, pager, executor);
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL),
+        false).onClose(iterator::close);
+  }
+
+  /**
+   * Builds the query of each page.
+   */
+  private interface Pager {
+
+    /**
+     * @param previousPage solutions of the previous page, null for the first page
+     * @return query of the next page, null if there is none
+     */
+    String nextQuery(List<QuerySolution> previousPage);
+  }
+
+  private static final class OffsetPager implements Pager {
+
+    private final Query query;
+    private final long offset;
+    private final long limit;
+    private final int pageSize;
+    private long fetched;
+    private long requested;
+
+    private OffsetPager(Query query, int pageSize) {
+      this.query = query;
+      this.offset = query.hasOffset() ? query.getOffset() : 0;
+      this.limit = query.hasLimit() ? query.getLimit() : Long.MAX_VALUE;
+      this.pageSize = pageSize;
+      if (!query.hasOrderBy()) {
+        query.getProjectVars().forEach(var -> query.addOrderBy(var, Query.ORDER_DEFAULT));
+      }
+    }
+
+    @Override
+    public String nextQuery(List<QuerySolution> previousPage) {
+      if (previousPage != null) {
+        fetched += previousPage.size();
+        if (previousPage.size() < requested) return null;
+      }
+      if (fetched >= limit) return null;
+
+      requested = Math.min(pageSize, limit - fetched);
+      final Query page = query.cloneQuery();
+      page.setOffset(offset + fetched);
+      page.setLimit(requested);
+      return page.serialize();
+    }
+  }
+
+  private static final class KeyPager implements Pager {
+
+    private final Query query;
+    private final String keyVariable;
+    private final int pageSize;
+
+    private KeyPager(Query query, String keyVariable, int pageSize) {
+      this.query = query;
+      this.keyVariable = keyVariable;
+      this.pageSize = pageSize;
+    }
+
+    @Override
+    public String nextQuery(List<QuerySolution> previousPage) {
+      if (previousPage != null && previousPage.size() < pageSize) return null;
+
+      final ElementGroup pattern = new ElementGroup();
+      pattern.addElement(new ElementSubQuery(query));
+      if (previousPage != null) {
+        pattern.addElementFilter(new ElementFilter(after(previousPage.get(previousPage.size() - 1))));
+      }
+      final Query page = new Query();
+      page.setQuerySelectType();
+      page.setPrefixMapping(query.getPrefixMapping());
+      if (query.explicitlySetBaseURI()) page.setBaseURI(query.getBaseURI());
+      page.addProjectVars(query.getProjectVars());
+      page.setQueryPattern(pattern);
+      page.addOrderBy(Var.alloc(keyVariable), Query.ORDER_ASCENDING);
+      page.setLimit(pageSize);
+      return page.serialize();
+    }
+
+    private Expr after(QuerySolution last) {
+      final RDFNode key = last.get(keyVariable);
+      if (key == null) throw new IllegalStateException("Key variable ?" + keyVariable + " is not bound");
+      final Node node = key.asNode();
+      final ExprVar variable = new ExprVar(keyVariable);
+      if (node.isURI()) return new E_GreaterThan(new E_Str(variable), NodeValue.makeString(node.getURI()));
+      if (node.isLiteral()) return new E_GreaterThan(variable, NodeValue.makeNode(node));
+      throw new IllegalStateException("Cannot page on blank node values of ?" + keyVariable);
+    }
+  }
+
+  private static final class PageIterator implements Iterator<QuerySolution>, AutoCloseable {
+
+    private final SparqlService sparqlService;
+    private final Pager pager;
+    private final Executor executor;
+    private final Long deadline = QueryOptions.currentDeadline();
+
+    private Iterator<QuerySolution> current = Collections.emptyIterator();
+    private CompletableFuture<List<QuerySolution>> next;
+
+    private PageIterator(SparqlService sparqlService, Pager pager, Executor executor) {
+      this.sparqlService = sparqlService;
+      this.pager = pager;
+      this.executor = executor;
+      this.next = fetch(pager.nextQuery(null));
+    }
+
+    private CompletableFuture<List<QuerySolution>> fetch(String query) {
+      if (query == null) return null;
+      return CompletableFuture.supplyAsync(() -> QueryOptions.withDeadline(deadline,
+          () -> sparqlService.executeSelectQuery(query, ResultSetFormatter::toList)), executor);
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (!current.hasNext()) {
+        if (next == null) return false;
+        final List<QuerySolution> page = join(next);
+        // the next page is fetched while this one is consumed
+        next = fetch(pager.nextQuery(page));
+        current = page.iterator();
+      }
+      return true;
+    }
+
+    @Override
+    public QuerySolution next() {
+      if (!hasNext()) throw new NoSuchElementException();
+      return current.next();
+    }
+
+    @Override
+    public void close() {
+      if (next != null) next.cancel(false);
+      next = null;
+      current = Collections.emptyIterator();
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+      try {
+        return future.join();
+      } catch (CompletionException e) {
+        if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+        throw e;
+      }
+    }
+  }
+}
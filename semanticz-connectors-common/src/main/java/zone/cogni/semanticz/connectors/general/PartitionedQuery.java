@@ -0,0 +1,371 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package zone.cogni.semanticz.connectors.general;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.query.SortCondition;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.binding.BindingComparator;
+import org.apache.jena.sparql.engine.binding.BindingFactory;
+import org.apache.jena.sparql.exec.RowSetStream;
+import org.apache.jena.sparql.expr.E_MD5;
+import org.apache.jena.sparql.expr.E_OneOf;
+import org.apache.jena.sparql.expr.E_Str;
+import org.apache.jena.sparql.expr.E_StrSubstring;
+import org.apache.jena.sparql.expr.ExprList;
+import org.apache.jena.sparql.expr.ExprVar;
+import org.apache.jena.sparql.expr.NodeValue;
+import org.apache.jena.sparql.syntax.Element;
+import org.apache.jena.sparql.syntax.ElementData;
+import org.apache.jena.sparql.syntax.ElementFilter;
+import org.apache.jena.sparql.syntax.ElementGroup;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Splits a SELECT or CONSTRUCT query into disjoint partitions, runs them concurrently against the same
+ * {@link SparqlService} and merges their results, so that a large query keeps several cores of the store busy instead
+ * of one.
+ * <p>
+ * Each partition is the query restricted to part of the values of a variable:
+ * <ul>
+ *   <li>{@link #byValues(String, String, Collection, int)} and {@link #byGraph(String, String, Collection, int)}
+ *   split a list of values, e.g. the named graphs to query, over the partitions with a VALUES block.</li>
+ *   <li>{@link #byHash(String, String, int)} assigns each value to a partition by the MD5 hash of its string form,
+ *   without knowing the values up front. The variable must be bound in every solution.</li>
+ * </ul>
+ * </p>
+ * <p>
+ * The merged result is only the result of the whole query if every solution depends on a single partition, e.g.
+ * aggregates must group by the partition variable and DISTINCT only removes duplicates within a partition unless the
+ * partition variable is projected. SELECT results are merged preserving the ORDER BY of the query, if any, and its
+ * LIMIT and OFFSET are applied to the merged result. As the merge only sees the projected variables, the ORDER BY of a
+ * SELECT query may only sort on projected variables or on expressions of projected variables. CONSTRUCT results are
+ * merged into a single model, the LIMIT and OFFSET of CONSTRUCT queries apply to each partition.
+ * </p>
+ * <p>
+ * The {@link QueryOptions} deadline of the calling thread applies to all partitions, also when they run in parallel.
+ * </p>
+ */
+public final class PartitionedQuery {
+
+  /**
+   * Default number of partitions running at the same time.
+   */
+  public static final int DEFAULT_PARALLELISM = 4;
+
+  private final Query query;
+  private final List<Element> partitions;
+
+  private PartitionedQuery(Query query, List<Element> partitions) {
+    this.query = query;
+    this.partitions = partitions;
+  }
+
+  /**
+   * Partitions a query on a list of values of a variable.
+   *
+   * @param query      SPARQL SELECT or CONSTRUCT query
+   * @param variable   name of the variable to partition on, without question mark
+   * @param values     values of the variable the query is restricted to
+   * @param partitions number of partitions, each getting a contiguous part of the values
+   * @return the partitioned query
+   */
+  public static PartitionedQuery byValues(String query, String variable, Collection<Node> values, int partitions) {
+    checkPartitions(partitions);
+    final Var var = Var.alloc(variable);
+    final List<Node> all = new ArrayList<>(values);
+    final int size = Math.max(1, (all.size() + partitions - 1) / partitions);
+    final List<Element> restrictions = new ArrayList<>(partitions);
+    for (int from = 0; from < all.size(); from += size) {
+      final ElementData data = new ElementData(Collections.singletonList(var), new ArrayList<>());
+      all.subList(from, Math.min(from + size, all.size()))
+          .forEach(value -> data.add(BindingFactory.binding(var, value)));
+      restrictions.add(data);
+    }
+    return new PartitionedQuery(parse(query), restrictions);
+  }
+
+  /**
+   * Partitions a query on the named graphs it runs over, the query using a variable for the graph name.
+   *
+   * @param query         SPARQL SELECT or CONSTRUCT query, e.g. with a {@code GRAPH ?g { ... }} pattern
+   * @param graphVariable name of the graph variable, without question mark
+   * @param graphUris     URIs of the graphs the query is restricted to
+   * @param partitions    number of partitions, each getting a contiguous part of the graphs
+   * @return the partitioned query
+   */
+  public static PartitionedQuery byGraph(String query, String graphVariable, Collection<String> graphUris,
+      int partitions) {
+    return byValues(query, graphVariable,
+        graphUris.stream().map(NodeFactory::createURI).collect(Collectors.toList()), partitions);
+  }
+
+  /**
+   * Partitions a query on the hash of the values of a variable.
+   *
+   * @param query      SPARQL SELECT or CONSTRUCT query
+   * @param variable   name of the variable to partition on, without question mark, bound in every solution
+   * @param partitions number of partitions, at most 256
+   * @return the partitioned query
+   */
+  public static PartitionedQuery byHash(String query, String variable, int partitions) {
+    checkPartitions(partitions);
+    if (partitions > 256) throw new IllegalArgumentException("At most 256 hash partitions, got " + partitions);
+    // the first hex digits of the hash select the partition
+    final int digits = partitions <= 16 ? 1 : 2;
+    final int buckets = digits == 1 ? 16 : 256;
+    final List<ExprList> prefixes = new ArrayList<>(partitions);
+    for (int i = 0; i < partitions; i++) {
+      prefixes.add(new ExprList());
+    }
+    for (int bucket = 0; bucket < buckets; bucket++) {
+      final String prefix = String.format(digits == 1 ? "%01x" : "%02x", bucket);
+      prefixes.get(bucket % partitions).add(NodeValue.makeString(prefix));
+    }
+    final E_StrSubstring hashPrefix = new E_StrSubstring(new E_MD5(new E_Str(new ExprVar(variable))),
+        NodeValue.makeInteger(1), NodeValue.makeInteger(digits));
+    final List<Element> restrictions = prefixes.stream()
+        .map(prefix -> new ElementFilter(new E_OneOf(hashPrefix, prefix)))
+        .collect(Collectors.toList());
+    return new PartitionedQuery(parse(query), restrictions);
+  }
+
+  private static void checkPartitions(int partitions) {
+    if (partitions < 1) throw new IllegalArgumentException("Number of partitions must be positive, got " + partitions);
+  }
+
+  private static Query parse(String query) {
+    final Query result = QueryFactory.create(query);
+    if (!result.isSelectType() && !result.isConstructType()) {
+      throw new IllegalArgumentException("Only SELECT and CONSTRUCT queries can be partitioned");
+    }
+    if (result.isSelectType() && result.hasOrderBy()) {
+      final List<Var> projected = result.getProjectVars();
+      result.getOrderBy().stream()
+          .map(SortCondition::getExpression)
+          .filter(key -> !projected.containsAll(key.getVarsMentioned()))
+          .findFirst()
+          .ifPresent(key -> {
+            throw new IllegalArgumentException("Cannot merge partitions sorted on " + key
+                + ", ORDER BY may only use projected variables");
+          });
+    }
+    return result;
+  }
+
+  /**
+   * @return the queries of the partitions, as sent to the store
+   */
+  public List<String> getQueries() {
+    return partitions.stream().map(this::partitionQuery).collect(Collectors.toList());
+  }
+
+  private String partitionQuery(Element restriction) {
+    final Query partition = query.cloneQuery();
+    final ElementGroup pattern = new ElementGroup();
+    if (restriction instanceof ElementData) pattern.addElement(restriction);
+    pattern.addElement(query.getQueryPattern());
+    if (restriction instanceof ElementFilter) pattern.addElementFilter((ElementFilter) restriction);
+    partition.setQueryPattern(pattern);
+    if (query.isSelectType() && query.hasOffset()) {
+      // the offset is applied to the merged result, each partition may contribute all rows up to it
+      partition.setOffset(Query.NOLIMIT);
+      if (query.hasLimit()) partition.setLimit(query.getOffset() + query.getLimit());
+    }
+    return partition.serialize();
+  }
+
+  /**
+   * Runs the partitions of a SELECT query and merges their solutions.
+   *
+   * @param sparqlService service to query
+   * @param parallelism   maximum number of partitions running at the same time, 1 runs them one after the other on
+   *                      the calling thread
+   * @param resultHandler handler of the merged result
+   * @return the result of the handler
+   */
+  public <R> R select(SparqlService sparqlService, int parallelism, Function<ResultSet, R> resultHandler) {
+    return select(sparqlService, parallelism, null, resultHandler);
+  }
+
+  /**
+   * Runs the partitions of a SELECT query on the given executor and merges their solutions.
+   *
+   * @param sparqlService service to query
+   * @param parallelism   maximum number of partitions running at the same time, 1 runs them one after the other on
+   *                      the calling thread
+   * @param executor      executor running the partitions in parallel, e.g. the one of the connector (see
+   *                      {@link Config#getExecutor()}), null for a pool dedicated to this query
+   * @param resultHandler handler of the merged result
+   * @return the result of the handler
+   */
+  public <R> R select(SparqlService sparqlService, int parallelism, Executor executor,
+      Function<ResultSet, R> resultHandler) {
+    if (!query.isSelectType()) throw new IllegalStateException("Not a SELECT query");
+    final List<List<Binding>> results = run(sparqlService, parallelism, executor,
+        (async, partition) -> async.executeSelectQueryAsync(partition, PartitionedQuery::bindings),
+        (service, partition) -> service.executeSelectQuery(partition, PartitionedQuery::bindings));
+
+    Iterator<Binding> merged = query.hasOrderBy()
+        ? merge(results, new BindingComparator(query.getOrderBy()))
+        : results.stream().flatMap(List::stream).iterator();
+    if (query.hasOffset() || query.hasLimit()) merged = slice(merged);
+    return resultHandler.apply(ResultSet.adapt(RowSetStream.create(query.getProjectVars(), merged)));
+  }
+
+  /**
+   * Runs the partitions of a CONSTRUCT query and merges their triples.
+   *
+   * @param sparqlService service to query
+   * @param parallelism   maximum number of partitions running at the same time, 1 runs them one after the other on
+   *                      the calling thread
+   * @return model with the triples of all partitions
+   */
+  public Model construct(SparqlService sparqlService, int parallelism) {
+    return construct(sparqlService, parallelism, null);
+  }
+
+  /**
+   * Runs the partitions of a CONSTRUCT query on the given executor and merges their triples.
+   *
+   * @param sparqlService service to query
+   * @param parallelism   maximum number of partitions running at the same time, 1 runs them one after the other on
+   *                      the calling thread
+   * @param executor      executor running the partitions in parallel, e.g. the one of the connector (see
+   *                      {@link Config#getExecutor()}), null for a pool dedicated to this query
+   * @return model with the triples of all partitions
+   */
+  public Model construct(SparqlService sparqlService, int parallelism, Executor executor) {
+    if (!query.isConstructType()) throw new IllegalStateException("Not a CONSTRUCT query");
+    final List<Model> results = run(sparqlService, parallelism, executor,
+        AsyncSparqlService::executeConstructQueryAsync, SparqlService::executeConstructQuery);
+    final Model merged = ModelFactory.createDefaultModel();
+    results.forEach(merged::add);
+    return merged;
+  }
+
+  private <T> List<T> run(SparqlService sparqlService, int parallelism, Executor executor, AsyncCall<T> asyncCall,
+      Call<T> call) {
+    if (parallelism < 1) throw new IllegalArgumentException("Parallelism must be positive, got " + parallelism);
+    final List<String> queries = getQueries();
+    final List<T> results = new ArrayList<>(queries.size());
+    if (parallelism == 1 || queries.size() <= 1) {
+      queries.forEach(partition -> results.add(call.execute(sparqlService, partition)));
+      return results;
+    }
+    try (ExecutorAsyncSparqlService async =
+             new ExecutorAsyncSparqlService(sparqlService, executor, Math.min(parallelism, queries.size()))) {
+      final List<CompletableFuture<T>> futures = new ArrayList<>(queries.size());
+      queries.forEach(partition -> futures.add(asyncCall.execute(async, partition)));
+      futures.forEach(future -> results.add(join(future)));
+    }
+    return results;
+  }
+
+  private static List<Binding> bindings(ResultSet resultSet) {
+    final List<Binding> bindings = new ArrayList<>();
+    while (resultSet.hasNext()) {
+      bindings.add(resultSet.nextBinding());
+    }
+    return bindings;
+  }
+
+  /**
+   * K-way merge of sorted partition results.
+   */
+  private static Iterator<Binding> merge(List<List<Binding>> results, Comparator<Binding> comparator) {
+    final PriorityQueue<Cursor> heads = new PriorityQueue<>(Math.max(1, results.size()),
+        (one, other) -> comparator.compare(one.head, other.head));
+    results.stream().map(List::iterator).filter(Iterator::hasNext).map(Cursor::new).forEach(heads::add);
+    final List<Binding> merged = new ArrayList<>(results.stream().mapToInt(List::size).sum());
+    while (!heads.isEmpty()) {
+      final Cursor cursor = heads.poll();
+      merged.add(cursor.head);
+      if (cursor.advance()) heads.add(cursor);
+    }
+    return merged.iterator();
+  }
+
+  private Iterator<Binding> slice(Iterator<Binding> merged) {
+    final long offset = query.hasOffset() ? query.getOffset() : 0;
+    final long limit = query.hasLimit() ? query.getLimit() : Long.MAX_VALUE;
+    final List<Binding> sliced = new ArrayList<>();
+    for (long row = 0; merged.hasNext() && row < offset + limit; row++) {
+      final Binding binding = merged.next();
+      if (row >= offset) sliced.add(binding);
+    }
+    return sliced.iterator();
+  }
+
+  private static <T> T join(CompletableFuture<T> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+      throw e;
+    }
+  }
+
+  private static final class Cursor {
+
+    private final Iterator<Binding> rest;
+    private Binding head;
+
+    private Cursor(Iterator<Binding> rest) {
+      this.rest = rest;
+      this.head = rest.next();
+    }
+
+    private boolean advance() {
+      if (!rest.hasNext()) return false;
+      head = rest.next();
+      return true;
+    }
+  }
+
+  @FunctionalInterface
+  private interface Call<T> {
+    T execute(SparqlService sparqlService, String query);
+  }
+
+  @FunctionalInterface
+  private interface AsyncCall<T> {
+    CompletableFuture<T> execute(AsyncSparqlService sparqlService, String query);
+  }
+}
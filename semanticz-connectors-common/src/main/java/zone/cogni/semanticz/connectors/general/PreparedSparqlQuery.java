@@ -0,0 +1,305 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package zone.cogni.semanticz.connectors.general;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.irix.IRIException;
+import org.apache.jena.irix.IRIx;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.query.QuerySolutionMap;
+import org.apache.jena.query.Syntax;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.syntax.syntaxtransform.QueryTransformOps;
+import org.apache.jena.sparql.util.FmtUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * SPARQL query template which is parsed once and then bound to values any number of times.
+ * <p>
+ * Unlike {@code ParameterizedSparqlString}, binding does not serialize and re-parse the query: variables are replaced
+ * in the parsed query ({@link QueryTransformOps#replaceVars(Query, Map)}), a bound variable in a SELECT projection
+ * becoming {@code (value AS ?var)}, and values are escaped by the query serializer. Inline data for VALUES is
+ * appended as a trailing VALUES block. IRIs are checked before they are bound, so a value can never change the
+ * structure of the query.
+ * </p>
+ * <p>
+ * Instances are immutable and thread-safe: every query handed out is a copy the caller is free to modify. Templates
+ * created from strings with {@link #of(String)} are cached, the ones created with {@link #parse(String)} are not.
+ * </p>
+ */
+public final class PreparedSparqlQuery {
+
+  private static final int CACHE_SIZE = 1024;
+
+  private static final ConcurrentMap<String, PreparedSparqlQuery> cache = new ConcurrentHashMap<>();
+
+  private final Query template;
+  private volatile String templateString;
+
+  private PreparedSparqlQuery(Query template) {
+    this.template = template;
+  }
+
+  /**
+   * Gets the prepared form of a query template, parsing it (ARQ syntax) only the first time it is seen. Meant for
+   * templates that are executed over and over, use {@link #parse(String)} for queries built for a single execution.
+   *
+   * @param template SPARQL query, possibly with variables to bind
+   * @return prepared query
+   */
+  public static PreparedSparqlQuery of(String template) {
+    final PreparedSparqlQuery cached = cache.get(template);
+    if (cached != null) return cached;
+
+    // parsed outside of any lock, two threads seeing the same new template both parse it
+    final PreparedSparqlQuery prepared = parse(template);
+    if (cache.size() >= CACHE_SIZE) {
+      final Iterator<String> templates = cache.keySet().iterator();
+      if (templates.hasNext()) {
+        templates.next();
+        templates.remove();
+      }
+    }
+    final PreparedSparqlQuery previous = cache.putIfAbsent(template, prepared);
+    return previous == null ? prepared : previous;
+  }
+
+  /**
+   * Parses a query template (ARQ syntax) without caching it.
+   *
+   * @param template SPARQL query, possibly with variables to bind
+   * @return prepared query
+   */
+  public static PreparedSparqlQuery parse(String template) {
+    return new PreparedSparqlQuery(QueryFactory.create(template, Syntax.syntaxARQ));
+  }
+
+  /**
+   * Wraps an already parsed query, which must not be modified afterwards by the caller.
+   *
+   * @param template parsed SPARQL query, possibly with variables to bind
+   * @return prepared query
+   */
+  public static PreparedSparqlQuery of(Query template) {
+    return new PreparedSparqlQuery(template);
+  }
+
+  /**
+   * @return a copy of the parsed template
+   */
+  public Query getQuery() {
+    return template.cloneQuery();
+  }
+
+  /**
+   * Binds the template to the given values.
+   *
+   * @param bindings values of the variables to replace, may be empty
+   * @return the bound query, a copy of the template if there is nothing to bind
+   * @throws IllegalArgumentException if a value is an invalid IRI
+   */
+  public Query bind(QuerySolutionMap bindings) {
+    return bindings == null || bindings.asMap().isEmpty() ? getQuery() : bind(toNodes(bindings)).asQuery();
+  }
+
+  /**
+   * Starts binding values to this template.
+   *
+   * @return a new, empty set of bindings
+   */
+  public Bindings bind() {
+    return new Bindings();
+  }
+
+  private Bindings bind(Map<Var, Node> substitutions) {
+    final Bindings bindings = new Bindings();
+    bindings.substitutions.putAll(substitutions);
+    return bindings;
+  }
+
+  private String getTemplateString() {
+    String result = templateString;
+    if (result == null) {
+      result = template.serialize();
+      templateString = result;
+    }
+    return result;
+  }
+
+  private static Map<Var, Node> toNodes(QuerySolutionMap bindings) {
+    final Map<Var, Node> nodes = new HashMap<>();
+    bindings.asMap().forEach((name, value) -> nodes.put(Var.alloc(name), check(value.asNode())));
+    return nodes;
+  }
+
+  /**
+   * @return the node, after checking it is an absolute, valid IRI if it is an IRI
+   * @throws IllegalArgumentException if it is not
+   */
+  private static Node check(Node node) {
+    if (!node.isURI()) return node;
+    try {
+      if (!IRIx.create(node.getURI()).isReference()) {
+        throw new IllegalArgumentException("Not an absolute IRI: <" + node.getURI() + ">");
+      }
+    } catch (IRIException e) {
+      throw new IllegalArgumentException("Invalid IRI: <" + node.getURI() + ">", e);
+    }
+    return node;
+  }
+
+  @Override
+  public String toString() {
+    return getTemplateString();
+  }
+
+  /**
+   * Values bound to a template. Not thread-safe, meant to be used for building a single query.
+   */
+  public final class Bindings {
+
+    private final Map<Var, Node> substitutions = new HashMap<>();
+    private final List<Var> valuesVars = new ArrayList<>();
+    private final List<List<Node>> valuesRows = new ArrayList<>();
+
+    private Bindings() {
+    }
+
+    /**
+     * Binds a variable to an RDF term.
+     *
+     * @param var   variable name, without leading '?'
+     * @param value IRI, blank node or literal
+     * @return this
+     * @throws IllegalArgumentException if the value is an invalid IRI
+     */
+    public Bindings set(String var, Node value) {
+      substitutions.put(Var.alloc(var), check(value));
+      return this;
+    }
+
+    /**
+     * Binds a variable to an RDF term.
+     *
+     * @param var   variable name, without leading '?'
+     * @param value resource or literal
+     * @return this
+     * @throws IllegalArgumentException if the value is an invalid IRI
+     */
+    public Bindings set(String var, RDFNode value) {
+      return set(var, value.asNode());
+    }
+
+    /**
+     * Binds a variable to an IRI.
+     *
+     * @param var variable name, without leading '?'
+     * @param iri absolute IRI
+     * @return this
+     * @throws IllegalArgumentException if the IRI is invalid or relative
+     */
+    public Bindings setIri(String var, String iri) {
+      return set(var, ResourceFactory.createResource(iri));
+    }
+
+    /**
+     * Binds a variable to a plain string literal.
+     *
+     * @param var     variable name, without leading '?'
+     * @param literal string value
+     * @return this
+     */
+    public Bindings setLiteral(String var, String literal) {
+      return set(var, ResourceFactory.createStringLiteral(literal));
+    }
+
+    /**
+     * Binds a variable to each of the given values, by appending a VALUES block to the query. Can be called for
+     * several variables with the same number of values, their values then make up the rows of the block.
+     *
+     * @param var    variable name, without leading '?'
+     * @param values values of the variable
+     * @return this
+     * @throws IllegalArgumentException if a value is an invalid IRI
+     */
+    public Bindings values(String var, Collection<? extends RDFNode> values) {
+      if (!valuesRows.isEmpty() && valuesRows.size() != values.size()) {
+        throw new IllegalArgumentException("All VALUES variables need the same number of values, expected "
+            + valuesRows.size() + " for ?" + var + " but got " + values.size());
+      }
+      final List<Node> nodes = new ArrayList<>(values.size());
+      values.forEach(value -> nodes.add(check(value.asNode())));
+      final boolean first = valuesVars.isEmpty();
+      valuesVars.add(Var.alloc(var));
+      for (int i = 0; i < nodes.size(); i++) {
+        if (first) valuesRows.add(new ArrayList<>());
+        valuesRows.get(i).add(nodes.get(i));
+      }
+      return this;
+    }
+
+    /**
+     * @return the bound query as text, ready to be sent
+     */
+    public String asString() {
+      final String query = substitutions.isEmpty()
+          ? getTemplateString()
+          : QueryTransformOps.replaceVars(template, substitutions).serialize();
+      if (valuesVars.isEmpty()) return query;
+
+      if (template.hasValues()) {
+        throw new IllegalStateException("Query template has a trailing VALUES block already");
+      }
+      final StringBuilder builder = new StringBuilder(query).append("\nVALUES (");
+      valuesVars.forEach(var -> builder.append(' ').append(var));
+      builder.append(" ) {");
+      for (List<Node> row : valuesRows) {
+        builder.append("\n  (");
+        row.forEach(node -> builder.append(' ').append(FmtUtils.stringForNode(node)));
+        builder.append(" )");
+      }
+      return builder.append("\n}").toString();
+    }
+
+    /**
+     * @return the bound query; only parses the query again if VALUES were added
+     */
+    public Query asQuery() {
+      if (!valuesVars.isEmpty()) return QueryFactory.create(asString(), Syntax.syntaxARQ);
+      return substitutions.isEmpty() ? getQuery() : QueryTransformOps.replaceVars(template, substitutions);
+    }
+
+    @Override
+    public String toString() {
+      return asString();
+    }
+  }
+}
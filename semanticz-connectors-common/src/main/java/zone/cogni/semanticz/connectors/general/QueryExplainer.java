@@ -0,0 +1,44 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package zone.cogni.semanticz.connectors.general;
+
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.query.Syntax;
+import org.apache.jena.sparql.algebra.Algebra;
+
+/**
+ * Fetches the execution plan of a query from a store, for the {@link SlowQueryLog}.
+ */
+@FunctionalInterface
+public interface QueryExplainer {
+
+  /**
+   * Plan of the query as optimized by Jena ARQ, which is the engine of Fuseki and of in-memory datasets.
+   */
+  QueryExplainer ALGEBRA = query -> Algebra.optimize(Algebra.compile(QueryFactory.create(query, Syntax.syntaxARQ)))
+      .toString();
+
+  /**
+   * @param query SPARQL query
+   * @return human-readable execution plan of the query
+   * @throws Exception if the plan could not be obtained
+   */
+  String explain(String query) throws Exception;
+}
@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package zone.cogni.semanticz.connectors.general;
+
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * Options of the calls made by the current thread, currently their timeout.
+ * <p>
+ * Options apply to every call a connector makes while the action given to {@link #call(Supplier)} or
+ * {@link #run(Runnable)} runs, on top of the default timeout configured on the connector (see
+ * {@link Config#setQueryTimeoutMillis(long)}), the shortest winning. The timeout is a deadline for all calls of the
+ * action together: a second query only gets the time the first one left. Nested options cannot extend the deadline of
+ * enclosing ones.
+ * </p>
+ * <pre>
+ *   List&lt;QuerySolution&gt; rows = QueryOptions.timeout(Duration.ofSeconds(2))
+ *       .call(() -&gt; sparqlService.executeSelectQuery(query, ResultSetFormatter::toList));
+ * </pre>
+ * <p>
+ * Calls running past their deadline fail with a {@link SparqlTimeoutException}. Connectors abort the HTTP exchange
+ * and, where the store supports it, also ask the store to stop the query at the deadline.
+ * </p>
+ * <p>
+ * The deadline belongs to the thread running the action. Calls handed over to other threads keep it when submitted to
+ * an executor wrapped by {@link #propagating(Executor)}, or to an {@link ExecutorAsyncSparqlService}.
+ * </p>
+ */
+public final class QueryOptions {
+
+  private static final ThreadLocal<Long> deadline = new ThreadLocal<>();
+
+  private final Duration timeout;
+
+  private QueryOptions(Duration timeout) {
+    this.timeout = timeout;
+  }
+
+  /**
+   * @param timeout maximum duration of the calls of the action
+   * @return options with the given timeout
+   */
+  public static QueryOptions timeout(Duration timeout) {
+    return new QueryOptions(timeout);
+  }
+
+  public Duration getTimeout() {
+    return timeout;
+  }
+
+  /**
+   * Runs an action with these options.
+   *
+   * @param action action making calls to connectors
+   * @return result of the action
+   */
+  public <T> T call(Supplier<T> action) {
+    return withDeadline(System.nanoTime() + timeout.toNanos(), action);
+  }
+
+  /**
+   * Runs an action with these options.
+   *
+   * @param action action making calls to connectors
+   */
+  public void run(Runnable action) {
+    call(() -> {
+      action.run();
+      return null;
+    });
+  }
+
+  /**
+   * Wraps an executor so that each task runs with the deadline of the thread submitting it, if any.
+   *
+   * @param executor executor to run the tasks on
+   * @return executor passing the deadline of the submitting thread on to its tasks
+   */
+  public static Executor propagating(Executor executor) {
+    return task -> {
+      final Long until = currentDeadline();
+      executor.execute(until == null ? task : () -> withDeadline(until, () -> {
+        task.run();
+        return null;
+      }));
+    };
+  }
+
+  /**
+   * @return {@link System#nanoTime()} deadline of the calls of the current thread, null if none
+   */
+  static Long currentDeadline() {
+    return deadline.get();
+  }
+
+  /**
+   * Runs an action with the given deadline, typically captured by {@link #currentDeadline()} on another thread.
+   *
+   * @param until {@link System#nanoTime()} deadline, null for none
+   */
+  static <T> T withDeadline(Long until, Supplier<T> action) {
+    final Long enclosing = deadline.get();
+    if (until == null) return action.get();
+    deadline.set(enclosing == null || until - enclosing < 0 ? until : enclosing);
+    try {
+      return action.get();
+    } finally {
+      if (enclosing == null) deadline.remove();
+      else deadline.set(enclosing);
+    }
+  }
+}
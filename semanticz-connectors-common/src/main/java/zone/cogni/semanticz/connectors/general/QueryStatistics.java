@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package zone.cogni.semanticz.connectors.general;
+
+import java.time.Duration;
+
+/**
+ * Aggregated statistics of the calls made with one query fingerprint, as snapshot by
+ * {@link QueryStatisticsRegistry#snapshot()}.
+ */
+public final class QueryStatistics {
+
+  private final String fingerprint;
+  private final String exampleQuery;
+  private final long calls;
+  private final long errors;
+  private final long totalNanos;
+  private final long maxNanos;
+  private final long p99Nanos;
+  private final long rows;
+  private final long bytes;
+
+  QueryStatistics(String fingerprint, String exampleQuery, long calls, long errors, long totalNanos, long maxNanos,
+                  long p99Nanos, long rows, long bytes) {
+    this.fingerprint = fingerprint;
+    this.exampleQuery = exampleQuery;
+    this.calls = calls;
+    this.errors = errors;
+    this.totalNanos = totalNanos;
+    this.maxNanos = maxNanos;
+    this.p99Nanos = p99Nanos;
+    this.rows = rows;
+    this.bytes = bytes;
+  }
+
+  /**
+   * @return normalized form of the query, see {@link zone.cogni.semanticz.connectors.utils.QueryFingerprint}
+   */
+  public String getFingerprint() {
+    return fingerprint;
+  }
+
+  /**
+   * @return the first query seen with this fingerprint
+   */
+  public String getExampleQuery() {
+    return exampleQuery;
+  }
+
+  public long getCalls() {
+    return calls;
+  }
+
+  public long getErrors() {
+    return errors;
+  }
+
+  public Duration getTotalTime() {
+    return Duration.ofNanos(totalNanos);
+  }
+
+  public Duration getMeanTime() {
+    return Duration.ofNanos(calls == 0 ? 0 : totalNanos / calls);
+  }
+
+  public Duration getMaxTime() {
+    return Duration.ofNanos(maxNanos);
+  }
+
+  /**
+   * @return 99th percentile of the call durations, accurate to about 25%
+   */
+  public Duration getP99Time() {
+    return Duration.ofNanos(p99Nanos);
+  }
+
+  /**
+   * @return total number of rows or triples returned
+   */
+  public long getRows() {
+    return rows;
+  }
+
+  /**
+   * @return total number of bytes sent and received, as far as reported by the connector
+   */
+  public long getBytes() {
+    return bytes;
+  }
+
+  @Override
+  public String toString() {
+    return "calls=" + calls + " errors=" + errors + " total=" + getTotalTime().toMillis() + "ms"
+        + " mean=" + getMeanTime().toMillis() + "ms" + " p99=" + getP99Time().toMillis() + "ms"
+        + " max=" + getMaxTime().toMillis() + "ms" + " rows=" + rows + " bytes=" + bytes + " : " + fingerprint;
+  }
+}
@@ -0,0 +1,192 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package zone.cogni.semanticz.connectors.general;
+
+import zone.cogni.semanticz.connectors.utils.QueryFingerprint;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory statistics of the queries and updates sent to a store, aggregated per
+ * {@link QueryFingerprint query fingerprint}: number of calls and errors, total, mean, maximum and 99th percentile
+ * duration, rows returned and bytes transferred. Meant to find the few query shapes responsible for most of the load.
+ * <p>
+ * Register it as {@link SparqlCallListener} of the connectors (see {@link Config#setCallListener}). The table is
+ * bounded: it is split in stripes, each with its own lock and holding at most its share of fingerprints, the least
+ * recently used one being dropped when full.
+ * </p>
+ */
+public class QueryStatisticsRegistry implements SparqlCallListener {
+
+  private static final int STRIPES = 16;
+
+  /**
+   * Duration histogram buckets: 4 per power of two, see {@link #bucket(long)}.
+   */
+  private static final int BUCKETS = 4 * 62;
+
+  private final Stripe[] stripes = new Stripe[STRIPES];
+
+  public QueryStatisticsRegistry() {
+    this(1024);
+  }
+
+  /**
+   * @param maxFingerprints maximum number of fingerprints kept
+   */
+  public QueryStatisticsRegistry(int maxFingerprints) {
+    final int perStripe = Math.max(1, (maxFingerprints + STRIPES - 1) / STRIPES);
+    for (int i = 0; i < STRIPES; i++) {
+      stripes[i] = new Stripe(perStripe);
+    }
+  }
+
+  @Override
+  public void onEnd(SparqlCall call) {
+    if (call.getQuery() == null) return;
+    final long bytes = Math.max(call.getRequestBytes(), 0) + Math.max(call.getResponseBytes(), 0);
+    record(call.getQuery(), call.getTotalNanos(), call.getResultCount(), bytes, call.getError() != null);
+  }
+
+  /**
+   * Records a call.
+   *
+   * @param query         query or update sent
+   * @param durationNanos duration of the call
+   * @param rows          rows or triples returned, negative if unknown
+   * @param bytes         bytes sent and received
+   * @param error         whether the call failed
+   */
+  public void record(String query, long durationNanos, long rows, long bytes, boolean error) {
+    final String fingerprint = QueryFingerprint.of(query);
+    final Stripe stripe = stripes[(fingerprint.hashCode() & 0x7fffffff) % STRIPES];
+    synchronized (stripe) {
+      stripe.computeIfAbsent(fingerprint, key -> new Entry(query))
+          .add(durationNanos, rows, bytes, error);
+    }
+  }
+
+  /**
+   * @return statistics per fingerprint, the fingerprints taking the most total time first
+   */
+  public List<QueryStatistics> snapshot() {
+    final List<QueryStatistics> result = new ArrayList<>();
+    for (Stripe stripe : stripes) {
+      synchronized (stripe) {
+        stripe.forEach((fingerprint, entry) -> result.add(entry.toStatistics(fingerprint)));
+      }
+    }
+    result.sort(Comparator.comparing(QueryStatistics::getTotalTime).reversed());
+    return result;
+  }
+
+  /**
+   * Drops all statistics.
+   */
+  public void reset() {
+    for (Stripe stripe : stripes) {
+      synchronized (stripe) {
+        stripe.clear();
+      }
+    }
+  }
+
+  /**
+   * @return index of the histogram bucket of a duration, about 25% wide
+   */
+  static int bucket(long nanos) {
+    if (nanos < 4) return (int) Math.max(nanos, 0);
+    final int msb = 63 - Long.numberOfLeadingZeros(nanos);
+    final int sub = (int) (nanos >>> (msb - 2)) & 3;
+    return Math.min(4 * (msb - 1) + sub, BUCKETS - 1);
+  }
+
+  /**
+   * @return the largest duration falling in the given bucket
+   */
+  static long bucketUpperBound(int bucket) {
+    if (bucket < 4) return bucket;
+    final int msb = bucket / 4 + 1;
+    final long lower = (4L + bucket % 4) << (msb - 2);
+    return lower + (1L << (msb - 2)) - 1;
+  }
+
+  private static class Stripe extends LinkedHashMap<String, Entry> {
+
+    private final int capacity;
+
+    private Stripe(int capacity) {
+      super(16, 0.75f, true);
+      this.capacity = capacity;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+      return size() > capacity;
+    }
+  }
+
+  /**
+   * Statistics of one fingerprint, guarded by the lock of its stripe.
+   */
+  private static class Entry {
+
+    private final String exampleQuery;
+    private final int[] histogram = new int[BUCKETS];
+    private long calls;
+    private long errors;
+    private long totalNanos;
+    private long maxNanos;
+    private long rows;
+    private long bytes;
+
+    private Entry(String exampleQuery) {
+      this.exampleQuery = exampleQuery;
+    }
+
+    private void add(long durationNanos, long rows, long bytes, boolean error) {
+      calls++;
+      if (error) errors++;
+      totalNanos += durationNanos;
+      maxNanos = Math.max(maxNanos, durationNanos);
+      if (rows > 0) this.rows += rows;
+      this.bytes += bytes;
+      histogram[bucket(durationNanos)]++;
+    }
+
+    private long p99() {
+      final long rank = (long) Math.ceil(calls * 0.99);
+      long seen = 0;
+      for (int i = 0; i < histogram.length; i++) {
+        seen += histogram[i];
+        if (seen >= rank) return Math.min(bucketUpperBound(i), maxNanos);
+      }
+      return maxNanos;
+    }
+
+    private QueryStatistics toStatistics(String fingerprint) {
+      return new QueryStatistics(fingerprint, exampleQuery, calls, errors, totalNanos, maxNanos, p99(), rows, bytes);
+    }
+  }
+}
@@ -19,18 +19,62 @@
 
 package zone.cogni.semanticz.connectors.general;
 
+import org.apache.jena.graph.Triple;
 import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QueryExecutionBuilder;
+import org.apache.jena.query.QuerySolution;
 import org.apache.jena.query.ResultSet;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdfconnection.RDFConnection;
+import org.apache.jena.sparql.exec.http.QueryExecutionHTTPBuilder;
+import zone.cogni.semanticz.connectors.utils.ExistenceCheck;
+import zone.cogni.semanticz.connectors.utils.JenaUtils;
 
 import java.io.File;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 /**
  * Implementation of SparqlService based on Jena RDFConnection API.
+ * <p>
+ * By default a connection is obtained and closed for every operation. Subclasses whose connections are thread-safe
+ * (e.g. {@code RDFConnectionRemote}) can opt in to connection reuse, in which case a single connection of each kind is
+ * created on first use, shared by all operations and only closed by {@link #close()}.
  */
-public abstract class RDFConnectionSparqlService implements SparqlService {
+public abstract class RDFConnectionSparqlService implements SparqlService, AutoCloseable {
+
+  private static final ExecutorService deadlineExecutor = Executors.newCachedThreadPool(daemonThreadFactory());
+
+  private final boolean reuseConnections;
+
+  private volatile RDFConnection sharedConnection;
+  private volatile RDFConnection sharedConstructConnection;
+
+  protected RDFConnectionSparqlService() {
+    this(false);
+  }
+
+  /**
+   * @param reuseConnections whether the connections provided by {@link #getConnection()} and
+   *                         {@link #getConstructConnection()} are thread-safe and shall be shared by all operations
+   */
+  protected RDFConnectionSparqlService(boolean reuseConnections) {
+    this.reuseConnections = reuseConnections;
+  }
 
   /**
    * Provides an RDFConnection instance for the given endpoint.
@@ -48,64 +92,268 @@ public abstract class RDFConnectionSparqlService implements SparqlService {
    */
   protected abstract RDFConnection getConstructConnection();
 
+  /**
+   * @return listener notified of the calls made by this service, none by default
+   */
+  protected SparqlCallListener getCallListener() {
+    return SparqlCallListener.NOOP;
+  }
+
+  /**
+   * @return endpoint reported to the call listener, none by default
+   */
+  protected String getEndpoint() {
+    return null;
+  }
+
+  /**
+   * @return default timeout of the calls made by this service in milliseconds, 0 for none
+   */
+  protected long getQueryTimeoutMillis() {
+    return 0;
+  }
+
+  /**
+   * @return executor running the parallel queries of {@link #checkExisting(Set, int, int)} and the operations bounded
+   * by a deadline, see {@link Config#getExecutor()}; null by default, for pools dedicated to this class
+   */
+  protected Executor getExecutor() {
+    return null;
+  }
+
+  private SparqlCall startCall(SparqlOperation operation, String query) {
+    return SparqlCall.start(getCallListener(), operation, getClass().getSimpleName(), getEndpoint(), query)
+        .limitTo(getQueryTimeoutMillis());
+  }
+
+  private SparqlCall startGraphCall(SparqlOperation operation, String graphUri) {
+    return SparqlCall.start(getCallListener(), operation, getClass().getSimpleName(), getEndpoint(), null, graphUri)
+        .limitTo(getQueryTimeoutMillis());
+  }
+
+  /**
+   * Creates the query execution of a call, with the headers the listeners asked for and bounded by the deadline of the
+   * call.
+   */
+  private static QueryExecution query(RDFConnection connection, SparqlCall call, String query) {
+    final Map<String, String> headers = call.getHeaders();
+    final long timeLeft = call.getTimeLeftMillis();
+    if (headers.isEmpty() && timeLeft < 0) return connection.query(query);
+    final QueryExecutionBuilder builder = connection.newQuery();
+    if (builder instanceof QueryExecutionHTTPBuilder) {
+      headers.forEach(((QueryExecutionHTTPBuilder) builder)::httpHeader);
+    }
+    if (timeLeft > 0) {
+      builder.timeout(timeLeft, TimeUnit.MILLISECONDS);
+    }
+    return builder.query(query).build();
+  }
+
+  /**
+   * Obtains a connection, recording the time it took as connection phase of the call.
+   */
+  private RDFConnection connect(SparqlCall call, Supplier<RDFConnection> connection) {
+    try {
+      final RDFConnection result = connection.get();
+      call.mark(SparqlCallPhase.connect);
+      return result;
+    } catch (Throwable e) {
+      call.fail(e);
+      throw e;
+    }
+  }
+
+  /**
+   * Runs an operation not returning results on a connection, recording it on the call.
+   */
+  private void run(SparqlCall call, Supplier<RDFConnection> connection, Consumer<RDFConnection> action) {
+    runWithConnection(connect(call, connection), c -> {
+      try {
+        if (call.getTimeLeftMillis() < 0) action.accept(c);
+        else runUntilDeadline(call, () -> action.accept(c), getExecutor());
+        call.mark(SparqlCallPhase.serverExecution);
+        call.end();
+      } catch (Throwable e) {
+        call.fail(e);
+        throw e;
+      }
+    });
+  }
+
+  /**
+   * Jena offers no timeout for updates, uploads and deletes, so these run on another thread when the call has a
+   * deadline, the caller giving up and interrupting that thread once the deadline passed.
+   */
+  private static void runUntilDeadline(SparqlCall call, Runnable action, Executor executor) {
+    if (call.isExpired()) throw new SparqlTimeoutException(call.getOperation() + " not sent, its deadline passed");
+    final FutureTask<Void> task = new FutureTask<>(action, null);
+    (executor == null ? deadlineExecutor : executor).execute(task);
+    try {
+      task.get(call.getTimeLeftMillis(), TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      task.cancel(true);
+      throw new SparqlTimeoutException(call.getOperation() + " on " + call.getEndpoint() + " timed out", e);
+    } catch (InterruptedException e) {
+      task.cancel(true);
+      Thread.currentThread().interrupt();
+      throw new CompletionException(e);
+    } catch (ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+      if (cause instanceof Error) throw (Error) cause;
+      throw new CompletionException(cause);
+    }
+  }
+
+  private static ThreadFactory daemonThreadFactory() {
+    final AtomicInteger counter = new AtomicInteger();
+    return runnable -> {
+      final Thread thread = new Thread(runnable, "semanticz-rdfconnection-" + counter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  private RDFConnection acquireConnection() {
+    if (!reuseConnections) return getConnection();
+
+    RDFConnection result = sharedConnection;
+    if (result == null) {
+      synchronized (this) {
+        result = sharedConnection;
+        if (result == null) {
+          result = getConnection();
+          sharedConnection = result;
+        }
+      }
+    }
+    return result;
+  }
+
+  private RDFConnection acquireConstructConnection() {
+    if (!reuseConnections) return getConstructConnection();
+
+    RDFConnection result = sharedConstructConnection;
+    if (result == null) {
+      synchronized (this) {
+        result = sharedConstructConnection;
+        if (result == null) {
+          result = getConstructConnection();
+          sharedConstructConnection = result;
+        }
+      }
+    }
+    return result;
+  }
+
+  private void release(RDFConnection connection) {
+    if (!reuseConnections) connection.close();
+  }
+
+  private <R> R withConnection(RDFConnection connection, Function<RDFConnection, R> action) {
+    try {
+      return action.apply(connection);
+    } finally {
+      release(connection);
+    }
+  }
+
+  private void runWithConnection(RDFConnection connection, Consumer<RDFConnection> action) {
+    withConnection(connection, c -> {
+      action.accept(c);
+      return null;
+    });
+  }
+
+  /**
+   * Closes the shared connections, if connection reuse is enabled. The service must not be used afterwards.
+   */
   @Override
-  public void uploadTtlFile(File file) {
-    try (RDFConnection connection = getConnection()) {
-      connection.load(file.toURI().toString(), file.getPath());
+  public void close() {
+    synchronized (this) {
+      if (sharedConnection != null) sharedConnection.close();
+      if (sharedConstructConnection != null) sharedConstructConnection.close();
+      sharedConnection = null;
+      sharedConstructConnection = null;
     }
   }
 
+  @Override
+  public void uploadTtlFile(File file) {
+    run(startCall(SparqlOperation.uploadTtlFile, null), this::acquireConnection,
+        connection -> connection.load(file.toURI().toString(), file.getPath()));
+  }
+
   @Override
   public Model executeConstructQuery(String query) {
-    try (RDFConnection connection = getConstructConnection();
-        QueryExecution queryExecution = connection.query(query)) {
-      return queryExecution.execConstruct();
+    final SparqlCall call = startCall(SparqlOperation.construct, query);
+    return withConnection(connect(call, this::acquireConstructConnection),
+        connection -> JenaUtils.construct(call, () -> query(connection, call, query)));
+  }
+
+  @Override
+  public Stream<Triple> constructStream(String query) {
+    final SparqlCall call = startCall(SparqlOperation.construct, query);
+    final RDFConnection connection = connect(call, this::acquireConstructConnection);
+    try {
+      return JenaUtils.constructStream(call, () -> query(connection, call, query)).onClose(() -> release(connection));
+    } catch (RuntimeException e) {
+      release(connection);
+      throw e;
     }
   }
 
   @Override
   public void executeUpdateQuery(String query) {
-    try (RDFConnection connection = getConnection()) {
-      connection.update(query);
-    }
+    run(startCall(SparqlOperation.update, query), this::acquireConnection, connection -> connection.update(query));
   }
 
   @Override
   public void updateGraph(String graphUri, Model model) {
-    try (RDFConnection connection = getConnection()) {
-      connection.load(graphUri, model);
-    }
+    run(startGraphCall(SparqlOperation.updateGraph, graphUri), this::acquireConnection,
+        connection -> connection.load(graphUri, model));
   }
 
   @Override
   public <R> R executeSelectQuery(String query, Function<ResultSet, R> resultHandler) {
-    try (RDFConnection connection = getConnection();
-        QueryExecution queryExecution = connection.query(
-        query)) {
-      return resultHandler.apply(queryExecution.execSelect());
+    final SparqlCall call = startCall(SparqlOperation.select, query);
+    return withConnection(connect(call, this::acquireConnection),
+        connection -> JenaUtils.select(call, () -> query(connection, call, query), resultHandler));
+  }
+
+  @Override
+  public Stream<QuerySolution> selectStream(String query) {
+    final SparqlCall call = startCall(SparqlOperation.select, query);
+    final RDFConnection connection = connect(call, this::acquireConnection);
+    try {
+      return JenaUtils.selectStream(call, () -> query(connection, call, query)).onClose(() -> release(connection));
+    } catch (RuntimeException e) {
+      release(connection);
+      throw e;
     }
   }
 
   @Override
   public boolean executeAskQuery(String askQuery) {
-    try (RDFConnection connection = getConnection();
-        QueryExecution queryExecution = connection.query(
-        askQuery)) {
-      return queryExecution.execAsk();
-    }
+    final SparqlCall call = startCall(SparqlOperation.ask, askQuery);
+    return withConnection(connect(call, this::acquireConnection),
+        connection -> JenaUtils.ask(call, () -> query(connection, call, askQuery)));
+  }
+
+  @Override
+  public Map<String, Boolean> checkExisting(Set<String> uris, int chunkSize, int parallelism) {
+    return ExistenceCheck.checkExisting(this, uris, chunkSize, parallelism, getExecutor());
   }
 
   @Override
   public void dropGraph(String graphUri) {
-    try (RDFConnection connection = getConnection()) {
-      connection.delete(graphUri);
-    }
+    run(startGraphCall(SparqlOperation.dropGraph, graphUri), this::acquireConnection,
+        connection -> connection.delete(graphUri));
   }
 
   @Override
   public void replaceGraph(String graphUri, Model model) {
-    try (RDFConnection connection = getConnection()) {
-      connection.put(graphUri, model);
-    }
+    run(startGraphCall(SparqlOperation.replaceGraph, graphUri), this::acquireConnection,
+        connection -> connection.put(graphUri, model));
   }
 }
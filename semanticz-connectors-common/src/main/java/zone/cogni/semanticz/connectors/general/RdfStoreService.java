@@ -20,23 +20,22 @@
 package zone.cogni.semanticz.connectors.general;
 
 
+import org.apache.jena.graph.Triple;
 import org.apache.jena.query.Query;
 import org.apache.jena.query.QueryFactory;
+import org.apache.jena.query.QuerySolution;
 import org.apache.jena.query.QuerySolutionMap;
+import org.apache.jena.query.ResultSetFormatter;
 import org.apache.jena.query.Syntax;
 import org.apache.jena.rdf.model.Model;
-import org.apache.jena.vocabulary.RDF;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import zone.cogni.semanticz.connectors.utils.AutoCloseModels;
 import zone.cogni.sem.jena.template.JenaResultSetHandler;
 
 import java.io.Closeable;
 import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
-
-import static java.util.function.Function.identity;
+import java.util.stream.Stream;
 
 @Deprecated
 public interface RdfStoreService extends Closeable {
@@ -67,6 +66,14 @@ public interface RdfStoreService extends Closeable {
     return executeSelectQuery(query, resultSetHandler, null);
   }
 
+  /**
+   * Executes the SELECT query and streams its solutions. The returned stream must be closed by the caller.
+   * The default implementation materializes the whole result, implementations capable of streaming override it.
+   */
+  default Stream<QuerySolution> executeSelectStream(Query query, QuerySolutionMap bindings) {
+    return executeSelectQuery(query, bindings, ResultSetFormatter::toList).stream();
+  }
+
   boolean executeAskQuery(Query query, QuerySolutionMap bindings);
 
   default boolean executeAskQuery(String query) {
@@ -76,6 +83,14 @@ public interface RdfStoreService extends Closeable {
 
   Model executeConstructQuery(Query query, QuerySolutionMap bindings);
 
+  /**
+   * Executes the CONSTRUCT query and streams the resulting triples. The returned stream must be closed by the caller.
+   * The default implementation builds the whole Model, implementations capable of streaming override it.
+   */
+  default Stream<Triple> executeConstructStream(Query query, QuerySolutionMap bindings) {
+    return executeConstructQuery(query, bindings).getGraph().stream();
+  }
+
   default Model executeConstructQuery(String query) {
     Query parsedQuery = QueryFactory.create(query, Syntax.syntaxARQ);
     return executeConstructQuery(parsedQuery, new QuerySolutionMap());
@@ -99,25 +114,10 @@ public interface RdfStoreService extends Closeable {
   }
 
   default Map<String, Boolean> checkExisting(Set<String> uris) {
-    //We make a construct query, where the construct itself is "<uri> <http://example.com/prop> ?b{n}" for each URI
-    //  and the where is "<uri> a ?anyType . bind(<http://example.com/somthing> as ?b{n}" for each URI
-    //This will make a triple with "<uri> <http://example.com/prop> <http://example.com/somthing>" if the URI has a type, or nothing if no type
-    //Then we just check if each URI exists as subject in the resulting model.
-    String construct = "";
-    String where = "";
-    int counter = 0;
-    for (String uri : uris) {
-      counter++;
-      if (counter > 1) where += " UNION ";
-      construct += "<" + uri + "> <http://example.com/prop> ?b" + counter + " . ";
-      where += "{ <" + uri + "> a ?anyType . bind(<http://example.com/somthing> as ?b" + counter + ")} ";
-    }
-    String query = "PREFIX rdf: <" + RDF.uri + "> " +
-                   "CONSTRUCT { " + construct + " } " +
-                   "WHERE { " + where + " }";
-    try (AutoCloseModels autoCloseModels = new AutoCloseModels()) {
-      Model model = autoCloseModels.add(executeConstructQuery(query));
-      return uris.stream().collect(Collectors.toMap(identity(), uri -> model.contains(model.createResource(uri), null)));
-    }
+    return new RdfStoreSparqlService(this).checkExisting(uris);
+  }
+
+  default Map<String, Boolean> checkExisting(Set<String> uris, int chunkSize, int parallelism) {
+    return new RdfStoreSparqlService(this).checkExisting(uris, chunkSize, parallelism);
   }
-}
\ No newline at end of file
+}
@@ -19,15 +19,21 @@
 
 package zone.cogni.semanticz.connectors.general;
 
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.query.QuerySolution;
+import org.apache.jena.query.QuerySolutionMap;
 import org.apache.jena.query.ResultSet;
+import org.apache.jena.query.Syntax;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.riot.RDFDataMgr;
 
 import java.io.File;
 import java.util.function.Function;
+import java.util.stream.Stream;
 
 @SuppressWarnings("deprecation")
-public class RdfStoreSparqlService implements SparqlService {
+public class RdfStoreSparqlService implements SparqlService, AutoCloseable {
 
   private final RdfStoreService rdfStoreService;
 
@@ -35,6 +41,14 @@ public class RdfStoreSparqlService implements SparqlService {
     this.rdfStoreService = rdfStoreService;
   }
 
+  /**
+   * Closes the wrapped store service, e.g. releasing its http client. The service must not be used afterwards.
+   */
+  @Override
+  public void close() {
+    rdfStoreService.close();
+  }
+
   @Override
   public void uploadTtlFile(File file) {
     Model model = RDFDataMgr.loadModel(file.getAbsolutePath());
@@ -46,6 +60,11 @@ public class RdfStoreSparqlService implements SparqlService {
     return rdfStoreService.executeConstructQuery(query);
   }
 
+  @Override
+  public Stream<Triple> constructStream(String query) {
+    return rdfStoreService.executeConstructStream(QueryFactory.create(query, Syntax.syntaxARQ), new QuerySolutionMap());
+  }
+
   @Override
   public void executeUpdateQuery(String updateQuery) {
     rdfStoreService.executeUpdateQuery(updateQuery);
@@ -66,6 +85,11 @@ public class RdfStoreSparqlService implements SparqlService {
     return rdfStoreService.executeSelectQuery(query, resultHandler::apply);
   }
 
+  @Override
+  public Stream<QuerySolution> selectStream(String query) {
+    return rdfStoreService.executeSelectStream(QueryFactory.create(query, Syntax.syntaxARQ), new QuerySolutionMap());
+  }
+
   @Override
   public void dropGraph(String graphUri) {
     rdfStoreService.deleteGraph(graphUri);
@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package zone.cogni.semanticz.connectors.general;
+
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import zone.cogni.semanticz.connectors.utils.ResultSetSnapshot;
+
+import java.io.File;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Decorator coalescing identical concurrent SELECT, ASK and CONSTRUCT queries: while a query is running against the
+ * wrapped service, callers sending the exact same query text wait for its result instead of sending it again.
+ * <p>
+ * Results are shared, so SELECT results are materialized (see {@link ResultSetSnapshot}) and every caller gets its own
+ * copy of CONSTRUCT results. Failures are shared as well, except timeouts: the leading query timing out says nothing
+ * about the time the callers waiting for it have left, so they send the query again. Streaming queries are not
+ * coalesced, as their results are not meant to be held in memory.
+ * </p>
+ * <p>
+ * Waiting callers wait at most until their own deadline (see {@link QueryOptions}), and stop waiting when interrupted.
+ * </p>
+ * <p>
+ * A query sent after a write through this decorator completed never waits for a query started before it. Unlike
+ * {@link CachingSparqlService}, nothing is kept once a query completed.
+ * </p>
+ */
+public class SingleFlightSparqlService extends DelegatingSparqlService {
+
+  private static final Object RETRY = new Object();
+
+  private final ConcurrentHashMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+  private final LongAdder coalesced = new LongAdder();
+
+  /**
+   * @param delegate service to coalesce the queries of
+   */
+  public SingleFlightSparqlService(SparqlService delegate) {
+    super(delegate);
+  }
+
+  @Override
+  public <R> R executeSelectQuery(String query, Function<ResultSet, R> resultHandler) {
+    final ResultSetSnapshot snapshot = shared("select", query,
+        () -> getDelegate().executeSelectQuery(query, ResultSetSnapshot::of));
+    return resultHandler.apply(snapshot.toResultSet());
+  }
+
+  @Override
+  public boolean executeAskQuery(String askQuery) {
+    return shared("ask", askQuery, () -> getDelegate().executeAskQuery(askQuery));
+  }
+
+  @Override
+  public Model executeConstructQuery(String constructQuery) {
+    final Model model = shared("construct", constructQuery, () -> getDelegate().executeConstructQuery(constructQuery));
+    // callers are free to modify the returned model
+    return ModelFactory.createDefaultModel().add(model);
+  }
+
+  @Override
+  public void executeUpdateQuery(String updateQuery) {
+    try {
+      getDelegate().executeUpdateQuery(updateQuery);
+    } finally {
+      inFlight.clear();
+    }
+  }
+
+  @Override
+  public void uploadTtlFile(File file) {
+    try {
+      getDelegate().uploadTtlFile(file);
+    } finally {
+      inFlight.clear();
+    }
+  }
+
+  @Override
+  public void dropGraph(String graphUri) {
+    try {
+      getDelegate().dropGraph(graphUri);
+    } finally {
+      inFlight.clear();
+    }
+  }
+
+  @Override
+  public void updateGraph(String graphUri, Model model) {
+    try {
+      getDelegate().updateGraph(graphUri, model);
+    } finally {
+      inFlight.clear();
+    }
+  }
+
+  @Override
+  public void replaceGraph(String graphUri, Model model) {
+    try {
+      getDelegate().replaceGraph(graphUri, model);
+    } finally {
+      inFlight.clear();
+    }
+  }
+
+  /**
+   * @return number of queries answered with the result of an identical query already running
+   */
+  public long getCoalescedCount() {
+    return coalesced.sum();
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> T shared(String kind, String query, Supplier<T> loader) {
+    final String key = kind + "\n" + query;
+    final CompletableFuture<Object> flight = new CompletableFuture<>();
+    CompletableFuture<Object> leader;
+    while ((leader = inFlight.putIfAbsent(key, flight)) != null) {
+      coalesced.increment();
+      final Object result = await(leader);
+      if (result != RETRY) return (T) result;
+      inFlight.remove(key, leader);
+    }
+
+    try {
+      final T value = loader.get();
+      flight.complete(value);
+      return value;
+    } catch (Throwable e) {
+      flight.completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlight.remove(key, flight);
+    }
+  }
+
+  /**
+   * Waits for the result of the leading query until the deadline of the current thread, if any.
+   *
+   * @return the result, or {@link #RETRY} if the leading query timed out
+   */
+  private static Object await(CompletableFuture<Object> leader) {
+    final Long deadline = QueryOptions.currentDeadline();
+    try {
+      return deadline == null ? leader.get() : leader.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+    } catch (TimeoutException e) {
+      throw new SparqlTimeoutException("Timed out waiting for an identical query already running", e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CompletionException(e);
+    } catch (ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof SparqlTimeoutException) return RETRY;
+      if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+      if (cause instanceof Error) throw (Error) cause;
+      throw new CompletionException(cause);
+    }
+  }
+}
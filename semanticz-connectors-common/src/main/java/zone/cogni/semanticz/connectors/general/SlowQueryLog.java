@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package zone.cogni.semanticz.connectors.general;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Logs the calls taking longer than a threshold, together with the execution plan of the query as reported by the
+ * store, see {@link Config#setSlowQueryThresholdMillis(long)}.
+ * <p>
+ * The plan is fetched out-of-band, on a background thread, so that the slow call itself is not delayed further.
+ * Only a sample of the slow calls is logged, and at most a given number per minute, so that a store having a bad
+ * time is not flooded with explain requests on top of it.
+ * </p>
+ */
+public class SlowQueryLog implements SparqlCallListener {
+
+  private static final Logger log = LoggerFactory.getLogger(SlowQueryLog.class);
+
+  private static final Set<SparqlOperation> EXPLAINABLE = EnumSet.of(SparqlOperation.select, SparqlOperation.ask,
+      SparqlOperation.construct);
+
+  private static final ThreadPoolExecutor explainExecutor = createExplainExecutor();
+
+  private final long thresholdNanos;
+  private final double sampleRate;
+  private final int maxPerMinute;
+  private final QueryExplainer explainer;
+  private final LongSupplier nanoTime;
+
+  private long windowStart;
+  private int loggedInWindow;
+  private int suppressedInWindow;
+
+  /**
+   * @param thresholdMillis duration above which a call is logged
+   * @param sampleRate      fraction of the slow calls to log, between 0 and 1
+   * @param maxPerMinute    maximum number of slow calls logged per minute, 0 to log none
+   * @param explainer       fetches the plan of slow queries, or {@code null} to log the query only
+   */
+  public SlowQueryLog(long thresholdMillis, double sampleRate, int maxPerMinute, QueryExplainer explainer) {
+    this(thresholdMillis, sampleRate, maxPerMinute, explainer, System::nanoTime);
+  }
+
+  SlowQueryLog(long thresholdMillis, double sampleRate, int maxPerMinute, QueryExplainer explainer,
+               LongSupplier nanoTime) {
+    this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+    this.sampleRate = sampleRate;
+    this.maxPerMinute = maxPerMinute;
+    this.explainer = explainer;
+    this.nanoTime = nanoTime;
+  }
+
+  /**
+   * @param config    configuration of a connector
+   * @param explainer fetches plans from the store of the connector, or {@code null}
+   * @return the call listener of the configuration, also logging slow calls if a threshold, a sample rate and a number
+   * of logs per minute are configured
+   */
+  public static SparqlCallListener withSlowQueryLog(Config config, QueryExplainer explainer) {
+    if (config.getSlowQueryThresholdMillis() <= 0 || config.getSlowQuerySampleRate() <= 0
+        || config.getSlowQueryLogsPerMinute() <= 0) {
+      return config.getCallListener();
+    }
+    return SparqlCallListener.composite(config.getCallListener(), new SlowQueryLog(
+        config.getSlowQueryThresholdMillis(), config.getSlowQuerySampleRate(), config.getSlowQueryLogsPerMinute(),
+        explainer));
+  }
+
+  @Override
+  public void onEnd(SparqlCall call) {
+    final long durationNanos = call.getTotalNanos();
+    if (durationNanos < thresholdNanos) return;
+    if (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate) return;
+
+    final int suppressed = acquire();
+    if (suppressed < 0) return;
+
+    final String summary = "Slow " + call.getOperation() + " on " + call.getEndpoint() + " took "
+        + TimeUnit.NANOSECONDS.toMillis(durationNanos) + " ms"
+        + (call.getError() == null ? "" : " and failed with " + call.getError())
+        + (suppressed == 0 ? "" : " (" + suppressed + " slow calls not logged in the last minute)");
+    if (explainer == null || call.getQuery() == null || !EXPLAINABLE.contains(call.getOperation())) {
+      log.warn("{}:\n{}", summary, call.getQuery());
+      return;
+    }
+
+    try {
+      explainExecutor.execute(() -> log.warn("{}:\n{}\nPlan:\n{}", summary, call.getQuery(), explain(call.getQuery())));
+    } catch (RejectedExecutionException e) {
+      log.warn("{}:\n{}", summary, call.getQuery());
+    }
+  }
+
+  /**
+   * Takes a permit of the current one-minute window.
+   *
+   * @return number of slow calls not logged in the previous window, or -1 if no permit is left
+   */
+  synchronized int acquire() {
+    if (maxPerMinute <= 0) return -1;
+    final long now = nanoTime.getAsLong();
+    if (now - windowStart > TimeUnit.MINUTES.toNanos(1) || loggedInWindow == 0) {
+      final int suppressed = suppressedInWindow;
+      windowStart = now;
+      loggedInWindow = 1;
+      suppressedInWindow = 0;
+      return suppressed;
+    }
+    if (loggedInWindow >= maxPerMinute) {
+      suppressedInWindow++;
+      return -1;
+    }
+    loggedInWindow++;
+    return 0;
+  }
+
+  private String explain(String query) {
+    try {
+      return explainer.explain(query);
+    } catch (Exception e) {
+      log.debug("Explaining slow query failed", e);
+      return "unavailable: " + e;
+    }
+  }
+
+  /**
+   * @return single daemon thread with a short queue, explains not fitting in are rejected and only the query is logged
+   */
+  private static ThreadPoolExecutor createExplainExecutor() {
+    final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+        new ArrayBlockingQueue<>(16), runnable -> {
+      final Thread thread = new Thread(runnable, "semanticz-slow-query-explain");
+      thread.setDaemon(true);
+      return thread;
+    });
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+}
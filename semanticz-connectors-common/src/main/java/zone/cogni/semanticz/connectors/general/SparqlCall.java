@@ -0,0 +1,426 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package zone.cogni.semanticz.connectors.general;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * A single call of a {@link SparqlService} implementation to its store, with the time spent in each
+ * {@link SparqlCallPhase}, reported to a {@link SparqlCallListener}.
+ * <p>
+ * Connectors {@link #start} a call, {@link #mark} the end of each phase as it happens and finally {@link #end} or
+ * {@link #fail} it, which notifies the listener. Phases not observed by a connector stay at -1. A failing listener is
+ * logged, it never fails the call.
+ * </p>
+ * <p>
+ * Listeners can ask for {@link #setHeader headers} to be added to the HTTP requests of the call, e.g. to propagate a
+ * trace context, when they are notified of its start.
+ * </p>
+ * <p>
+ * Calls made within {@link QueryOptions} with a timeout, or by connectors with a default timeout, have a deadline
+ * which connectors apply to the exchange with the store, see {@link #getTimeLeftMillis()}.
+ * </p>
+ * <p>
+ * Every call is also recorded as a {@link SparqlCallEvent} when Java Flight Recorder is running with that event
+ * enabled.
+ * </p>
+ */
+public final class SparqlCall {
+
+  private static final Logger log = LoggerFactory.getLogger(SparqlCall.class);
+  private static final SparqlCallPhase[] PHASES = SparqlCallPhase.values();
+  /**
+   * Calls started on this thread while {@link #collectStarted} runs an action, null outside of it.
+   */
+  private static final ThreadLocal<List<SparqlCall>> started = new ThreadLocal<>();
+
+  private final SparqlCallListener listener;
+  private final SparqlOperation operation;
+  private final String connector;
+  private final String endpoint;
+  private final String query;
+  private final String graphUri;
+  private final long startNanos;
+  private final long[] phaseNanos = new long[PHASES.length];
+  private final SparqlCallEvent event;
+
+  private long lastMarkNanos;
+  private long totalNanos = -1L;
+  private long requestBytes = -1L;
+  private long responseBytes = -1L;
+  private long resultCount = -1L;
+  private Throwable error;
+  private boolean ended;
+  private Map<Object, Object> attributes;
+  private Map<String, String> headers;
+  private Long deadlineNanos;
+
+  private SparqlCall(SparqlCallListener listener, SparqlOperation operation, String connector, String endpoint,
+                     String query, String graphUri) {
+    this.listener = listener;
+    this.operation = operation;
+    this.connector = connector;
+    this.endpoint = endpoint;
+    this.query = query;
+    this.graphUri = graphUri;
+    Arrays.fill(phaseNanos, -1L);
+    final SparqlCallEvent callEvent = new SparqlCallEvent();
+    if (callEvent.isEnabled()) {
+      callEvent.begin();
+      this.event = callEvent;
+    } else {
+      this.event = null;
+    }
+    this.startNanos = System.nanoTime();
+    this.lastMarkNanos = startNanos;
+    this.deadlineNanos = QueryOptions.currentDeadline();
+  }
+
+  /**
+   * Starts a call and notifies the listener.
+   *
+   * @param listener  listener to notify
+   * @param operation operation executed by the call
+   * @param connector type of the connector making the call
+   * @param endpoint  endpoint called
+   * @param query     query or update sent, null for graph uploads and deletions
+   * @return the started call
+   */
+  public static SparqlCall start(SparqlCallListener listener, SparqlOperation operation, String connector,
+                                 String endpoint, String query) {
+    return start(listener, operation, connector, endpoint, query, null);
+  }
+
+  /**
+   * Starts a call on a graph and notifies the listener.
+   *
+   * @param listener  listener to notify
+   * @param operation operation executed by the call
+   * @param connector type of the connector making the call
+   * @param endpoint  endpoint called
+   * @param query     query or update sent, null for graph uploads and deletions
+   * @param graphUri  graph uploaded, replaced or dropped
+   * @return the started call
+   */
+  public static SparqlCall start(SparqlCallListener listener, SparqlOperation operation, String connector,
+                                 String endpoint, String query, String graphUri) {
+    final SparqlCall call = new SparqlCall(listener, operation, connector, endpoint, query, graphUri);
+    final List<SparqlCall> collected = started.get();
+    if (collected != null) collected.add(call);
+    try {
+      listener.onStart(call);
+    } catch (RuntimeException e) {
+      log.warn("Call listener {} failed on start of {}", listener, operation, e);
+    }
+    return call;
+  }
+
+  /**
+   * Runs an action, collecting the calls it starts on the current thread, e.g. to report the sizes the connector
+   * measured. Calls collected by a nested action are collected by the enclosing one as well.
+   *
+   * @param calls  receives the calls started
+   * @param action action to run
+   * @return result of the action
+   */
+  static <T> T collectStarted(List<SparqlCall> calls, Supplier<T> action) {
+    final List<SparqlCall> outer = started.get();
+    started.set(calls);
+    try {
+      return action.get();
+    } finally {
+      if (outer == null) {
+        started.remove();
+      } else {
+        outer.addAll(calls);
+        started.set(outer);
+      }
+    }
+  }
+
+  /**
+   * Bounds the call by a timeout from its start, typically the default timeout of the connector, keeping the deadline
+   * of the {@link QueryOptions} if that is earlier.
+   *
+   * @param timeoutMillis timeout, 0 for none
+   * @return this call
+   */
+  public synchronized SparqlCall limitTo(long timeoutMillis) {
+    if (timeoutMillis <= 0) return this;
+    final long deadline = startNanos + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    if (deadlineNanos == null || deadline - deadlineNanos < 0) deadlineNanos = deadline;
+    return this;
+  }
+
+  /**
+   * @return milliseconds left before the deadline of the call, at least 1 so that an expired call times out right
+   * away, or -1 if the call has no deadline
+   */
+  public synchronized long getTimeLeftMillis() {
+    if (deadlineNanos == null) return -1L;
+    return Math.max(1L, TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime()));
+  }
+
+  /**
+   * @return whether the deadline of the call passed
+   */
+  public synchronized boolean isExpired() {
+    return deadlineNanos != null && System.nanoTime() - deadlineNanos >= 0;
+  }
+
+  /**
+   * Ends the given phase now, i.e. adds the time since the previous mark (or the start) to it.
+   *
+   * @param phase phase which just ended
+   */
+  public synchronized void mark(SparqlCallPhase phase) {
+    final long now = System.nanoTime();
+    addNanos(phase, now - lastMarkNanos);
+    lastMarkNanos = now;
+  }
+
+  /**
+   * Adds time measured separately to a phase, e.g. for phases overlapping with others. Does not move the mark.
+   *
+   * @param phase phase to add the time to
+   * @param nanos time spent in the phase
+   */
+  public synchronized void add(SparqlCallPhase phase, long nanos) {
+    addNanos(phase, nanos);
+  }
+
+  private void addNanos(SparqlCallPhase phase, long nanos) {
+    final int index = phase.ordinal();
+    phaseNanos[index] = Math.max(phaseNanos[index], 0L) + nanos;
+  }
+
+  /**
+   * Ends the call successfully and notifies the listener.
+   *
+   * @param result result of the call
+   * @return the given result
+   */
+  public <T> T end(T result) {
+    complete(null);
+    return result;
+  }
+
+  /**
+   * Ends the call successfully and notifies the listener.
+   */
+  public void end() {
+    complete(null);
+  }
+
+  /**
+   * Ends the call with a failure and notifies the listener.
+   *
+   * @param error the failure
+   * @return the given failure, for rethrowing
+   */
+  public <E extends Throwable> E fail(E error) {
+    complete(error);
+    return error;
+  }
+
+  private void complete(Throwable error) {
+    synchronized (this) {
+      if (ended) return;
+      ended = true;
+      this.totalNanos = System.nanoTime() - startNanos;
+      this.error = error;
+    }
+    if (event != null) commitEvent();
+    try {
+      listener.onEnd(this);
+    } catch (RuntimeException e) {
+      log.warn("Call listener {} failed on end of {}", listener, operation, e);
+    }
+  }
+
+  private void commitEvent() {
+    event.end();
+    if (!event.shouldCommit()) return;
+
+    event.operation = operation.name();
+    event.connector = connector;
+    event.endpoint = endpoint;
+    event.queryHash = query == null ? 0 : query.hashCode();
+    synchronized (this) {
+      event.requestBytes = requestBytes;
+      event.responseBytes = responseBytes;
+      event.resultCount = resultCount;
+      event.error = error == null ? null : error.toString();
+    }
+    event.commit();
+  }
+
+  public SparqlOperation getOperation() {
+    return operation;
+  }
+
+  public String getConnector() {
+    return connector;
+  }
+
+  public String getEndpoint() {
+    return endpoint;
+  }
+
+  /**
+   * @return query or update sent, null for graph uploads and deletions
+   */
+  public String getQuery() {
+    return query;
+  }
+
+  /**
+   * @return graph uploaded, replaced or dropped, null if not known
+   */
+  public String getGraphUri() {
+    return graphUri;
+  }
+
+  /**
+   * @return {@link System#nanoTime()} at the start of the call
+   */
+  public long getStartNanos() {
+    return startNanos;
+  }
+
+  /**
+   * @param phase phase of the call
+   * @return time spent in the phase, -1 if not recorded
+   */
+  public synchronized long getPhaseNanos(SparqlCallPhase phase) {
+    return phaseNanos[phase.ordinal()];
+  }
+
+  /**
+   * @return duration of the whole call, -1 while it is running
+   */
+  public synchronized long getTotalNanos() {
+    return totalNanos;
+  }
+
+  /**
+   * @return size of the request body, -1 if unknown
+   */
+  public synchronized long getRequestBytes() {
+    return requestBytes;
+  }
+
+  public synchronized void setRequestBytes(long requestBytes) {
+    this.requestBytes = requestBytes;
+  }
+
+  /**
+   * @return size of the response body as received, -1 if unknown
+   */
+  public synchronized long getResponseBytes() {
+    return responseBytes;
+  }
+
+  public synchronized void setResponseBytes(long responseBytes) {
+    this.responseBytes = responseBytes;
+  }
+
+  /**
+   * @return number of rows or triples returned, 1 for ASK, -1 if unknown
+   */
+  public synchronized long getResultCount() {
+    return resultCount;
+  }
+
+  public synchronized void setResultCount(long resultCount) {
+    this.resultCount = resultCount;
+  }
+
+  /**
+   * @return the failure of the call, null if it succeeded or is still running
+   */
+  public synchronized Throwable getError() {
+    return error;
+  }
+
+  /**
+   * Gets a value attached to this call by a listener, e.g. to carry state from {@link SparqlCallListener#onStart} to
+   * {@link SparqlCallListener#onEnd}.
+   *
+   * @param key key of the value, preferably an object private to the listener
+   * @return the value, null if none
+   */
+  public synchronized Object getAttribute(Object key) {
+    return attributes == null ? null : attributes.get(key);
+  }
+
+  /**
+   * Attaches a value to this call, see {@link #getAttribute(Object)}.
+   *
+   * @param key   key of the value
+   * @param value the value
+   */
+  public synchronized void setAttribute(Object key, Object value) {
+    if (attributes == null) attributes = new HashMap<>(4);
+    attributes.put(key, value);
+  }
+
+  /**
+   * @return headers to add to the HTTP requests of this call
+   */
+  public synchronized Map<String, String> getHeaders() {
+    return headers == null ? Collections.emptyMap() : new LinkedHashMap<>(headers);
+  }
+
+  /**
+   * Asks HTTP based connectors to add a header to the requests of this call. Only headers set from
+   * {@link SparqlCallListener#onStart} are guaranteed to be sent.
+   *
+   * @param name  header name
+   * @param value header value
+   */
+  public synchronized void setHeader(String name, String value) {
+    if (headers == null) headers = new LinkedHashMap<>(4);
+    headers.put(name, value);
+  }
+
+  @Override
+  public synchronized String toString() {
+    final StringBuilder builder = new StringBuilder()
+        .append(connector).append(' ').append(operation).append(' ').append(endpoint)
+        .append(" total=").append(totalNanos / 1_000_000).append("ms");
+    for (SparqlCallPhase phase : PHASES) {
+      final long nanos = phaseNanos[phase.ordinal()];
+      if (nanos >= 0) builder.append(' ').append(phase).append('=').append(nanos / 1_000_000).append("ms");
+    }
+    if (error != null) builder.append(" error=").append(error);
+    return builder.toString();
+  }
+}
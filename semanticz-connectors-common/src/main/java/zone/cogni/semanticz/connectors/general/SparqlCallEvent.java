@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package zone.cogni.semanticz.connectors.general;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder event emitted for every {@link SparqlCall}, i.e. for every call a connector makes to its store,
+ * so that slow calls can be correlated with GC pauses or thread contention in a recording. Calls start and commit the
+ * event themselves; when the event is not enabled in the recording settings this costs next to nothing.
+ */
+@Name(SparqlCallEvent.NAME)
+@Label("SPARQL Call")
+@Category({"semanticz", "SPARQL"})
+@Description("Call of a SPARQL connector to its store")
+@StackTrace(false)
+public final class SparqlCallEvent extends Event {
+
+  /**
+   * Name of the event in recordings and recording settings.
+   */
+  public static final String NAME = "zone.cogni.semanticz.SparqlCall";
+
+  @Label("Operation")
+  String operation;
+
+  @Label("Connector")
+  String connector;
+
+  @Label("Endpoint")
+  String endpoint;
+
+  @Label("Query Hash")
+  @Description("Hash code of the query or update text, to group calls of the same query")
+  int queryHash;
+
+  @Label("Request Size")
+  @DataAmount
+  long requestBytes;
+
+  @Label("Response Size")
+  @DataAmount
+  long responseBytes;
+
+  @Label("Result Count")
+  @Description("Rows or triples returned, -1 if unknown")
+  long resultCount;
+
+  @Label("Error")
+  String error;
+
+  SparqlCallEvent() {
+  }
+}
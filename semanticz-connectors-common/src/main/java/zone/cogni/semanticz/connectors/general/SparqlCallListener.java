@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package zone.cogni.semanticz.connectors.general;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Listener notified of the calls a {@link SparqlService} implementation makes to its store, see {@link SparqlCall}.
+ * <p>
+ * Listeners are called on the thread making the call, or on the HTTP client threads for asynchronous calls, and
+ * must be thread-safe and cheap.
+ * </p>
+ */
+public interface SparqlCallListener {
+
+  /**
+   * Listener doing nothing.
+   */
+  SparqlCallListener NOOP = new SparqlCallListener() {
+  };
+
+  /**
+   * Called when a call starts, before anything is sent to the store.
+   *
+   * @param call the call, without measurements yet
+   */
+  default void onStart(SparqlCall call) {
+  }
+
+  /**
+   * Called exactly once when a call completed, successfully or not.
+   *
+   * @param call the call, with its measurements
+   */
+  default void onEnd(SparqlCall call) {
+  }
+
+  /**
+   * @param listeners listeners to notify, in order
+   * @return a listener notifying all the given ones; a listener failing is logged and does not keep the others from
+   * being notified, nor fails the call
+   */
+  static SparqlCallListener composite(SparqlCallListener... listeners) {
+    final List<SparqlCallListener> all = Arrays.asList(listeners.clone());
+    return new SparqlCallListener() {
+
+      private final Logger log = LoggerFactory.getLogger(SparqlCallListener.class);
+
+      @Override
+      public void onStart(SparqlCall call) {
+        for (SparqlCallListener listener : all) {
+          try {
+            listener.onStart(call);
+          } catch (RuntimeException e) {
+            log.warn("Call listener {} failed on start of {}", listener, call.getOperation(), e);
+          }
+        }
+      }
+
+      @Override
+      public void onEnd(SparqlCall call) {
+        for (SparqlCallListener listener : all) {
+          try {
+            listener.onEnd(call);
+          } catch (RuntimeException e) {
+            log.warn("Call listener {} failed on end of {}", listener, call.getOperation(), e);
+          }
+        }
+      }
+    };
+  }
+}
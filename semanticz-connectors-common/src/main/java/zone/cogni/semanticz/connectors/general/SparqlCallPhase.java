@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package zone.cogni.semanticz.connectors.general;
+
+/**
+ * Phases the time of a {@link SparqlCall} is broken down into. Connectors only record the phases they can observe,
+ * depending on the client library they are built on.
+ */
+public enum SparqlCallPhase {
+  /**
+   * Serializing the uploaded model. Uploads are streamed, so this overlaps with sending the request.
+   */
+  serialize,
+  /**
+   * Obtaining a connection to the store, only observable for connectors managing their own connections.
+   */
+  connect,
+  /**
+   * From sending the request until the response starts (time to first byte), including connection set up where it
+   * is not recorded separately. For queries run through Jena the response is read up to the first results.
+   */
+  serverExecution,
+  /**
+   * Receiving the rest of the response body.
+   */
+  transfer,
+  /**
+   * Parsing the response into a result set or model. When results are streamed to the handler they are parsed as
+   * the handler consumes them, that time then counting as {@link #handler}.
+   */
+  parse,
+  /**
+   * Running the result handler of a SELECT query.
+   */
+  handler
+}
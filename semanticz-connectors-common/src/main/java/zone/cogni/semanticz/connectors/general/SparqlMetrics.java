@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package zone.cogni.semanticz.connectors.general;
+
+/**
+ * Receiver of the measurements taken by {@link InstrumentedSparqlService}, to be bridged to the metrics library of
+ * the application (e.g. Micrometer timers, counters and gauges tagged with operation, connector and endpoint), so
+ * that this module does not depend on one. All methods do nothing by default, see {@link #NOOP}.
+ * <p>
+ * Every {@link #started} is followed by exactly one {@link #finished} for the same operation, which makes it possible
+ * to keep an in-flight gauge; for the streaming operations, provided the stream is closed. Implementations are called
+ * on the thread executing the operation, or consuming or closing the stream for the streaming operations, and must be
+ * thread-safe and cheap.
+ * </p>
+ */
+public interface SparqlMetrics {
+
+  /**
+   * Metrics which records nothing.
+   */
+  SparqlMetrics NOOP = new SparqlMetrics() {
+  };
+
+  /**
+   * Called before an operation is sent to the store.
+   *
+   * @param operation operation being executed
+   * @param connector type of the connector executing it, e.g. {@code FusekiSparqlService}
+   * @param endpoint  endpoint of the store
+   */
+  default void started(SparqlOperation operation, String connector, String endpoint) {
+  }
+
+  /**
+   * Called once an operation completed, successfully or not. Delegates to the variant without the response size by
+   * default.
+   *
+   * @param operation     operation executed
+   * @param connector     type of the connector which executed it
+   * @param endpoint      endpoint of the store
+   * @param durationNanos time spent in the operation, including the result handler for SELECT queries and the
+   *                      consumption of the stream for the streaming operations
+   * @param requestBytes  size of the request bodies as measured by the connector, else of the query (UTF-8) or
+   *                      uploaded file; -1 if unknown
+   * @param responseBytes size of the response bodies as measured by the connector, -1 if unknown
+   * @param resultCount   number of rows read, triples returned or uploaded, 1 for ASK; -1 if unknown
+   * @param error         the failure, null if the operation succeeded
+   */
+  default void finished(SparqlOperation operation, String connector, String endpoint, long durationNanos,
+                        long requestBytes, long responseBytes, long resultCount, Throwable error) {
+    finished(operation, connector, endpoint, durationNanos, requestBytes, resultCount, error);
+  }
+
+  /**
+   * Called once an operation completed, successfully or not, unless the variant with the response size is overridden.
+   *
+   * @param operation     operation executed
+   * @param connector     type of the connector which executed it
+   * @param endpoint      endpoint of the store
+   * @param durationNanos time spent in the operation, including the result handler for SELECT queries and the
+   *                      consumption of the stream for the streaming operations
+   * @param requestBytes  size of the request bodies as measured by the connector, else of the query (UTF-8) or
+   *                      uploaded file; -1 if unknown
+   * @param resultCount   number of rows read, triples returned or uploaded, 1 for ASK; -1 if unknown
+   * @param error         the failure, null if the operation succeeded
+   */
+  default void finished(SparqlOperation operation, String connector, String endpoint, long durationNanos,
+                        long requestBytes, long resultCount, Throwable error) {
+  }
+}
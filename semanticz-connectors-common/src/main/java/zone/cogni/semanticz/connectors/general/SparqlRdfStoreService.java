@@ -19,7 +19,6 @@
 
 package zone.cogni.semanticz.connectors.general;
 
-import org.apache.jena.query.ParameterizedSparqlString;
 import org.apache.jena.query.Query;
 import org.apache.jena.query.QuerySolutionMap;
 import org.apache.jena.rdf.model.Model;
@@ -45,8 +44,7 @@ public class SparqlRdfStoreService implements RdfStoreService {
   }
 
   protected Query buildQuery(Query query, QuerySolutionMap bindings) {
-    ParameterizedSparqlString string = new ParameterizedSparqlString(query.toString(), bindings);
-    return string.asQuery();
+    return PreparedSparqlQuery.of(query).bind(bindings);
   }
 
   @Override
@@ -19,11 +19,20 @@
 
 package zone.cogni.semanticz.connectors.general;
 
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.QuerySolution;
 import org.apache.jena.query.ResultSet;
+import org.apache.jena.query.ResultSetFormatter;
 import org.apache.jena.rdf.model.Model;
+import org.apache.jena.riot.system.StreamRDF;
+import zone.cogni.semanticz.connectors.utils.ExistenceCheck;
 
 import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.function.Function;
+import java.util.stream.Stream;
 
 /**
  * This is a generic interface for accessing a SPARQL-capable service to:
@@ -42,12 +51,127 @@ public interface SparqlService {
    */
   Model executeConstructQuery(String constructQuery);
 
+  /**
+   * Executes SPARQL CONSTRUCT query and returns the resulting triples as a lazily evaluated stream.
+   * <p>
+   * Triples are pulled from the underlying result as the stream is consumed and are not collected into a Model,
+   * so duplicates produced by the query are not necessarily removed. The stream holds resources open until it is
+   * closed, so use it in a try-with-resources block.
+   * </p>
+   * <p>
+   * The default implementation builds the Model using {@link #executeConstructQuery(String)} and is meant
+   * to be overridden by implementations capable of streaming.
+   * </p>
+   *
+   * @param constructQuery SPARQL CONSTRUCT query to execute
+   * @return stream of triples, to be closed by the caller
+   */
+  default Stream<Triple> constructStream(String constructQuery) {
+    return executeConstructQuery(constructQuery).getGraph().stream();
+  }
+
+  /**
+   * Executes SPARQL CONSTRUCT query and sends the resulting triples to the given sink as they arrive,
+   * without building an intermediate Model.
+   *
+   * @param constructQuery SPARQL CONSTRUCT query to execute
+   * @param sink           receiver of the triples, it is started before the first and finished after the last triple
+   */
+  default void executeConstructQuery(String constructQuery, StreamRDF sink) {
+    try (Stream<Triple> triples = constructStream(constructQuery)) {
+      sink.start();
+      triples.forEach(sink::triple);
+      sink.finish();
+    }
+  }
+
   void executeUpdateQuery(String updateQuery);
 
+  /**
+   * Executes SPARQL updates in order, concatenating them into as few update requests as fit
+   * {@link UpdateBatcher#DEFAULT_MAX_BYTES}, to save the round trip per update.
+   * <p>
+   * Use an {@link UpdateBatcher} directly for another request size or to find out the failing statement of a batch.
+   * </p>
+   *
+   * @param updateQueries SPARQL updates to execute
+   * @throws UpdateBatchException if a batch failed, with the indexes of its updates; the updates before it are
+   *                              applied, the ones after it are not sent
+   */
+  default void executeUpdateQueries(List<String> updateQueries) {
+    try (UpdateBatcher batcher = new UpdateBatcher(this)) {
+      updateQueries.forEach(batcher::add);
+    }
+  }
+
   boolean executeAskQuery(String updateQuery);
 
   <R> R executeSelectQuery(String query, Function<ResultSet, R> resultHandler);
 
+  /**
+   * Executes SPARQL SELECT query and returns its solutions as a lazily evaluated stream.
+   * <p>
+   * Solutions are pulled from the underlying result (e.g. parsed off the HTTP response body) as the stream is consumed,
+   * so the whole result does not have to be held in memory. The stream holds resources open until it is closed, so use
+   * it in a try-with-resources block.
+   * </p>
+   * <p>
+   * The default implementation materializes the result using {@link #executeSelectQuery(String, Function)} and is meant
+   * to be overridden by implementations capable of streaming.
+   * </p>
+   *
+   * @param query SPARQL SELECT query to execute
+   * @return stream of query solutions, to be closed by the caller
+   */
+  default Stream<QuerySolution> selectStream(String query) {
+    return executeSelectQuery(query, ResultSetFormatter::toList).stream();
+  }
+
+  /**
+   * Executes SPARQL SELECT query page by page, using LIMIT and OFFSET, and returns the solutions of all pages as a
+   * stream. The next page is fetched while the current one is consumed.
+   * <p>
+   * Meant for results larger than the store returns in a single response, see {@link PagedSelect} for the details
+   * and for paging on a key variable instead.
+   * </p>
+   *
+   * @param query    SPARQL SELECT query to execute
+   * @param pageSize number of solutions per page, not more than the store returns for a single query
+   * @return stream of query solutions, to be closed by the caller
+   */
+  default Stream<QuerySolution> selectPaged(String query, int pageSize) {
+    return PagedSelect.byOffset(this, query, pageSize);
+  }
+
+  /**
+   * Checks which of the given resources exist in the store, i.e. have at least one rdf:type.
+   * <p>
+   * Runs {@link ExistenceCheck#DEFAULT_PARALLELISM} queries with at most {@link ExistenceCheck#DEFAULT_CHUNK_SIZE}
+   * URIs each at the same time, see {@link #checkExisting(Set, int, int)}.
+   * </p>
+   *
+   * @param uris URIs of the resources to check
+   * @return for each of the given URIs, whether it exists
+   */
+  default Map<String, Boolean> checkExisting(Set<String> uris) {
+    return checkExisting(uris, ExistenceCheck.DEFAULT_CHUNK_SIZE, ExistenceCheck.DEFAULT_PARALLELISM);
+  }
+
+  /**
+   * Checks which of the given resources exist in the store, i.e. have at least one rdf:type.
+   * <p>
+   * The URIs are checked in chunks, using a SELECT query with a VALUES block per chunk.
+   * </p>
+   *
+   * @param uris        URIs of the resources to check
+   * @param chunkSize   maximum number of URIs per query
+   * @param parallelism maximum number of queries running at the same time
+   * @return for each of the given URIs, whether it exists
+   */
+  default Map<String, Boolean> checkExisting(Set<String> uris, int chunkSize, int parallelism) {
+    return ExistenceCheck.checkExisting(this, uris, chunkSize, parallelism);
+  }
+
   /**
    * Deletes all triples from the named graph with the given URI.
    * It might also delete the graph itself in case the store supports it.
@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package zone.cogni.semanticz.connectors.general;
+
+/**
+ * Failure of a batch of updates sent by an {@link UpdateBatcher}, telling which statements it concerns. The statements
+ * sent before the batch have been applied, the ones after it have not been sent.
+ */
+public class UpdateBatchException extends RuntimeException {
+
+  private final int firstStatement;
+  private final int lastStatement;
+
+  /**
+   * @param firstStatement index of the first statement of the failed batch, counting from 0 for the first statement
+   *                       added to the batcher
+   * @param lastStatement  index of the last statement of the failed batch
+   * @param cause          failure of the batch
+   */
+  public UpdateBatchException(int firstStatement, int lastStatement, Throwable cause) {
+    super(firstStatement == lastStatement
+        ? "Update statement " + firstStatement + " failed: " + cause.getMessage()
+        : "Batch of update statements " + firstStatement + " to " + lastStatement + " failed: " + cause.getMessage(),
+        cause);
+    this.firstStatement = firstStatement;
+    this.lastStatement = lastStatement;
+  }
+
+  /**
+   * @return index of the first statement of the failed batch
+   */
+  public int getFirstStatement() {
+    return firstStatement;
+  }
+
+  /**
+   * @return index of the last statement of the failed batch, the same as {@link #getFirstStatement()} if the failed
+   * statement is known
+   */
+  public int getLastStatement() {
+    return lastStatement;
+  }
+}
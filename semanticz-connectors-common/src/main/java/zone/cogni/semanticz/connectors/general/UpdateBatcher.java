@@ -0,0 +1,199 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package zone.cogni.semanticz.connectors.general;
+
+import org.apache.jena.update.UpdateFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sends many small SPARQL updates in few requests, concatenating them into {@code ;} separated update requests of at
+ * most a given number of bytes, see {@link SparqlService#executeUpdateQueries(List)}.
+ * <p>
+ * Statements are sent in the order they were added, a batch being sent once the next statement would exceed its
+ * budget, by {@link #flush()} or by {@link #close()}. A statement larger than the budget is sent on its own. A failed
+ * batch is reported as an {@link UpdateBatchException} with the indexes of its statements, after which the batcher
+ * refuses further statements. Statements of a request share their prologue: a PREFIX or BASE declared by one
+ * statement also applies to the statements after it, unless they declare their own.
+ * </p>
+ * <p>
+ * To tell exactly which statement failed:
+ * <ul>
+ *   <li>{@link #setValidate(boolean)} parses every statement with Jena when it is added, before anything is sent.
+ *   Only for stores not relying on syntax extensions.</li>
+ *   <li>{@link #setIsolateFailures(boolean)} sends the statements of a failed batch again one by one, up to the
+ *   failing one. Only for stores applying an update request atomically (e.g. Fuseki, GraphDB, Stardog), as the
+ *   statements before the failing one are applied a second time otherwise.</li>
+ * </ul>
+ * </p>
+ * <pre>
+ *   try (UpdateBatcher batcher = new UpdateBatcher(sparqlService)) {
+ *     updates.forEach(batcher::add);
+ *   }
+ * </pre>
+ * <p>
+ * Not thread-safe.
+ * </p>
+ */
+public class UpdateBatcher implements AutoCloseable {
+
+  /**
+   * Default maximum size of an update request.
+   */
+  public static final int DEFAULT_MAX_BYTES = 256 * 1024;
+
+  // on a line of its own, so that a statement ending in a comment does not comment it out
+  private static final String SEPARATOR = "\n;\n";
+
+  private final SparqlService sparqlService;
+  private final int maxBytes;
+  private final List<String> batch = new ArrayList<>();
+  private boolean validate;
+  private boolean isolateFailures;
+  private int batchBytes;
+  private int firstStatement;
+  private boolean failed;
+
+  /**
+   * @param sparqlService service to send the updates to
+   */
+  public UpdateBatcher(SparqlService sparqlService) {
+    this(sparqlService, DEFAULT_MAX_BYTES);
+  }
+
+  /**
+   * @param sparqlService service to send the updates to
+   * @param maxBytes      maximum size of an update request in UTF-8 bytes, bounded by the request size the store
+   *                      accepts
+   */
+  public UpdateBatcher(SparqlService sparqlService, int maxBytes) {
+    if (maxBytes < 1) throw new IllegalArgumentException("Maximum batch size must be positive, got " + maxBytes);
+    this.sparqlService = sparqlService;
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * @param validate whether to parse every statement when it is added, false by default
+   * @return this batcher
+   */
+  public UpdateBatcher setValidate(boolean validate) {
+    this.validate = validate;
+    return this;
+  }
+
+  /**
+   * @param isolateFailures whether to resend the statements of a failed batch one by one to find the failing one,
+   *                        false by default
+   * @return this batcher
+   */
+  public UpdateBatcher setIsolateFailures(boolean isolateFailures) {
+    this.isolateFailures = isolateFailures;
+    return this;
+  }
+
+  /**
+   * Adds a statement, sending the pending ones first if it does not fit in their batch.
+   *
+   * @param updateQuery SPARQL update, a trailing {@code ;} is dropped
+   * @return this batcher
+   * @throws UpdateBatchException if the statement is invalid or a batch sent failed
+   */
+  public UpdateBatcher add(String updateQuery) {
+    if (failed) throw new IllegalStateException("A previous batch of updates failed");
+    updateQuery = stripTrailingSeparator(updateQuery);
+    if (validate) {
+      try {
+        UpdateFactory.create(updateQuery);
+      } catch (RuntimeException e) {
+        final int statement = firstStatement + batch.size();
+        failed = true;
+        throw new UpdateBatchException(statement, statement, e);
+      }
+    }
+    final int bytes = updateQuery.getBytes(StandardCharsets.UTF_8).length;
+    if (!batch.isEmpty() && batchBytes + SEPARATOR.length() + bytes > maxBytes) flush();
+    batchBytes += batch.isEmpty() ? bytes : SEPARATOR.length() + bytes;
+    batch.add(updateQuery);
+    return this;
+  }
+
+  private static String stripTrailingSeparator(String updateQuery) {
+    int end = updateQuery.length();
+    while (end > 0 && (updateQuery.charAt(end - 1) == ';' || Character.isWhitespace(updateQuery.charAt(end - 1)))) {
+      end--;
+    }
+    return updateQuery.substring(0, end);
+  }
+
+  /**
+   * Sends the pending statements.
+   *
+   * @throws UpdateBatchException if the batch failed
+   */
+  public void flush() {
+    if (batch.isEmpty() || failed) return;
+    try {
+      sparqlService.executeUpdateQuery(String.join(SEPARATOR, batch));
+    } catch (RuntimeException e) {
+      if (!isolateFailures || batch.size() == 1) {
+        failed = true;
+        throw new UpdateBatchException(firstStatement, firstStatement + batch.size() - 1, e);
+      }
+      executeOneByOne();
+    }
+    firstStatement += batch.size();
+    batch.clear();
+    batchBytes = 0;
+  }
+
+  /**
+   * Sends the statements of a failed batch one by one, up to the failing one. If none fails, e.g. as the failure of
+   * the batch was transient, the batch is done.
+   */
+  private void executeOneByOne() {
+    for (int i = 0; i < batch.size(); i++) {
+      try {
+        sparqlService.executeUpdateQuery(batch.get(i));
+      } catch (RuntimeException e) {
+        failed = true;
+        throw new UpdateBatchException(firstStatement + i, firstStatement + i, e);
+      }
+    }
+  }
+
+  /**
+   * @return number of statements added and not sent yet
+   */
+  public int getPendingCount() {
+    return batch.size();
+  }
+
+  /**
+   * Sends the pending statements, unless a batch failed before.
+   *
+   * @throws UpdateBatchException if the batch failed
+   */
+  @Override
+  public void close() {
+    flush();
+  }
+}
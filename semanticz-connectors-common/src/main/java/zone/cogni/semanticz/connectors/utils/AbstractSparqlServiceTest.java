@@ -21,6 +21,7 @@ package zone.cogni.semanticz.connectors.utils;
 
 import org.apache.jena.query.Dataset;
 import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.query.QuerySolution;
 import org.apache.jena.query.ResultSet;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
@@ -28,6 +29,7 @@ import org.apache.jena.riot.Lang;
 import org.apache.jena.riot.RDFFormat;
 import org.apache.jena.riot.RDFParser;
 import org.apache.jena.riot.RDFWriter;
+import org.apache.jena.riot.system.StreamRDFLib;
 import org.apache.jena.vocabulary.RDFS;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
@@ -42,8 +44,11 @@ import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.function.Function;
+import java.util.stream.Stream;
 
 import static org.apache.jena.rdf.model.ResourceFactory.createResource;
 
@@ -185,12 +190,28 @@ public abstract class AbstractSparqlServiceTest<T extends SparqlService> {
     Assertions.assertEquals(2, result.getRowNumber());
   }
 
+  @Test
+  public void testSelectStreamReturnsResultsFromRespectiveGraphs() {
+    try (Stream<QuerySolution> solutions = sut.selectStream(
+            "SELECT * { GRAPH ?g { ?s ?p ?o } FILTER (?g in (<https://example.org/m1>, <https://example.org/m2>))}")) {
+      Assertions.assertEquals(2, solutions.count());
+    }
+  }
+
   @Test
   public void testQueryForModelReturnsResultsFromRespectiveGraphs() {
     final Model model = sut.executeConstructQuery("CONSTRUCT { ?s ?p ?o } WHERE { GRAPH ?g { ?s ?p ?o } FILTER (?g in (<https://example.org/m1>, <https://example.org/m2>)) }");
     Assertions.assertEquals(2, model.size());
   }
 
+  @Test
+  public void testConstructQueryIntoSinkReturnsResultsFromRespectiveGraphs() {
+    final Model model = ModelFactory.createDefaultModel();
+    sut.executeConstructQuery("CONSTRUCT { ?s ?p ?o } WHERE { GRAPH ?g { ?s ?p ?o } FILTER (?g in (<https://example.org/m1>, <https://example.org/m2>)) }",
+            StreamRDFLib.graph(model.getGraph()));
+    Assertions.assertEquals(2, model.size());
+  }
+
   @Test
   public void testIsEmptyGraphOfNamedGraphReturnsTrueWheneverNoTripleExistsThere() {
     final boolean isEmpty = sut.isEmptyGraph("https://example.org/m3");
@@ -208,4 +229,16 @@ public abstract class AbstractSparqlServiceTest<T extends SparqlService> {
     final boolean isEmpty = sut.isEmptyGraph(null );
     Assertions.assertTrue(isEmpty);
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testCheckExistingReturnsWhetherResourcesHaveAType() {
+    final String typeTriple = "<https://example.org/e1> a <https://example.org/T>";
+    sut.executeUpdateQuery("INSERT DATA { " + typeTriple + " }");
+    try {
+      final Map<String, Boolean> existing = sut.checkExisting(Set.of(r("e1"), r("e2"), r("e3")), 1, 2);
+      Assertions.assertEquals(Map.of(r("e1"), true, r("e2"), false, r("e3"), false), existing);
+    } finally {
+      sut.executeUpdateQuery("DELETE DATA { " + typeTriple + " }");
+    }
+  }
+}
@@ -22,9 +22,24 @@ package zone.cogni.semanticz.connectors.utils;
 public final class Constants {
   public static final String APPLICATION_FORM_URLENCODED_VALUE = "application/x-www-form-urlencoded";
   public static final String APPLICATION_SPARQL_RESULTS_XML = "application/sparql-results+xml";
+  public static final String APPLICATION_SPARQL_RESULTS_JSON = "application/sparql-results+json";
+  public static final String APPLICATION_SPARQL_RESULTS_THRIFT = "application/sparql-results+thrift";
   public static final String APPLICATION_SPARQL_QUERY = "application/sparql-query";
+  public static final String APPLICATION_RDF_THRIFT = "application/rdf+thrift";
+  public static final String APPLICATION_RDF_PROTOBUF = "application/rdf+protobuf";
   public static final String TEXT_TURTLE = "text/turtle";
   public static final String CONTENT_TYPE = "Content-Type";
+  public static final String ACCEPT = "Accept";
+  public static final String ACCEPT_ENCODING = "Accept-Encoding";
+  public static final String CONTENT_ENCODING = "Content-Encoding";
+  public static final String GZIP = "gzip";
+  public static final String DEFLATE = "deflate";
+  public static final String GZIP_DEFLATE = GZIP + ", " + DEFLATE;
+
+  public static final String ACCEPT_SPARQL_RESULTS = APPLICATION_SPARQL_RESULTS_JSON + ", " + APPLICATION_SPARQL_RESULTS_XML + ";q=0.9";
+  public static final String ACCEPT_RDF_GRAPH = TEXT_TURTLE + ", application/n-triples;q=0.9, application/rdf+xml;q=0.8";
+  public static final String ACCEPT_SPARQL_RESULTS_BINARY = APPLICATION_SPARQL_RESULTS_THRIFT + ", " + APPLICATION_SPARQL_RESULTS_JSON + ";q=0.9, " + APPLICATION_SPARQL_RESULTS_XML + ";q=0.8";
+  public static final String ACCEPT_RDF_GRAPH_BINARY = APPLICATION_RDF_THRIFT + ", " + APPLICATION_RDF_PROTOBUF + ";q=0.95, " + TEXT_TURTLE + ";q=0.9, application/n-triples;q=0.8";
 
   private Constants() {
     throw new UnsupportedOperationException();
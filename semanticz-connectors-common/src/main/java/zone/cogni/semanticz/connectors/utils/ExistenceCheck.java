@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package zone.cogni.semanticz.connectors.utils;
+
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.query.QuerySolution;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.sparql.util.FmtUtils;
+import zone.cogni.semanticz.connectors.general.ExecutorAsyncSparqlService;
+import zone.cogni.semanticz.connectors.general.SparqlService;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Checks which resources exist in a store, i.e. have at least one rdf:type, see
+ * {@link SparqlService#checkExisting(Set, int, int)}.
+ * <p>
+ * The URIs are split in chunks, each chunk being checked by a SELECT query with its URIs in a VALUES block, so that
+ * the size of a single query stays bounded however many URIs are checked. The
+ * {@link zone.cogni.semanticz.connectors.general.QueryOptions} deadline of the calling thread also applies to the
+ * queries run in parallel.
+ * </p>
+ */
+public final class ExistenceCheck {
+
+  /**
+   * Default number of URIs checked by a single query.
+   */
+  public static final int DEFAULT_CHUNK_SIZE = 1000;
+
+  /**
+   * Default number of queries running at the same time.
+   */
+  public static final int DEFAULT_PARALLELISM = 4;
+
+  private ExistenceCheck() {
+  }
+
+  /**
+   * @param sparqlService service to query
+   * @param uris          URIs of the resources to check
+   * @param chunkSize     maximum number of URIs per query
+   * @param parallelism   maximum number of queries running at the same time, 1 runs them one after the other on the
+   *                      calling thread
+   * @return for each of the given URIs, whether it has a type in the store
+   */
+  public static Map<String, Boolean> checkExisting(SparqlService sparqlService, Set<String> uris, int chunkSize,
+      int parallelism) {
+    return checkExisting(sparqlService, uris, chunkSize, parallelism, null);
+  }
+
+  /**
+   * @param sparqlService service to query
+   * @param uris          URIs of the resources to check
+   * @param chunkSize     maximum number of URIs per query
+   * @param parallelism   maximum number of queries running at the same time, 1 runs them one after the other on the
+   *                      calling thread
+   * @param executor      executor running the queries in parallel, e.g. the one of the connector, null for a pool
+   *                      dedicated to this check
+   * @return for each of the given URIs, whether it has a type in the store
+   */
+  public static Map<String, Boolean> checkExisting(SparqlService sparqlService, Set<String> uris, int chunkSize,
+      int parallelism, Executor executor) {
+    if (chunkSize < 1) throw new IllegalArgumentException("Chunk size must be positive, got " + chunkSize);
+    if (parallelism < 1) throw new IllegalArgumentException("Parallelism must be positive, got " + parallelism);
+
+    final List<String> queries = buildQueries(uris, chunkSize);
+    final Set<String> existing = new HashSet<>();
+    if (parallelism == 1 || queries.size() <= 1) {
+      queries.forEach(query -> existing.addAll(sparqlService.executeSelectQuery(query, ExistenceCheck::collect)));
+    } else {
+      try (ExecutorAsyncSparqlService async =
+               new ExecutorAsyncSparqlService(sparqlService, executor, Math.min(parallelism, queries.size()))) {
+        final List<CompletableFuture<Set<String>>> futures = new ArrayList<>(queries.size());
+        queries.forEach(query -> futures.add(async.executeSelectQueryAsync(query, ExistenceCheck::collect)));
+        futures.forEach(future -> existing.addAll(join(future)));
+      }
+    }
+
+    final Map<String, Boolean> result = new HashMap<>(uris.size() * 4 / 3 + 1);
+    uris.forEach(uri -> result.put(uri, existing.contains(uri)));
+    return result;
+  }
+
+  private static List<String> buildQueries(Set<String> uris, int chunkSize) {
+    final List<String> queries = new ArrayList<>(uris.size() / chunkSize + 1);
+    StringBuilder values = new StringBuilder();
+    int count = 0;
+    for (String uri : uris) {
+      values.append(' ').append(FmtUtils.stringForNode(NodeFactory.createURI(uri)));
+      if (++count == chunkSize) {
+        queries.add(buildQuery(values));
+        values = new StringBuilder();
+        count = 0;
+      }
+    }
+    if (count > 0) queries.add(buildQuery(values));
+    return queries;
+  }
+
+  private static String buildQuery(CharSequence values) {
+    return "SELECT ?uri WHERE { VALUES ?uri {" + values + " } FILTER EXISTS { ?uri a ?anyType } }";
+  }
+
+  private static Set<String> collect(ResultSet resultSet) {
+    final Set<String> uris = new HashSet<>();
+    while (resultSet.hasNext()) {
+      final QuerySolution solution = resultSet.next();
+      uris.add(solution.getResource("uri").getURI());
+    }
+    return uris;
+  }
+
+  private static <T> T join(CompletableFuture<T> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+      throw e;
+    }
+  }
+}
@@ -20,15 +20,68 @@
 package zone.cogni.semanticz.connectors.utils;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.jena.atlas.web.ContentType;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFLanguages;
+import org.apache.jena.riot.RDFParser;
+import org.apache.jena.riot.ResultSetMgr;
+import org.apache.jena.riot.resultset.ResultSetLang;
+import org.apache.jena.sparql.exec.http.QueryExecutionHTTPBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import zone.cogni.semanticz.connectors.general.Config;
+import zone.cogni.semanticz.connectors.general.SparqlCall;
+import zone.cogni.semanticz.connectors.general.SparqlCallPhase;
+import zone.cogni.semanticz.connectors.general.SparqlOperation;
+import zone.cogni.semanticz.connectors.general.SparqlTimeoutException;
 
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.Authenticator;
 import java.net.PasswordAuthentication;
+import java.net.URI;
+import java.net.URLEncoder;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.text.MessageFormat;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import static zone.cogni.semanticz.connectors.utils.Constants.CONTENT_TYPE;
 
 /**
  * Utility methods for JDK11 HttpClient.
@@ -37,6 +90,16 @@ public class HttpClientUtils {
 
   private static final Logger log = LoggerFactory.getLogger(HttpClientUtils.class);
 
+  private static final int PIPE_BUFFER_SIZE = 64 * 1024;
+  private static final Config DEFAULT_CONFIG = new Config();
+  private static final AtomicInteger writerThreadCount = new AtomicInteger();
+  private static final ThreadFactory writerThreadFactory = runnable -> {
+    final Thread thread = new Thread(runnable, "semanticz-body-writer-" + writerThreadCount.incrementAndGet());
+    thread.setDaemon(true);
+    return thread;
+  };
+  private static final ExecutorService defaultWriterExecutor = Executors.newCachedThreadPool(writerThreadFactory);
+
   /**
    * Creates a new HttpClientBuilder. If both username and password is supplied, basic authentication header is generated.
    *
@@ -61,6 +124,142 @@ public class HttpClientUtils {
     return httpClientBuilder;
   }
 
+  /**
+   * Creates a new HttpClientBuilder for the configured endpoint: authenticating with its credentials and applying its
+   * connect timeout and executor.
+   *
+   * @param config configuration of the endpoint
+   * @return HttpClient.Builder
+   */
+  public static HttpClient.Builder createHttpClientBuilder(final Config config) {
+    final HttpClient.Builder httpClientBuilder = createHttpClientBuilder(config.getUser(), config.getPassword());
+    if (config.getConnectTimeoutMillis() > 0) {
+      httpClientBuilder.connectTimeout(Duration.ofMillis(config.getConnectTimeoutMillis()));
+    }
+    if (config.getExecutor() != null) {
+      httpClientBuilder.executor(config.getExecutor());
+    }
+    return httpClientBuilder;
+  }
+
+  /**
+   * Applies the content negotiation of the configuration to a query execution builder: binary result formats and
+   * response compression, which Jena decodes transparently. Without either, Jena's default headers are kept. The
+   * default query timeout bounds the time to the response headers.
+   *
+   * @param builder query execution builder to configure
+   * @param config  configuration of the endpoint
+   * @return the given builder
+   */
+  public static QueryExecutionHTTPBuilder configure(final QueryExecutionHTTPBuilder builder, final Config config) {
+    if (config.isBinaryResultFormats()) {
+      builder
+          .acceptHeaderSelectQuery(config.getSparqlResultsAcceptHeader())
+          .acceptHeaderGraph(config.getGraphAcceptHeader());
+    }
+    if (config.isCompression()) {
+      builder.httpHeader(Constants.ACCEPT_ENCODING, Constants.GZIP_DEFLATE);
+    }
+    if (config.getQueryTimeoutMillis() > 0) {
+      builder.timeout(config.getQueryTimeoutMillis(), TimeUnit.MILLISECONDS);
+    }
+    return builder;
+  }
+
+  /**
+   * Applies the configuration to a query execution builder, see {@link #configure(QueryExecutionHTTPBuilder, Config)},
+   * together with the headers the listeners asked for on the call and the time left before its deadline.
+   *
+   * @param builder query execution builder to configure
+   * @param config  configuration of the endpoint
+   * @param call    call the query execution is made for
+   * @return the given builder
+   */
+  public static QueryExecutionHTTPBuilder configure(final QueryExecutionHTTPBuilder builder, final Config config,
+      final SparqlCall call) {
+    configure(builder, config);
+    call.getHeaders().forEach(builder::httpHeader);
+    final long timeLeft = call.getTimeLeftMillis();
+    if (timeLeft > 0) {
+      builder.timeout(timeLeft, TimeUnit.MILLISECONDS);
+    }
+    return builder;
+  }
+
+  /**
+   * @return the request with the headers the listeners asked for on the call and the time left before its deadline as
+   * timeout, the request itself if there are none
+   */
+  private static HttpRequest prepare(final HttpRequest request, final SparqlCall call) {
+    if (call.getHeaders().isEmpty() && call.getTimeLeftMillis() < 0) {
+      return request;
+    }
+    return prepare(HttpRequest.newBuilder(request, (name, value) -> true), call).build();
+  }
+
+  private static HttpRequest.Builder prepare(final HttpRequest.Builder builder, final SparqlCall call) {
+    call.getHeaders().forEach(builder::setHeader);
+    final long timeLeft = call.getTimeLeftMillis();
+    if (timeLeft > 0) {
+      builder.timeout(Duration.ofMillis(timeLeft));
+    }
+    return builder;
+  }
+
+  /**
+   * Waits for a response until the deadline of the call, aborting the exchange when it passes or when the waiting
+   * thread is interrupted.
+   */
+  private static <T> T await(final CompletableFuture<T> future, final SparqlCall call) {
+    final long timeLeft = call.getTimeLeftMillis();
+    if (timeLeft < 0) {
+      return future.join();
+    }
+    try {
+      return future.get(timeLeft, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      future.cancel(true);
+      throw timeout(call, e);
+    } catch (InterruptedException e) {
+      future.cancel(true);
+      Thread.currentThread().interrupt();
+      throw new CompletionException(e);
+    } catch (ExecutionException e) {
+      throw failure(call, e.getCause());
+    }
+  }
+
+  /**
+   * Aborts the exchange of an asynchronous call when its deadline passes.
+   *
+   * @param future future of the exchange, as returned by {@link HttpClient#sendAsync}
+   * @return future failing with a {@link SparqlTimeoutException} once the deadline passed
+   */
+  private static <T> CompletableFuture<T> bounded(final CompletableFuture<T> future, final SparqlCall call) {
+    final long timeLeft = call.getTimeLeftMillis();
+    if (timeLeft < 0) {
+      return future;
+    }
+    CompletableFuture.delayedExecutor(timeLeft, TimeUnit.MILLISECONDS).execute(() -> future.cancel(true));
+    return future.handle((result, e) -> {
+      if (e != null) {
+        throw failure(call, e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+      }
+      return result;
+    });
+  }
+
+  private static RuntimeException failure(final SparqlCall call, final Throwable cause) {
+    if (cause instanceof HttpTimeoutException || cause instanceof CancellationException && call.isExpired()) {
+      return timeout(call, cause);
+    }
+    return cause instanceof CompletionException ? (CompletionException) cause : new CompletionException(cause);
+  }
+
+  private static SparqlTimeoutException timeout(final SparqlCall call, final Throwable cause) {
+    return new SparqlTimeoutException(call.getOperation() + " on " + call.getEndpoint() + " timed out", cause);
+  }
+
   /**
    * Simple validation of the 2xx success.
    *
@@ -70,10 +269,13 @@ public class HttpClientUtils {
     if (httpResponse.statusCode() / 100 == 2) {
       return;
     }
+    final Object body = httpResponse.body() instanceof byte[]
+        ? new String((byte[]) httpResponse.body(), StandardCharsets.UTF_8)
+        : httpResponse.body();
     throw new RuntimeException(
         MessageFormat.format("Expected 2xx code, but was {0} with body: {1}",
             httpResponse.statusCode(),
-            httpResponse.body()));
+            body));
   }
 
   /**
@@ -86,4 +288,661 @@ public class HttpClientUtils {
       HttpResponse<String> response = client.sendAsync(request, HttpResponse.BodyHandlers.ofString()).join();
       checkOK(response);
   }
-}
\ No newline at end of file
+
+  /**
+   * Sends a request asynchronously and checks its response for success.
+   *
+   * @param request HttpRequest to send.
+   * @param client HttpClient to use.
+   * @return future completed once a 2xx response was received
+   */
+  public static CompletableFuture<Void> executeAsync(final HttpRequest request, final HttpClient client) {
+    return client.sendAsync(request, HttpResponse.BodyHandlers.ofString()).thenAccept(HttpClientUtils::checkOK);
+  }
+
+  /**
+   * Executes a request and checks its response for success, recording the time to the response headers and the
+   * transfer of the body on the call, which is ended (or failed) when this returns.
+   *
+   * @param request HttpRequest to send.
+   * @param client  HttpClient to use.
+   * @param call    call to record on.
+   */
+  public static void execute(final HttpRequest request, final HttpClient client, final SparqlCall call) {
+    try {
+      final HttpResponse<byte[]> response = await(client.sendAsync(prepare(request, call), timedBodyHandler(call)),
+          call);
+      received(response, call);
+      checkOK(response);
+      call.end();
+    } catch (Throwable e) {
+      call.fail(e);
+      throw e;
+    } finally {
+      closeBody(request);
+    }
+  }
+
+  /**
+   * Sends a request asynchronously and checks its response for success, recording it on the call, see
+   * {@link #execute(HttpRequest, HttpClient, SparqlCall)}.
+   *
+   * @param request HttpRequest to send.
+   * @param client  HttpClient to use.
+   * @param call    call to record on.
+   * @return future completed once a 2xx response was received
+   */
+  public static CompletableFuture<Void> executeAsync(final HttpRequest request, final HttpClient client,
+      final SparqlCall call) {
+    return endWith(call, bounded(client.sendAsync(prepare(request, call), timedBodyHandler(call)), call)
+        .whenComplete((response, e) -> closeBody(request))
+        .thenAccept(response -> {
+          received(response, call);
+          checkOK(response);
+        }));
+  }
+
+  /**
+   * Closes the pipes of a streamed request body once the exchange is over. A request failing before its body was
+   * read completely, e.g. because the server answered early with an error, would otherwise leave the writer blocked
+   * on a full pipe forever.
+   */
+  private static void closeBody(final HttpRequest request) {
+    request.bodyPublisher()
+        .filter(PipedBodyPublisher.class::isInstance)
+        .ifPresent(publisher -> ((PipedBodyPublisher) publisher).close());
+  }
+
+  /**
+   * @return body handler ending the server execution phase of the call when the response headers arrive
+   */
+  private static HttpResponse.BodyHandler<byte[]> timedBodyHandler(final SparqlCall call) {
+    return responseInfo -> {
+      call.mark(SparqlCallPhase.serverExecution);
+      return HttpResponse.BodyHandlers.ofByteArray().apply(responseInfo);
+    };
+  }
+
+  private static void received(final HttpResponse<byte[]> response, final SparqlCall call) {
+    call.mark(SparqlCallPhase.transfer);
+    call.setResponseBytes(response.body().length);
+  }
+
+  /**
+   * Executes a SPARQL SELECT query asynchronously using the SPARQL 1.1 Protocol (form-encoded POST).
+   * The response is received without blocking a thread and parsed once complete.
+   *
+   * @param client        HttpClient to use.
+   * @param endpoint      SPARQL query endpoint.
+   * @param query         SELECT query.
+   * @param resultHandler function processing the result set, it must consume it before returning.
+   * @return future with the output of the result handler
+   */
+  public static <R> CompletableFuture<R> executeSelectAsync(final HttpClient client, final String endpoint,
+      final String query, final Function<ResultSet, R> resultHandler) {
+    return executeSelectAsync(client, endpoint, query, DEFAULT_CONFIG, resultHandler);
+  }
+
+  /**
+   * Executes a SPARQL SELECT query asynchronously, negotiating result format and compression as configured.
+   * Any result format known to Jena is parsed, including binary SPARQL result Thrift.
+   *
+   * @param client        HttpClient to use.
+   * @param endpoint      SPARQL query endpoint.
+   * @param query         SELECT query.
+   * @param config        configuration of the endpoint.
+   * @param resultHandler function processing the result set, it must consume it before returning.
+   * @return future with the output of the result handler
+   */
+  public static <R> CompletableFuture<R> executeSelectAsync(final HttpClient client, final String endpoint,
+      final String query, final Config config, final Function<ResultSet, R> resultHandler) {
+    return executeSelectAsync(client, endpoint, query, config, resultHandler,
+        startCall(config, SparqlOperation.select, endpoint, query));
+  }
+
+  /**
+   * Executes a SPARQL SELECT query asynchronously, see {@link #executeSelectAsync(HttpClient, String, String, Config,
+   * Function)}, recording all phases of the call, which is ended (or failed) with the returned future.
+   *
+   * @param client        HttpClient to use.
+   * @param endpoint      SPARQL query endpoint.
+   * @param query         SELECT query.
+   * @param config        configuration of the endpoint.
+   * @param resultHandler function processing the result set, it must consume it before returning.
+   * @param call          call to record on.
+   * @return future with the output of the result handler
+   */
+  public static <R> CompletableFuture<R> executeSelectAsync(final HttpClient client, final String endpoint,
+      final String query, final Config config, final Function<ResultSet, R> resultHandler, final SparqlCall call) {
+    return endWith(call, sendQueryAsync(client, endpoint, query, config.getSparqlResultsAcceptHeader(),
+        config.isCompression(), call)
+        .thenApply(response -> {
+          final ResultSet resultSet = ResultSetMgr.read(getBody(response), getLang(response, ResultSetLang.RS_XML));
+          call.mark(SparqlCallPhase.parse);
+          final R result = resultHandler.apply(resultSet);
+          call.mark(SparqlCallPhase.handler);
+          call.setResultCount(resultSet.getRowNumber());
+          return result;
+        }));
+  }
+
+  /**
+   * Executes a SPARQL ASK query asynchronously using the SPARQL 1.1 Protocol (form-encoded POST).
+   *
+   * @param client   HttpClient to use.
+   * @param endpoint SPARQL query endpoint.
+   * @param query    ASK query.
+   * @return future with the boolean answer
+   */
+  public static CompletableFuture<Boolean> executeAskAsync(final HttpClient client, final String endpoint,
+      final String query) {
+    return executeAskAsync(client, endpoint, query, DEFAULT_CONFIG);
+  }
+
+  /**
+   * Executes a SPARQL ASK query asynchronously, negotiating compression as configured.
+   *
+   * @param client   HttpClient to use.
+   * @param endpoint SPARQL query endpoint.
+   * @param query    ASK query.
+   * @param config   configuration of the endpoint.
+   * @return future with the boolean answer
+   */
+  public static CompletableFuture<Boolean> executeAskAsync(final HttpClient client, final String endpoint,
+      final String query, final Config config) {
+    return executeAskAsync(client, endpoint, query, config, startCall(config, SparqlOperation.ask, endpoint, query));
+  }
+
+  /**
+   * Executes a SPARQL ASK query asynchronously, recording it on the call, see
+   * {@link #executeSelectAsync(HttpClient, String, String, Config, Function, SparqlCall)}.
+   *
+   * @param client   HttpClient to use.
+   * @param endpoint SPARQL query endpoint.
+   * @param query    ASK query.
+   * @param config   configuration of the endpoint.
+   * @param call     call to record on.
+   * @return future with the boolean answer
+   */
+  public static CompletableFuture<Boolean> executeAskAsync(final HttpClient client, final String endpoint,
+      final String query, final Config config, final SparqlCall call) {
+    return endWith(call, sendQueryAsync(client, endpoint, query, Constants.ACCEPT_SPARQL_RESULTS,
+        config.isCompression(), call)
+        .thenApply(response -> {
+          final boolean result = ResultSetMgr.readBoolean(getBody(response), getLang(response, ResultSetLang.RS_XML));
+          call.mark(SparqlCallPhase.parse);
+          call.setResultCount(1);
+          return result;
+        }));
+  }
+
+  /**
+   * Executes a SPARQL CONSTRUCT query asynchronously using the SPARQL 1.1 Protocol (form-encoded POST).
+   *
+   * @param client   HttpClient to use.
+   * @param endpoint SPARQL query endpoint.
+   * @param query    CONSTRUCT query.
+   * @return future with the resulting Model
+   */
+  public static CompletableFuture<Model> executeConstructAsync(final HttpClient client, final String endpoint,
+      final String query) {
+    return executeConstructAsync(client, endpoint, query, DEFAULT_CONFIG);
+  }
+
+  /**
+   * Executes a SPARQL CONSTRUCT query asynchronously, negotiating graph format and compression as configured.
+   *
+   * @param client   HttpClient to use.
+   * @param endpoint SPARQL query endpoint.
+   * @param query    CONSTRUCT query.
+   * @param config   configuration of the endpoint.
+   * @return future with the resulting Model
+   */
+  public static CompletableFuture<Model> executeConstructAsync(final HttpClient client, final String endpoint,
+      final String query, final Config config) {
+    return executeConstructAsync(client, endpoint, query, config,
+        startCall(config, SparqlOperation.construct, endpoint, query));
+  }
+
+  /**
+   * Executes a SPARQL CONSTRUCT query asynchronously, recording it on the call, see
+   * {@link #executeSelectAsync(HttpClient, String, String, Config, Function, SparqlCall)}.
+   *
+   * @param client   HttpClient to use.
+   * @param endpoint SPARQL query endpoint.
+   * @param query    CONSTRUCT query.
+   * @param config   configuration of the endpoint.
+   * @param call     call to record on.
+   * @return future with the resulting Model
+   */
+  public static CompletableFuture<Model> executeConstructAsync(final HttpClient client, final String endpoint,
+      final String query, final Config config, final SparqlCall call) {
+    return endWith(call, sendQueryAsync(client, endpoint, query, config.getGraphAcceptHeader(),
+        config.isCompression(), call)
+        .thenApply(response -> {
+          final Model model = ModelFactory.createDefaultModel();
+          RDFParser.source(getBody(response))
+              .lang(getLang(response, Lang.TURTLE))
+              .parse(model.getGraph());
+          call.mark(SparqlCallPhase.parse);
+          call.setResultCount(model.size());
+          return model;
+        }));
+  }
+
+  private static SparqlCall startCall(final Config config, final SparqlOperation operation, final String endpoint,
+      final String query) {
+    return SparqlCall.start(config.getCallListener(), operation, HttpClientUtils.class.getSimpleName(), endpoint,
+        query);
+  }
+
+  private static <T> CompletableFuture<T> endWith(final SparqlCall call, final CompletableFuture<T> future) {
+    return future.whenComplete((result, e) -> {
+      if (e == null) {
+        call.end();
+      } else {
+        call.fail(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+      }
+    });
+  }
+
+  private static CompletableFuture<HttpResponse<byte[]>> sendQueryAsync(final HttpClient client,
+      final String endpoint, final String query, final String acceptHeader, final boolean compression,
+      final SparqlCall call) {
+    final HttpRequest.Builder builder = HttpRequest
+        .newBuilder(URI.create(endpoint))
+        .POST(HttpRequest.BodyPublishers.ofString("query=" + URLEncoder.encode(query, StandardCharsets.UTF_8)))
+        .header(CONTENT_TYPE, Constants.APPLICATION_FORM_URLENCODED_VALUE)
+        .header(Constants.ACCEPT, acceptHeader);
+    if (compression) {
+      builder.header(Constants.ACCEPT_ENCODING, Constants.GZIP_DEFLATE);
+    }
+    return bounded(client.sendAsync(prepare(builder, call).build(), timedBodyHandler(call)), call)
+        .thenApply(response -> {
+          received(response, call);
+          checkOK(response);
+          return response;
+        });
+  }
+
+  /**
+   * The JDK client does not decode compressed responses, so this takes care of the gzip and deflate encodings
+   * requested when compression is enabled.
+   *
+   * @param response response to read the body of
+   * @return decoded response body
+   */
+  private static InputStream getBody(final HttpResponse<byte[]> response) {
+    final InputStream body = new ByteArrayInputStream(response.body());
+    final String contentEncoding = response.headers().firstValue(Constants.CONTENT_ENCODING).orElse("").trim();
+    try {
+      if (contentEncoding.equalsIgnoreCase(Constants.GZIP)) {
+        return new GZIPInputStream(body);
+      }
+      if (contentEncoding.equalsIgnoreCase(Constants.DEFLATE)) {
+        return new InflaterInputStream(body);
+      }
+      return body;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Gets the language of the response based on its Content-Type header.
+   *
+   * @param response    response to analyse content-type of.
+   * @param defaultLang language to use if the server did not send a known Content-Type.
+   * @return RDF or result set language of the response body
+   */
+  private static Lang getLang(final HttpResponse<?> response, final Lang defaultLang) {
+    return response.headers().firstValue(CONTENT_TYPE)
+        .map(contentType -> RDFLanguages.contentTypeToLang(ContentType.create(contentType).getContentTypeStr()))
+        .orElse(defaultLang);
+  }
+
+  /**
+   * Creates a request body publisher serializing the model straight into the request body, without materializing the
+   * serialized form in memory. The serializer runs on a shared pool of writer threads and is bounded by a small pipe
+   * buffer, so it only proceeds as fast as the body is sent.
+   * <p>
+   * The publisher is repeatable: should the client resend the body (e.g. after an authentication challenge), the model
+   * is serialized again.
+   *
+   * @param model    model to send
+   * @param language Jena language name to serialize with, see {@link Model#write(OutputStream, String)}
+   * @return streaming body publisher
+   */
+  public static HttpRequest.BodyPublisher ofModel(final Model model, final String language) {
+    return ofOutputStream(outputStream -> model.write(outputStream, language));
+  }
+
+  /**
+   * Creates a streaming request body publisher for the model in the given format, see {@link #ofModel(Model, String)}.
+   *
+   * @param model  model to send
+   * @param format format to serialize with
+   * @return streaming body publisher
+   */
+  public static HttpRequest.BodyPublisher ofModel(final Model model, final TripleSerializationFormat format) {
+    return ofOutputStream(outputStream -> JenaUtils.write(model, outputStream, format));
+  }
+
+  /**
+   * Creates a streaming request body publisher for the model in the given format, optionally gzip compressed on the
+   * fly. A compressed body must be sent with a {@code Content-Encoding: gzip} header.
+   *
+   * @param model    model to send
+   * @param format   format to serialize with
+   * @param compress whether to gzip the body
+   * @return streaming body publisher
+   */
+  public static HttpRequest.BodyPublisher ofModel(final Model model, final TripleSerializationFormat format,
+      final boolean compress) {
+    return ofOutputStream(modelWriter(model, format, compress));
+  }
+
+  /**
+   * Creates a streaming request body publisher for the model, see {@link #ofModel(Model, TripleSerializationFormat,
+   * boolean)}, recording the serialization time and the size of the body on the call.
+   *
+   * @param model    model to send
+   * @param format   format to serialize with
+   * @param compress whether to gzip the body
+   * @param call     call to record on
+   * @return streaming body publisher
+   */
+  public static HttpRequest.BodyPublisher ofModel(final Model model, final TripleSerializationFormat format,
+      final boolean compress, final SparqlCall call) {
+    return new PipedBodyPublisher(modelWriter(model, format, compress), call, defaultWriterExecutor);
+  }
+
+  /**
+   * Creates a streaming request body publisher for the model in the upload format of the configuration, compressed if
+   * enabled, see {@link #ofModel(Model, TripleSerializationFormat, boolean, SparqlCall)}. The serializer runs on the
+   * executor of the configuration, if any. As it blocks while the body is being sent, that executor must not be
+   * bounded to the threads the client itself needs to send it.
+   *
+   * @param model  model to send
+   * @param config configuration of the endpoint
+   * @param call   call to record on
+   * @return streaming body publisher
+   */
+  public static HttpRequest.BodyPublisher ofModel(final Model model, final Config config, final SparqlCall call) {
+    return new PipedBodyPublisher(modelWriter(model, config.getUploadFormat(), config.isCompression()), call,
+        config.getExecutor() == null ? defaultWriterExecutor : config.getExecutor());
+  }
+
+  private static Consumer<OutputStream> modelWriter(final Model model, final TripleSerializationFormat format,
+      final boolean compress) {
+    if (!compress) {
+      return outputStream -> JenaUtils.write(model, outputStream, format);
+    }
+    return outputStream -> {
+      try {
+        final GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream, PIPE_BUFFER_SIZE);
+        JenaUtils.write(model, gzipOutputStream, format);
+        gzipOutputStream.finish();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    };
+  }
+
+  /**
+   * Marks a request body created by {@link #ofModel(Model, TripleSerializationFormat, boolean)} as gzip encoded, if
+   * compression is enabled in the configuration.
+   *
+   * @param builder request builder
+   * @param config  configuration of the endpoint
+   * @return the given builder
+   */
+  public static HttpRequest.Builder contentEncoding(final HttpRequest.Builder builder, final Config config) {
+    return config.isCompression() ? builder.header(Constants.CONTENT_ENCODING, Constants.GZIP) : builder;
+  }
+
+  /**
+   * Creates a request body publisher for content produced by a writer callback, streamed through a bounded pipe.
+   * A failure of the writer fails the request.
+   *
+   * @param writer writes the body to the given stream; called once per (re)transmission
+   * @return streaming body publisher
+   */
+  public static HttpRequest.BodyPublisher ofOutputStream(final Consumer<OutputStream> writer) {
+    return new PipedBodyPublisher(writer, null, defaultWriterExecutor);
+  }
+
+  /**
+   * @param call     call to record the writing time and the body size on, null if none
+   * @param executor executor to run the writer on
+   */
+  private static FailureAwareInputStream pipe(final Consumer<OutputStream> writer, final SparqlCall call,
+      final Executor executor) {
+    final BoundedPipe pipe = new BoundedPipe();
+    final FailureAwareInputStream inputStream = new FailureAwareInputStream(pipe.inputStream, call);
+    final OutputStream outputStream = pipe.outputStream;
+
+    executor.execute(() -> {
+      final long start = System.nanoTime();
+      try {
+        writer.accept(outputStream);
+        if (call != null) call.add(SparqlCallPhase.serialize, System.nanoTime() - start);
+      } catch (Throwable e) {
+        // record the failure before closing, so the reader never sees a clean end of stream
+        inputStream.failure = e;
+        log.debug("Writing request body failed.", e);
+      } finally {
+        try {
+          outputStream.close();
+        } catch (IOException e) {
+          log.debug("Closing request body pipe failed.", e);
+        }
+      }
+    });
+    return inputStream;
+  }
+
+  /**
+   * Streams the output of a writer through a pipe per (re)transmission, keeping track of the open pipes so they can be
+   * closed when the exchange is over, which makes a writer blocked on a pipe nobody reads anymore fail and finish.
+   */
+  private static class PipedBodyPublisher implements HttpRequest.BodyPublisher {
+
+    private final Set<InputStream> pipes = ConcurrentHashMap.newKeySet();
+    private final HttpRequest.BodyPublisher delegate;
+
+    private PipedBodyPublisher(final Consumer<OutputStream> writer, final SparqlCall call, final Executor executor) {
+      delegate = HttpRequest.BodyPublishers.ofInputStream(() -> {
+        final InputStream pipe = pipe(writer, call, executor);
+        pipes.add(pipe);
+        return pipe;
+      });
+    }
+
+    @Override
+    public long contentLength() {
+      return delegate.contentLength();
+    }
+
+    @Override
+    public void subscribe(final Flow.Subscriber<? super ByteBuffer> subscriber) {
+      delegate.subscribe(subscriber);
+    }
+
+    private void close() {
+      pipes.removeIf(pipe -> {
+        try {
+          pipe.close();
+        } catch (IOException e) {
+          log.debug("Closing request body pipe failed.", e);
+        }
+        return true;
+      });
+    }
+  }
+
+  /**
+   * Hands the output of a writer over to a reader in chunks, blocking the writer while {@link #PIPE_BUFFER_SIZE} bytes
+   * wait to be read. Unlike {@link java.io.PipedInputStream}, it does not check whether the threads that last read or
+   * wrote are still alive, so both sides may run as short-lived tasks, e.g. on virtual threads. Closing the reading
+   * side makes the writer fail instead of blocking.
+   */
+  private static class BoundedPipe {
+
+    private static final int CHUNK_SIZE = 8 * 1024;
+    private static final byte[] END = new byte[0];
+
+    private final BlockingQueue<byte[]> chunks = new ArrayBlockingQueue<>(PIPE_BUFFER_SIZE / CHUNK_SIZE);
+    private volatile boolean readerClosed;
+
+    private final OutputStream outputStream = new OutputStream() {
+
+      private byte[] chunk = new byte[CHUNK_SIZE];
+      private int size;
+      private boolean closed;
+
+      @Override
+      public void write(int b) throws IOException {
+        if (closed) throw new IOException("Pipe closed");
+        if (size == chunk.length) send();
+        chunk[size++] = (byte) b;
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, b.length);
+        if (closed) throw new IOException("Pipe closed");
+        while (len > 0) {
+          if (size == chunk.length) send();
+          final int count = Math.min(len, chunk.length - size);
+          System.arraycopy(b, off, chunk, size, count);
+          size += count;
+          off += count;
+          len -= count;
+        }
+      }
+
+      @Override
+      public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        if (readerClosed) {
+          // wakes up a reader still waiting for data
+          chunks.offer(END);
+          return;
+        }
+        if (size > 0) put(Arrays.copyOf(chunk, size));
+        put(END);
+      }
+
+      private void send() throws IOException {
+        put(chunk);
+        chunk = new byte[CHUNK_SIZE];
+        size = 0;
+      }
+
+      private void put(byte[] data) throws IOException {
+        if (readerClosed) throw new IOException("Pipe closed by the reader");
+        try {
+          chunks.put(data);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException("Interrupted while writing to the pipe");
+        }
+      }
+    };
+
+    private final InputStream inputStream = new InputStream() {
+
+      private byte[] chunk;
+      private int position;
+
+      @Override
+      public int read() throws IOException {
+        return next() ? chunk[position++] & 0xff : -1;
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, b.length);
+        if (len == 0) return 0;
+        if (!next()) return -1;
+        final int count = Math.min(len, chunk.length - position);
+        System.arraycopy(chunk, position, b, off, count);
+        position += count;
+        return count;
+      }
+
+      @Override
+      public int available() {
+        return chunk == null ? 0 : chunk.length - position;
+      }
+
+      @Override
+      public void close() {
+        readerClosed = true;
+        // frees a writer blocked on a full pipe, which then fails on its next write
+        chunks.clear();
+        chunks.offer(END);
+      }
+
+      /**
+       * @return whether data is available, false at the end of the stream
+       */
+      private boolean next() throws IOException {
+        if (readerClosed) throw new IOException("Pipe closed");
+        while (chunk == null || position == chunk.length) {
+          if (chunk == END) return false;
+          try {
+            chunk = chunks.take();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading from the pipe");
+          }
+          position = 0;
+        }
+        return true;
+      }
+    };
+  }
+
+  /**
+   * Rethrows a failure of the writing side of the pipe instead of reporting a truncated body as complete.
+   * Records the size of the body on the call, if any, once it has been read completely.
+   */
+  private static class FailureAwareInputStream extends FilterInputStream {
+
+    private final SparqlCall call;
+    private volatile Throwable failure;
+    private long count;
+
+    private FailureAwareInputStream(InputStream in, SparqlCall call) {
+      super(in);
+      this.call = call;
+    }
+
+    @Override
+    public int read() throws IOException {
+      final int result = checkFailure(super.read());
+      if (result >= 0) count++;
+      return result;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      final int result = checkFailure(super.read(b, off, len));
+      if (result > 0) count += result;
+      return result;
+    }
+
+    private int checkFailure(int result) throws IOException {
+      if (result < 0 && failure != null) {
+        throw new IOException("Writing request body failed", failure);
+      }
+      if (result < 0 && call != null) {
+        call.setRequestBytes(count);
+      }
+      return result;
+    }
+  }
+}
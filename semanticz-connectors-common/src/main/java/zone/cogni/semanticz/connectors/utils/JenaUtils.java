@@ -19,13 +19,25 @@
 
 package zone.cogni.semanticz.connectors.utils;
 
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QuerySolution;
+import org.apache.jena.query.ResultSet;
 import org.apache.jena.rdf.model.*;
+import org.apache.jena.riot.RDFDataMgr;
 import org.apache.jena.riot.RDFLanguages;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import zone.cogni.semanticz.connectors.general.SparqlCall;
+import zone.cogni.semanticz.connectors.general.SparqlCallPhase;
+import zone.cogni.semanticz.connectors.general.SparqlTimeoutException;
 
 import java.io.*;
 import java.util.*;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class JenaUtils {
   private static final Logger log = LoggerFactory.getLogger(JenaUtils.class);
@@ -42,7 +54,24 @@ public class JenaUtils {
   }
 
   public static byte[] toByteArray(Model model, TripleSerializationFormat tripleSerializationFormat) {
-    return toByteArray(model, tripleSerializationFormat.getJenaLanguage());
+    try (ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
+      write(model, outputStream, tripleSerializationFormat);
+      return outputStream.toByteArray();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Writes the model to the stream in the given format, using the writer variant the format stands for
+   * (e.g. streaming instead of pretty-printed Turtle).
+   *
+   * @param model                     model to write
+   * @param outputStream              stream to write to, left open
+   * @param tripleSerializationFormat format to write in
+   */
+  public static void write(Model model, OutputStream outputStream, TripleSerializationFormat tripleSerializationFormat) {
+    RDFDataMgr.write(outputStream, model, tripleSerializationFormat.getRdfFormat());
   }
 
   public static byte[] toByteArray(Model model, String language) {
@@ -55,6 +84,211 @@ public class JenaUtils {
     }
   }
 
+  /**
+   * Wraps the result set into a sequential stream. Solutions are read from the result set only as the stream is consumed.
+   *
+   * @param resultSet result set to wrap
+   * @return stream of query solutions
+   */
+  public static Stream<QuerySolution> toStream(ResultSet resultSet) {
+    return toStream((Iterator<QuerySolution>) resultSet);
+  }
+
+  /**
+   * Executes the SELECT query execution and exposes its solutions as a stream which closes the query execution
+   * when the stream itself is closed.
+   *
+   * @param queryExecution query execution to run, owned by the returned stream afterwards
+   * @return stream of query solutions, to be closed by the caller
+   */
+  public static Stream<QuerySolution> selectStream(QueryExecution queryExecution) {
+    try {
+      return toStream(queryExecution.execSelect()).onClose(queryExecution::close);
+    } catch (RuntimeException e) {
+      queryExecution.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Wraps the iterator into a sequential stream. Elements are read from the iterator only as the stream is consumed.
+   *
+   * @param iterator iterator to wrap
+   * @return stream of the iterator elements
+   */
+  public static <T> Stream<T> toStream(Iterator<T> iterator) {
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false);
+  }
+
+  /**
+   * Executes the CONSTRUCT query execution and exposes the resulting triples as a stream which closes
+   * the query execution when the stream itself is closed.
+   *
+   * @param queryExecution query execution to run, owned by the returned stream afterwards
+   * @return stream of triples, to be closed by the caller
+   */
+  public static Stream<Triple> constructStream(QueryExecution queryExecution) {
+    try {
+      return toStream(queryExecution.execConstructTriples()).onClose(queryExecution::close);
+    } catch (RuntimeException e) {
+      queryExecution.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Executes a SELECT query and exposes its solutions as a stream, see {@link #selectStream(QueryExecution)}, recording
+   * it on the call: the time until the results are available, then the time spent consuming the stream and the number
+   * of solutions read. The call fails as soon as reading the stream fails, and else ends when the stream is closed.
+   *
+   * @param call           call to record on
+   * @param queryExecution supplier of the query execution to run, closed with the stream
+   * @return stream of query solutions, to be closed by the caller
+   */
+  public static Stream<QuerySolution> selectStream(SparqlCall call, Supplier<QueryExecution> queryExecution) {
+    return stream(call, queryExecution, QueryExecution::execSelect);
+  }
+
+  /**
+   * Executes a CONSTRUCT query and exposes the resulting triples as a stream, recording it on the call, see
+   * {@link #selectStream(SparqlCall, Supplier)}.
+   *
+   * @param call           call to record on
+   * @param queryExecution supplier of the query execution to run, closed with the stream
+   * @return stream of triples, to be closed by the caller
+   */
+  public static Stream<Triple> constructStream(SparqlCall call, Supplier<QueryExecution> queryExecution) {
+    return stream(call, queryExecution, QueryExecution::execConstructTriples);
+  }
+
+  private static <T> Stream<T> stream(SparqlCall call, Supplier<QueryExecution> queryExecution,
+                                      Function<QueryExecution, Iterator<T>> execute) {
+    final QueryExecution execution;
+    final Iterator<T> iterator;
+    try {
+      execution = queryExecution.get();
+    } catch (RuntimeException e) {
+      throw call.fail(e);
+    }
+    try {
+      iterator = execute.apply(execution);
+      call.mark(SparqlCallPhase.serverExecution);
+    } catch (RuntimeException e) {
+      execution.close();
+      throw call.fail(timedOut(call, e));
+    }
+
+    final long[] count = new long[1];
+    final Iterator<T> recorded = new Iterator<>() {
+      @Override
+      public boolean hasNext() {
+        try {
+          return iterator.hasNext();
+        } catch (RuntimeException e) {
+          throw call.fail(timedOut(call, e));
+        }
+      }
+
+      @Override
+      public T next() {
+        try {
+          final T next = iterator.next();
+          count[0]++;
+          return next;
+        } catch (RuntimeException e) {
+          throw call.fail(timedOut(call, e));
+        }
+      }
+    };
+    return toStream(recorded).onClose(() -> {
+      try {
+        execution.close();
+      } finally {
+        call.mark(SparqlCallPhase.handler);
+        call.setResultCount(count[0]);
+        call.end();
+      }
+    });
+  }
+
+  /**
+   * Executes a SELECT query, recording the time until the results are available and the time spent in the handler
+   * on the call, which is ended (or failed) when this returns.
+   *
+   * @param call           call to record on
+   * @param queryExecution supplier of the query execution to run, closed afterwards
+   * @param resultHandler  function processing the result set, it must consume it before returning
+   * @return output of the result handler
+   */
+  public static <R> R select(SparqlCall call, Supplier<QueryExecution> queryExecution,
+                             Function<ResultSet, R> resultHandler) {
+    try (QueryExecution execution = queryExecution.get()) {
+      final ResultSet resultSet = execution.execSelect();
+      call.mark(SparqlCallPhase.serverExecution);
+      final R result = resultHandler.apply(resultSet);
+      call.mark(SparqlCallPhase.handler);
+      call.setResultCount(resultSet.getRowNumber());
+      return call.end(result);
+    } catch (RuntimeException e) {
+      throw call.fail(timedOut(call, e));
+    } catch (Throwable e) {
+      call.fail(e);
+      throw e;
+    }
+  }
+
+  /**
+   * Executes an ASK query, recording it on the call, see {@link #select(SparqlCall, Supplier, Function)}.
+   *
+   * @param call           call to record on
+   * @param queryExecution supplier of the query execution to run, closed afterwards
+   * @return the boolean answer
+   */
+  public static boolean ask(SparqlCall call, Supplier<QueryExecution> queryExecution) {
+    try (QueryExecution execution = queryExecution.get()) {
+      final boolean result = execution.execAsk();
+      call.mark(SparqlCallPhase.serverExecution);
+      call.setResultCount(1);
+      return call.end(result);
+    } catch (RuntimeException e) {
+      throw call.fail(timedOut(call, e));
+    } catch (Throwable e) {
+      call.fail(e);
+      throw e;
+    }
+  }
+
+  /**
+   * Executes a CONSTRUCT query, recording it on the call, see {@link #select(SparqlCall, Supplier, Function)}.
+   * Receiving and parsing the triples is recorded as part of the server execution.
+   *
+   * @param call           call to record on
+   * @param queryExecution supplier of the query execution to run, closed afterwards
+   * @return the Model with the output of the query
+   */
+  public static Model construct(SparqlCall call, Supplier<QueryExecution> queryExecution) {
+    try (QueryExecution execution = queryExecution.get()) {
+      final Model result = execution.execConstruct();
+      call.mark(SparqlCallPhase.serverExecution);
+      call.setResultCount(result.size());
+      return call.end(result);
+    } catch (RuntimeException e) {
+      throw call.fail(timedOut(call, e));
+    } catch (Throwable e) {
+      call.fail(e);
+      throw e;
+    }
+  }
+
+  /**
+   * @return a {@link SparqlTimeoutException} if the call failed because its deadline passed (e.g. ARQ cancelled the
+   * query or the HTTP request timed out), the failure itself otherwise
+   */
+  private static RuntimeException timedOut(SparqlCall call, RuntimeException e) {
+    if (!call.isExpired() || e instanceof SparqlTimeoutException) return e;
+    return new SparqlTimeoutException(call.getOperation() + " on " + call.getEndpoint() + " timed out", e);
+  }
+
   public static void closeQuietly(Iterable<Model> models) {
     for (Model model : models) {
       if (model == null) {
@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package zone.cogni.semanticz.connectors.utils;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.query.QueryParseException;
+import org.apache.jena.query.Syntax;
+import org.apache.jena.sparql.algebra.Algebra;
+import org.apache.jena.sparql.algebra.Op;
+import org.apache.jena.sparql.algebra.TableFactory;
+import org.apache.jena.sparql.algebra.TransformCopy;
+import org.apache.jena.sparql.algebra.Transformer;
+import org.apache.jena.sparql.algebra.op.OpBGP;
+import org.apache.jena.sparql.algebra.op.OpPath;
+import org.apache.jena.sparql.algebra.op.OpTable;
+import org.apache.jena.sparql.algebra.op.OpTriple;
+import org.apache.jena.sparql.core.BasicPattern;
+import org.apache.jena.sparql.core.TriplePath;
+import org.apache.jena.sparql.expr.Expr;
+import org.apache.jena.sparql.expr.ExprTransformCopy;
+import org.apache.jena.sparql.expr.NodeValue;
+import org.apache.jena.vocabulary.RDF;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+
+/**
+ * Normalizes SPARQL queries into fingerprints, so that executions of the same query shape with different parameters
+ * can be aggregated, see {@link zone.cogni.semanticz.connectors.general.QueryStatisticsRegistry}.
+ * <p>
+ * Queries are compiled to SPARQL algebra, in which literals, IRIs in subject and object position (except classes, the
+ * objects of rdf:type) and IRIs in expressions are replaced by placeholders, and the rows of VALUES blocks are dropped.
+ * Predicates, classes and graph names are kept, as they make up the shape of a query. Updates and queries Jena cannot
+ * parse are fingerprinted on their text, with IRIs, string and numeric literals replaced and whitespace collapsed.
+ * </p>
+ */
+public final class QueryFingerprint {
+
+  private static final int CACHE_SIZE = 1024;
+
+  private static final Node IRI_PLACEHOLDER = NodeFactory.createURI("urn:x-semanticz:iri");
+  private static final Node LITERAL_PLACEHOLDER = NodeFactory.createLiteralString("?");
+
+  private static final Pattern STRING_LITERAL = Pattern.compile(
+      "\"\"\"(?s:.*?)\"\"\"|'''(?s:.*?)'''|\"(?:[^\"\\\\\\n]|\\\\.)*\"|'(?:[^'\\\\\\n]|\\\\.)*'");
+  private static final Pattern IRI = Pattern.compile("<[^<>\\s]*>");
+  private static final Pattern NUMERIC_LITERAL = Pattern.compile("(?<![\\w:?$])[+-]?\\d+(?:\\.\\d*)?(?:[eE][+-]?\\d+)?");
+  private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+  private static final ConcurrentMap<String, String> cache = new ConcurrentHashMap<>();
+
+  private QueryFingerprint() {
+  }
+
+  /**
+   * @param queryOrUpdate SPARQL query or update
+   * @return its fingerprint, the same for queries differing only in their parameters
+   */
+  public static String of(String queryOrUpdate) {
+    final String cached = cache.get(queryOrUpdate);
+    if (cached != null) return cached;
+
+    // parsed outside of any lock, two threads seeing the same new query both compute the same fingerprint
+    final String fingerprint = compute(queryOrUpdate);
+    if (cache.size() >= CACHE_SIZE) {
+      final Iterator<String> keys = cache.keySet().iterator();
+      if (keys.hasNext()) {
+        keys.next();
+        keys.remove();
+      }
+    }
+    final String previous = cache.putIfAbsent(queryOrUpdate, fingerprint);
+    return previous == null ? fingerprint : previous;
+  }
+
+  private static String compute(String queryOrUpdate) {
+    final Query query;
+    try {
+      query = QueryFactory.create(queryOrUpdate, Syntax.syntaxARQ);
+    } catch (QueryParseException e) {
+      return normalizeText(queryOrUpdate);
+    }
+    final Op op = Transformer.transform(new Normalizer(), new ExprNormalizer(), Algebra.compile(query));
+    return WHITESPACE.matcher(query.queryType() + " " + op).replaceAll(" ").trim();
+  }
+
+  private static String normalizeText(String text) {
+    final String withoutStrings = STRING_LITERAL.matcher(text).replaceAll("?");
+    final String withoutIris = IRI.matcher(withoutStrings).replaceAll("<?>");
+    final String withoutNumbers = NUMERIC_LITERAL.matcher(withoutIris).replaceAll("?");
+    return WHITESPACE.matcher(withoutNumbers).replaceAll(" ").trim();
+  }
+
+  private static Node parameter(Node node) {
+    if (node.isURI()) return IRI_PLACEHOLDER;
+    if (node.isLiteral()) return LITERAL_PLACEHOLDER;
+    return node;
+  }
+
+  private static Triple normalize(Triple triple) {
+    final Node predicate = triple.getPredicate();
+    final Node object = RDF.type.asNode().equals(predicate) ? triple.getObject() : parameter(triple.getObject());
+    return Triple.create(parameter(triple.getSubject()), predicate, object);
+  }
+
+  private static class Normalizer extends TransformCopy {
+
+    @Override
+    public Op transform(OpBGP opBGP) {
+      final BasicPattern pattern = new BasicPattern();
+      opBGP.getPattern().forEach(triple -> pattern.add(normalize(triple)));
+      return new OpBGP(pattern);
+    }
+
+    @Override
+    public Op transform(OpTriple opTriple) {
+      return new OpTriple(normalize(opTriple.getTriple()));
+    }
+
+    @Override
+    public Op transform(OpPath opPath) {
+      final TriplePath path = opPath.getTriplePath();
+      return new OpPath(new TriplePath(parameter(path.getSubject()), path.getPath(), parameter(path.getObject())));
+    }
+
+    @Override
+    public Op transform(OpTable opTable) {
+      if (opTable.isJoinIdentity()) return opTable;
+      return OpTable.create(TableFactory.create(opTable.getTable().getVars()));
+    }
+  }
+
+  private static class ExprNormalizer extends ExprTransformCopy {
+
+    @Override
+    public Expr transform(NodeValue nodeValue) {
+      return NodeValue.makeNode(parameter(nodeValue.asNode()));
+    }
+  }
+}
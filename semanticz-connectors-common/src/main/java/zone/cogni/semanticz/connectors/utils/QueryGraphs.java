@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package zone.cogni.semanticz.connectors.utils;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.query.Query;
+import org.apache.jena.sparql.algebra.Algebra;
+import org.apache.jena.sparql.algebra.Op;
+import org.apache.jena.sparql.algebra.OpVisitorBase;
+import org.apache.jena.sparql.algebra.OpWalker;
+import org.apache.jena.sparql.algebra.op.OpBGP;
+import org.apache.jena.sparql.algebra.op.OpDatasetNames;
+import org.apache.jena.sparql.algebra.op.OpGraph;
+import org.apache.jena.sparql.algebra.op.OpPath;
+import org.apache.jena.sparql.algebra.op.OpQuad;
+import org.apache.jena.sparql.algebra.op.OpQuadBlock;
+import org.apache.jena.sparql.algebra.op.OpQuadPattern;
+import org.apache.jena.sparql.algebra.op.OpTriple;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.sparql.modify.request.Target;
+import org.apache.jena.sparql.modify.request.UpdateBinaryOp;
+import org.apache.jena.sparql.modify.request.UpdateCreate;
+import org.apache.jena.sparql.modify.request.UpdateData;
+import org.apache.jena.sparql.modify.request.UpdateDeleteWhere;
+import org.apache.jena.sparql.modify.request.UpdateDropClear;
+import org.apache.jena.sparql.modify.request.UpdateLoad;
+import org.apache.jena.sparql.modify.request.UpdateModify;
+import org.apache.jena.update.Update;
+import org.apache.jena.update.UpdateRequest;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Determines which named graphs a query reads or an update writes, based on Jena's algebra.
+ * <p>
+ * The analysis is conservative: whenever the default graph, a graph variable or an operation on all graphs is
+ * involved, the graphs are reported as unknown ({@link Optional#empty()}), since several stores treat the default
+ * graph as the union of all named graphs.
+ */
+public final class QueryGraphs {
+
+  private QueryGraphs() {
+  }
+
+  /**
+   * @param query parsed query
+   * @return URIs of the named graphs the query reads, or empty if it may read any graph
+   */
+  public static Optional<Set<String>> readGraphs(Query query) {
+    final GraphCollector collector = new GraphCollector();
+    final Op op = Algebra.toQuadForm(Algebra.compile(query));
+    OpWalker.walk(op, new OpVisitorBase() {
+      @Override
+      public void visit(OpQuadPattern quadPattern) {
+        collector.add(quadPattern.getGraphNode());
+      }
+
+      @Override
+      public void visit(OpQuadBlock quadBlock) {
+        quadBlock.getPattern().forEach(quad -> collector.add(quad.getGraph()));
+      }
+
+      @Override
+      public void visit(OpQuad opQuad) {
+        collector.add(opQuad.getQuad().getGraph());
+      }
+
+      @Override
+      public void visit(OpGraph opGraph) {
+        collector.add(opGraph.getNode());
+      }
+
+      @Override
+      public void visit(OpDatasetNames dsNames) {
+        collector.add(dsNames.getGraphNode());
+      }
+
+      @Override
+      public void visit(OpBGP opBGP) {
+        collector.unknown = true;
+      }
+
+      @Override
+      public void visit(OpTriple opTriple) {
+        collector.unknown = true;
+      }
+
+      @Override
+      public void visit(OpPath opPath) {
+        collector.unknown = true;
+      }
+    });
+
+    if (query.hasDatasetDescription()) {
+      // FROM and FROM NAMED restrict the dataset, whatever the patterns look like
+      collector.graphs.addAll(query.getGraphURIs());
+      collector.graphs.addAll(query.getNamedGraphURIs());
+      return Optional.of(collector.graphs);
+    }
+    return collector.result();
+  }
+
+  /**
+   * @param updateRequest parsed update request
+   * @return URIs of the named graphs the update may modify, or empty if it may modify any graph
+   */
+  public static Optional<Set<String>> writtenGraphs(UpdateRequest updateRequest) {
+    final GraphCollector collector = new GraphCollector();
+    for (Update update : updateRequest.getOperations()) {
+      if (update instanceof UpdateData) {
+        collector.addQuads(((UpdateData) update).getQuads(), null);
+      } else if (update instanceof UpdateDeleteWhere) {
+        collector.addQuads(((UpdateDeleteWhere) update).getQuads(), null);
+      } else if (update instanceof UpdateModify) {
+        final UpdateModify modify = (UpdateModify) update;
+        collector.addQuads(modify.getDeleteQuads(), modify.getWithIRI());
+        collector.addQuads(modify.getInsertQuads(), modify.getWithIRI());
+      } else if (update instanceof UpdateDropClear) {
+        final UpdateDropClear dropClear = (UpdateDropClear) update;
+        if (dropClear.isOneGraph()) collector.add(dropClear.getGraph());
+        else collector.unknown = true;
+      } else if (update instanceof UpdateLoad) {
+        final Node dest = ((UpdateLoad) update).getDest();
+        if (dest == null) collector.unknown = true;
+        else collector.add(dest);
+      } else if (update instanceof UpdateBinaryOp) {
+        final UpdateBinaryOp binaryOp = (UpdateBinaryOp) update;
+        collector.add(binaryOp.getDest());
+        // MOVE empties the source as well
+        collector.add(binaryOp.getSrc());
+      } else if (!(update instanceof UpdateCreate)) {
+        collector.unknown = true;
+      }
+    }
+    return collector.result();
+  }
+
+  private static class GraphCollector {
+
+    private final Set<String> graphs = new HashSet<>();
+    private boolean unknown;
+
+    private void add(Node graph) {
+      if (graph == null || !graph.isURI() || Quad.isDefaultGraph(graph) || Quad.isUnionGraph(graph)) {
+        unknown = true;
+        return;
+      }
+      graphs.add(graph.getURI());
+    }
+
+    private void add(Target target) {
+      if (target.isOneNamedGraph()) add(target.getGraph());
+      else unknown = true;
+    }
+
+    private void addQuads(Collection<Quad> quads, Node withGraph) {
+      for (Quad quad : quads) {
+        add(withGraph != null && Quad.isDefaultGraph(quad.getGraph()) ? withGraph : quad.getGraph());
+      }
+    }
+
+    private Optional<Set<String>> result() {
+      return unknown ? Optional.empty() : Optional.of(graphs);
+    }
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package zone.cogni.semanticz.connectors.utils;
+
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.exec.RowSetStream;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable copy of a SELECT result which can be replayed as a fresh {@link ResultSet} any number of times, also from
+ * several threads at once.
+ */
+public final class ResultSetSnapshot {
+
+  private final List<Var> vars;
+  private final List<Binding> bindings;
+
+  private ResultSetSnapshot(List<Var> vars, List<Binding> bindings) {
+    this.vars = vars;
+    this.bindings = bindings;
+  }
+
+  /**
+   * Consumes the result set into a snapshot.
+   *
+   * @param resultSet result set to copy, consumed afterwards
+   * @return snapshot of the result
+   */
+  public static ResultSetSnapshot of(ResultSet resultSet) {
+    final List<Var> vars = Collections.unmodifiableList(Var.varList(resultSet.getResultVars()));
+    final List<Binding> bindings = new ArrayList<>();
+    while (resultSet.hasNext()) {
+      bindings.add(resultSet.nextBinding());
+    }
+    return new ResultSetSnapshot(vars, Collections.unmodifiableList(bindings));
+  }
+
+  /**
+   * @return a new result set positioned before the first row
+   */
+  public ResultSet toResultSet() {
+    return ResultSet.adapt(RowSetStream.create(vars, bindings.iterator()));
+  }
+
+  /**
+   * @return number of rows
+   */
+  public int size() {
+    return bindings.size();
+  }
+}
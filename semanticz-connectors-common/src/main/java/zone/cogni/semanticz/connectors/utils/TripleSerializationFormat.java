@@ -19,19 +19,51 @@
 
 package zone.cogni.semanticz.connectors.utils;
 
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFFormat;
+
+/**
+ * Serialization formats for sending triples to a store. Pretty-printed Turtle groups and sorts subjects, which is
+ * expensive on large graphs; the streaming formats ({@link #ntriples}, {@link #turtleBlocks}, {@link #rdfThrift},
+ * {@link #rdfProtobuf}) write triples as they come.
+ */
 public enum TripleSerializationFormat {
 
-  turtle("TTL"),
-  rdfXml("RDF/XML"),
-  n3("N3");
+  turtle("TTL", RDFFormat.TURTLE_PRETTY),
+  rdfXml("RDF/XML", RDFFormat.RDFXML_PLAIN),
+  n3("N3", RDFFormat.TURTLE_PRETTY),
+  ntriples("N-TRIPLE", RDFFormat.NTRIPLES_UTF8),
+  turtleBlocks("TTL", RDFFormat.TURTLE_BLOCKS),
+  rdfThrift("RDF-THRIFT", RDFFormat.RDF_THRIFT),
+  rdfProtobuf("RDF-PROTO", RDFFormat.RDF_PROTO);
 
   private final String jenaLanguage;
+  private final RDFFormat rdfFormat;
 
-  TripleSerializationFormat(String jenaLanguage) {
+  TripleSerializationFormat(String jenaLanguage, RDFFormat rdfFormat) {
     this.jenaLanguage = jenaLanguage;
+    this.rdfFormat = rdfFormat;
   }
 
   public String getJenaLanguage() {
     return jenaLanguage;
   }
+
+  public RDFFormat getRdfFormat() {
+    return rdfFormat;
+  }
+
+  /**
+   * @return the MIME type to send content in this format with
+   */
+  public String getContentType() {
+    return rdfFormat.getLang().getHeaderString();
+  }
+
+  /**
+   * @return whether this format produces Turtle, so stores expecting a Turtle media type accept it
+   */
+  public boolean isTurtle() {
+    return Lang.TURTLE.equals(rdfFormat.getLang());
+  }
 }
@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package zone.cogni.semanticz.connectors.utils;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Access to the virtual threads of Java 21 and later, while the connectors are built for Java 17.
+ * <p>
+ * Connector calls mostly wait on the store, so running them on virtual threads lets an application have thousands of
+ * calls in flight without as many platform threads, see {@link zone.cogni.semanticz.connectors.general.Config#setExecutor}.
+ * </p>
+ */
+public final class VirtualThreads {
+
+  private VirtualThreads() {
+  }
+
+  /**
+   * @return whether the running JVM supports virtual threads
+   */
+  public static boolean isAvailable() {
+    return Holder.executor != null;
+  }
+
+  /**
+   * @return shared executor starting a virtual thread per task
+   * @throws UnsupportedOperationException on JVMs older than Java 21, see {@link #isAvailable()}
+   */
+  public static Executor executor() {
+    if (Holder.executor == null) {
+      throw new UnsupportedOperationException("Virtual threads require Java 21 or later, running "
+          + System.getProperty("java.version"));
+    }
+    return Holder.executor;
+  }
+
+  private static final class Holder {
+
+    private static final Executor executor = create();
+
+    private static Executor create() {
+      try {
+        return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+      } catch (ReflectiveOperationException e) {
+        return null;
+      }
+    }
+  }
+}
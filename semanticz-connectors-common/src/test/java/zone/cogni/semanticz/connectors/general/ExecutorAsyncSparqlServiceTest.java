@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package zone.cogni.semanticz.connectors.general;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ExecutorAsyncSparqlServiceTest {
+
+  private final AtomicInteger running = new AtomicInteger();
+  private final AtomicInteger maxRunning = new AtomicInteger();
+  private final CountDownLatch release = new CountDownLatch(1);
+
+  private final SparqlService blocking = new DelegatingSparqlService(new RecordingSparqlService()) {
+    @Override
+    public boolean executeAskQuery(String askQuery) {
+      maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+      try {
+        release.await(10, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } finally {
+        running.decrementAndGet();
+      }
+      return super.executeAskQuery(askQuery);
+    }
+  };
+
+  @Test
+  public void testCallsOnASharedExecutorAreBoundedByTheMaximumConcurrency() throws Exception {
+    final ExecutorService shared = Executors.newCachedThreadPool();
+    try {
+      try (ExecutorAsyncSparqlService async = new ExecutorAsyncSparqlService(blocking, shared, 2)) {
+        final List<CompletableFuture<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+          results.add(async.executeAskQueryAsync("ASK { ?s ?p ?o }"));
+        }
+        while (running.get() < 2) {
+          Thread.sleep(10);
+        }
+        release.countDown();
+
+        for (CompletableFuture<Boolean> result : results) {
+          Assertions.assertFalse(result.get(10, TimeUnit.SECONDS));
+        }
+        Assertions.assertEquals(2, maxRunning.get());
+      }
+      Assertions.assertFalse(shared.isShutdown());
+    } finally {
+      shared.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testCallsWithoutExecutorRunOnADedicatedPool() throws Exception {
+    try (ExecutorAsyncSparqlService async = new ExecutorAsyncSparqlService(blocking, null, 1)) {
+      final String thread = async.executeSelectQueryAsync("SELECT * WHERE { ?s ?p ?o }",
+          resultSet -> Thread.currentThread().getName()).get(10, TimeUnit.SECONDS);
+      Assertions.assertTrue(thread.startsWith("semanticz-async-"), thread);
+    }
+
+    Assertions.assertThrows(IllegalArgumentException.class, () -> new ExecutorAsyncSparqlService(blocking, null, 0));
+  }
+
+  @Test
+  public void testCallsRejectedByTheExecutorFail() throws Exception {
+    final Executor rejecting = task -> {
+      throw new RejectedExecutionException("Shut down");
+    };
+    try (ExecutorAsyncSparqlService async = new ExecutorAsyncSparqlService(blocking, rejecting)) {
+      assertRejected(async.executeAskQueryAsync("ASK { ?s ?p ?o }"));
+    }
+    try (ExecutorAsyncSparqlService async = new ExecutorAsyncSparqlService(blocking, rejecting, 2)) {
+      assertRejected(async.executeAskQueryAsync("ASK { ?s ?p ?o }"));
+    }
+  }
+
+  @Test
+  public void testQueuedCallsRejectedByTheExecutorFail() throws Exception {
+    final ExecutorService pool = Executors.newCachedThreadPool();
+    final AtomicInteger accepted = new AtomicInteger();
+    final Executor acceptsOne = task -> {
+      if (accepted.incrementAndGet() > 1) throw new RejectedExecutionException("Saturated");
+      pool.execute(task);
+    };
+    try (ExecutorAsyncSparqlService async = new ExecutorAsyncSparqlService(blocking, acceptsOne, 1)) {
+      final CompletableFuture<Boolean> first = async.executeAskQueryAsync("ASK { ?s ?p ?o }");
+      final CompletableFuture<Boolean> second = async.executeAskQueryAsync("ASK { ?s ?p ?o }");
+      final CompletableFuture<Boolean> third = async.executeAskQueryAsync("ASK { ?s ?p ?o }");
+      Assertions.assertFalse(second.isDone());
+      release.countDown();
+
+      // the queued calls are handed over by the worker of the first one, and rejected
+      Assertions.assertFalse(first.get(10, TimeUnit.SECONDS));
+      assertRejected(second);
+      assertRejected(third);
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  private static void assertRejected(CompletableFuture<?> result) {
+    final ExecutionException e = Assertions.assertThrows(ExecutionException.class,
+        () -> result.get(10, TimeUnit.SECONDS));
+    Assertions.assertTrue(e.getCause() instanceof RejectedExecutionException, String.valueOf(e.getCause()));
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package zone.cogni.semanticz.connectors.general;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.propagation.W3CTraceContextPropagator;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.context.propagation.ContextPropagators;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+public class OpenTelemetryCallListenerTest {
+
+  private final InMemorySpanExporter exporter = InMemorySpanExporter.create();
+  private OpenTelemetrySdk openTelemetry;
+  private OpenTelemetryCallListener listener;
+
+  @BeforeEach
+  public void createSdk() {
+    openTelemetry = OpenTelemetrySdk.builder()
+        .setTracerProvider(SdkTracerProvider.builder().addSpanProcessor(SimpleSpanProcessor.create(exporter)).build())
+        .setPropagators(ContextPropagators.create(W3CTraceContextPropagator.getInstance()))
+        .build();
+    listener = new OpenTelemetryCallListener(openTelemetry);
+  }
+
+  @AfterEach
+  public void closeSdk() {
+    openTelemetry.close();
+  }
+
+  @Test
+  public void testCallsAreTracedAsClientSpans() {
+    final SparqlCall call = SparqlCall.start(listener, SparqlOperation.select, "test", "http://store/sparql",
+        "SELECT ?o { <http://example.org/s> ?p ?o }");
+    call.setResultCount(3);
+    call.setRequestBytes(40);
+    call.setResponseBytes(400);
+    call.end();
+
+    final SpanData span = singleSpan();
+    Assertions.assertEquals("SPARQL select", span.getName());
+    Assertions.assertEquals(SpanKind.CLIENT, span.getKind());
+    Assertions.assertEquals("sparql", span.getAttributes().get(AttributeKey.stringKey("db.system")));
+    Assertions.assertEquals("select", span.getAttributes().get(AttributeKey.stringKey("db.operation.name")));
+    Assertions.assertEquals("test", span.getAttributes().get(AttributeKey.stringKey("semanticz.connector")));
+    Assertions.assertEquals("http://store/sparql", span.getAttributes().get(AttributeKey.stringKey("url.full")));
+    Assertions.assertEquals(3L, span.getAttributes().get(AttributeKey.longKey("db.response.returned_rows")));
+    Assertions.assertEquals(40L, span.getAttributes().get(AttributeKey.longKey("http.request.body.size")));
+    Assertions.assertEquals(400L, span.getAttributes().get(AttributeKey.longKey("http.response.body.size")));
+    Assertions.assertEquals(StatusCode.UNSET, span.getStatus().getStatusCode());
+  }
+
+  @Test
+  public void testQueriesAreRecordedAsFingerprints() {
+    SparqlCall.start(listener, SparqlOperation.ask, "test", "memory", "ASK { <http://example.org/secret> ?p ?o }")
+        .end();
+
+    final String text = singleSpan().getAttributes().get(AttributeKey.stringKey("db.query.text"));
+    Assertions.assertNotNull(text);
+    Assertions.assertFalse(text.contains("http://example.org/secret"), text);
+  }
+
+  @Test
+  public void testGraphCallsCarryTheGraphAndNoQuery() {
+    SparqlCall.start(listener, SparqlOperation.dropGraph, "test", "memory", null, "http://example.org/graph").end();
+
+    final SpanData span = singleSpan();
+    Assertions.assertEquals("http://example.org/graph",
+        span.getAttributes().get(AttributeKey.stringKey("db.sparql.graph")));
+    Assertions.assertNull(span.getAttributes().get(AttributeKey.stringKey("db.query.text")));
+    Assertions.assertNull(span.getAttributes().get(AttributeKey.longKey("db.response.returned_rows")));
+  }
+
+  @Test
+  public void testFailuresAreRecordedOnTheSpan() {
+    SparqlCall.start(listener, SparqlOperation.update, "test", "memory", "CLEAR ALL")
+        .fail(new IllegalStateException("store unavailable"));
+
+    final SpanData span = singleSpan();
+    Assertions.assertEquals(StatusCode.ERROR, span.getStatus().getStatusCode());
+    Assertions.assertEquals("store unavailable", span.getStatus().getDescription());
+    Assertions.assertEquals(1, span.getEvents().size(), "Exception event");
+  }
+
+  @Test
+  public void testSpansAreChildrenOfTheCurrentSpanAndPropagated() {
+    final Span parent = openTelemetry.getTracer("test").spanBuilder("parent").startSpan();
+    final SparqlCall call;
+    try (Scope ignored = parent.makeCurrent()) {
+      call = SparqlCall.start(listener, SparqlOperation.ask, "test", "memory", "ASK {}");
+    }
+    final String traceparent = call.getHeaders().get("traceparent");
+    call.end();
+    parent.end();
+
+    final SpanData span = exporter.getFinishedSpanItems().get(0);
+    Assertions.assertEquals(parent.getSpanContext().getTraceId(), span.getTraceId());
+    Assertions.assertEquals(parent.getSpanContext().getSpanId(), span.getParentSpanId());
+    Assertions.assertEquals("00-" + span.getTraceId() + "-" + span.getSpanId() + "-01", traceparent);
+  }
+
+  @Test
+  public void testCallsStartedBeforeRegistrationAreIgnored() {
+    final SparqlCall call = SparqlCall.start(SparqlCallListener.NOOP, SparqlOperation.ask, "test", "memory", "ASK {}");
+
+    listener.onEnd(call);
+
+    Assertions.assertTrue(exporter.getFinishedSpanItems().isEmpty());
+  }
+
+  private SpanData singleSpan() {
+    final List<SpanData> spans = exporter.getFinishedSpanItems();
+    Assertions.assertEquals(1, spans.size());
+    return spans.get(0);
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package zone.cogni.semanticz.connectors.general;
+
+import org.apache.jena.query.QuerySolution;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+public class PagedSelectTest {
+
+  private static final String QUERY = "SELECT ?s ?n WHERE { ?s <http://p> ?n }";
+
+  /**
+   * Fetches the pages on the consuming thread, so that the number of queries sent is exact.
+   */
+  private static final Executor INLINE = Runnable::run;
+
+  private final RecordingSparqlService sparqlService = new RecordingSparqlService().insertNumbers(null, 25);
+
+  @Test
+  public void testPagesByOffsetUntilAPageIsNotFull() {
+    try (Stream<QuerySolution> solutions = PagedSelect.byOffset(sparqlService, QUERY, 10, INLINE)) {
+      Assertions.assertEquals(25, solutions.map(solution -> solution.getResource("s").getURI()).distinct().count());
+    }
+
+    final List<String> queries = sparqlService.getQueries();
+    Assertions.assertEquals(3, queries.size());
+    Assertions.assertTrue(matches(queries.get(0), "LIMIT\\s+10"), queries.get(0));
+    Assertions.assertTrue(matches(queries.get(2), "OFFSET\\s+20"), queries.get(2));
+    // pages of an unordered result may overlap
+    queries.forEach(query -> Assertions.assertTrue(matches(query, "ORDER BY\\s+\\?s\\s+\\?n"), query));
+  }
+
+  @Test
+  public void testPagingByOffsetKeepsTheLimitAndOffsetOfTheQuery() {
+    final String query = "SELECT ?n WHERE { ?s <http://p> ?n } ORDER BY ?n OFFSET 3 LIMIT 12";
+
+    try (Stream<QuerySolution> solutions = PagedSelect.byOffset(sparqlService, query, 5, INLINE)) {
+      Assertions.assertEquals(IntStream.range(3, 15).boxed().collect(Collectors.toList()), numbers(solutions));
+    }
+    // 5, 5 and the last 2 solutions of the limit
+    Assertions.assertEquals(3, sparqlService.getQueries().size());
+  }
+
+  @Test
+  public void testPagesByKeyInKeyOrder() {
+    try (Stream<QuerySolution> solutions = PagedSelect.byKey(sparqlService, QUERY, "n", 5, INLINE)) {
+      Assertions.assertEquals(IntStream.range(0, 25).boxed().collect(Collectors.toList()), numbers(solutions));
+    }
+    // the last page is full, so one more, empty, page is fetched
+    Assertions.assertEquals(6, sparqlService.getQueries().size());
+  }
+
+  @Test
+  public void testClosingTheStreamStopsThePaging() {
+    try (Stream<QuerySolution> solutions = PagedSelect.byOffset(sparqlService, QUERY, 10, INLINE)) {
+      final Iterator<QuerySolution> iterator = solutions.iterator();
+      iterator.next();
+    }
+
+    // the first page and the second one, fetched as soon as the first one is consumed
+    Assertions.assertEquals(2, sparqlService.getQueries().size());
+  }
+
+  @Test
+  public void testPagesFetchedInTheBackgroundKeepTheDeadlineOfTheCaller() {
+    final long count = QueryOptions.timeout(Duration.ofMinutes(1)).call(() -> {
+      try (Stream<QuerySolution> solutions = PagedSelect.byOffset(sparqlService, QUERY, 10)) {
+        return solutions.count();
+      }
+    });
+
+    Assertions.assertEquals(25, count);
+    Assertions.assertEquals(3, sparqlService.getDeadlines().size());
+    sparqlService.getDeadlines().forEach(deadline -> Assertions.assertNotEquals(-1L, deadline));
+  }
+
+  @Test
+  public void testInvalidPagingIsRejected() {
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> PagedSelect.byOffset(sparqlService, "ASK { ?s ?p ?o }", 10));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> PagedSelect.byOffset(sparqlService, QUERY, 0));
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> PagedSelect.byKey(sparqlService, QUERY + " LIMIT 10", "n", 5));
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> PagedSelect.byKey(sparqlService, "SELECT ?s WHERE { ?s <http://p> ?n }", "n", 5));
+    Assertions.assertTrue(sparqlService.getQueries().isEmpty());
+  }
+
+  private static boolean matches(String query, String regex) {
+    return Pattern.compile(regex).matcher(query).find();
+  }
+
+  private static List<Integer> numbers(Stream<QuerySolution> solutions) {
+    return solutions.map(solution -> solution.getLiteral("n").getInt()).collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package zone.cogni.semanticz.connectors.general;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.query.ResultSetFormatter;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class PartitionedQueryTest {
+
+  private static final List<String> GRAPHS = List.of("http://partition0", "http://partition1", "http://partition2");
+
+  private final RecordingSparqlService sparqlService = new RecordingSparqlService();
+
+  public PartitionedQueryTest() {
+    // 30 numbers, spread over 3 graphs
+    final StringBuilder data = new StringBuilder("INSERT DATA {");
+    for (int i = 0; i < 30; i++) {
+      data.append(" GRAPH <http://partition").append(i % 3).append("> { <http://s").append(i).append("> <http://p> ")
+          .append(i).append(" }");
+    }
+    sparqlService.executeUpdateQuery(data.append(" }").toString());
+  }
+
+  @Test
+  public void testByValuesSplitsTheValuesOverThePartitions() {
+    final List<Node> subjects = IntStream.range(0, 7)
+        .mapToObj(i -> NodeFactory.createURI("http://s" + i))
+        .collect(Collectors.toList());
+    final PartitionedQuery partitioned =
+        PartitionedQuery.byValues("SELECT ?n WHERE { GRAPH ?g { ?s <http://p> ?n } } ORDER BY ?n", "s", subjects, 3);
+
+    final List<String> queries = partitioned.getQueries();
+    Assertions.assertEquals(3, queries.size());
+    queries.forEach(query -> Assertions.assertTrue(query.contains("VALUES"), query));
+    Assertions.assertEquals(IntStream.range(0, 7).boxed().collect(Collectors.toList()),
+        partitioned.select(sparqlService, 3, PartitionedQueryTest::numbers));
+    Assertions.assertEquals(3, sparqlService.getQueries().size());
+  }
+
+  @Test
+  public void testByGraphMergesInOrderAndAppliesLimitAndOffsetToTheMergedResult() {
+    final PartitionedQuery partitioned = PartitionedQuery.byGraph(
+        "SELECT ?n WHERE { GRAPH ?g { ?s <http://p> ?n } } ORDER BY DESC(?n) OFFSET 2 LIMIT 5", "g", GRAPHS, 3);
+
+    Assertions.assertEquals(List.of(27, 26, 25, 24, 23), partitioned.select(sparqlService, 3,
+        PartitionedQueryTest::numbers));
+    // every partition may contribute all rows up to the offset
+    partitioned.getQueries().forEach(query -> {
+      Assertions.assertFalse(query.contains("OFFSET"), query);
+      Assertions.assertTrue(query.matches("(?s).*LIMIT\\s+7\\b.*"), query);
+    });
+  }
+
+  @Test
+  public void testUnorderedResultsAreConcatenated() {
+    final PartitionedQuery partitioned =
+        PartitionedQuery.byGraph("SELECT ?n WHERE { GRAPH ?g { ?s <http://p> ?n } } LIMIT 4", "g", GRAPHS, 3);
+
+    Assertions.assertEquals(4, partitioned.select(sparqlService, 1, PartitionedQueryTest::numbers).size());
+    Assertions.assertEquals(30, PartitionedQuery.byGraph("SELECT ?n WHERE { GRAPH ?g { ?s <http://p> ?n } }", "g",
+        GRAPHS, 2).select(sparqlService, 2, PartitionedQueryTest::numbers).size());
+  }
+
+  @Test
+  public void testByHashPartitionsAreDisjointAndCoverAllSolutions() {
+    final String query = "SELECT ?n WHERE { GRAPH ?g { ?s <http://p> ?n } } ORDER BY ?n";
+    for (int partitions : new int[]{1, 4, 20}) {
+      final PartitionedQuery partitioned = PartitionedQuery.byHash(query, "s", partitions);
+      Assertions.assertEquals(partitions, partitioned.getQueries().size());
+
+      final int solutions = partitioned.getQueries().stream()
+          .mapToInt(partition -> sparqlService.executeSelectQuery(partition, ResultSetFormatter::consume))
+          .sum();
+      Assertions.assertEquals(30, solutions);
+      Assertions.assertEquals(IntStream.range(0, 30).boxed().collect(Collectors.toList()),
+          partitioned.select(sparqlService, 4, PartitionedQueryTest::numbers));
+    }
+  }
+
+  @Test
+  public void testConstructResultsAreMergedIntoOneModel() {
+    final String construct = "CONSTRUCT { ?s <http://p> ?n } WHERE { GRAPH ?g { ?s <http://p> ?n } }";
+
+    Assertions.assertTrue(sparqlService.executeConstructQuery(construct)
+        .isIsomorphicWith(PartitionedQuery.byHash(construct, "s", 4).construct(sparqlService, 4)));
+    Assertions.assertEquals(30, PartitionedQuery.byGraph(construct, "g", GRAPHS, 3).construct(sparqlService, 1).size());
+  }
+
+  @Test
+  public void testOrderByOnVariablesThatAreNotProjectedIsRejected() {
+    Assertions.assertThrows(IllegalArgumentException.class, () -> PartitionedQuery.byGraph(
+        "SELECT ?s WHERE { GRAPH ?g { ?s <http://p> ?n } } ORDER BY ?n", "g", GRAPHS, 3));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> PartitionedQuery.byHash(
+        "SELECT ?s WHERE { GRAPH ?g { ?s <http://p> ?n } } ORDER BY DESC(?n * 2)", "s", 3));
+
+    final PartitionedQuery byExpression = PartitionedQuery.byGraph(
+        "SELECT ?n WHERE { GRAPH ?g { ?s <http://p> ?n } } ORDER BY DESC(?n * 2) LIMIT 2", "g", GRAPHS, 3);
+    Assertions.assertEquals(List.of(29, 28), byExpression.select(sparqlService, 3, PartitionedQueryTest::numbers));
+  }
+
+  @Test
+  public void testInvalidPartitioningIsRejected() {
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> PartitionedQuery.byHash("ASK { ?s ?p ?o }", "s", 2));
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> PartitionedQuery.byHash("SELECT ?s WHERE { ?s ?p ?o }", "s", 0));
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> PartitionedQuery.byHash("SELECT ?s WHERE { ?s ?p ?o }", "s", 257));
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> PartitionedQuery.byHash("SELECT ?s WHERE { ?s ?p ?o }", "s", 2).select(sparqlService, 0,
+            ResultSetFormatter::consume));
+    Assertions.assertThrows(IllegalStateException.class,
+        () -> PartitionedQuery.byHash("SELECT ?s WHERE { ?s ?p ?o }", "s", 2).construct(sparqlService, 2));
+  }
+
+  private static List<Integer> numbers(ResultSet resultSet) {
+    return ResultSetFormatter.toList(resultSet).stream()
+        .map(solution -> solution.getLiteral("n").getInt())
+        .collect(Collectors.toList());
+  }
+}
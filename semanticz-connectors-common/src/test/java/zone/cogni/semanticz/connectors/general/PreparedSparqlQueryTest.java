@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package zone.cogni.semanticz.connectors.general;
+
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QuerySolutionMap;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class PreparedSparqlQueryTest {
+
+  private static final String A = "http://example.org/a";
+  private static final String B = "http://example.org/b";
+
+  @Test
+  public void testTemplatesAreParsedOnce() {
+    final String template = "SELECT ?label { ?s <" + RDFS.label.getURI() + "> ?label }";
+
+    Assertions.assertSame(PreparedSparqlQuery.of(template), PreparedSparqlQuery.of(template));
+  }
+
+  @Test
+  public void testParsedTemplatesAreNotCached() {
+    final String template = "SELECT ?s { ?s <" + RDFS.label.getURI() + "> \"one-off\" }";
+
+    final PreparedSparqlQuery parsed = PreparedSparqlQuery.parse(template);
+
+    Assertions.assertNotSame(parsed, PreparedSparqlQuery.parse(template));
+    Assertions.assertNotSame(parsed, PreparedSparqlQuery.of(template));
+    Assertions.assertEquals(parsed.getQuery(), PreparedSparqlQuery.of(template).getQuery());
+  }
+
+  @Test
+  public void testQueriesHandedOutAreCopies() {
+    final PreparedSparqlQuery prepared = PreparedSparqlQuery.of("SELECT ?s { ?s ?p ?o }");
+
+    prepared.getQuery().setLimit(1);
+    prepared.bind(new QuerySolutionMap()).setLimit(2);
+    prepared.bind().asQuery().setLimit(3);
+
+    Assertions.assertFalse(prepared.getQuery().hasLimit());
+    Assertions.assertNotSame(prepared.getQuery(), prepared.getQuery());
+  }
+
+  @Test
+  public void testVariablesAreBound() {
+    final PreparedSparqlQuery prepared = PreparedSparqlQuery.of("SELECT ?s ?label { ?s <" + RDFS.label.getURI()
+                                                                + "> ?label }");
+
+    final Query query = prepared.bind().setIri("s", A).asQuery();
+
+    Assertions.assertEquals(List.of("a"), select(query, "label"));
+    Assertions.assertEquals(List.of(A), select(query, "s"));
+  }
+
+  @Test
+  public void testVariablesAreBoundFromASolutionMap() {
+    final QuerySolutionMap bindings = new QuerySolutionMap();
+    bindings.add("s", ResourceFactory.createResource(B));
+
+    final Query query = PreparedSparqlQuery.of("SELECT ?label { ?s <" + RDFS.label.getURI() + "> ?label }")
+        .bind(bindings);
+
+    Assertions.assertEquals(List.of("b"), select(query, "label"));
+  }
+
+  @Test
+  public void testValuesAreAppendedAsRows() {
+    final PreparedSparqlQuery prepared = PreparedSparqlQuery.of("SELECT ?s ?label { ?s ?p ?label }");
+
+    final Query query = prepared.bind()
+        .values("s", List.of(ResourceFactory.createResource(A), ResourceFactory.createResource(B)))
+        .values("label", List.of(ResourceFactory.createStringLiteral("a"), ResourceFactory.createStringLiteral("x")))
+        .asQuery();
+
+    Assertions.assertEquals(List.of(A), select(query, "s"));
+  }
+
+  @Test
+  public void testValuesNeedTheSameNumberOfValuesPerVariable() {
+    final PreparedSparqlQuery.Bindings bindings = PreparedSparqlQuery.of("SELECT ?s ?o { ?s ?p ?o }").bind()
+        .values("s", List.of(ResourceFactory.createResource(A), ResourceFactory.createResource(B)));
+
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> bindings.values("o", List.of(ResourceFactory.createResource(A))));
+  }
+
+  @Test
+  public void testValuesCannotBeAddedToATemplateWithValues() {
+    final PreparedSparqlQuery.Bindings bindings = PreparedSparqlQuery
+        .of("SELECT ?s { ?s ?p ?o } VALUES ?o { 1 }").bind()
+        .values("s", List.of(ResourceFactory.createResource(A)));
+
+    Assertions.assertThrows(IllegalStateException.class, bindings::asString);
+    Assertions.assertThrows(IllegalStateException.class, bindings::asQuery);
+  }
+
+  @Test
+  public void testLiteralsAreEscaped() {
+    final String literal = "a\" } ; DROP ALL ; SELECT * { \"";
+    final PreparedSparqlQuery prepared = PreparedSparqlQuery.of("SELECT ?s { ?s <" + RDFS.label.getURI()
+                                                                + "> ?label }");
+
+    final String query = prepared.bind().setLiteral("label", literal).asString();
+
+    Assertions.assertFalse(query.contains("DROP ALL ;"), query);
+    final List<String> values = new ArrayList<>();
+    final Model model = model();
+    model.add(model.createResource(A), RDFS.label, literal);
+    try (QueryExecution execution = QueryExecution.create(query, model)) {
+      execution.execSelect().forEachRemaining(row -> values.add(row.getResource("s").getURI()));
+    }
+    Assertions.assertEquals(List.of(A), values);
+  }
+
+  @Test
+  public void testInvalidIrisAreRejected() {
+    final PreparedSparqlQuery prepared = PreparedSparqlQuery.of("SELECT ?s { ?s ?p ?o }");
+
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> prepared.bind().setIri("s", "http://example.org/a> } ; DROP ALL ; SELECT * { <http://example.org/b"));
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> prepared.bind().setIri("s", "http://example.org/a b"));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> prepared.bind().setIri("s", "relative/iri"));
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> prepared.bind().values("s", List.of(ResourceFactory.createResource("http://example.org/a>"))));
+
+    final QuerySolutionMap bindings = new QuerySolutionMap();
+    bindings.add("s", ResourceFactory.createResource("http://example.org/<a>"));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> prepared.bind(bindings));
+  }
+
+  private static List<String> select(Query query, String var) {
+    final List<String> values = new ArrayList<>();
+    try (QueryExecution execution = QueryExecution.create(query, model())) {
+      execution.execSelect().forEachRemaining(row -> {
+        final RDFNode value = row.get(var);
+        values.add(value.isLiteral() ? value.asLiteral().getLexicalForm() : value.asResource().getURI());
+      });
+    }
+    return values;
+  }
+
+  private static Model model() {
+    final Model model = ModelFactory.createDefaultModel();
+    model.add(model.createResource(A), RDFS.label, "a");
+    model.add(model.createResource(B), RDFS.label, "b");
+    return model;
+  }
+}
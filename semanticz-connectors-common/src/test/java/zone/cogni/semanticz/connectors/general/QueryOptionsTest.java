@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package zone.cogni.semanticz.connectors.general;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class QueryOptionsTest {
+
+  @Test
+  public void testDeadlineOnlyAppliesWhileTheActionRuns() {
+    Assertions.assertNull(QueryOptions.currentDeadline());
+
+    final long before = System.nanoTime();
+    final Long deadline = QueryOptions.timeout(Duration.ofSeconds(10)).call(QueryOptions::currentDeadline);
+
+    Assertions.assertNotNull(deadline);
+    Assertions.assertTrue(deadline - before >= TimeUnit.SECONDS.toNanos(10));
+    Assertions.assertTrue(deadline - System.nanoTime() <= TimeUnit.SECONDS.toNanos(10));
+    Assertions.assertNull(QueryOptions.currentDeadline());
+  }
+
+  @Test
+  public void testNestedOptionsCannotExtendTheDeadline() {
+    QueryOptions.timeout(Duration.ofSeconds(1)).run(() -> {
+      final Long outer = QueryOptions.currentDeadline();
+
+      Assertions.assertEquals(outer, QueryOptions.timeout(Duration.ofMinutes(1)).call(QueryOptions::currentDeadline));
+      final Long inner = QueryOptions.timeout(Duration.ofMillis(10)).call(QueryOptions::currentDeadline);
+      Assertions.assertTrue(inner - outer < 0);
+
+      Assertions.assertEquals(outer, QueryOptions.currentDeadline());
+    });
+  }
+
+  @Test
+  public void testDeadlineIsRestoredWhenTheActionFails() {
+    Assertions.assertThrows(IllegalStateException.class, () -> QueryOptions.timeout(Duration.ofSeconds(1)).run(() -> {
+      throw new IllegalStateException("failed");
+    }));
+
+    Assertions.assertNull(QueryOptions.currentDeadline());
+  }
+
+  @Test
+  public void testPropagatingExecutorPassesTheDeadlineOfTheSubmittingThread() throws Exception {
+    final ExecutorService pool = Executors.newSingleThreadExecutor();
+    try {
+      final Executor executor = QueryOptions.propagating(pool);
+      final CompletableFuture<Long> withDeadline = new CompletableFuture<>();
+      final CompletableFuture<Long> withoutDeadline = new CompletableFuture<>();
+
+      final Long deadline = QueryOptions.timeout(Duration.ofSeconds(10)).call(() -> {
+        executor.execute(() -> withDeadline.complete(QueryOptions.currentDeadline()));
+        return QueryOptions.currentDeadline();
+      });
+      executor.execute(() -> withoutDeadline.complete(QueryOptions.currentDeadline()));
+
+      Assertions.assertEquals(deadline, withDeadline.get(10, TimeUnit.SECONDS));
+      Assertions.assertNull(withoutDeadline.get(10, TimeUnit.SECONDS));
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+}
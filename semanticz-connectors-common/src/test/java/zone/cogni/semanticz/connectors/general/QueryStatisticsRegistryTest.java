@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package zone.cogni.semanticz.connectors.general;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+public class QueryStatisticsRegistryTest {
+
+  @Test
+  public void testCallsAreAggregatedPerFingerprint() {
+    final QueryStatisticsRegistry registry = new QueryStatisticsRegistry();
+
+    registry.record("ASK { <http://s1> ?p \"one\" }", 1_000_000, 1, 100, false);
+    registry.record("ASK { <http://s2> ?p \"two\" }", 3_000_000, 1, 300, true);
+    registry.record("SELECT * { ?s ?p ?o }", 10_000_000, 5, 1000, false);
+
+    final List<QueryStatistics> statistics = registry.snapshot();
+    Assertions.assertEquals(2, statistics.size());
+    Assertions.assertTrue(statistics.get(0).getFingerprint().startsWith("SELECT"), "Most total time first");
+
+    final QueryStatistics ask = statistics.get(1);
+    Assertions.assertEquals(2, ask.getCalls());
+    Assertions.assertEquals(1, ask.getErrors());
+    Assertions.assertEquals(2, ask.getRows());
+    Assertions.assertEquals(400, ask.getBytes());
+    Assertions.assertEquals(Duration.ofMillis(4), ask.getTotalTime());
+    Assertions.assertEquals(Duration.ofMillis(2), ask.getMeanTime());
+    Assertions.assertEquals(Duration.ofMillis(3), ask.getMaxTime());
+    Assertions.assertTrue(ask.getP99Time().compareTo(ask.getMaxTime()) <= 0);
+    Assertions.assertEquals("ASK { <http://s1> ?p \"one\" }", ask.getExampleQuery());
+    Assertions.assertFalse(ask.getFingerprint().contains("http://s1"));
+  }
+
+  @Test
+  public void testUnknownRowCountsAreNotAdded() {
+    final QueryStatisticsRegistry registry = new QueryStatisticsRegistry();
+
+    registry.record("SELECT * { ?s ?p ?o }", 1, -1, 0, false);
+    registry.record("SELECT * { ?s ?p ?o }", 1, 3, 0, false);
+
+    Assertions.assertEquals(3, registry.snapshot().get(0).getRows());
+  }
+
+  @Test
+  public void testCallsAreRecordedAsListener() {
+    final QueryStatisticsRegistry registry = new QueryStatisticsRegistry();
+
+    final SparqlCall call = SparqlCall.start(registry, SparqlOperation.select, "test", "memory",
+        "SELECT * { ?s ?p ?o }");
+    call.setResultCount(2);
+    call.setRequestBytes(20);
+    call.setResponseBytes(200);
+    call.end();
+    SparqlCall.start(registry, SparqlOperation.dropGraph, "test", "memory", null, "http://graph").end();
+
+    final List<QueryStatistics> statistics = registry.snapshot();
+    Assertions.assertEquals(1, statistics.size(), "Calls without query are not recorded");
+    Assertions.assertEquals(1, statistics.get(0).getCalls());
+    Assertions.assertEquals(2, statistics.get(0).getRows());
+    Assertions.assertEquals(220, statistics.get(0).getBytes());
+  }
+
+  @Test
+  public void testTheTableIsBounded() {
+    final QueryStatisticsRegistry registry = new QueryStatisticsRegistry(16);
+
+    for (int i = 0; i < 200; i++) {
+      registry.record("SELECT * { ?s <http://example.org/p" + i + "> ?o }", 1, 0, 0, false);
+    }
+
+    Assertions.assertTrue(registry.snapshot().size() <= 16, registry.snapshot().size() + " fingerprints kept");
+  }
+
+  @Test
+  public void testResetDropsAllStatistics() {
+    final QueryStatisticsRegistry registry = new QueryStatisticsRegistry();
+    registry.record("SELECT * { ?s ?p ?o }", 1, 0, 0, false);
+
+    registry.reset();
+
+    Assertions.assertTrue(registry.snapshot().isEmpty());
+  }
+
+  @Test
+  public void testP99IsTheUpperBoundOfItsBucketCappedByTheMaximum() {
+    final QueryStatisticsRegistry registry = new QueryStatisticsRegistry();
+    for (int i = 0; i < 1000; i++) {
+      registry.record("SELECT * { ?s ?p ?o }", 1_000, 0, 0, false);
+    }
+    registry.record("SELECT * { ?s ?p ?o }", 1_000_000_000, 0, 0, false);
+
+    final QueryStatistics statistics = registry.snapshot().get(0);
+    Assertions.assertTrue(statistics.getP99Time().toNanos() >= 1_000);
+    Assertions.assertTrue(statistics.getP99Time().toNanos() < 1_000 * 5 / 4, statistics.getP99Time().toString());
+    Assertions.assertEquals(Duration.ofSeconds(1), statistics.getMaxTime());
+  }
+
+  @Test
+  public void testBucketsCoverEachDurationAbout25PercentWide() {
+    long previousUpperBound = -1;
+    for (int bucket = 0; bucket < 4 * 62; bucket++) {
+      final long upperBound = QueryStatisticsRegistry.bucketUpperBound(bucket);
+      Assertions.assertEquals(bucket, QueryStatisticsRegistry.bucket(previousUpperBound + 1));
+      Assertions.assertEquals(bucket, QueryStatisticsRegistry.bucket(upperBound));
+      previousUpperBound = upperBound;
+    }
+    Assertions.assertEquals(4 * 62 - 1, QueryStatisticsRegistry.bucket(Long.MAX_VALUE));
+    Assertions.assertEquals(0, QueryStatisticsRegistry.bucket(-5));
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package zone.cogni.semanticz.connectors.general;
+
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QueryExecutionFactory;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.update.UpdateAction;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * In-memory {@link SparqlService} for the tests of this package, recording the queries and updates it receives.
+ */
+class RecordingSparqlService implements SparqlService {
+
+  private final Dataset dataset = DatasetFactory.create();
+  private final List<String> queries = new CopyOnWriteArrayList<>();
+  private final List<String> updates = new CopyOnWriteArrayList<>();
+  private final List<Long> deadlines = new CopyOnWriteArrayList<>();
+  private volatile Predicate<String> failingUpdates = update -> false;
+
+  /**
+   * @return the queries received, in the order they were received
+   */
+  List<String> getQueries() {
+    return queries;
+  }
+
+  /**
+   * @return the update requests received, in the order they were received, failed ones included
+   */
+  List<String> getUpdates() {
+    return updates;
+  }
+
+  /**
+   * @return the {@link QueryOptions} deadlines the queries were received with, -1 for none
+   */
+  List<Long> getDeadlines() {
+    return deadlines;
+  }
+
+  /**
+   * @param failingUpdates update requests to fail instead of executing
+   * @return this service
+   */
+  RecordingSparqlService failUpdates(Predicate<String> failingUpdates) {
+    this.failingUpdates = failingUpdates;
+    return this;
+  }
+
+  /**
+   * Inserts {@code <http://s{i}> <http://p> i} for i from 0 to count - 1, without recording it as an update.
+   *
+   * @param graphUri graph to insert into, null for the default graph
+   * @param count    number of triples
+   * @return this service
+   */
+  RecordingSparqlService insertNumbers(String graphUri, int count) {
+    final StringBuilder data = new StringBuilder("INSERT DATA {");
+    data.append(graphUri == null ? "" : " GRAPH <" + graphUri + "> {");
+    for (int i = 0; i < count; i++) {
+      data.append(" <http://s").append(i).append("> <http://p> ").append(i).append(" .");
+    }
+    UpdateAction.parseExecute(data.append(graphUri == null ? " }" : " } }").toString(), dataset);
+    return this;
+  }
+
+  private QueryExecution query(String query) {
+    queries.add(query);
+    final Long deadline = QueryOptions.currentDeadline();
+    deadlines.add(deadline == null ? -1L : deadline);
+    return QueryExecutionFactory.create(query, dataset);
+  }
+
+  @Override
+  public void uploadTtlFile(File file) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public Model executeConstructQuery(String constructQuery) {
+    try (QueryExecution execution = query(constructQuery)) {
+      return execution.execConstruct();
+    }
+  }
+
+  @Override
+  public void executeUpdateQuery(String updateQuery) {
+    updates.add(updateQuery);
+    if (failingUpdates.test(updateQuery)) throw new IllegalStateException("Update failed");
+    UpdateAction.parseExecute(updateQuery, dataset);
+  }
+
+  @Override
+  public boolean executeAskQuery(String askQuery) {
+    try (QueryExecution execution = query(askQuery)) {
+      return execution.execAsk();
+    }
+  }
+
+  @Override
+  public <R> R executeSelectQuery(String query, Function<ResultSet, R> resultHandler) {
+    try (QueryExecution execution = query(query)) {
+      return resultHandler.apply(execution.execSelect());
+    }
+  }
+
+  @Override
+  public void dropGraph(String graphUri) {
+    dataset.removeNamedModel(graphUri);
+  }
+
+  @Override
+  public void updateGraph(String graphUri, Model model) {
+    dataset.getNamedModel(graphUri).add(model);
+  }
+}
@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package zone.cogni.semanticz.connectors.general;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calls which must not be explained are made before a marker call which must be, as plans are fetched one at a time
+ * and in order, waiting for the marker shows whether any of the earlier calls was explained.
+ */
+public class SlowQueryLogTest {
+
+  private static final String MARKER = "ASK { ?marker ?p ?o }";
+
+  private final List<String> explained = new CopyOnWriteArrayList<>();
+  private final CountDownLatch markerExplained = new CountDownLatch(1);
+  private final QueryExplainer explainer = query -> {
+    explained.add(query);
+    if (query.equals(MARKER)) markerExplained.countDown();
+    return "plan";
+  };
+
+  @Test
+  public void testSlowCallsAreExplained() throws InterruptedException {
+    final SlowQueryLog log = new SlowQueryLog(0, 1.0, 10, explainer);
+
+    call(log, SparqlOperation.select, "SELECT * { ?s ?p ?o }");
+
+    awaitMarker();
+    Assertions.assertEquals(List.of("SELECT * { ?s ?p ?o }", MARKER), explained);
+  }
+
+  @Test
+  public void testCallsBelowTheThresholdAreNotLogged() throws InterruptedException {
+    call(new SlowQueryLog(60_000, 1.0, 10, explainer), SparqlOperation.select, "SELECT * { ?s ?p ?o }");
+
+    awaitMarker();
+    Assertions.assertEquals(List.of(MARKER), explained);
+  }
+
+  @Test
+  public void testNothingIsLoggedWithSampleRateZero() throws InterruptedException {
+    call(new SlowQueryLog(0, 0.0, 10, explainer), SparqlOperation.select, "SELECT * { ?s ?p ?o }");
+
+    awaitMarker();
+    Assertions.assertEquals(List.of(MARKER), explained);
+  }
+
+  @Test
+  public void testNothingIsLoggedWithZeroLogsPerMinute() throws InterruptedException {
+    call(new SlowQueryLog(0, 1.0, 0, explainer), SparqlOperation.select, "SELECT * { ?s ?p ?o }");
+
+    awaitMarker();
+    Assertions.assertEquals(List.of(MARKER), explained);
+  }
+
+  @Test
+  public void testUpdatesAreLoggedWithoutPlan() throws InterruptedException {
+    call(new SlowQueryLog(0, 1.0, 10, explainer), SparqlOperation.update, "DELETE WHERE { ?s ?p ?o }");
+
+    awaitMarker();
+    Assertions.assertEquals(List.of(MARKER), explained);
+  }
+
+  @Test
+  public void testLogsAreLimitedPerMinute() {
+    final long[] now = {1_000L};
+    final SlowQueryLog log = new SlowQueryLog(0, 1.0, 2, null, () -> now[0]);
+
+    Assertions.assertEquals(0, log.acquire());
+    Assertions.assertEquals(0, log.acquire());
+    Assertions.assertEquals(-1, log.acquire());
+    Assertions.assertEquals(-1, log.acquire());
+
+    now[0] += TimeUnit.SECONDS.toNanos(61);
+    Assertions.assertEquals(2, log.acquire(), "First log of a window reports the calls suppressed in the previous one");
+    Assertions.assertEquals(0, log.acquire());
+    Assertions.assertEquals(-1, log.acquire());
+  }
+
+  @Test
+  public void testConfigurationEnablesTheLog() {
+    final SparqlCallListener listener = new SparqlCallListener() {
+    };
+
+    Assertions.assertSame(listener, SlowQueryLog.withSlowQueryLog(new Config().setCallListener(listener), explainer));
+    Assertions.assertSame(listener, SlowQueryLog.withSlowQueryLog(new Config().setCallListener(listener)
+        .setSlowQueryThresholdMillis(100).setSlowQueryLogsPerMinute(0), explainer));
+    Assertions.assertSame(listener, SlowQueryLog.withSlowQueryLog(new Config().setCallListener(listener)
+        .setSlowQueryThresholdMillis(100).setSlowQuerySampleRate(0), explainer));
+    Assertions.assertNotSame(listener, SlowQueryLog.withSlowQueryLog(new Config().setCallListener(listener)
+        .setSlowQueryThresholdMillis(100), explainer));
+  }
+
+  @Test
+  public void testAlgebraExplainerShowsTheOptimizedPlan() throws Exception {
+    Assertions.assertTrue(QueryExplainer.ALGEBRA.explain("ASK { GRAPH ?g { ?s ?p ?o } }").contains("(graph ?g"));
+  }
+
+  private static void call(SlowQueryLog log, SparqlOperation operation, String query) {
+    SparqlCall.start(log, operation, "test", "memory", query).end();
+  }
+
+  private void awaitMarker() throws InterruptedException {
+    call(new SlowQueryLog(0, 1.0, 10, explainer), SparqlOperation.ask, MARKER);
+    Assertions.assertTrue(markerExplained.await(10, TimeUnit.SECONDS));
+  }
+}
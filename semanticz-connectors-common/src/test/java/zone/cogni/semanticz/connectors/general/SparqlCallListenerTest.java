@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package zone.cogni.semanticz.connectors.general;
+
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.query.ResultSetFormatter;
+import org.apache.jena.rdfconnection.RDFConnection;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class SparqlCallListenerTest {
+
+  @Test
+  public void testCompositeNotifiesAllListenersInOrder() {
+    final List<String> notifications = new ArrayList<>();
+    final SparqlCallListener listener = SparqlCallListener.composite(recording("a", notifications),
+        recording("b", notifications));
+
+    SparqlCall.start(listener, SparqlOperation.ask, "test", "memory", "ASK {}").end();
+
+    Assertions.assertEquals(List.of("a start", "b start", "a end", "b end"), notifications);
+  }
+
+  @Test
+  public void testCompositeIsolatesFailingListeners() {
+    final List<String> notifications = new ArrayList<>();
+    final SparqlCallListener listener = SparqlCallListener.composite(failing(), recording("a", notifications));
+
+    final SparqlCall call = SparqlCall.start(listener, SparqlOperation.ask, "test", "memory", "ASK {}");
+    Assertions.assertTrue(call.end(true));
+
+    Assertions.assertEquals(List.of("a start", "a end"), notifications);
+  }
+
+  @Test
+  public void testFailingListenerDoesNotFailTheCall() {
+    final SparqlCall call = SparqlCall.start(failing(), SparqlOperation.ask, "test", "memory", "ASK {}");
+    Assertions.assertTrue(call.end(true));
+    Assertions.assertNull(call.getError());
+  }
+
+  @Test
+  public void testFailingListenerDoesNotFailConnectorCallsWithTheSlowQueryLogDisabled() {
+    final Config config = new Config().setCallListener(failing());
+    // no slow query threshold by default, so the listener of the configuration is used as is
+    final SparqlCallListener listener = SlowQueryLog.withSlowQueryLog(config, null);
+    final Dataset dataset = DatasetFactory.create();
+    final RDFConnectionSparqlService service = new RDFConnectionSparqlService() {
+      @Override
+      protected RDFConnection getConnection() {
+        return RDFConnection.connect(dataset);
+      }
+
+      @Override
+      protected RDFConnection getConstructConnection() {
+        return getConnection();
+      }
+
+      @Override
+      protected SparqlCallListener getCallListener() {
+        return listener;
+      }
+    };
+
+    service.executeUpdateQuery("INSERT DATA { <http://s> <http://p> 1 }");
+    Assertions.assertTrue(service.executeAskQuery("ASK { ?s ?p ?o }"));
+    Assertions.assertEquals(1, service.executeSelectQuery("SELECT * WHERE { ?s ?p ?o }", ResultSetFormatter::consume));
+    Assertions.assertEquals(1, service.executeConstructQuery("CONSTRUCT WHERE { ?s ?p ?o }").size());
+  }
+
+  private static SparqlCallListener failing() {
+    return new SparqlCallListener() {
+      @Override
+      public void onStart(SparqlCall call) {
+        throw new IllegalStateException("start");
+      }
+
+      @Override
+      public void onEnd(SparqlCall call) {
+        throw new IllegalStateException("end");
+      }
+    };
+  }
+
+  private static SparqlCallListener recording(String name, List<String> notifications) {
+    return new SparqlCallListener() {
+      @Override
+      public void onStart(SparqlCall call) {
+        notifications.add(name + " start");
+      }
+
+      @Override
+      public void onEnd(SparqlCall call) {
+        notifications.add(name + " end");
+      }
+    };
+  }
+}
@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package zone.cogni.semanticz.connectors.general;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+public class SparqlCallTest {
+
+  private final List<SparqlCall> ended = new ArrayList<>();
+  private final SparqlCallListener listener = new SparqlCallListener() {
+    @Override
+    public void onEnd(SparqlCall call) {
+      ended.add(call);
+    }
+  };
+
+  @Test
+  public void testPhasesAreMeasuredBetweenMarks() {
+    final SparqlCall call = start();
+
+    call.mark(SparqlCallPhase.serverExecution);
+    call.add(SparqlCallPhase.serialize, 5);
+    call.add(SparqlCallPhase.serialize, 7);
+    call.mark(SparqlCallPhase.handler);
+    call.end();
+
+    Assertions.assertTrue(call.getPhaseNanos(SparqlCallPhase.serverExecution) >= 0);
+    Assertions.assertTrue(call.getPhaseNanos(SparqlCallPhase.handler) >= 0);
+    Assertions.assertEquals(12, call.getPhaseNanos(SparqlCallPhase.serialize));
+    Assertions.assertEquals(-1, call.getPhaseNanos(SparqlCallPhase.transfer));
+    Assertions.assertTrue(call.getTotalNanos() >= call.getPhaseNanos(SparqlCallPhase.serverExecution)
+                                                   + call.getPhaseNanos(SparqlCallPhase.handler));
+  }
+
+  @Test
+  public void testListenerIsNotifiedOnceOfTheFirstOutcome() {
+    final SparqlCall call = start();
+    Assertions.assertEquals(-1, call.getTotalNanos());
+
+    final IllegalStateException failure = new IllegalStateException("failed");
+    Assertions.assertSame(failure, call.fail(failure));
+    call.end();
+    call.fail(new IllegalArgumentException("again"));
+
+    Assertions.assertEquals(List.of(call), ended);
+    Assertions.assertSame(failure, call.getError());
+    Assertions.assertTrue(call.getTotalNanos() >= 0);
+  }
+
+  @Test
+  public void testCallsWithoutDeadlineHaveNoTimeLeft() {
+    final SparqlCall call = start().limitTo(0);
+
+    Assertions.assertEquals(-1, call.getTimeLeftMillis());
+    Assertions.assertFalse(call.isExpired());
+  }
+
+  @Test
+  public void testEarliestDeadlineWins() {
+    final SparqlCall limited = start().limitTo(60_000);
+    Assertions.assertTrue(limited.getTimeLeftMillis() > 0 && limited.getTimeLeftMillis() <= 60_000);
+
+    final SparqlCall withOptions = QueryOptions.timeout(Duration.ofSeconds(1)).call(() -> start().limitTo(60_000));
+    Assertions.assertTrue(withOptions.getTimeLeftMillis() <= 1_000, withOptions.getTimeLeftMillis() + "ms left");
+
+    final SparqlCall withDefault = QueryOptions.timeout(Duration.ofSeconds(60)).call(() -> start().limitTo(1_000));
+    Assertions.assertTrue(withDefault.getTimeLeftMillis() <= 1_000, withDefault.getTimeLeftMillis() + "ms left");
+  }
+
+  @Test
+  public void testExpiredCallsHaveOneMillisecondLeft() throws InterruptedException {
+    final SparqlCall call = start().limitTo(1);
+    Thread.sleep(5);
+
+    Assertions.assertTrue(call.isExpired());
+    Assertions.assertEquals(1, call.getTimeLeftMillis());
+  }
+
+  @Test
+  public void testHeadersAndAttributesSetByListeners() {
+    final Object key = new Object();
+    final SparqlCall call = SparqlCall.start(new SparqlCallListener() {
+      @Override
+      public void onStart(SparqlCall call) {
+        call.setHeader("traceparent", "00-1-2-01");
+        call.setAttribute(key, "state");
+      }
+    }, SparqlOperation.select, "test", "memory", "SELECT * {}");
+
+    Assertions.assertEquals(Map.of("traceparent", "00-1-2-01"), call.getHeaders());
+    Assertions.assertEquals("state", call.getAttribute(key));
+    Assertions.assertNull(call.getAttribute(new Object()));
+    call.getHeaders().clear();
+    Assertions.assertEquals(1, call.getHeaders().size());
+  }
+
+  @Test
+  public void testCallsAreRecordedAsFlightRecorderEvents() throws IOException {
+    final Path file = Files.createTempFile("sparql-calls", ".jfr");
+    try (Recording recording = new Recording()) {
+      recording.enable(SparqlCallEvent.NAME);
+      recording.start();
+      final SparqlCall call = SparqlCall.start(listener, SparqlOperation.ask, "test", "memory", "ASK {}");
+      call.setResultCount(1);
+      call.end();
+      recording.stop();
+      recording.dump(file);
+
+      final List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+          .filter(event -> event.getEventType().getName().equals(SparqlCallEvent.NAME))
+          .collect(Collectors.toList());
+      Assertions.assertEquals(1, events.size());
+      Assertions.assertEquals("ask", events.get(0).getString("operation"));
+      Assertions.assertEquals("test", events.get(0).getString("connector"));
+      Assertions.assertEquals("memory", events.get(0).getString("endpoint"));
+      Assertions.assertEquals(1L, events.get(0).getLong("resultCount"));
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  private SparqlCall start() {
+    return SparqlCall.start(listener, SparqlOperation.select, "test", "memory", "SELECT * {}");
+  }
+}
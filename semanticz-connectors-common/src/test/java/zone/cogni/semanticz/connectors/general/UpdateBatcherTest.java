@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package zone.cogni.semanticz.connectors.general;
+
+import org.apache.jena.query.ResultSetFormatter;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class UpdateBatcherTest {
+
+  // the statements of a batch are separated by "\n;\n"
+  private static final int SEPARATOR_BYTES = 3;
+
+  private final RecordingSparqlService sparqlService = new RecordingSparqlService();
+
+  @Test
+  public void testUpdateQueriesAreSentInOneRequest() {
+    sparqlService.executeUpdateQueries(IntStream.range(0, 10).mapToObj(UpdateBatcherTest::insert)
+        .collect(Collectors.toList()));
+
+    Assertions.assertEquals(1, sparqlService.getUpdates().size());
+    Assertions.assertEquals(10, countTriples());
+  }
+
+  @Test
+  public void testBatchesAreFilledUpToTheByteBudget() {
+    // exactly three statements and their separators
+    final int maxBytes = 3 * bytes(insert(0)) + 2 * SEPARATOR_BYTES;
+
+    try (UpdateBatcher batcher = new UpdateBatcher(sparqlService, maxBytes)) {
+      for (int i = 0; i < 7; i++) {
+        batcher.add(insert(i));
+        Assertions.assertEquals(i % 3 + 1, batcher.getPendingCount());
+      }
+      Assertions.assertEquals(2, sparqlService.getUpdates().size());
+    }
+
+    final List<String> updates = sparqlService.getUpdates();
+    Assertions.assertEquals(3, updates.size());
+    Assertions.assertEquals(maxBytes, bytes(updates.get(0)));
+    Assertions.assertEquals(maxBytes, bytes(updates.get(1)));
+    Assertions.assertEquals(insert(6), updates.get(2));
+    Assertions.assertEquals(7, countTriples());
+  }
+
+  @Test
+  public void testStatementLargerThanTheBudgetIsSentOnItsOwn() {
+    final int maxBytes = 2 * bytes(insert(0)) + SEPARATOR_BYTES;
+    final String large = "INSERT DATA { <http://large> <http://p> \"" + "x".repeat(maxBytes) + "\" }";
+
+    try (UpdateBatcher batcher = new UpdateBatcher(sparqlService, maxBytes)) {
+      batcher.add(insert(0)).add(large).add(insert(1)).add(insert(2));
+    }
+
+    Assertions.assertEquals(List.of(insert(0), large, insert(1) + "\n;\n" + insert(2)), sparqlService.getUpdates());
+    Assertions.assertEquals(4, countTriples());
+  }
+
+  @Test
+  public void testStatementEndingInACommentDoesNotCommentOutTheNextOne() {
+    try (UpdateBatcher batcher = new UpdateBatcher(sparqlService)) {
+      batcher.add(insert(0) + " # first").add(insert(1));
+    }
+
+    Assertions.assertEquals(1, sparqlService.getUpdates().size());
+    Assertions.assertEquals(2, countTriples());
+  }
+
+  @Test
+  public void testTrailingSemicolonOfAStatementIsDropped() {
+    try (UpdateBatcher batcher = new UpdateBatcher(sparqlService)) {
+      batcher.add(insert(0) + " ;").add(insert(1) + ";\n").add(insert(2));
+    }
+
+    Assertions.assertEquals(List.of(insert(0) + "\n;\n" + insert(1) + "\n;\n" + insert(2)), sparqlService.getUpdates());
+    Assertions.assertEquals(3, countTriples());
+  }
+
+  @Test
+  public void testValidationRejectsAnInvalidStatementBeforeSendingAnything() {
+    final UpdateBatcher batcher = new UpdateBatcher(sparqlService).setValidate(true);
+    batcher.add(insert(0)).add(insert(1));
+
+    final UpdateBatchException e = Assertions.assertThrows(UpdateBatchException.class,
+        () -> batcher.add("INSERT DATA { <http://s2> <http://p> }"));
+    Assertions.assertEquals(2, e.getFirstStatement());
+    Assertions.assertEquals(2, e.getLastStatement());
+
+    Assertions.assertThrows(IllegalStateException.class, () -> batcher.add(insert(3)));
+    batcher.close();
+    Assertions.assertTrue(sparqlService.getUpdates().isEmpty());
+  }
+
+  @Test
+  public void testFailedBatchIsReportedAndNothingIsSentAfterIt() {
+    sparqlService.failUpdates(update -> update.contains("<http://s4>"));
+    final UpdateBatcher batcher = new UpdateBatcher(sparqlService, 3 * bytes(insert(0)) + 2 * SEPARATOR_BYTES);
+    IntStream.range(0, 6).forEach(i -> batcher.add(insert(i)));
+
+    final UpdateBatchException e = Assertions.assertThrows(UpdateBatchException.class, () -> batcher.add(insert(6)));
+    Assertions.assertEquals(3, e.getFirstStatement());
+    Assertions.assertEquals(5, e.getLastStatement());
+
+    Assertions.assertThrows(IllegalStateException.class, () -> batcher.add(insert(7)));
+    batcher.close();
+    Assertions.assertEquals(2, sparqlService.getUpdates().size());
+    Assertions.assertEquals(3, countTriples());
+  }
+
+  @Test
+  public void testIsolatingFailuresFindsTheFailingStatement() {
+    sparqlService.failUpdates(update -> update.contains("<http://s4>"));
+    final UpdateBatcher batcher = new UpdateBatcher(sparqlService, 3 * bytes(insert(0)) + 2 * SEPARATOR_BYTES)
+        .setIsolateFailures(true);
+    IntStream.range(0, 6).forEach(i -> batcher.add(insert(i)));
+
+    final UpdateBatchException e = Assertions.assertThrows(UpdateBatchException.class, batcher::close);
+    Assertions.assertEquals(4, e.getFirstStatement());
+    Assertions.assertEquals(4, e.getLastStatement());
+
+    // the first batch, the failed second one, then its statements up to the failing one
+    Assertions.assertEquals(List.of(insert(3), insert(4)), sparqlService.getUpdates().subList(2, 4));
+    Assertions.assertEquals(4, countTriples());
+  }
+
+  private static String insert(int i) {
+    return "INSERT DATA { <http://s" + i + "> <http://p> " + i + " }";
+  }
+
+  private static int bytes(String update) {
+    return update.getBytes(StandardCharsets.UTF_8).length;
+  }
+
+  private int countTriples() {
+    return sparqlService.executeSelectQuery("SELECT * WHERE { ?s ?p ?o }", ResultSetFormatter::toList).size();
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package zone.cogni.semanticz.connectors.utils;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import zone.cogni.semanticz.connectors.general.PreparedSparqlQuery;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class QueryFingerprintTest {
+
+  @Test
+  public void testParametersAreReplaced() {
+    final String first = QueryFingerprint.of("SELECT ?o { <http://example.org/a> <http://example.org/p> ?o "
+                                             + "FILTER(?o != \"x\" && ?o > 3) }");
+    final String second = QueryFingerprint.of("SELECT ?o { <http://example.org/b> <http://example.org/p> ?o "
+                                              + "FILTER(?o != \"y\" && ?o > 4) }");
+
+    Assertions.assertEquals(first, second);
+    Assertions.assertFalse(first.contains("http://example.org/a"), first);
+    Assertions.assertTrue(first.contains("http://example.org/p"), "Predicates are kept: " + first);
+  }
+
+  @Test
+  public void testClassesAndGraphsMakeUpTheShape() {
+    Assertions.assertNotEquals(
+        QueryFingerprint.of("SELECT ?s { ?s a <http://example.org/A> }"),
+        QueryFingerprint.of("SELECT ?s { ?s a <http://example.org/B> }"));
+    Assertions.assertNotEquals(
+        QueryFingerprint.of("SELECT ?s { GRAPH <http://example.org/g1> { ?s ?p ?o } }"),
+        QueryFingerprint.of("SELECT ?s { GRAPH <http://example.org/g2> { ?s ?p ?o } }"));
+  }
+
+  @Test
+  public void testValuesRowsAreDropped() {
+    Assertions.assertEquals(
+        QueryFingerprint.of("SELECT ?s { ?s ?p ?o } VALUES ?s { <http://example.org/a> }"),
+        QueryFingerprint.of("SELECT ?s { ?s ?p ?o } VALUES ?s { <http://example.org/b> <http://example.org/c> }"));
+  }
+
+  @Test
+  public void testQueryFormsAreDistinguished() {
+    Assertions.assertNotEquals(QueryFingerprint.of("ASK { ?s ?p ?o }"), QueryFingerprint.of("SELECT * { ?s ?p ?o }"));
+  }
+
+  @Test
+  public void testUpdatesAreNormalizedOnTheirText() {
+    final String fingerprint = QueryFingerprint.of("INSERT DATA {  <http://example.org/a> <http://example.org/p> "
+                                                   + "\"it's \\\"quoted\\\"\" , 42 , -1.5e3 }");
+
+    Assertions.assertEquals("INSERT DATA { <?> <?> ? , ? , ? }", fingerprint);
+    Assertions.assertEquals(fingerprint,
+        QueryFingerprint.of("INSERT DATA { <http://example.org/b> <http://example.org/q> 'other' , 1 , 2 }"));
+  }
+
+  @Test
+  public void testVariableNamesWithDigitsAreKeptInText() {
+    Assertions.assertEquals("DELETE WHERE { ?s1 <?> ?o2 }",
+        QueryFingerprint.of("DELETE WHERE { ?s1 <http://example.org/p> ?o2 }"));
+  }
+
+  @Test
+  public void testConcurrentCallsPastTheCacheSizeAgree() {
+    final String expected = QueryFingerprint.of("SELECT ?o { <http://example.org/s> <http://example.org/p> ?o }");
+
+    final List<String> fingerprints = IntStream.range(0, 4000).parallel()
+        .mapToObj(i -> QueryFingerprint.of("SELECT ?o { <http://example.org/s" + (i % 1500)
+                                           + "> <http://example.org/p> ?o }"))
+        .distinct()
+        .collect(Collectors.toList());
+
+    Assertions.assertEquals(List.of(expected), fingerprints);
+  }
+
+  @Test
+  public void testFingerprintingDoesNotEvictPreparedTemplates() {
+    final String template = "SELECT ?s { ?s ?p ?template }";
+    final PreparedSparqlQuery prepared = PreparedSparqlQuery.of(template);
+
+    for (int i = 0; i < 2000; i++) {
+      QueryFingerprint.of("SELECT ?s { ?s <http://example.org/p" + i + "> ?o }");
+    }
+
+    Assertions.assertSame(prepared, PreparedSparqlQuery.of(template));
+  }
+}
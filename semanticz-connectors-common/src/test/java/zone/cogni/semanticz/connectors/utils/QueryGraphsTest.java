@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package zone.cogni.semanticz.connectors.utils;
+
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.update.UpdateFactory;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+import java.util.Set;
+
+public class QueryGraphsTest {
+
+  private static final String G1 = "http://example.org/g1";
+  private static final String G2 = "http://example.org/g2";
+
+  @Test
+  public void testNamedGraphsReadAreFound() {
+    Assertions.assertEquals(Optional.of(Set.of(G1, G2)), readGraphs(
+        "SELECT * { GRAPH <" + G1 + "> { ?s ?p ?o } OPTIONAL { GRAPH <" + G2 + "> { ?o ?q ?x } } }"));
+  }
+
+  @Test
+  public void testDefaultGraphAndGraphVariablesMayReadAnyGraph() {
+    Assertions.assertEquals(Optional.empty(), readGraphs("SELECT * { ?s ?p ?o }"));
+    Assertions.assertEquals(Optional.empty(), readGraphs("SELECT * { GRAPH ?g { ?s ?p ?o } }"));
+    Assertions.assertEquals(Optional.empty(), readGraphs("SELECT * { GRAPH <" + G1 + "> { ?s ?p ?o } ?o ?q ?x }"));
+  }
+
+  @Test
+  public void testFromRestrictsTheGraphsRead() {
+    Assertions.assertEquals(Optional.of(Set.of(G1)), readGraphs("SELECT * FROM <" + G1 + "> { ?s ?p ?o }"));
+    Assertions.assertEquals(Optional.of(Set.of(G1, G2)),
+        readGraphs("SELECT * FROM <" + G1 + "> FROM NAMED <" + G2 + "> { ?s ?p ?o }"));
+  }
+
+  @Test
+  public void testWithIsTheGraphWritten() {
+    Assertions.assertEquals(Optional.of(Set.of(G1)),
+        writtenGraphs("WITH <" + G1 + "> DELETE { ?s ?p ?o } INSERT { ?s ?p 1 } WHERE { ?s ?p ?o }"));
+    Assertions.assertEquals(Optional.of(Set.of(G1, G2)), writtenGraphs(
+        "WITH <" + G1 + "> DELETE { ?s ?p ?o } INSERT { GRAPH <" + G2 + "> { ?s ?p ?o } } WHERE { ?s ?p ?o }"));
+  }
+
+  @Test
+  public void testDataWrittenToTheDefaultGraphMayWriteAnyGraph() {
+    Assertions.assertEquals(Optional.empty(), writtenGraphs("INSERT DATA { <http://s> <http://p> 1 }"));
+    Assertions.assertEquals(Optional.of(Set.of(G1)),
+        writtenGraphs("INSERT DATA { GRAPH <" + G1 + "> { <http://s> <http://p> 1 } }"));
+  }
+
+  @Test
+  public void testDropAllMayWriteAnyGraph() {
+    Assertions.assertEquals(Optional.empty(), writtenGraphs("DROP ALL"));
+    Assertions.assertEquals(Optional.empty(), writtenGraphs("CLEAR DEFAULT"));
+    Assertions.assertEquals(Optional.of(Set.of(G1)), writtenGraphs("DROP GRAPH <" + G1 + ">"));
+  }
+
+  @Test
+  public void testMoveWritesBothGraphs() {
+    Assertions.assertEquals(Optional.of(Set.of(G1, G2)), writtenGraphs("MOVE <" + G1 + "> TO <" + G2 + ">"));
+    Assertions.assertEquals(Optional.of(Set.of(G1, G2)), writtenGraphs("COPY <" + G1 + "> TO <" + G2 + ">"));
+    Assertions.assertEquals(Optional.empty(), writtenGraphs("MOVE DEFAULT TO <" + G2 + ">"));
+  }
+
+  private static Optional<Set<String>> readGraphs(String query) {
+    return QueryGraphs.readGraphs(QueryFactory.create(query));
+  }
+
+  private static Optional<Set<String>> writtenGraphs(String update) {
+    return QueryGraphs.writtenGraphs(UpdateFactory.create(update));
+  }
+}
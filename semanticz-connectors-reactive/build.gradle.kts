@@ -0,0 +1,12 @@
+plugins {
+    id("semanticz.library")
+}
+
+project.description = "Reactive streams of query results for triple store connectors."
+
+dependencies {
+    implementation(project(":semanticz-connectors-common"))
+    implementation(libs.jena.arq)
+    testImplementation(project(":semanticz-connector-jenamemory"))
+    testImplementation(libs.junit.jupiter)
+}
@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package zone.cogni.semanticz.connectors.reactive;
+
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.QuerySolution;
+import zone.cogni.semanticz.connectors.general.SparqlService;
+import zone.cogni.semanticz.connectors.utils.VirtualThreads;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Exposes the queries of a {@link SparqlService} as {@link Flow.Publisher}s, for reactive applications which must not
+ * block their event loop on a store nor buffer whole results.
+ * <p>
+ * The publishers are cold: every subscriber sends the query again, once it requests its first element. Results are
+ * read through {@link SparqlService#selectStream(String)} and {@link SparqlService#constructStream(String)}, pulling
+ * from the response body only as far as the subscriber requested, so the demand of the subscriber throttles the
+ * reading of the response for connectors streaming their results (Fuseki, GraphDB, Stardog, Virtuoso). Cancelling
+ * the subscription closes the response.
+ * </p>
+ * <p>
+ * Parsing the response blocks, so it runs on an executor: virtual threads on Java 21 and later, a pool of daemon
+ * threads otherwise, unless an executor is given. Adapters such as Reactor's {@code Flux.from(publisher)} or
+ * {@code JdkFlowAdapter} turn the publishers into the types of a reactive library.
+ * </p>
+ */
+public class ReactiveSparqlService {
+
+  private static final Executor defaultExecutor = VirtualThreads.isAvailable()
+      ? VirtualThreads.executor()
+      : daemonPool();
+
+  private final SparqlService sparqlService;
+  private final Executor executor;
+
+  /**
+   * @param sparqlService service to query
+   */
+  public ReactiveSparqlService(SparqlService sparqlService) {
+    this(sparqlService, defaultExecutor);
+  }
+
+  /**
+   * @param sparqlService service to query
+   * @param executor      executor reading the results, running one task at a time per subscription
+   */
+  public ReactiveSparqlService(SparqlService sparqlService, Executor executor) {
+    this.sparqlService = sparqlService;
+    this.executor = executor;
+  }
+
+  private static ExecutorService daemonPool() {
+    final AtomicInteger counter = new AtomicInteger();
+    return Executors.newCachedThreadPool(runnable -> {
+      final Thread thread = new Thread(runnable, "semanticz-reactive-" + counter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * @param query SPARQL SELECT query
+   * @return publisher of the solutions of the query
+   */
+  public Flow.Publisher<QuerySolution> select(String query) {
+    return new StreamPublisher<>(() -> sparqlService.selectStream(query), executor);
+  }
+
+  /**
+   * @param constructQuery SPARQL CONSTRUCT query
+   * @return publisher of the triples of the query, possibly with duplicates
+   */
+  public Flow.Publisher<Triple> construct(String constructQuery) {
+    return new StreamPublisher<>(() -> sparqlService.constructStream(constructQuery), executor);
+  }
+}
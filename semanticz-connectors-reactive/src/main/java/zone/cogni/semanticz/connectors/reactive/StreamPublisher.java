@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package zone.cogni.semanticz.connectors.reactive;
+
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Publishes the elements of a lazily evaluated stream, opened anew for every subscriber.
+ * <p>
+ * The stream is opened on the first request of a subscriber and elements are only pulled from it while the subscriber
+ * has outstanding demand, so a slow subscriber stops the reading of the underlying HTTP response body, leaving the
+ * rest of it in the network buffers. Pulling blocks, so it runs on the given executor, one task at a time per
+ * subscription. The stream is closed when it is exhausted, fails or the subscription is cancelled.
+ * </p>
+ *
+ * @param <T> type of the elements
+ */
+class StreamPublisher<T> implements Flow.Publisher<T> {
+
+  private final Supplier<Stream<T>> streamSupplier;
+  private final Executor executor;
+
+  StreamPublisher(Supplier<Stream<T>> streamSupplier, Executor executor) {
+    this.streamSupplier = streamSupplier;
+    this.executor = executor;
+  }
+
+  @Override
+  public void subscribe(Flow.Subscriber<? super T> subscriber) {
+    Objects.requireNonNull(subscriber, "subscriber");
+    subscriber.onSubscribe(new StreamSubscription<>(subscriber, streamSupplier, executor));
+  }
+
+  private static final class StreamSubscription<T> implements Flow.Subscription {
+
+    private final Supplier<Stream<T>> streamSupplier;
+    private final Executor executor;
+    private final AtomicLong demand = new AtomicLong();
+    private final AtomicInteger pending = new AtomicInteger();
+
+    // dropped once the subscription is cancelled or terminated
+    private volatile Flow.Subscriber<? super T> subscriber;
+    private volatile boolean cancelled;
+    private volatile Throwable error;
+    // only accessed by the draining task
+    private Stream<T> stream;
+    private Iterator<T> iterator;
+
+    private StreamSubscription(Flow.Subscriber<? super T> subscriber, Supplier<Stream<T>> streamSupplier,
+        Executor executor) {
+      this.subscriber = subscriber;
+      this.streamSupplier = streamSupplier;
+      this.executor = executor;
+    }
+
+    @Override
+    public void request(long n) {
+      if (n <= 0) {
+        if (error == null) error = new IllegalArgumentException("Non-positive request of " + n + " elements");
+      } else {
+        demand.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+      }
+      schedule();
+    }
+
+    @Override
+    public void cancel() {
+      cancelled = true;
+      subscriber = null;
+      schedule();
+    }
+
+    private void schedule() {
+      if (pending.getAndIncrement() != 0) return;
+      try {
+        executor.execute(this::drain);
+      } catch (RejectedExecutionException e) {
+        // no drain is running and none will: this thread drains, only to close the stream and signal the failure
+        if (error == null) error = e;
+        drain();
+      }
+    }
+
+    /**
+     * Runs until no request or cancellation arrived since its last pass, leaving {@link #pending} non-zero once
+     * terminated so that it is never scheduled again.
+     */
+    private void drain() {
+      int missed = 1;
+      do {
+        if (!emit()) return;
+        missed = pending.addAndGet(-missed);
+      } while (missed != 0);
+    }
+
+    /**
+     * @return whether the subscription is still active
+     */
+    private boolean emit() {
+      final Flow.Subscriber<? super T> target = subscriber;
+      try {
+        if (cancelled || target == null) {
+          close();
+          return false;
+        }
+        if (error != null) {
+          close();
+          target.onError(error);
+          return false;
+        }
+        while (!cancelled && demand.get() > 0) {
+          if (iterator == null) {
+            stream = streamSupplier.get();
+            iterator = stream.iterator();
+          }
+          if (!iterator.hasNext()) {
+            close();
+            target.onComplete();
+            return false;
+          }
+          final T element = iterator.next();
+          demand.getAndUpdate(current -> current == Long.MAX_VALUE ? current : current - 1);
+          target.onNext(element);
+        }
+        if (cancelled) {
+          close();
+          return false;
+        }
+        return true;
+      } catch (Throwable e) {
+        final boolean wasCancelled = cancelled;
+        close();
+        if (!wasCancelled) target.onError(e);
+        return false;
+      }
+    }
+
+    private void close() {
+      cancelled = true;
+      subscriber = null;
+      if (stream != null) stream.close();
+      stream = null;
+      iterator = null;
+    }
+  }
+}
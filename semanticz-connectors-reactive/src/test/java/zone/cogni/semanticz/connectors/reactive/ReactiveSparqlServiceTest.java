@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package zone.cogni.semanticz.connectors.reactive;
+
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.QuerySolution;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import zone.cogni.semanticz.connectors.jenamemory.JenaModelSparqlService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+public class ReactiveSparqlServiceTest {
+
+  private static final String SELECT = "SELECT ?s WHERE { GRAPH ?g { ?s ?p ?o } }";
+
+  // runs every drain on the requesting thread, so each request is fully served when it returns
+  private static final Executor INLINE = Runnable::run;
+
+  private ReactiveSparqlService reactiveSparqlService;
+
+  @BeforeEach
+  public void setUp() {
+    final JenaModelSparqlService sparqlService = new JenaModelSparqlService();
+    final StringBuilder data = new StringBuilder("INSERT DATA { GRAPH <http://g> {");
+    for (int i = 0; i < 10; i++) {
+      data.append(" <http://s").append(i).append("> <http://p> ").append(i).append(" .");
+    }
+    sparqlService.executeUpdateQuery(data.append(" } }").toString());
+    reactiveSparqlService = new ReactiveSparqlService(sparqlService, INLINE);
+  }
+
+  @Test
+  public void testElementsArePublishedOnDemand() {
+    final CollectingSubscriber<QuerySolution> subscriber = new CollectingSubscriber<>();
+    reactiveSparqlService.select(SELECT).subscribe(subscriber);
+    Assertions.assertEquals(0, subscriber.elements.size());
+
+    subscriber.subscription.request(3);
+    Assertions.assertEquals(3, subscriber.elements.size());
+    Assertions.assertFalse(subscriber.completed);
+
+    subscriber.subscription.request(4);
+    Assertions.assertEquals(7, subscriber.elements.size());
+    Assertions.assertFalse(subscriber.completed);
+
+    subscriber.subscription.request(Long.MAX_VALUE);
+    Assertions.assertEquals(10, subscriber.elements.size());
+    Assertions.assertTrue(subscriber.completed);
+    Assertions.assertNull(subscriber.error);
+  }
+
+  @Test
+  public void testRequestsFromOnNextAreServedWithoutRecursion() {
+    final CollectingSubscriber<QuerySolution> subscriber = new CollectingSubscriber<>() {
+      @Override
+      public void onNext(QuerySolution item) {
+        super.onNext(item);
+        subscription.request(1);
+      }
+    };
+    reactiveSparqlService.select(SELECT).subscribe(subscriber);
+
+    subscriber.subscription.request(1);
+    Assertions.assertEquals(10, subscriber.elements.size());
+    Assertions.assertTrue(subscriber.completed);
+  }
+
+  @Test
+  public void testCancelledSubscriptionStopsPublishing() {
+    final CollectingSubscriber<Triple> subscriber = new CollectingSubscriber<>();
+    reactiveSparqlService.construct("CONSTRUCT { ?s ?p ?o } WHERE { GRAPH ?g { ?s ?p ?o } }").subscribe(subscriber);
+
+    subscriber.subscription.request(1);
+    Assertions.assertEquals(1, subscriber.elements.size());
+
+    subscriber.subscription.cancel();
+    subscriber.subscription.request(5);
+    Assertions.assertEquals(1, subscriber.elements.size());
+    Assertions.assertFalse(subscriber.completed);
+    Assertions.assertNull(subscriber.error);
+  }
+
+  @Test
+  public void testCancelClosesTheStream() {
+    final AtomicBoolean closed = new AtomicBoolean();
+    final CollectingSubscriber<Integer> subscriber = new CollectingSubscriber<>();
+    new StreamPublisher<>(() -> numbers(closed), INLINE).subscribe(subscriber);
+
+    subscriber.subscription.request(2);
+    Assertions.assertFalse(closed.get());
+
+    subscriber.subscription.cancel();
+    Assertions.assertTrue(closed.get());
+    Assertions.assertEquals(List.of(0, 1), subscriber.elements);
+  }
+
+  @Test
+  public void testNonPositiveRequestFails() {
+    final CollectingSubscriber<QuerySolution> subscriber = new CollectingSubscriber<>();
+    reactiveSparqlService.select(SELECT).subscribe(subscriber);
+
+    subscriber.subscription.request(0);
+    Assertions.assertTrue(subscriber.error instanceof IllegalArgumentException);
+    Assertions.assertTrue(subscriber.elements.isEmpty());
+    Assertions.assertFalse(subscriber.completed);
+  }
+
+  @Test
+  public void testRejectedDrainFailsTheSubscriptionAndClosesTheStream() {
+    final AtomicBoolean closed = new AtomicBoolean();
+    final AtomicInteger executions = new AtomicInteger();
+    final Executor rejectsSecond = task -> {
+      if (executions.incrementAndGet() > 1) throw new RejectedExecutionException("Shut down");
+      task.run();
+    };
+    final CollectingSubscriber<Integer> subscriber = new CollectingSubscriber<>();
+    new StreamPublisher<>(() -> numbers(closed), rejectsSecond).subscribe(subscriber);
+
+    subscriber.subscription.request(2);
+    Assertions.assertEquals(List.of(0, 1), subscriber.elements);
+
+    subscriber.subscription.request(2);
+    Assertions.assertTrue(subscriber.error instanceof RejectedExecutionException);
+    Assertions.assertTrue(closed.get());
+    Assertions.assertEquals(List.of(0, 1), subscriber.elements);
+
+    subscriber.subscription.request(2);
+    Assertions.assertEquals(1, subscriber.signals);
+  }
+
+  private static Stream<Integer> numbers(AtomicBoolean closed) {
+    return IntStream.range(0, 10).boxed().onClose(() -> closed.set(true));
+  }
+
+  private static class CollectingSubscriber<T> implements Flow.Subscriber<T> {
+
+    protected Flow.Subscription subscription;
+    private final List<T> elements = new ArrayList<>();
+    private boolean completed;
+    private Throwable error;
+    // number of terminal signals received
+    private int signals;
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+      this.subscription = subscription;
+    }
+
+    @Override
+    public void onNext(T item) {
+      elements.add(item);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      error = throwable;
+      signals++;
+    }
+
+    @Override
+    public void onComplete() {
+      completed = true;
+      signals++;
+    }
+  }
+}
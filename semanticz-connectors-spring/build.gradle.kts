@@ -15,4 +15,6 @@ dependencies {
 
     implementation(libs.spring.core)
     implementation(libs.spring.context)
-}
\ No newline at end of file
+
+    testImplementation(libs.junit.jupiter)
+}
@@ -19,6 +19,8 @@
 
 package zone.cogni.semanticz.connectors.spring;
 
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.ImportAware;
@@ -26,10 +28,16 @@ import org.springframework.core.type.AnnotationMetadata;
 
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.Executor;
 
 @Configuration
 public class SparqlConfiguration implements ImportAware {
 
+  /**
+   * Name of the optional {@link Executor} bean the services run their blocking work on.
+   */
+  public static final String EXECUTOR_BEAN = "sparqlServiceExecutor";
+
   private String configPrefix;
 
   @Override
@@ -38,9 +46,12 @@ public class SparqlConfiguration implements ImportAware {
     configPrefix = (String) annotationAttributes.get("value");
   }
 
+  /**
+   * @param executor executor bean named {@value #EXECUTOR_BEAN}, if any, running the blocking work of the services
+   */
   @Bean
-  public SparqlServiceProvider sparqlServiceProvider() {
-    return new SparqlServiceProvider(configPrefix);
+  public SparqlServiceProvider sparqlServiceProvider(@Qualifier(EXECUTOR_BEAN) ObjectProvider<Executor> executor) {
+    return new SparqlServiceProvider(configPrefix, executor.getIfAvailable());
   }
 
 }
\ No newline at end of file
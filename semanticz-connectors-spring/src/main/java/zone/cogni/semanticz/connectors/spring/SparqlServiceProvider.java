@@ -19,28 +19,50 @@
 
 package zone.cogni.semanticz.connectors.spring;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.env.Environment;
 import zone.cogni.semanticz.connectors.fuseki.FusekiConfig;
 import zone.cogni.semanticz.connectors.fuseki.FusekiSparqlService;
 import zone.cogni.semanticz.connectors.general.Config;
+import zone.cogni.semanticz.connectors.general.RdfStoreSparqlService;
 import zone.cogni.semanticz.connectors.jenamemory.JenaModelSparqlService;
 import zone.cogni.semanticz.connectors.general.SparqlService;
 import zone.cogni.semanticz.connectors.graphdb.GraphDBConfig;
 import zone.cogni.semanticz.connectors.graphdb.GraphDBSparqlService;
 import zone.cogni.semanticz.connectors.stardog.StardogSparqlService;
+import zone.cogni.semanticz.connectors.utils.TripleSerializationFormat;
+import zone.cogni.semanticz.connectors.utils.VirtualThreads;
+import zone.cogni.semanticz.connectors.virtuoso.VirtuosoApacheHttpClientRdfStoreService;
 import zone.cogni.semanticz.connectors.virtuoso.VirtuosoSparqlService;
 
+import java.util.concurrent.Executor;
+
 public class SparqlServiceProvider {
+  private static final Log log = LogFactory.getLog(SparqlServiceProvider.class);
+
   private final String configPrefix;
+  private final Executor executor;
 
   @Autowired
   private Environment environment;
 
   public SparqlServiceProvider(String configPrefix) {
+    this(configPrefix, null);
+  }
+
+  /**
+   * @param configPrefix prefix of the properties configuring the services
+   * @param executor     executor running the blocking work of all services, see {@link Config#setExecutor}, null for
+   *                     the {@code virtualThreads} property of each service to decide
+   */
+  public SparqlServiceProvider(String configPrefix, Executor executor) {
     this.configPrefix = configPrefix.trim() + (configPrefix.endsWith(".") ? "" : ".");
+    this.executor = executor;
   }
 
+  @SuppressWarnings("deprecation")
   public SparqlService createSparqlService(Enum enumValue) {
     String base = configPrefix + enumValue.name() + ".";
 
@@ -51,10 +73,12 @@ public class SparqlServiceProvider {
     switch (value) {
       case "virtuoso":
         return new VirtuosoSparqlService(createDefaultConfig(base));
+      case "virtuosoApacheHttpClient":
+        return new RdfStoreSparqlService(new VirtuosoApacheHttpClientRdfStoreService(createDefaultConfig(base)));
       case "fuseki":
         return new FusekiSparqlService(createFusekiConfig(base));
       case "inMemory":
-        return new JenaModelSparqlService();
+        return new JenaModelSparqlService(createDefaultConfig(base));
       case "graphdb":
         return new GraphDBSparqlService(createGraphDBConfig(base));
       case "stardog":
@@ -64,7 +88,12 @@ public class SparqlServiceProvider {
     }
   }
 
-  private Config createDefaultConfig(String base) {
+  /**
+   * @param base prefix of the properties of one service, ending with a dot
+   * @return configuration of the service; the connection pool properties only apply to the connectors pooling their
+   * own connections ({@code virtuosoApacheHttpClient})
+   */
+  Config createDefaultConfig(String base) {
     return fillDefaultConfig(new Config(), base);
   }
 
@@ -88,7 +117,37 @@ public class SparqlServiceProvider {
             .setUrl(p(base, "url"))
             .setUser(p(base, "user"))
             .setPassword(p(base, "password"))
-            .setGraphCrudUseBasicAuth(Boolean.parseBoolean(p(base, "sparqlGraphCrudUseBasicAuth")));
+            .setGraphCrudUseBasicAuth(Boolean.parseBoolean(p(base, "sparqlGraphCrudUseBasicAuth")))
+            .setMaxConnections(p(base, "maxConnections", Integer.class, config.getMaxConnections()))
+            .setMaxConnectionsPerRoute(p(base, "maxConnectionsPerRoute", Integer.class, config.getMaxConnectionsPerRoute()))
+            .setKeepAliveMillis(p(base, "keepAliveMillis", Long.class, config.getKeepAliveMillis()))
+            .setIdleConnectionEvictionMillis(p(base, "idleConnectionEvictionMillis", Long.class, config.getIdleConnectionEvictionMillis()))
+            .setUploadFormat(p(base, "uploadFormat", TripleSerializationFormat.class, config.getUploadFormat()))
+            .setBinaryResultFormats(p(base, "binaryResultFormats", Boolean.class, config.isBinaryResultFormats()))
+            .setCompression(p(base, "compression", Boolean.class, config.isCompression()))
+            .setConnectTimeoutMillis(p(base, "connectTimeoutMillis", Long.class, config.getConnectTimeoutMillis()))
+            .setQueryTimeoutMillis(p(base, "queryTimeoutMillis", Long.class, config.getQueryTimeoutMillis()))
+            .setSlowQueryThresholdMillis(p(base, "slowQueryThresholdMillis", Long.class, config.getSlowQueryThresholdMillis()))
+            .setSlowQuerySampleRate(p(base, "slowQuerySampleRate", Double.class, config.getSlowQuerySampleRate()))
+            .setSlowQueryLogsPerMinute(p(base, "slowQueryLogsPerMinute", Integer.class, config.getSlowQueryLogsPerMinute()))
+            .setExecutor(executor(base));
+  }
+
+  /**
+   * @return the executor given to this provider, else virtual threads if the {@code virtualThreads} property is set
+   * and the JVM supports them, else null for the default of the connector
+   */
+  private Executor executor(String base) {
+    if (executor != null) return executor;
+    if (!p(base, "virtualThreads", Boolean.class, false)) return null;
+    if (VirtualThreads.isAvailable()) return VirtualThreads.executor();
+    log.warn("Property " + base + "virtualThreads is set, but virtual threads require Java 21 or later, running "
+        + System.getProperty("java.version") + ": using the default executor of the connector instead");
+    return null;
+  }
+
+  private <T> T p(final String base, final String property, final Class<T> type, final T defaultValue) {
+    return environment.getProperty(base + property, type, defaultValue);
   }
 
   private String p(final String base, final String property) {
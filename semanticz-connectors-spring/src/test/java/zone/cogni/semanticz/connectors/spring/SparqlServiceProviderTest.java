@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package zone.cogni.semanticz.connectors.spring;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+import zone.cogni.semanticz.connectors.general.Config;
+import zone.cogni.semanticz.connectors.general.SparqlService;
+import zone.cogni.semanticz.connectors.utils.VirtualThreads;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class SparqlServiceProviderTest {
+
+  private static final String BASE = "semanticz.store.";
+
+  private enum Store {
+    store
+  }
+
+  private AnnotationConfigApplicationContext context;
+
+  private SparqlServiceProvider createProvider(Map<String, Object> properties) {
+    context = new AnnotationConfigApplicationContext();
+    context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("test", properties));
+    context.registerBean(SparqlServiceProvider.class, () -> new SparqlServiceProvider("semanticz"));
+    context.refresh();
+    return context.getBean(SparqlServiceProvider.class);
+  }
+
+  @AfterEach
+  public void closeContext() {
+    if (context != null) context.close();
+  }
+
+  @Test
+  public void testPoolPropertiesReachConfig() {
+    final Map<String, Object> properties = new HashMap<>();
+    properties.put(BASE + "url", "http://localhost:8890/sparql-auth");
+    properties.put(BASE + "maxConnections", "50");
+    properties.put(BASE + "maxConnectionsPerRoute", "25");
+    properties.put(BASE + "keepAliveMillis", "5000");
+    properties.put(BASE + "idleConnectionEvictionMillis", "1000");
+
+    final Config config = createProvider(properties).createDefaultConfig(BASE);
+
+    Assertions.assertEquals("http://localhost:8890/sparql-auth", config.getUrl());
+    Assertions.assertEquals(50, config.getMaxConnections());
+    Assertions.assertEquals(25, config.getMaxConnectionsPerRoute());
+    Assertions.assertEquals(5000L, config.getKeepAliveMillis());
+    Assertions.assertEquals(1000L, config.getIdleConnectionEvictionMillis());
+  }
+
+  @Test
+  public void testPoolPropertiesDefaultToConfigDefaults() {
+    final Config config = createProvider(new HashMap<>()).createDefaultConfig(BASE);
+    final Config defaults = new Config();
+
+    Assertions.assertEquals(defaults.getMaxConnections(), config.getMaxConnections());
+    Assertions.assertEquals(defaults.getMaxConnectionsPerRoute(), config.getMaxConnectionsPerRoute());
+    Assertions.assertEquals(defaults.getKeepAliveMillis(), config.getKeepAliveMillis());
+    Assertions.assertEquals(defaults.getIdleConnectionEvictionMillis(), config.getIdleConnectionEvictionMillis());
+  }
+
+  @Test
+  public void testSlowQueryPropertiesReachConfig() {
+    final Map<String, Object> properties = new HashMap<>();
+    properties.put(BASE + "slowQueryThresholdMillis", "2000");
+    properties.put(BASE + "slowQuerySampleRate", "0.25");
+    properties.put(BASE + "slowQueryLogsPerMinute", "0");
+
+    final Config config = createProvider(properties).createDefaultConfig(BASE);
+
+    Assertions.assertEquals(2000L, config.getSlowQueryThresholdMillis());
+    Assertions.assertEquals(0.25, config.getSlowQuerySampleRate());
+    Assertions.assertEquals(0, config.getSlowQueryLogsPerMinute());
+  }
+
+  @Test
+  public void testTimeoutPropertiesReachConfig() {
+    final Map<String, Object> properties = new HashMap<>();
+    properties.put(BASE + "connectTimeoutMillis", "3000");
+    properties.put(BASE + "queryTimeoutMillis", "60000");
+
+    final Config config = createProvider(properties).createDefaultConfig(BASE);
+
+    Assertions.assertEquals(3000L, config.getConnectTimeoutMillis());
+    Assertions.assertEquals(60000L, config.getQueryTimeoutMillis());
+  }
+
+  @Test
+  public void testApacheHttpClientServicesAreCloseable() throws Exception {
+    final Map<String, Object> properties = new HashMap<>();
+    properties.put(BASE + "type", "virtuosoApacheHttpClient");
+    properties.put(BASE + "url", "http://localhost:8890/sparql-auth");
+
+    final SparqlService sparqlService = createProvider(properties).createSparqlService(Store.store);
+
+    Assertions.assertInstanceOf(AutoCloseable.class, sparqlService);
+    ((AutoCloseable) sparqlService).close();
+  }
+
+  @Test
+  public void testVirtualThreadsPropertyFallsBackToTheDefaultExecutorBeforeJava21() {
+    final Map<String, Object> properties = new HashMap<>();
+    properties.put(BASE + "virtualThreads", "true");
+
+    final Config config = createProvider(properties).createDefaultConfig(BASE);
+
+    if (VirtualThreads.isAvailable()) Assertions.assertSame(VirtualThreads.executor(), config.getExecutor());
+    else Assertions.assertNull(config.getExecutor());
+  }
+}
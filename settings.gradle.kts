@@ -19,4 +19,5 @@ include("semanticz-connector-jenamemory")
 include("semanticz-connector-stardog")
 include("semanticz-connector-virtuoso")
 include("semanticz-connectors-common")
-include("semanticz-connectors-spring")
\ No newline at end of file
+include("semanticz-connectors-spring")
+include("semanticz-connectors-reactive")
\ No newline at end of file